@@ -40,6 +40,7 @@ CREATE TABLE Usuario (
 CREATE TABLE Cliente (
     idCliente INT PRIMARY KEY, 
     NIS INT(20) UNIQUE NOT NULL,
+    departamento VARCHAR(45),
     FOREIGN KEY (idCliente) REFERENCES Usuario(idUsuario)
 );
 
@@ -125,6 +126,15 @@ CREATE TABLE SolicitudDeServicio (
     FOREIGN KEY (EstadoDeMedidor_idEstadoDeMedidor) REFERENCES EstadoDeMedidor(idEstadoDeMedidor),
     FOREIGN KEY (EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio) REFERENCES EstadoDeSolicitudDeServicio(idEstadoDeSolicitudDeServicio)
 );
+
+-- Los índices secundarios y los cambios posteriores de esquema los aplica EjecutorDeMigraciones al iniciar
+-- el sistema (ver MigracionesDelEsquema), y quedan registrados en la tabla HistorialDeMigraciones.
+
+-- Próximo ID libre por tabla para las reservas por bloques (GeneradorDeIds).
+CREATE TABLE SecuenciaDeIds (
+    nombre VARCHAR(45) PRIMARY KEY,
+    siguienteId BIGINT NOT NULL
+);
 ---------------------------------------------------------------------------------------------------------------------------------------------------
 INSERT INTO EstadoDeMedidor (nombre) VALUES
 ('Activo'),
@@ -156,9 +166,9 @@ INSERT INTO Usuario (nombre, apellido, direccion, telefono, correoElectronico, c
 ('Ana', 'Rodríguez', 'Sede Principal', '3873990011', 'ana.r@empresa.com', 'hash+Adm1', '2023-10-01', 3);   -- idUsuario 4 (Administrador)
 
 
-INSERT INTO Cliente (idCliente, NIS) VALUES
-(1, '789012345'),
-(2, '901234567');
+INSERT INTO Cliente (idCliente, NIS, departamento) VALUES
+(1, '789012345', 'Capital'),
+(2, '901234567', 'Cerrillos');
 
 
 INSERT INTO Operario (idOperario, idUniversal, departamento) VALUES
@@ -0,0 +1,568 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Clase AlmacenColumnarDeLecturas.
+ * Serie de tiempo embebida para las lecturas de los medidores, en disco local: para facturación y análisis
+ * recorrer millones de lecturas de MySQL fila por fila es demasiado caro.
+ *
+ * Cada medidor tiene sus lecturas en archivos de segmento de capacidad fija, que se acceden con FileChannel
+ * mapeados en memoria. Un segmento guarda dos columnas ordenadas por instante (los instantes como long y los
+ * valores como double) y un encabezado con el rango de tiempo que cubre:
+ *
+ *   [0]  int  MAGICO        [4]  int  formato      [8]  int idMedidor     [12] int capacidad
+ *   [16] int  cantidad      [24] long primerInstante                      [32] long ultimoInstante
+ *   [64] long instantes[capacidad]    [64 + 8 * capacidad] double valores[capacidad]
+ *
+ * El índice de tiempo de cada medidor (primer instante -> segmento) se arma al tocarlo por primera vez,
+ * leyendo los encabezados. Dentro del segmento se busca por bisección sobre la columna de instantes, y un
+ * recorrido por rango copia las columnas en bloque a arreglos primitivos: no crea un objeto por lectura.
+ *
+ * Agregar en orden es escribir al final del último segmento; una lectura atrasada se inserta en su lugar (y
+ * si su segmento está lleno, se parte en dos). Las repetidas (mismo instante) se ignoran.
+ *
+ * Los mapeos abiertos están acotados (-Dsgre.lecturas.segmentosAbiertos): al pasarse, se liberan los menos
+ * usados en el momento, sin esperar al GC, porque con miles de medidores los mapeos pendientes agotan el límite
+ * del proceso. Cada mapeo solo se usa y se libera con el lock de su medidor, así que nunca se libera uno en uso.
+ * La base de datos sigue siendo la fuente de verdad (tabla Lectura); esto es una copia para consultas, que
+ * cada RepositorioDAO alimenta desde registrarLecturas con las lecturas que aceptó.
+ */
+public class AlmacenColumnarDeLecturas {
+
+    private static final int LECTURAS_POR_SEGMENTO = Integer.getInteger("sgre.lecturas.porSegmento", 4_096); // ~42 días de 15 minutos.
+    private static final int SEGMENTOS_ABIERTOS = Integer.getInteger("sgre.lecturas.segmentosAbiertos", 4_096);
+    private static final int MEDIDORES_POR_CARPETA = 1_000; // Para no tener millones de archivos en una carpeta.
+
+    private static final int MAGICO = 0x5347524C; // "SGRL"
+    private static final int FORMATO = 1;
+    private static final int ENCABEZADO = 64;
+    private static final int POS_CAPACIDAD = 12;
+    private static final int POS_CANTIDAD = 16;
+    private static final int POS_PRIMER_INSTANTE = 24;
+    private static final int POS_ULTIMO_INSTANTE = 32;
+    private static final String EXTENSION = ".seg";
+
+    /*
+     * Lecturas de un medidor en un rango, en columnas primitivas ordenadas por instante.
+     */
+    public static final class SerieDeLecturas {
+        private final int idMedidor;
+        private final long[] instantes;
+        private final double[] valores;
+
+        SerieDeLecturas(int idMedidor, long[] instantes, double[] valores) {
+            this.idMedidor = idMedidor;
+            this.instantes = instantes;
+            this.valores = valores;
+        }
+
+        public int getIdMedidor() {
+            return idMedidor;
+        }
+
+        public int getCantidad() {
+            return instantes.length;
+        }
+
+        // Instantes en milisegundos desde 1970, en orden creciente.
+        public long[] getInstantes() {
+            return instantes;
+        }
+
+        // Valores acumulados en kWh, en la misma posición que su instante.
+        public double[] getValores() {
+            return valores;
+        }
+    }
+
+    /*
+     * Un archivo de segmento. Los datos se leen del mapeo; aquí solo queda lo necesario para el índice.
+     */
+    private static final class Segmento {
+        final Path ruta;
+        final int numero; // Parte del nombre del archivo: <idMedidor>-<numero>.seg
+        int cantidad;
+        long primerInstante;
+        long ultimoInstante;
+        MappedByteBuffer mapeo; // null si no está mapeado. Solo se toca con el lock del medidor.
+
+        Segmento(Path ruta, int numero, int cantidad, long primerInstante, long ultimoInstante) {
+            this.ruta = ruta;
+            this.numero = numero;
+            this.cantidad = cantidad;
+            this.primerInstante = primerInstante;
+            this.ultimoInstante = ultimoInstante;
+        }
+    }
+
+    /*
+     * Índice de tiempo de un medidor: sus segmentos por primer instante. Se usa como lock del medidor.
+     */
+    private static final class IndiceDeMedidor {
+        final int idMedidor;
+        final TreeMap<Long, Segmento> segmentos = new TreeMap<>();
+        int siguienteNumero;
+
+        IndiceDeMedidor(int idMedidor) {
+            this.idMedidor = idMedidor;
+        }
+    }
+
+    private final Path directorio;
+    private final int capacidad; // Lecturas por segmento nuevo.
+    private final Map<Integer, IndiceDeMedidor> indices = new ConcurrentHashMap<>();
+    private final int maximoDeMapeos;
+    // Segmentos mapeados (con su medidor), del menos al más usado. Protegido por sí mismo.
+    private final LinkedHashMap<Segmento, IndiceDeMedidor> mapeados = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Segmento, IndiceDeMedidor> sinSincronizar = new ConcurrentHashMap<>(); // Escritos desde el último force().
+    private final LongAdder mapeosAbiertos = new LongAdder();
+    private final LongAdder mapeosLiberados = new LongAdder();
+
+    public AlmacenColumnarDeLecturas(Path directorio) {
+        this(directorio, LECTURAS_POR_SEGMENTO, SEGMENTOS_ABIERTOS);
+    }
+
+    public AlmacenColumnarDeLecturas(Path directorio, int lecturasPorSegmento, int segmentosAbiertos) {
+        if (lecturasPorSegmento < 2 || segmentosAbiertos < 1) {
+            throw new IllegalArgumentException("Se necesitan al menos 2 lecturas por segmento y 1 segmento abierto.");
+        }
+        this.directorio = directorio;
+        this.capacidad = lecturasPorSegmento;
+        this.maximoDeMapeos = segmentosAbiertos;
+    }
+
+    /**
+     * @return Retorno un almacén en la carpeta configurada con -Dsgre.lecturas.directorio ("sgre-lecturas").
+     */
+    public static AlmacenColumnarDeLecturas enDirectorioConfigurado() {
+        return new AlmacenColumnarDeLecturas(Paths.get(System.getProperty("sgre.lecturas.directorio", "sgre-lecturas")));
+    }
+
+    /**
+     * Agrega las lecturas (en cualquier orden). Las que ya están guardadas con el mismo instante se ignoran.
+     * @return Cantidad de lecturas nuevas guardadas.
+     * @throws IOException Si no se puede crear o mapear un segmento.
+     */
+    public int agregar(List<Lectura> lecturas) throws IOException {
+        Lectura[] ordenadas = lecturas.toArray(new Lectura[0]);
+        Arrays.sort(ordenadas, IngestorDeLecturas.POR_MEDIDOR_Y_FECHA);
+
+        int guardadas = 0;
+        for (int desde = 0; desde < ordenadas.length; ) {
+            int idMedidor = ordenadas[desde].getIdMedidor();
+            int hasta = desde;
+            while (hasta < ordenadas.length && ordenadas[hasta].getIdMedidor() == idMedidor) {
+                hasta++;
+            }
+            IndiceDeMedidor indice = indice(idMedidor);
+            synchronized (indice) {
+                for (int i = desde; i < hasta; i++) {
+                    if (agregar(indice, ordenadas[i].getInstante(), ordenadas[i].getConsumoKwh())) {
+                        guardadas++;
+                    }
+                }
+            }
+            liberarMapeosSobrantes(); // Ya sin el lock del medidor.
+            desde = hasta;
+        }
+        return guardadas;
+    }
+
+    /*
+     * Copia las lecturas que un repositorio acaba de registrar. La base ya las confirmó, así que si el almacén
+     * falla no se deshace nada: se informa y la copia queda sin esas lecturas.
+     */
+    void copiar(List<Lectura> lecturas) {
+        if (lecturas.isEmpty()) {
+            return;
+        }
+        try {
+            agregar(lecturas);
+        } catch (IOException e) {
+            System.err.println("ERROR: No se pudieron copiar " + lecturas.size() + " lecturas al almacén columnar: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lecturas del medidor con instante en [desde, hasta), ordenadas.
+     * @throws IOException Si no se puede mapear un segmento.
+     */
+    public SerieDeLecturas leer(int idMedidor, long desde, long hasta) throws IOException {
+        if (desde >= hasta) {
+            return new SerieDeLecturas(idMedidor, new long[0], new double[0]);
+        }
+        IndiceDeMedidor indice = indice(idMedidor);
+        SerieDeLecturas serie;
+        synchronized (indice) {
+            // Segmentos que pueden tener lecturas del rango: desde el que contiene 'desde' hasta el que empieza antes de 'hasta'.
+            Long primero = indice.segmentos.floorKey(desde);
+            Map<Long, Segmento> candidatos = primero == null
+                    ? indice.segmentos.headMap(hasta, false)
+                    : indice.segmentos.subMap(primero, true, hasta, false);
+
+            // Primera pasada: posiciones dentro de cada segmento; segunda: copia en bloque.
+            Segmento[] segmentos = candidatos.values().toArray(new Segmento[0]);
+            int[] inicios = new int[segmentos.length];
+            int[] fines = new int[segmentos.length];
+            int total = 0;
+            for (int s = 0; s < segmentos.length; s++) {
+                ByteBuffer datos = datos(indice, segmentos[s]);
+                inicios[s] = buscar(datos, segmentos[s].cantidad, desde);
+                fines[s] = buscar(datos, segmentos[s].cantidad, hasta);
+                total += fines[s] - inicios[s];
+            }
+
+            long[] instantes = new long[total];
+            double[] valores = new double[total];
+            int destino = 0;
+            for (int s = 0; s < segmentos.length; s++) {
+                int cantidad = fines[s] - inicios[s];
+                if (cantidad == 0) {
+                    continue;
+                }
+                ByteBuffer datos = datos(indice, segmentos[s]);
+                int capacidadDelSegmento = datos.getInt(POS_CAPACIDAD);
+                datos.position(posInstante(inicios[s]));
+                datos.asLongBuffer().get(instantes, destino, cantidad);
+                datos.position(posValor(capacidadDelSegmento, inicios[s]));
+                datos.asDoubleBuffer().get(valores, destino, cantidad);
+                destino += cantidad;
+            }
+            serie = new SerieDeLecturas(idMedidor, instantes, valores);
+        }
+        liberarMapeosSobrantes();
+        return serie;
+    }
+
+    /**
+     * Fuerza a disco los segmentos escritos desde la última llamada (los mapeos escriben en la caché de páginas
+     * del sistema operativo, que sobrevive a una caída del proceso pero no a una del equipo).
+     * @throws IOException Si no se puede sincronizar un segmento.
+     */
+    public void sincronizar() throws IOException {
+        for (Segmento segmento : sinSincronizar.keySet()) {
+            IndiceDeMedidor indice = sinSincronizar.remove(segmento);
+            synchronized (indice) {
+                if (segmento.mapeo != null) {
+                    segmento.mapeo.force();
+                } else {
+                    // Ya se liberó: sus páginas siguen en la caché del sistema y se bajan con el archivo.
+                    try (FileChannel canal = FileChannel.open(segmento.ruta, StandardOpenOption.WRITE)) {
+                        canal.force(false);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Retorno un resumen para el menú de métricas.
+     */
+    public String getEstadisticas() {
+        int segmentos = 0;
+        for (IndiceDeMedidor indice : indices.values()) {
+            synchronized (indice) {
+                segmentos += indice.segmentos.size();
+            }
+        }
+        int abiertos;
+        synchronized (mapeados) {
+            abiertos = mapeados.size();
+        }
+        return "Lecturas en " + directorio + ": " + indices.size() + " medidores indexados, " + segmentos + " segmentos, "
+                + abiertos + "/" + maximoDeMapeos + " mapeados (" + mapeosAbiertos.sum() + " mapeos abiertos y "
+                + mapeosLiberados.sum() + " liberados en total).";
+    }
+
+    // ------------------ Escritura ------------------
+
+    // Con el lock del medidor tomado. Retorna false si el instante ya estaba.
+    private boolean agregar(IndiceDeMedidor indice, long instante, double valor) throws IOException {
+        Map.Entry<Long, Segmento> entrada = indice.segmentos.floorEntry(instante);
+        if (entrada == null) {
+            entrada = indice.segmentos.firstEntry(); // Anterior a todo: va al principio del primer segmento.
+        }
+        if (entrada == null) {
+            Segmento nuevo = crearSegmento(indice);
+            escribir(indice, datos(indice, nuevo), nuevo, 0, instante, valor);
+            indice.segmentos.put(instante, nuevo);
+            return true;
+        }
+
+        Segmento segmento = entrada.getValue();
+        ByteBuffer datos = datos(indice, segmento);
+        int posicion = segmento.cantidad > 0 && instante > segmento.ultimoInstante
+                ? segmento.cantidad // Caso común: llega en orden, va al final.
+                : buscar(datos, segmento.cantidad, instante);
+        if (posicion < segmento.cantidad && datos.getLong(posInstante(posicion)) == instante) {
+            return false; // Repetida.
+        }
+
+        int capacidadDelSegmento = datos.getInt(POS_CAPACIDAD);
+        if (segmento.cantidad == capacidadDelSegmento) {
+            // Con un piso en el índice, la posición 0 sería una repetida: solo llega aquí si es anterior a todo.
+            if (posicion == segmento.cantidad || posicion == 0) {
+                // Lleno y va en un extremo: empieza un segmento nuevo, que no se superpone con ninguno.
+                Segmento nuevo = crearSegmento(indice);
+                escribir(indice, datos(indice, nuevo), nuevo, 0, instante, valor);
+                indice.segmentos.put(instante, nuevo);
+                return true;
+            }
+            partir(indice, segmento, datos, posicion); // Deja lugar al final del segmento para la atrasada.
+        }
+
+        long primeroAnterior = segmento.primerInstante;
+        escribir(indice, datos, segmento, posicion, instante, valor);
+        if (segmento.primerInstante != primeroAnterior) {
+            indice.segmentos.remove(primeroAnterior); // Cambió la clave del índice.
+            indice.segmentos.put(segmento.primerInstante, segmento);
+        }
+        return true;
+    }
+
+    // Inserta en la posición (corriendo una lugar las siguientes) y actualiza el encabezado al final.
+    private void escribir(IndiceDeMedidor indice, ByteBuffer datos, Segmento segmento, int posicion, long instante, double valor) {
+        int capacidadDelSegmento = datos.getInt(POS_CAPACIDAD);
+        int aCorrer = segmento.cantidad - posicion;
+        if (aCorrer > 0) {
+            correr(datos, posInstante(posicion), aCorrer);
+            correr(datos, posValor(capacidadDelSegmento, posicion), aCorrer);
+        }
+        datos.putLong(posInstante(posicion), instante);
+        datos.putDouble(posValor(capacidadDelSegmento, posicion), valor);
+
+        segmento.cantidad++;
+        segmento.primerInstante = datos.getLong(posInstante(0));
+        segmento.ultimoInstante = datos.getLong(posInstante(segmento.cantidad - 1));
+        datos.putLong(POS_PRIMER_INSTANTE, segmento.primerInstante);
+        datos.putLong(POS_ULTIMO_INSTANTE, segmento.ultimoInstante);
+        datos.putInt(POS_CANTIDAD, segmento.cantidad); // Último: la cantidad solo cubre datos ya escritos.
+        sinSincronizar.put(segmento, indice);
+    }
+
+    // Mueve 'cantidad' valores de 8 bytes una posición hacia adelante (las regiones se superponen: copio antes).
+    private static void correr(ByteBuffer datos, int desde, int cantidad) {
+        byte[] copia = new byte[cantidad * 8];
+        datos.position(desde);
+        datos.get(copia);
+        datos.position(desde + 8);
+        datos.put(copia);
+    }
+
+    // Pasa a un segmento nuevo las lecturas desde 'posicion' (0 < posicion < cantidad) hasta el final.
+    private void partir(IndiceDeMedidor indice, Segmento segmento, ByteBuffer datos, int posicion) throws IOException {
+        Segmento nuevo = crearSegmento(indice);
+        ByteBuffer datosNuevos = datos(indice, nuevo);
+        int capacidadVieja = datos.getInt(POS_CAPACIDAD);
+        int capacidadNueva = datosNuevos.getInt(POS_CAPACIDAD);
+        int cantidad = segmento.cantidad - posicion;
+
+        byte[] bloque = new byte[cantidad * 8];
+        datos.position(posInstante(posicion));
+        datos.get(bloque);
+        datosNuevos.position(posInstante(0));
+        datosNuevos.put(bloque);
+        datos.position(posValor(capacidadVieja, posicion));
+        datos.get(bloque);
+        datosNuevos.position(posValor(capacidadNueva, 0));
+        datosNuevos.put(bloque);
+
+        nuevo.cantidad = cantidad;
+        nuevo.primerInstante = datosNuevos.getLong(posInstante(0));
+        nuevo.ultimoInstante = datosNuevos.getLong(posInstante(cantidad - 1));
+        datosNuevos.putLong(POS_PRIMER_INSTANTE, nuevo.primerInstante);
+        datosNuevos.putLong(POS_ULTIMO_INSTANTE, nuevo.ultimoInstante);
+        datosNuevos.putInt(POS_CANTIDAD, cantidad);
+        indice.segmentos.put(nuevo.primerInstante, nuevo);
+        sinSincronizar.put(nuevo, indice);
+
+        segmento.cantidad = posicion;
+        segmento.ultimoInstante = datos.getLong(posInstante(posicion - 1));
+        datos.putInt(POS_CANTIDAD, segmento.cantidad);
+        datos.putLong(POS_ULTIMO_INSTANTE, segmento.ultimoInstante);
+        sinSincronizar.put(segmento, indice);
+    }
+
+    private Segmento crearSegmento(IndiceDeMedidor indice) throws IOException {
+        Path carpeta = carpetaDe(indice.idMedidor);
+        Files.createDirectories(carpeta);
+        int numero = indice.siguienteNumero++;
+        Path ruta = carpeta.resolve(indice.idMedidor + "-" + numero + EXTENSION);
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer encabezado = ByteBuffer.allocate(ENCABEZADO).order(ByteOrder.LITTLE_ENDIAN);
+            encabezado.putInt(0, MAGICO).putInt(4, FORMATO).putInt(8, indice.idMedidor).putInt(POS_CAPACIDAD, capacidad);
+            canal.write(encabezado, 0);
+            canal.truncate(ENCABEZADO); // El resto del archivo lo extiende el mapeo (disperso en la mayoría de los sistemas).
+        }
+        return new Segmento(ruta, numero, 0, 0, 0);
+    }
+
+    // ------------------ Lectura de segmentos e índice ------------------
+
+    // Retorna (armándolo la primera vez desde los encabezados en disco) el índice del medidor.
+    private IndiceDeMedidor indice(int idMedidor) throws IOException {
+        IndiceDeMedidor indice = indices.get(idMedidor);
+        if (indice != null) {
+            return indice;
+        }
+        IndiceDeMedidor cargado = new IndiceDeMedidor(idMedidor);
+        Path carpeta = carpetaDe(idMedidor);
+        if (Files.isDirectory(carpeta)) {
+            try (DirectoryStream<Path> archivos = Files.newDirectoryStream(carpeta, idMedidor + "-*" + EXTENSION)) {
+                for (Path ruta : archivos) {
+                    String nombre = ruta.getFileName().toString();
+                    int numero = Integer.parseInt(nombre.substring(nombre.indexOf('-') + 1, nombre.length() - EXTENSION.length()));
+                    cargado.siguienteNumero = Math.max(cargado.siguienteNumero, numero + 1);
+                    ByteBuffer encabezado = leerEncabezado(ruta);
+                    int cantidad = encabezado.getInt(POS_CANTIDAD);
+                    if (cantidad > 0) {
+                        cargado.segmentos.put(encabezado.getLong(POS_PRIMER_INSTANTE), new Segmento(ruta, numero, cantidad,
+                                encabezado.getLong(POS_PRIMER_INSTANTE), encabezado.getLong(POS_ULTIMO_INSTANTE)));
+                    }
+                }
+            }
+        }
+        IndiceDeMedidor anterior = indices.putIfAbsent(idMedidor, cargado);
+        return anterior != null ? anterior : cargado;
+    }
+
+    private static ByteBuffer leerEncabezado(Path ruta) throws IOException {
+        ByteBuffer encabezado = ByteBuffer.allocate(ENCABEZADO).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            canal.read(encabezado, 0);
+        }
+        if (encabezado.getInt(0) != MAGICO || encabezado.getInt(4) != FORMATO) {
+            throw new IOException("No es un segmento de lecturas válido: " + ruta);
+        }
+        return encabezado;
+    }
+
+    // Con el lock del medidor tomado: vista propia (posición independiente, little-endian) del mapeo del
+    // segmento, mapeándolo si hace falta. La vista no debe usarse después de soltar el lock.
+    private ByteBuffer datos(IndiceDeMedidor indice, Segmento segmento) throws IOException {
+        if (segmento.mapeo == null) {
+            try (FileChannel canal = FileChannel.open(segmento.ruta, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                int capacidadDelArchivo = leerEncabezado(segmento.ruta).getInt(POS_CAPACIDAD);
+                // El mapeo sigue siendo válido después de cerrar el canal.
+                segmento.mapeo = canal.map(FileChannel.MapMode.READ_WRITE, 0, ENCABEZADO + 16L * capacidadDelArchivo);
+            }
+            mapeosAbiertos.increment();
+        }
+        synchronized (mapeados) {
+            mapeados.put(segmento, indice); // También lo marca como el más recién usado.
+        }
+        return segmento.mapeo.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Libera los mapeos menos usados que pasen del máximo. Se llama sin ningún lock de medidor tomado: tomo de
+    // a uno el del segmento a liberar, así dos hilos nunca se esperan mutuamente.
+    private void liberarMapeosSobrantes() {
+        while (true) {
+            Segmento segmento;
+            IndiceDeMedidor indice;
+            synchronized (mapeados) {
+                if (mapeados.size() <= maximoDeMapeos) {
+                    return;
+                }
+                Iterator<Map.Entry<Segmento, IndiceDeMedidor>> it = mapeados.entrySet().iterator();
+                Map.Entry<Segmento, IndiceDeMedidor> menosUsado = it.next();
+                segmento = menosUsado.getKey();
+                indice = menosUsado.getValue();
+                it.remove();
+            }
+            synchronized (indice) {
+                // Si otro hilo lo volvió a usar mientras tanto, se vuelve a mapear la próxima vez.
+                if (segmento.mapeo != null) {
+                    liberar(segmento.mapeo);
+                    segmento.mapeo = null;
+                    mapeosLiberados.increment();
+                }
+            }
+        }
+    }
+
+    // Java 15 no tiene una API pública para liberar un mapeo: uso sun.misc.Unsafe.invokeCleaner (módulo
+    // jdk.unsupported). Si no está disponible, el mapeo se libera cuando el GC recolecta el buffer.
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> clase = Class.forName("sun.misc.Unsafe");
+            Field instancia = clase.getDeclaredField("theUnsafe");
+            instancia.setAccessible(true);
+            unsafe = instancia.get(null);
+            invokeCleaner = clase.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.err.println("ADVERTENCIA: No se pueden liberar mapeos explícitamente (" + e + "); se liberan con el GC.");
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    // También lo usa LectorDeArchivoDePagos para soltar cada ventana al avanzar.
+    static void liberar(MappedByteBuffer mapeo) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, mapeo);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("ADVERTENCIA: No se pudo liberar un mapeo de lecturas: " + e);
+        }
+    }
+
+    // Primera posición con instante >= buscado (bisección sobre la columna de instantes).
+    private static int buscar(ByteBuffer datos, int cantidad, long instante) {
+        int bajo = 0;
+        int alto = cantidad;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (datos.getLong(posInstante(medio)) < instante) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    private static int posInstante(int posicion) {
+        return ENCABEZADO + 8 * posicion;
+    }
+
+    private static int posValor(int capacidadDelSegmento, int posicion) {
+        return ENCABEZADO + 8 * capacidadDelSegmento + 8 * posicion;
+    }
+
+    private Path carpetaDe(int idMedidor) {
+        return directorio.resolve(String.valueOf(idMedidor / MEDIDORES_POR_CARPETA));
+    }
+}
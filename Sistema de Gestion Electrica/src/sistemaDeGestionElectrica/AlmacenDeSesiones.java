@@ -0,0 +1,178 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Clase AlmacenDeSesiones.
+ * Guarda en memoria dos cosas, ambas con vencimiento:
+ * - Las sesiones abiertas: un token al azar por cada inicio de sesión, que se renueva con cada uso y vence
+ *   tras 'sgre.sesion.minutos' sin actividad (30 por defecto).
+ * - Las credenciales recordadas: por cada identificador que inició sesión bien, el Usuario y una huella
+ *   SHA-256 con sal de su contraseña (nunca la contraseña en claro). Un nuevo inicio con la misma contraseña
+ *   se resuelve sin ir a la BD durante 'sgre.sesion.credencialesSegundos' (300 por defecto; 0 desactiva).
+ *   Ese es también el tiempo máximo que una contraseña cambiada en la BD por fuera del sistema sigue valiendo.
+ * Las dos están acotadas (CacheLRU): si se llenan, se descarta la menos usada.
+ */
+public class AlmacenDeSesiones {
+
+    private static final long MINUTOS_DE_SESION = Long.getLong("sgre.sesion.minutos", 30);
+    private static final long SEGUNDOS_DE_CREDENCIALES = Long.getLong("sgre.sesion.credencialesSegundos", 300);
+    private static final int MAXIMO_DE_SESIONES = Integer.getInteger("sgre.sesion.maximo", 10_000);
+    private static final int BYTES_DE_TOKEN = 24; // 192 bits al azar.
+    private static final int BYTES_DE_SAL = 16;
+
+    /*
+     * Una sesión abierta. El vencimiento se corre con cada uso.
+     */
+    private static final class Sesion {
+        private final Usuario usuario;
+        private volatile long venceEnNanos;
+
+        Sesion(Usuario usuario, long venceEnNanos) {
+            this.usuario = usuario;
+            this.venceEnNanos = venceEnNanos;
+        }
+    }
+
+    /*
+     * Un inicio de sesión exitoso recordado, con la huella de la contraseña que se usó.
+     */
+    private static final class CredencialRecordada {
+        private final Usuario usuario;
+        private final byte[] sal;
+        private final byte[] huella;
+        private final long venceEnNanos;
+
+        CredencialRecordada(Usuario usuario, byte[] sal, byte[] huella, long venceEnNanos) {
+            this.usuario = usuario;
+            this.sal = sal;
+            this.huella = huella;
+            this.venceEnNanos = venceEnNanos;
+        }
+    }
+
+    private final CacheLRU<String, Sesion> sesiones = new CacheLRU<>("sesiones", MAXIMO_DE_SESIONES);
+    private final CacheLRU<String, CredencialRecordada> credenciales = new CacheLRU<>("credenciales", MAXIMO_DE_SESIONES);
+    private final SecureRandom azar = new SecureRandom();
+    private final long nanosDeSesion = MINUTOS_DE_SESION * 60_000_000_000L;
+    private final long nanosDeCredenciales = SEGUNDOS_DE_CREDENCIALES * 1_000_000_000L;
+
+    // ------------------ Sesiones ------------------
+
+    /**
+     * Abre una sesión para el usuario ya autenticado.
+     * @return Retorno el token que la identifica.
+     */
+    public String abrir(Usuario usuario) {
+        byte[] bytes = new byte[BYTES_DE_TOKEN];
+        azar.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sesiones.poner(token, new Sesion(usuario, System.nanoTime() + nanosDeSesion));
+        return token;
+    }
+
+    /**
+     * Busca la sesión del token y, si sigue vigente, corre su vencimiento.
+     * @return Retorno el Usuario de la sesión, o null si no existe o venció.
+     */
+    public Usuario buscar(String token) {
+        if (token == null) {
+            return null;
+        }
+        Sesion sesion = sesiones.obtenerSiPresente(token);
+        if (sesion == null) {
+            return null;
+        }
+        long ahora = System.nanoTime();
+        if (ahora - sesion.venceEnNanos >= 0) {
+            sesiones.invalidar(token);
+            return null;
+        }
+        sesion.venceEnNanos = ahora + nanosDeSesion;
+        return sesion.usuario;
+    }
+
+    /*
+     * Cierra la sesión del token (si existe).
+     */
+    public void cerrar(String token) {
+        if (token != null) {
+            sesiones.invalidar(token);
+        }
+    }
+
+    // ------------------ Credenciales recordadas ------------------
+
+    /**
+     * @return Retorno el Usuario recordado para el identificador si la contraseña coincide con la que se usó
+     *         y no venció; null en otro caso (hay que ir a la BD).
+     */
+    public Usuario buscarCredencial(TipoDeIdentificador tipo, String identificador, String contrasena) {
+        if (nanosDeCredenciales <= 0) {
+            return null;
+        }
+        String clave = claveDeCredencial(tipo, identificador);
+        CredencialRecordada recordada = credenciales.obtenerSiPresente(clave);
+        if (recordada == null) {
+            return null;
+        }
+        if (System.nanoTime() - recordada.venceEnNanos >= 0) {
+            credenciales.invalidar(clave);
+            return null;
+        }
+        // Comparación en tiempo constante, para no dar pistas sobre la huella.
+        return MessageDigest.isEqual(recordada.huella, huella(recordada.sal, contrasena)) ? recordada.usuario : null;
+    }
+
+    /*
+     * Recuerda un inicio de sesión exitoso (lo llama el controlador después de validar contra la BD).
+     */
+    public void recordarCredencial(TipoDeIdentificador tipo, String identificador, String contrasena, Usuario usuario) {
+        if (nanosDeCredenciales <= 0) {
+            return;
+        }
+        byte[] sal = new byte[BYTES_DE_SAL];
+        azar.nextBytes(sal);
+        credenciales.poner(claveDeCredencial(tipo, identificador),
+                new CredencialRecordada(usuario, sal, huella(sal, contrasena), System.nanoTime() + nanosDeCredenciales));
+    }
+
+    /*
+     * Olvida todas las credenciales recordadas (ej: después de cambiar contraseñas en la BD).
+     */
+    public void olvidarCredenciales() {
+        credenciales.invalidarTodo();
+    }
+
+    /**
+     * @return Retorno las estadísticas de las dos cachés para el menú de métricas.
+     */
+    public String getEstadisticas() {
+        return sesiones.resumen() + System.lineSeparator() + credenciales.resumen();
+    }
+
+    // ------------------ Internos ------------------
+
+    private static String claveDeCredencial(TipoDeIdentificador tipo, String identificador) {
+        return tipo.name() + ':' + tipo.normalizar(identificador);
+    }
+
+    private static byte[] huella(byte[] sal, String contrasena) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(sal);
+            return sha256.digest(contrasena.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no está disponible en esta JVM.", e);
+        }
+    }
+}
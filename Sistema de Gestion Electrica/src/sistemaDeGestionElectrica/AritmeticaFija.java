@@ -0,0 +1,72 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.math.RoundingMode;
+
+/**
+ * Clase AritmeticaFija.
+ * Operaciones en punto fijo sobre long que comparten Dinero y Energia: la división con un modo de redondeo
+ * explícito (la única operación que pierde precisión) y el formato con una cantidad fija de decimales.
+ * Nada crea objetos, para poder usarse en la facturación de millones de facturas.
+ */
+final class AritmeticaFija {
+
+    private AritmeticaFija() {}
+
+    /**
+     * Divide y redondea el cociente exacto con el modo indicado, como BigDecimal.divide(divisor, 0, modo).
+     * @throws ArithmeticException Si el divisor es 0, o si el modo es UNNECESSARY y la división no es exacta.
+     */
+    static long dividir(long dividendo, long divisor, RoundingMode modo) {
+        long cociente = dividendo / divisor; // Trunca hacia 0.
+        long resto = dividendo % divisor;
+        if (resto == 0) {
+            return cociente;
+        }
+        int signo = (dividendo < 0) == (divisor < 0) ? 1 : -1; // Signo del cociente exacto.
+        long restoAbs = Math.abs(resto);
+        int contraLaMitad = Long.compare(restoAbs, Math.abs(divisor) - restoAbs); // Sin desbordar 2 * resto.
+
+        switch (modo) {
+            case DOWN:
+                return cociente;
+            case UP:
+                return cociente + signo;
+            case FLOOR:
+                return signo < 0 ? cociente - 1 : cociente;
+            case CEILING:
+                return signo > 0 ? cociente + 1 : cociente;
+            case HALF_UP:
+                return contraLaMitad >= 0 ? cociente + signo : cociente;
+            case HALF_DOWN:
+                return contraLaMitad > 0 ? cociente + signo : cociente;
+            case HALF_EVEN:
+                if (contraLaMitad == 0) {
+                    return (cociente & 1) == 0 ? cociente : cociente + signo;
+                }
+                return contraLaMitad > 0 ? cociente + signo : cociente;
+            default: // UNNECESSARY
+                throw new ArithmeticException("La división " + dividendo + " / " + divisor + " no es exacta.");
+        }
+    }
+
+    // Escribe 'valor' (en la unidad mínima) con 'decimales' decimales, ej: formatear(-1205, 2) = "-12.05".
+    static String formatear(long valor, int decimales, long escala) {
+        StringBuilder texto = new StringBuilder(24);
+        if (valor < 0) {
+            texto.append('-');
+        }
+        long entero = Math.abs(valor / escala);
+        long fraccion = Math.abs(valor % escala);
+        texto.append(entero).append('.');
+        String digitos = Long.toString(fraccion);
+        for (int i = digitos.length(); i < decimales; i++) {
+            texto.append('0');
+        }
+        return texto.append(digitos).toString();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+
+/**
+ * Clase BarridoDeVencimientos.
+ * Pasa a "Vencida" las Facturas pendientes cuya fecha de vencimiento ya pasó y, en la misma sentencia, les
+ * calcula el recargo por mora sobre el saldo impago (monto menos pagos aprobados, ver ConciliacionDePagos):
+ * - Cada tramo es un único UPDATE por conjunto con ORDER BY ... LIMIT 'facturasPorTramo', que recorre el índice
+ *   (estado, fechaVencimiento) de la migración 9 y confirma solo (autocommit): los locks de fila duran un tramo.
+ * - Es idempotente: solo toca facturas en estado "Pendiente", así que volver a correrlo (o cortarlo a la mitad)
+ *   no recarga dos veces la misma factura.
+ * - Con varias instancias de la aplicación, toma un lock con nombre de MySQL (GET_LOCK, como EjecutorDeMigraciones)
+ *   sin esperar: si otra instancia está barriendo, esta no hace nada hasta la próxima ejecución.
+ */
+public class BarridoDeVencimientos {
+
+    public static final int SIN_LOCK = -1; // Otra instancia tiene el lock del barrido.
+    public static final long PUNTOS_BASICOS = 10_000; // Denominador del porcentaje de recargo (500 = 5 %).
+
+    private static final String NOMBRE_DEL_LOCK = "sgre.vencimientos";
+
+    // El recargo se redondea como Dinero.multiplicar con HALF_UP (ROUND de MySQL sobre DECIMAL, con saldo >= 0).
+    static final String SQL_VENCER_TRAMO =
+            "UPDATE Factura f SET f.estado = '" + ConciliacionDePagos.ESTADO_FACTURA_VENCIDA + "', " +
+            "f.recargo = ROUND(GREATEST(f.monto - COALESCE((SELECT SUM(p.monto) FROM Pago p WHERE p.Factura_idFactura = f.idFactura " +
+            "AND p.estado = '" + ConciliacionDePagos.ESTADO_PAGO_APROBADO + "'), 0), 0) * ? / " + PUNTOS_BASICOS + ", 2) " +
+            "WHERE f.estado = '" + FacturacionDelPeriodo.ESTADO_PENDIENTE + "' AND f.fechaVencimiento < ? " +
+            "ORDER BY f.fechaVencimiento, f.idFactura LIMIT ?";
+
+    private final int facturasPorTramo;
+
+    public BarridoDeVencimientos(int facturasPorTramo) {
+        if (facturasPorTramo < 1) {
+            throw new IllegalArgumentException("Las facturas por tramo deben ser positivas.");
+        }
+        this.facturasPorTramo = facturasPorTramo;
+    }
+
+    /**
+     * Vence las facturas pendientes con fecha de vencimiento anterior a 'corte'.
+     * @param recargoEnPuntosBasicos Recargo sobre el saldo impago, en centésimos de punto porcentual.
+     * @return Cantidad de facturas vencidas, o SIN_LOCK si otra instancia está barriendo.
+     * @throws SQLException Si falla la base de datos; los tramos anteriores quedan confirmados.
+     */
+    public int vencer(Date corte, int recargoEnPuntosBasicos) throws SQLException {
+        try (Connection conn = DBConnection.getConnection()) {
+            if (!tomarLock(conn)) {
+                return SIN_LOCK;
+            }
+            try (PreparedStatement ps = conn.prepareStatement(SQL_VENCER_TRAMO)) {
+                ps.setInt(1, recargoEnPuntosBasicos);
+                ps.setDate(2, new java.sql.Date(corte.getTime()));
+                ps.setInt(3, facturasPorTramo);
+                int vencidas = 0;
+                int tramo;
+                do {
+                    tramo = ps.executeUpdate();
+                    vencidas += tramo;
+                } while (tramo == facturasPorTramo);
+                return vencidas;
+            } finally {
+                liberarLock(conn);
+            }
+        }
+    }
+
+    // ------------------ Internos ------------------
+
+    private static boolean tomarLock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            ps.setString(1, NOMBRE_DEL_LOCK);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void liberarLock(Connection conn) {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, NOMBRE_DEL_LOCK);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            System.err.println("Error al liberar el lock de vencimientos: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Clase CacheLRU.
+ * Caché acotada de lectura directa (read-through) que desaloja la entrada usada hace más tiempo.
+ * El límite se mide en "peso": por defecto cada entrada pesa 1, pero se puede pasar un pesador
+ * para acotar por tamaño estimado. Lleva estadísticas de aciertos, fallos y desalojos.
+ *
+ * - Una carga que termina después de un invalidar() de su clave no se guarda: cada franja de claves tiene una
+ *   generación que invalidar() incrementa, y la carga solo se guarda si la generación no cambió mientras
+ *   consultaba la BD (si no, podría volver a guardar la fila de antes de la escritura, sin vencimiento).
+ * - Las escrituras de otras instancias de la aplicación no invalidan esta caché: con un tiempo de vida (ttl),
+ *   cada entrada se descarta a los 'ttlMs' milisegundos de cargada, lo que acota cuánto puede estar desactualizada.
+ */
+public class CacheLRU<K, V> {
+
+    /*
+     * Función que carga el valor desde la BD cuando no está en la caché.
+     */
+    @FunctionalInterface
+    public interface Cargador<K, V> {
+        V cargar(K clave) throws SQLException;
+    }
+
+    private final String nombre; // Nombre para identificar la caché en las estadísticas.
+    private final long pesoMaximo; // Peso total máximo antes de empezar a desalojar.
+    private final ToLongFunction<V> pesador; // Cuánto pesa cada valor.
+    private final long ttlNanos; // Tiempo de vida de cada entrada; 0 = sin vencimiento.
+    private final LinkedHashMap<K, Entrada<V>> entradas = new LinkedHashMap<>(16, 0.75f, true); // Orden de acceso (LRU).
+    private long pesoActual = 0; // Protegido por 'this'.
+
+    // Generación de cada franja de claves (por hash), protegida por 'this'. Con franjas la memoria no crece con
+    // las claves invalidadas; dos claves de la misma franja solo hacen que se descarte alguna carga de más.
+    private static final int FRANJAS = 64;
+    private final long[] generaciones = new long[FRANJAS];
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong desalojos = new AtomicLong();
+
+    /*
+     * Crea una caché acotada por cantidad de entradas.
+     */
+    public CacheLRU(String nombre, long maximoEntradas) {
+        this(nombre, maximoEntradas, v -> 1L);
+    }
+
+    /*
+     * Crea una caché acotada por cantidad de entradas, cuyas entradas vencen a los 'ttlMs' milisegundos.
+     */
+    public CacheLRU(String nombre, long maximoEntradas, long ttlMs) {
+        this(nombre, maximoEntradas, v -> 1L, ttlMs);
+    }
+
+    /*
+     * Crea una caché acotada por peso total, usando el pesador indicado.
+     */
+    public CacheLRU(String nombre, long pesoMaximo, ToLongFunction<V> pesador) {
+        this(nombre, pesoMaximo, pesador, 0);
+    }
+
+    /*
+     * Crea una caché acotada por peso total, con tiempo de vida por entrada (0 = sin vencimiento).
+     */
+    public CacheLRU(String nombre, long pesoMaximo, ToLongFunction<V> pesador, long ttlMs) {
+        if (pesoMaximo < 1) {
+            throw new IllegalArgumentException("El peso máximo de la caché debe ser positivo.");
+        }
+        if (ttlMs < 0) {
+            throw new IllegalArgumentException("El tiempo de vida de la caché no puede ser negativo.");
+        }
+        this.nombre = nombre;
+        this.pesoMaximo = pesoMaximo;
+        this.pesador = pesador;
+        this.ttlNanos = ttlMs * 1_000_000;
+    }
+
+    // Valor guardado y el momento (System.nanoTime) en que vence.
+    private static final class Entrada<V> {
+        final V valor;
+        final long venceEn;
+
+        Entrada(V valor, long venceEn) {
+            this.valor = valor;
+            this.venceEn = venceEn;
+        }
+    }
+
+    /**
+     * Retorna el valor de la caché o, si no está, lo carga con el cargador y lo guarda.
+     * Los resultados nulos (entidad inexistente) no se guardan.
+     * La carga se hace fuera del lock para no bloquear a otros lectores durante la consulta; si mientras tanto
+     * se invalidó la clave, el valor cargado se retorna pero no se guarda.
+     */
+    public V obtener(K clave, Cargador<K, V> cargador) throws SQLException {
+        long generacion = getGeneracion(clave);
+        V valor = obtenerSiPresente(clave);
+        if (valor != null) {
+            return valor;
+        }
+        valor = cargador.cargar(clave);
+        if (valor != null) {
+            poner(clave, valor, generacion);
+        }
+        return valor;
+    }
+
+    /*
+     * Retorna el valor si está en la caché, o null. Cuenta como acierto o fallo.
+     */
+    public V obtenerSiPresente(K clave) {
+        V valor = null;
+        synchronized (this) {
+            Entrada<V> entrada = entradas.get(clave);
+            if (entrada != null && ttlNanos > 0 && System.nanoTime() - entrada.venceEn >= 0) {
+                quitar(clave); // Vencida: la próxima carga la trae actualizada.
+            } else if (entrada != null) {
+                valor = entrada.valor;
+            }
+        }
+        if (valor != null) {
+            aciertos.incrementAndGet();
+        } else {
+            fallos.incrementAndGet();
+        }
+        return valor;
+    }
+
+    /*
+     * Guarda un valor y desaloja las entradas menos usadas si se supera el peso máximo.
+     * Para un valor leído de la BD, usar poner(clave, valor, generacion).
+     */
+    public synchronized void poner(K clave, V valor) {
+        Entrada<V> anterior = entradas.put(clave, new Entrada<>(valor, System.nanoTime() + ttlNanos));
+        if (anterior != null) {
+            pesoActual -= pesador.applyAsLong(anterior.valor);
+        }
+        pesoActual += pesador.applyAsLong(valor);
+
+        Iterator<Map.Entry<K, Entrada<V>>> it = entradas.entrySet().iterator();
+        while (pesoActual > pesoMaximo && it.hasNext()) {
+            Map.Entry<K, Entrada<V>> masAntigua = it.next();
+            if (masAntigua.getKey().equals(clave)) {
+                continue; // Nunca desalojo lo que acabo de insertar.
+            }
+            pesoActual -= pesador.applyAsLong(masAntigua.getValue().valor);
+            it.remove();
+            desalojos.incrementAndGet();
+        }
+    }
+
+    /*
+     * Guarda un valor cargado de la BD, salvo que la clave se haya invalidado desde que se tomó 'generacion'
+     * con getGeneracion() (antes de la consulta).
+     * @return true si se guardó.
+     */
+    public synchronized boolean poner(K clave, V valor, long generacion) {
+        if (generaciones[franja(clave)] != generacion) {
+            return false;
+        }
+        poner(clave, valor);
+        return true;
+    }
+
+    /*
+     * Generación actual de la clave, a tomar antes de cargarla para después guardarla con poner(clave, valor, generacion).
+     */
+    public synchronized long getGeneracion(K clave) {
+        return generaciones[franja(clave)];
+    }
+
+    /*
+     * Quita una entrada (invalidación por escritura) y descarta las cargas de esa clave que estén en curso.
+     */
+    public synchronized void invalidar(K clave) {
+        generaciones[franja(clave)]++;
+        quitar(clave);
+    }
+
+    /*
+     * Vacía la caché por completo y descarta todas las cargas en curso.
+     */
+    public synchronized void invalidarTodo() {
+        for (int i = 0; i < FRANJAS; i++) {
+            generaciones[i]++;
+        }
+        entradas.clear();
+        pesoActual = 0;
+    }
+
+    // Se llama con el lock de 'this' tomado.
+    private void quitar(K clave) {
+        Entrada<V> anterior = entradas.remove(clave);
+        if (anterior != null) {
+            pesoActual -= pesador.applyAsLong(anterior.valor);
+        }
+    }
+
+    private static int franja(Object clave) {
+        int h = clave.hashCode();
+        return (h ^ (h >>> 16)) & (FRANJAS - 1);
+    }
+
+    // ------------------ Estadísticas ------------------
+
+    public synchronized int getCantidadDeEntradas() {
+        return entradas.size();
+    }
+
+    public long getAciertos() {
+        return aciertos.get();
+    }
+
+    public long getFallos() {
+        return fallos.get();
+    }
+
+    public long getDesalojos() {
+        return desalojos.get();
+    }
+
+    public double getTasaDeAciertos() {
+        long total = aciertos.get() + fallos.get();
+        return total == 0 ? 0.0 : aciertos.get() / (double) total;
+    }
+
+    /*
+     * Retorna un resumen legible de las estadísticas para mostrar por consola.
+     */
+    public String resumen() {
+        long peso;
+        synchronized (this) {
+            peso = pesoActual;
+        }
+        return String.format("Cache[%s] entradas=%d peso=%d/%d aciertos=%d fallos=%d desalojos=%d tasa=%.1f%%",
+                nombre, getCantidadDeEntradas(), peso, pesoMaximo, getAciertos(), getFallos(), getDesalojos(),
+                getTasaDeAciertos() * 100);
+    }
+}
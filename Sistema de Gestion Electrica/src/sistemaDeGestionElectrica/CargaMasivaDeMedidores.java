@@ -0,0 +1,126 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Clase CargaMasivaDeMedidores.
+ * Inserta muchos Medidores ya validados con lotes JDBC sobre una sola conexión. Con rewriteBatchedStatements
+ * (ver DBConnection) cada lote viaja como un único INSERT multi-fila, y se hace un commit cada
+ * 'filasPorCommit' filas en vez de uno por medidor.
+ *
+ * Los IDs salen de GeneradorDeIds (bloques reservados), así que se conocen antes de insertar y no hace falta
+ * leer claves generadas. Si un tramo de commit falla, se deshace y sus filas se reintentan de a una para
+ * separar las que realmente tienen problemas; esas se informan al llamador y el resto se inserta igual.
+ */
+public class CargaMasivaDeMedidores {
+
+    private final RepositorioDAOJDBC repositorioDAO; // Para invalidar la caché de los clientes afectados.
+    private final int tamañoDeLote; // Filas por executeBatch.
+    private final int filasPorCommit; // Filas por transacción (múltiplo del lote o no, da igual).
+
+    public CargaMasivaDeMedidores(RepositorioDAOJDBC repositorioDAO, int tamañoDeLote, int filasPorCommit) {
+        if (tamañoDeLote < 1 || filasPorCommit < 1) {
+            throw new IllegalArgumentException("El tamaño de lote y las filas por commit deben ser positivos.");
+        }
+        this.repositorioDAO = repositorioDAO;
+        this.tamañoDeLote = tamañoDeLote;
+        this.filasPorCommit = filasPorCommit;
+    }
+
+    /**
+     * Inserta los medidores. A los que tienen idMedidor 0 les asigna un ID del generador.
+     * @param alFallar Recibe cada medidor que no se pudo insertar y el error de la BD.
+     * @return Cantidad de medidores insertados.
+     * @throws SQLException Si falla la conexión o la reserva de IDs (errores de filas individuales no se propagan).
+     */
+    public int insertar(List<Medidor> medidores, BiConsumer<Medidor, SQLException> alFallar) throws SQLException {
+
+        GeneradorDeIds generador = GeneradorDeIds.para(GeneradorDeIds.Entidad.MEDIDOR);
+        for (Medidor medidor : medidores) {
+            if (medidor.getIdMedidor() == 0) {
+                medidor.setIdMedidor((int) generador.siguiente());
+            }
+        }
+
+        Timestamp fechaDeAlta = new Timestamp(System.currentTimeMillis()); // Misma 'fecha' para toda la carga.
+        int insertados = 0;
+        Set<Integer> clientesAfectados = new HashSet<>();
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(RepositorioDAOJDBC.SQL_INSERTAR_MEDIDOR)) {
+
+            conn.setAutoCommit(false);
+            try {
+                for (int desde = 0; desde < medidores.size(); desde += filasPorCommit) {
+                    List<Medidor> tramo = medidores.subList(desde, Math.min(desde + filasPorCommit, medidores.size()));
+                    try {
+                        insertarTramo(ps, tramo, fechaDeAlta);
+                        conn.commit();
+                        insertados += tramo.size();
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        ps.clearBatch();
+                        insertados += insertarDeAUno(conn, ps, tramo, fechaDeAlta, alFallar);
+                    }
+                    for (Medidor medidor : tramo) {
+                        clientesAfectados.add(medidor.getCliente().getIdUsuario());
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            clientesAfectados.forEach(repositorioDAO::invalidarCacheMedidorDeCliente);
+        }
+
+        return insertados;
+    }
+
+    // ------------------ Internos ------------------
+
+    // Envía el tramo en lotes de 'tamañoDeLote' filas (sin commit).
+    private void insertarTramo(PreparedStatement ps, List<Medidor> tramo, Timestamp fechaDeAlta) throws SQLException {
+        int enLote = 0;
+        for (Medidor medidor : tramo) {
+            RepositorioDAOJDBC.vincularInsercionMedidor(ps, medidor, fechaDeAlta);
+            ps.addBatch();
+            if (++enLote == tamañoDeLote) {
+                ps.executeBatch();
+                enLote = 0;
+            }
+        }
+        if (enLote > 0) {
+            ps.executeBatch();
+        }
+    }
+
+    // Reintenta un tramo fallido fila por fila, con un commit por fila, para aislar las que fallan.
+    private int insertarDeAUno(Connection conn, PreparedStatement ps, List<Medidor> tramo, Timestamp fechaDeAlta,
+                               BiConsumer<Medidor, SQLException> alFallar) throws SQLException {
+        int insertados = 0;
+        for (Medidor medidor : tramo) {
+            try {
+                RepositorioDAOJDBC.vincularInsercionMedidor(ps, medidor, fechaDeAlta);
+                ps.executeUpdate();
+                conn.commit();
+                insertados++;
+            } catch (SQLException e) {
+                conn.rollback();
+                alFallar.accept(medidor, e);
+            }
+        }
+        return insertados;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Clase CatalogoDeTarifas.
+ * Mantengo en memoria todas las versiones de todas las tarifas, ya compiladas (ver TarifaCompilada), con la
+ * versión vigente en una fecha a un floorEntry de distancia. Se cargan una vez al arrancar y se vuelven a leer
+ * con refrescar() (ej: antes de cada facturación, para tomar una tarifa recién dada de alta), como RegistroDeReferencia.
+ * Una tarifa nueva se carga como otra fila de Tarifa con su 'vigenteDesde'; las versiones anteriores no se
+ * modifican, así se puede volver a facturar un período viejo con la tarifa que tenía.
+ */
+public class CatalogoDeTarifas {
+
+    private static final CatalogoDeTarifas INSTANCIA = new CatalogoDeTarifas();
+
+    // Las cuatro tablas se leen completas (son pocas filas) y se arman por idTarifa.
+    static final String SQL_TARIFAS = "SELECT idTarifa, nombre, vigenteDesde, cargoFijo FROM Tarifa";
+    static final String SQL_TRAMOS = "SELECT Tarifa_idTarifa, desdeKwh, precioKwh FROM TramoDeTarifa ORDER BY Tarifa_idTarifa, desdeKwh";
+    static final String SQL_FRANJAS = "SELECT Tarifa_idTarifa, horaDesde, horaHasta, recargoKwh FROM FranjaHorariaDeTarifa";
+    static final String SQL_IMPUESTOS = "SELECT Tarifa_idTarifa, porcentaje FROM ImpuestoDeTarifa";
+
+    // Nombre (normalizado) -> vigenteDesde (ms) -> versión. Instantánea inmutable que refrescar() reemplaza de forma atómica.
+    private volatile Map<String, TreeMap<Long, TarifaCompilada>> tarifas;
+
+    private CatalogoDeTarifas() {}
+
+    /**
+     * @return Retorno la única instancia del catálogo.
+     */
+    public static CatalogoDeTarifas getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Carga las tarifas si todavía no se cargaron. Lo llamo al inicio del sistema.
+     * @throws SQLException Si falla la lectura de alguna tabla.
+     */
+    public void cargar() throws SQLException {
+        if (tarifas == null) {
+            refrescar();
+        }
+    }
+
+    /**
+     * Vuelve a leer y compilar todas las tarifas. Mientras se lee, las búsquedas siguen viendo las anteriores.
+     * @throws SQLException Si falla la lectura de alguna tabla o una definición no es válida.
+     */
+    public synchronized void refrescar() throws SQLException {
+        Map<Integer, Definicion> definiciones = new LinkedHashMap<>();
+
+        try (Connection conn = DBConnection.getConnectionLectura();
+             Statement stmt = conn.createStatement()) {
+
+            try (ResultSet rs = stmt.executeQuery(SQL_TARIFAS)) {
+                while (rs.next()) {
+                    definiciones.put(rs.getInt("idTarifa"),
+                            new Definicion(rs.getString("nombre"), rs.getDate("vigenteDesde"),
+                                    Dinero.deDecimal(rs.getBigDecimal("cargoFijo"), RoundingMode.UNNECESSARY)));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery(SQL_TRAMOS)) {
+                while (rs.next()) {
+                    Definicion d = definiciones.get(rs.getInt("Tarifa_idTarifa"));
+                    d.agregarTramo(rs.getInt("desdeKwh") * Energia.WH_POR_KWH,
+                            escalar(rs.getBigDecimal("precioKwh"), TarifaCompilada.DECIMALES_DE_PRECIO));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery(SQL_FRANJAS)) {
+                while (rs.next()) {
+                    Definicion d = definiciones.get(rs.getInt("Tarifa_idTarifa"));
+                    d.agregarFranja(rs.getInt("horaDesde"), rs.getInt("horaHasta"),
+                            escalar(rs.getBigDecimal("recargoKwh"), TarifaCompilada.DECIMALES_DE_PRECIO));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery(SQL_IMPUESTOS)) {
+                while (rs.next()) {
+                    definiciones.get(rs.getInt("Tarifa_idTarifa"))
+                            .agregarImpuesto(escalar(rs.getBigDecimal("porcentaje"), TarifaCompilada.DECIMALES_DE_PORCENTAJE));
+                }
+            }
+        }
+
+        publicar(new ArrayList<>(definiciones.values()));
+    }
+
+    /**
+     * Publica la tarifa inicial de la migración 6 sin leer la BD. Lo usa RepositorioDAOEnMemoria,
+     * que funciona sin base de datos.
+     */
+    public synchronized void cargarValoresIniciales() {
+        // Mismas unidades que TarifaCompilada: centavos, Wh, diezmilésimas de peso por kWh y milésimas de punto.
+        Definicion residencial = new Definicion("Residencial", java.sql.Date.valueOf("2024-01-01"), 50_000);
+        residencial.agregarTramo(0, 120_000);
+        residencial.agregarTramo(150_000, 145_000);
+        residencial.agregarTramo(400_000, 180_000);
+        residencial.agregarFranja(18, 23, 25_000); // Horas pico.
+        residencial.agregarFranja(23, 6, -15_000); // Horas valle.
+        residencial.agregarImpuesto(21_000); // IVA.
+        try {
+            publicar(List.of(residencial));
+        } catch (SQLException e) {
+            throw new IllegalStateException(e); // La definición inicial es fija: no puede ser inválida.
+        }
+    }
+
+    /**
+     * @return La versión de la tarifa vigente en la fecha (la de mayor 'vigenteDesde' que no sea posterior),
+     * o null si la tarifa no existe o todavía no estaba vigente.
+     * @throws SQLException Si hubo que cargar el catálogo y falló.
+     */
+    public TarifaCompilada getVigente(String nombre, Date fecha) throws SQLException {
+        Map<String, TreeMap<Long, TarifaCompilada>> actuales = tarifas;
+        if (actuales == null) {
+            cargar();
+            actuales = tarifas;
+        }
+        TreeMap<Long, TarifaCompilada> versiones = actuales.get(RegistroDeReferencia.clave(nombre));
+        if (versiones == null) {
+            return null;
+        }
+        Map.Entry<Long, TarifaCompilada> vigente = versiones.floorEntry(fecha.getTime());
+        return vigente == null ? null : vigente.getValue();
+    }
+
+    // ------------------ Internos ------------------
+
+    // Un DECIMAL de la BD como entero en su unidad mínima (la escala de la columna, así que es exacto).
+    private static long escalar(BigDecimal valor, int decimales) {
+        return valor.setScale(decimales, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    // Compila todas las definiciones y recién entonces reemplaza la instantánea (todas o ninguna).
+    private void publicar(List<Definicion> definiciones) throws SQLException {
+        Map<String, TreeMap<Long, TarifaCompilada>> nuevas = new HashMap<>();
+        int versiones = 0;
+        for (Definicion d : definiciones) {
+            TarifaCompilada compilada;
+            try {
+                compilada = d.compilar();
+            } catch (IllegalArgumentException e) {
+                throw new SQLException("Tarifa inválida en la BD: " + e.getMessage(), e);
+            }
+            nuevas.computeIfAbsent(RegistroDeReferencia.clave(d.nombre), n -> new TreeMap<>()).put(d.vigenteDesde.getTime(), compilada);
+            versiones++;
+        }
+        this.tarifas = nuevas;
+        System.out.println("Tarifas cargadas: " + nuevas.size() + " tarifas, " + versiones + " versiones.");
+    }
+
+    /*
+     * Una tarifa tal como viene de las tablas, antes de compilarla.
+     */
+    private static final class Definicion {
+        final String nombre;
+        final Date vigenteDesde;
+        final long cargoFijo;
+        final List<long[]> tramos = new ArrayList<>(); // {desdeWh, precioKwh}, en orden.
+        final List<long[]> franjas = new ArrayList<>(); // {horaDesde, horaHasta, recargoKwh}
+        final List<Long> impuestos = new ArrayList<>();
+
+        Definicion(String nombre, Date vigenteDesde, long cargoFijo) {
+            this.nombre = nombre;
+            this.vigenteDesde = vigenteDesde;
+            this.cargoFijo = cargoFijo;
+        }
+
+        void agregarTramo(long desdeWh, long precioKwh) {
+            tramos.add(new long[]{desdeWh, precioKwh});
+        }
+
+        void agregarFranja(int horaDesde, int horaHasta, long recargoKwh) {
+            franjas.add(new long[]{horaDesde, horaHasta, recargoKwh});
+        }
+
+        void agregarImpuesto(long porcentaje) {
+            impuestos.add(porcentaje);
+        }
+
+        TarifaCompilada compilar() {
+            long[] inicios = new long[tramos.size()];
+            long[] precios = new long[tramos.size()];
+            for (int i = 0; i < tramos.size(); i++) {
+                inicios[i] = tramos.get(i)[0];
+                precios[i] = tramos.get(i)[1];
+            }
+            int[] desde = new int[franjas.size()];
+            int[] hasta = new int[franjas.size()];
+            long[] recargos = new long[franjas.size()];
+            for (int i = 0; i < franjas.size(); i++) {
+                desde[i] = (int) franjas.get(i)[0];
+                hasta[i] = (int) franjas.get(i)[1];
+                recargos[i] = franjas.get(i)[2];
+            }
+            long[] porcentajes = impuestos.stream().mapToLong(Long::longValue).toArray();
+            return new TarifaCompilada(nombre, vigenteDesde, cargoFijo, inicios, precios, desde, hasta, recargos, porcentajes);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Clase ConciliacionDePagos.
+ * Acceso a datos de la conciliación de pagos bancarios (la lógica de imputación está en ControladorConciliacion):
+ * - Carga el saldo de todas las Facturas impagas en un IndiceDeFacturasAbiertas, recorriendo un cursor
+ *   (sin un objeto por fila).
+ * - Consulta qué referencias bancarias ya están registradas, para que volver a procesar un archivo no
+ *   duplique pagos. El índice único de Pago.referencia lo garantiza también ante dos conciliaciones a la vez.
+ * - Inserta los Pagos con lotes JDBC y marca como pagadas las Facturas que quedaron saldadas, con un commit
+ *   cada 'pagosPorCommit' pagos. Si un tramo falla, se reintenta de a un pago, como en CargaMasivaDeMedidores.
+ *   Qué factura quedó saldada lo decide la base, con los pagos ya insertados en la transacción, y no la
+ *   imputación en memoria: un pago que no se registra no puede dejar pagada su factura.
+ */
+public class ConciliacionDePagos {
+
+    public static final String ESTADO_FACTURA_PAGADA = "Pagada";
+    public static final String ESTADO_FACTURA_VENCIDA = "Vencida";
+    public static final String ESTADO_PAGO_APROBADO = "Aprobado";
+
+    // Facturas impagas: las pendientes y las vencidas. El saldo suma el recargo por mora y descuenta los pagos
+    // aprobados (parciales).
+    private static final String FILTRO_FACTURAS_ABIERTAS =
+            "WHERE f.estado IN ('" + FacturacionDelPeriodo.ESTADO_PENDIENTE + "', '" + ESTADO_FACTURA_VENCIDA + "')";
+    static final String SQL_CONTAR_FACTURAS_ABIERTAS = "SELECT COUNT(*) FROM Factura f " + FILTRO_FACTURAS_ABIERTAS;
+    static final String SQL_FACTURAS_ABIERTAS =
+            "SELECT f.idFactura, f.monto + f.recargo - COALESCE((SELECT SUM(p.monto) FROM Pago p WHERE p.Factura_idFactura = f.idFactura " +
+            "AND p.estado = '" + ESTADO_PAGO_APROBADO + "'), 0) AS saldo FROM Factura f " + FILTRO_FACTURAS_ABIERTAS;
+    static final String SQL_REFERENCIAS_REGISTRADAS = "SELECT referencia FROM Pago WHERE referencia IN "; // + "(?, ?, ...)"
+    static final String SQL_INSERTAR_PAGO =
+            "INSERT INTO Pago (idPago, monto, fechaDePago, metodoDePago, estado, Factura_idFactura, referencia) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    // La factura pasa a pagada si los pagos aprobados (incluido el recién insertado) cubren el monto y el recargo.
+    static final String SQL_SALDAR_FACTURA =
+            "UPDATE Factura f SET f.estado = '" + ESTADO_FACTURA_PAGADA + "' WHERE f.idFactura = ? AND f.estado <> '" + ESTADO_FACTURA_PAGADA + "' " +
+            "AND f.monto + f.recargo <= (SELECT COALESCE(SUM(p.monto), 0) FROM Pago p WHERE p.Factura_idFactura = f.idFactura " +
+            "AND p.estado = '" + ESTADO_PAGO_APROBADO + "')";
+
+    private static final int REFERENCIAS_POR_CONSULTA = 1_000;
+
+    /**
+     * @return El saldo de cada Factura pendiente o vencida, en centavos.
+     */
+    public IndiceDeFacturasAbiertas cargarFacturasAbiertas() throws SQLException {
+        try (Connection conn = DBConnection.getConnectionLectura()) {
+            conn.setReadOnly(true);
+            int esperadas;
+            try (PreparedStatement ps = conn.prepareStatement(SQL_CONTAR_FACTURAS_ABIERTAS);
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                esperadas = rs.getInt(1);
+            }
+
+            IndiceDeFacturasAbiertas indice = new IndiceDeFacturasAbiertas(esperadas);
+            try (PreparedStatement ps = conn.prepareStatement(SQL_FACTURAS_ABIERTAS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(CursorDeFilas.FETCH_EN_STREAMING); // Filas en streaming (ver CursorDeFilas).
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long saldo = Dinero.deDecimal(rs.getBigDecimal("saldo"), RoundingMode.HALF_UP);
+                        indice.agregar(rs.getInt("idFactura"), Math.max(saldo, 0));
+                    }
+                }
+            }
+            return indice;
+        }
+    }
+
+    /**
+     * @return Las referencias de la colección que ya tienen un Pago registrado.
+     */
+    public Set<String> referenciasRegistradas(Collection<String> referencias) throws SQLException {
+        Set<String> registradas = new HashSet<>();
+        List<String> lista = new ArrayList<>(referencias);
+        try (Connection conn = DBConnection.getConnectionLectura()) {
+            for (int desde = 0; desde < lista.size(); desde += REFERENCIAS_POR_CONSULTA) {
+                List<String> tramo = lista.subList(desde, Math.min(desde + REFERENCIAS_POR_CONSULTA, lista.size()));
+                try (PreparedStatement ps = conn.prepareStatement(SQL_REFERENCIAS_REGISTRADAS + marcadores(tramo.size()))) {
+                    for (int i = 0; i < tramo.size(); i++) {
+                        ps.setString(i + 1, tramo.get(i));
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            registradas.add(rs.getString(1));
+                        }
+                    }
+                }
+            }
+        }
+        return registradas;
+    }
+
+    /**
+     * Inserta los pagos y marca como pagadas las Facturas que quedaron saldadas con los pagos aprobados.
+     * @param alFallar Recibe cada pago que no se registró y el motivo (ej: referencia repetida).
+     * @return Cantidad de pagos registrados.
+     * @throws SQLException Si falla la conexión (los errores de pagos individuales no se propagan).
+     */
+    public int registrarPagos(List<Pago> pagos, int pagosPorCommit, BiConsumer<Pago, String> alFallar) throws SQLException {
+        if (pagosPorCommit < 1) {
+            throw new IllegalArgumentException("Los pagos por commit deben ser positivos.");
+        }
+        GeneradorDeIds ids = GeneradorDeIds.para(GeneradorDeIds.Entidad.PAGO);
+        int registrados = 0;
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement insertar = conn.prepareStatement(SQL_INSERTAR_PAGO);
+             PreparedStatement saldar = conn.prepareStatement(SQL_SALDAR_FACTURA)) {
+
+            conn.setAutoCommit(false);
+            try {
+                for (int desde = 0; desde < pagos.size(); desde += pagosPorCommit) {
+                    List<Pago> tramo = pagos.subList(desde, Math.min(desde + pagosPorCommit, pagos.size()));
+                    try {
+                        for (Pago pago : tramo) {
+                            vincular(insertar, pago, ids);
+                            insertar.addBatch();
+                            saldar.setInt(1, pago.getFactura().getIdFactura());
+                            saldar.addBatch();
+                        }
+                        insertar.executeBatch();
+                        saldar.executeBatch();
+                        conn.commit();
+                        registrados += tramo.size();
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        insertar.clearBatch();
+                        saldar.clearBatch();
+                        registrados += registrarDeAUno(conn, insertar, saldar, tramo, ids, alFallar);
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        return registrados;
+    }
+
+    // ------------------ Internos ------------------
+
+    // Reintenta un tramo fallido con un commit por pago, para aislar los que fallan.
+    private static int registrarDeAUno(Connection conn, PreparedStatement insertar, PreparedStatement saldar, List<Pago> tramo,
+                                       GeneradorDeIds ids, BiConsumer<Pago, String> alFallar) throws SQLException {
+        int registrados = 0;
+        for (Pago pago : tramo) {
+            try {
+                vincular(insertar, pago, ids);
+                insertar.executeUpdate();
+                saldar.setInt(1, pago.getFactura().getIdFactura());
+                saldar.executeUpdate();
+                conn.commit();
+                registrados++;
+            } catch (SQLException e) {
+                conn.rollback();
+                alFallar.accept(pago, "Error de BD: " + e.getMessage());
+            }
+        }
+        return registrados;
+    }
+
+    private static void vincular(PreparedStatement ps, Pago pago, GeneradorDeIds ids) throws SQLException {
+        if (pago.getIdPago() == 0) {
+            pago.setIdPago((int) ids.siguiente());
+        }
+        ps.setInt(1, pago.getIdPago());
+        ps.setBigDecimal(2, Dinero.aDecimal(pago.getMontoEnCentavos()));
+        ps.setDate(3, new java.sql.Date(pago.getFechaDePago().getTime()));
+        ps.setString(4, pago.getMetodoDePago());
+        ps.setString(5, pago.getEstado());
+        ps.setInt(6, pago.getFactura().getIdFactura());
+        ps.setString(7, pago.getReferencia());
+    }
+
+    private static String marcadores(int cantidad) {
+        StringBuilder sql = new StringBuilder("(");
+        for (int i = 0; i < cantidad; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.append(')').toString();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.SQLException;
+
+/**
+ * Clase ConflictoDeVersionException.
+ * La lanza RepositorioDAO cuando una actualización de Medidor, Servicio o SolicitudDeServicio no encuentra la
+ * fila con la versión que se leyó: otro operario (u otra instancia) la modificó mientras tanto, o ya no existe.
+ * No se aplicó nada; el controlador decide si vuelve a leer y reintenta o si informa el conflicto.
+ */
+public class ConflictoDeVersionException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    /*
+     * Entidades con control de versión.
+     */
+    public enum Entidad {
+        MEDIDOR("Medidor"),
+        SERVICIO("Servicio"),
+        SOLICITUD("Solicitud");
+
+        private final String nombre;
+
+        Entidad(String nombre) {
+            this.nombre = nombre;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+    }
+
+    private final Entidad entidad;
+    private final int id;
+    private final int versionLeida;
+
+    public ConflictoDeVersionException(Entidad entidad, int id, int versionLeida) {
+        super(entidad.getNombre() + " #" + id + " fue modificado por otro usuario (versión leída " + versionLeida + ") o ya no existe.");
+        this.entidad = entidad;
+        this.id = id;
+        this.versionLeida = versionLeida;
+    }
+
+    public Entidad getEntidad() {
+        return entidad;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getVersionLeida() {
+        return versionLeida;
+    }
+}
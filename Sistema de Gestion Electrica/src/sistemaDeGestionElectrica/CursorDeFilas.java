@@ -0,0 +1,155 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Clase CursorDeFilas.
+ * Recorre el resultado de una consulta fila por fila, sin cargarlo entero en memoria. La sentencia se lee en
+ * streaming (fetchSize = FETCH_EN_STREAMING, ver Connector/J): el driver entrega las filas a medida que llegan
+ * del servidor, así que la memoria usada no depende de cuántas filas haya. No uso useCursorFetch porque es una
+ * propiedad de toda la conexión y obliga a preparar en el servidor todas las sentencias del pool.
+ *
+ * Mientras está abierto retiene una conexión del pool, que no puede ejecutar otra sentencia hasta cerrarlo:
+ * hay que cerrarlo (try-with-resources sobre el cursor o sobre su stream()). Si se recorre hasta el final, se
+ * cierra solo. Cerrarlo antes del final hace que el driver descarte las filas que faltan.
+ */
+public class CursorDeFilas<T> implements Iterator<T>, AutoCloseable {
+
+    // fetchSize con el que Connector/J lee el resultado en streaming, fila por fila.
+    static final int FETCH_EN_STREAMING = Integer.MIN_VALUE;
+
+    /*
+     * Error de la BD ocurrido mientras se recorría el cursor. Iterator y Stream no admiten excepciones
+     * comprobadas, así que la SQLException original va como causa.
+     */
+    public static class ErrorDeLectura extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public ErrorDeLectura(SQLException causa) {
+            super("Error al leer el cursor: " + causa.getMessage(), causa);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+
+    private final Connection conexion; // Conexión exclusiva del cursor hasta que se cierre.
+    private final PreparedStatement sentencia;
+    private final ResultSet filas;
+    private final MapeadorDeFila<T> mapeador;
+    private boolean filaPendiente = false; // hasNext() ya avanzó y la fila actual todavía no se entregó.
+    private boolean cerrado = false;
+
+    private CursorDeFilas(Connection conexion, PreparedStatement sentencia, ResultSet filas, MapeadorDeFila<T> mapeador) {
+        this.conexion = conexion;
+        this.sentencia = sentencia;
+        this.filas = filas;
+        this.mapeador = mapeador;
+    }
+
+    /**
+     * Ejecuta la consulta y deja el cursor posicionado antes de la primera fila.
+     * @throws SQLException Si falla la conexión o la consulta (en ese caso no queda nada abierto).
+     */
+    public static <T> CursorDeFilas<T> abrir(String sql, Object[] parametros, MapeadorDeFila<T> mapeador) throws SQLException {
+        Connection conn = DBConnection.getConnectionLectura();
+        PreparedStatement ps = null;
+        try {
+            conn.setReadOnly(true);
+            ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(FETCH_EN_STREAMING);
+            for (int i = 0; i < parametros.length; i++) {
+                ps.setObject(i + 1, parametros[i]);
+            }
+            return new CursorDeFilas<>(conn, ps, ps.executeQuery(), mapeador);
+        } catch (SQLException e) {
+            if (ps != null) {
+                ps.close();
+            }
+            conn.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (cerrado) {
+            return false;
+        }
+        if (!filaPendiente) {
+            try {
+                filaPendiente = filas.next();
+            } catch (SQLException e) {
+                cerrarSinErrores();
+                throw new ErrorDeLectura(e);
+            }
+            if (!filaPendiente) {
+                cerrarSinErrores(); // Fin del resultado: devuelvo la conexión enseguida.
+            }
+        }
+        return filaPendiente;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        filaPendiente = false;
+        try {
+            return mapeador.mapear(filas);
+        } catch (SQLException e) {
+            cerrarSinErrores();
+            throw new ErrorDeLectura(e);
+        }
+    }
+
+    /**
+     * @return Retorno un Stream secuencial sobre el cursor; cerrar el stream cierra el cursor.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::cerrarSinErrores);
+    }
+
+    /*
+     * Cierra el resultado y la sentencia, y devuelve la conexión al pool. Se puede llamar más de una vez.
+     */
+    @Override
+    @SuppressWarnings("try") // Los recursos solo están para que se cierren en orden.
+    public void close() throws SQLException {
+        if (cerrado) {
+            return;
+        }
+        cerrado = true;
+        try (Connection c = conexion; PreparedStatement ps = sentencia; ResultSet rs = filas) {
+            // try-with-resources cierra en orden inverso: ResultSet, sentencia y por último la conexión.
+        }
+    }
+
+    // ------------------ Internos ------------------
+
+    private void cerrarSinErrores() {
+        try {
+            close();
+        } catch (SQLException e) {
+            System.err.println("Error al cerrar el cursor: " + e.getMessage());
+        }
+    }
+}
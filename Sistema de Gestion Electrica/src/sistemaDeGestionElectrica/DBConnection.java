@@ -5,8 +5,9 @@
 
 package sistema.de.gestion.electrica;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 public class DBConnection {
@@ -17,49 +18,142 @@ public class DBConnection {
     private static final String USER = "root"; // Defino el usuario de la base de datos.
     private static final String PASS = "julianbenja04Fl"; // Defino la contraseña de la base de datos.
 
+    // --- Configuración del Pool (se puede sobrescribir con -Dsgre.pool.*) ---
+    private static final int POOL_MINIMO = Integer.getInteger("sgre.pool.minimo", 2); // Conexiones que mantengo siempre abiertas.
+    private static final int POOL_MAXIMO = Integer.getInteger("sgre.pool.maximo", 10); // Tope de conexiones físicas simultáneas.
+    private static final long POOL_ESPERA_MS = Long.getLong("sgre.pool.esperaMs", 5_000L); // Cuánto espero por una conexión libre.
+    private static final long POOL_OCIOSA_MS = Long.getLong("sgre.pool.ociosaMs", 300_000L); // Cuándo cierro una conexión ociosa sobrante.
+    private static final long POOL_FUGA_MS = Long.getLong("sgre.pool.fugaMs", 60_000L); // Cuándo aviso de una conexión no devuelta.
+
+    // --- Réplicas de lectura (se puede sobrescribir con -Dsgre.db.*) ---
+    // Primario: una URL, o varias separadas por coma si hay candidatos para failover (en orden de preferencia).
+    private static final String URLS_PRIMARIO = System.getProperty("sgre.db.primario", URL);
+    private static final String URLS_REPLICAS = System.getProperty("sgre.db.replicas", ""); // Vacío: todo va al primario.
+    private static final long RETRASO_MAXIMO_SEG = Long.getLong("sgre.db.retrasoMaximoSeg", 5L); // Réplica más atrasada: no recibe lecturas.
+    private static final long MONITOREO_MS = Long.getLong("sgre.db.monitoreoMs", 2_000L); // Cada cuánto reviso los nodos.
+    private static final int TIMEOUT_CONEXION_MS = Integer.getInteger("sgre.db.timeoutConexionMs", 3_000); // Tope para conectar a un nodo caído.
+
+    private static TopologiaDeReplicacion topologia; // Primario + réplicas, cada uno con su pool; creada en iniciarPool().
+
     /**
-     * Este método lo uso para establecer y retornar una nueva conexión a la base de datos.
+     * Este método lo uso para obtener una conexión a la base de datos.
+     * Ya no abro una conexión física nueva: la pido prestada al pool, y al cerrarla vuelve al pool.
+     * Siempre es del primario: la uso para escrituras y para lecturas que después se guardan en caché.
      * @return Me devuelve un Objeto Connection a la base de datos 'sgre'.
      * @throws SQLException Lanzo esta excepción si hay un error al intentar conectar.
      */
     public static Connection getConnection() throws SQLException {
-        // Intento asegurar que el driver JDBC esté registrado.
-        try {
-            Class.forName(DRIVER);
-        } catch (ClassNotFoundException e) {
-            // Si el driver no se encuentra (me falta el JAR), muestro un error.
-            System.err.println("Error: Driver JDBC de MySQL no encontrado.");
-            // Envuelvo la excepción en una SQLException para propagarla.
-            throw new SQLException(e);
+        return getTopologia().obtenerConexionEscritura();
+    }
+
+    /**
+     * Este método lo uso para las consultas de solo lectura (listados, búsquedas, reportes, exportaciones).
+     * La conexión viene de una réplica sana y con poco retraso; si no hay ninguna, del primario.
+     * Puede ver datos con hasta sgre.db.retrasoMaximoSeg segundos de atraso: no la uso antes de escribir.
+     * @return Me devuelve un Objeto Connection de solo lectura.
+     * @throws SQLException Lanzo esta excepción si no hay ningún nodo disponible.
+     */
+    public static Connection getConnectionLectura() throws SQLException {
+        return getTopologia().obtenerConexionLectura();
+    }
+
+    /**
+     * Este método lo uso al inicio para crear el pool y abrir las conexiones mínimas (calentamiento).
+     * Reemplaza a la antigua prueba de conexión: si el calentamiento funciona, la configuración es correcta.
+     * La clase main (SistemaDeGestionElectrica) lo utiliza al inicio.
+     * @return Retorna true si el pool quedó listo.
+     * @throws SQLException Lanzo la excepción si la conexión falla, para que el llamador la maneje.
+     */
+    public static boolean iniciarPool() throws SQLException {
+        TopologiaDeReplicacion t = getTopologia();
+        t.iniciar();
+        return t.getPoolPrimario().getConexionesAbiertas() > 0;
+    }
+
+    /**
+     * Este método lo uso al salir del sistema para cerrar todas las conexiones del pool.
+     */
+    public static synchronized void cerrarPool() {
+        if (topologia != null) {
+            topologia.cerrar();
+            topologia = null;
         }
+    }
 
-        // Configuro las propiedades de la conexión.
+    /**
+     * @return Retorno el estado de cada nodo y las métricas de su pool (espera, activas, fugas) para mostrar por consola.
+     */
+    public static String getEstadisticasPool() {
+        return getTopologia().resumen();
+    }
+
+    /**
+     * @return Retorno el tope de conexiones de cada pool, para acotar la concurrencia de quien lo usa (ej: RepositorioDAOAsincrono).
+     */
+    public static int getTamanioMaximoPool() {
+        return POOL_MAXIMO;
+    }
+
+    /*
+     * Creo la topología (y un pool por nodo) la primera vez que se necesita, registrando antes el driver.
+     */
+    static synchronized TopologiaDeReplicacion getTopologia() {
+        if (topologia == null) {
+            // Intento asegurar que el driver JDBC esté registrado.
+            try {
+                Class.forName(DRIVER);
+            } catch (ClassNotFoundException e) {
+                // Si el driver no se encuentra (me falta el JAR), muestro un error.
+                System.err.println("Error: Driver JDBC de MySQL no encontrado.");
+                throw new IllegalStateException(e);
+            }
+            Properties props = propiedadesDeConexion();
+            topologia = new TopologiaDeReplicacion(separarUrls(URLS_PRIMARIO), separarUrls(URLS_REPLICAS),
+                    url -> new PoolDeConexiones(url, props, POOL_MINIMO, POOL_MAXIMO, POOL_ESPERA_MS, POOL_OCIOSA_MS, POOL_FUGA_MS),
+                    propiedadesDeMonitoreo(), RETRASO_MAXIMO_SEG, MONITOREO_MS);
+        }
+        return topologia;
+    }
+
+    // Separo una lista de URLs JDBC separadas por coma, ignorando los espacios y las entradas vacías.
+    private static List<String> separarUrls(String urls) {
+        List<String> resultado = new ArrayList<>();
+        for (String url : urls.split(",")) {
+            if (!url.trim().isEmpty()) {
+                resultado.add(url.trim());
+            }
+        }
+        return resultado;
+    }
+
+    /*
+     * Configuro las propiedades de la conexión. Ya no uso autoReconnect: el pool valida cada conexión al prestarla.
+     */
+    private static Properties propiedadesDeConexion() {
         Properties props = new Properties();
         props.setProperty("user", USER);
         props.setProperty("password", PASS);
-        props.setProperty("autoReconnect", "true");
         props.setProperty("serverTimezone", "America/Argentina/Salta"); // Esto me ayuda a gestionar correctamente las fechas y horas.
-        
-        // Retorno la conexión establecida con la URL y mis propiedades.
-        return DriverManager.getConnection(URL, props);
+        props.setProperty("rewriteBatchedStatements", "true"); // Un lote de INSERT viaja como un único INSERT multi-fila.
+        props.setProperty("connectTimeout", String.valueOf(TIMEOUT_CONEXION_MS)); // Un nodo caído falla rápido en vez de colgar.
+        return props;
     }
-    
-    /**
-     * Este método lo uso para intentar establecer una conexión y verificar que mi configuración sea correcta.
-     * La clase main (SistemaDeGestionElectrica) lo utiliza al inicio.
-     * @return Retorna true si la conexión es exitosa, sino false.
-     * @throws SQLException Lanzo la excepción si la conexión falla, para que el llamador la maneje.
+
+    /*
+     * Las conexiones del monitor de réplicas tienen además un timeout de lectura, para que una revisión nunca se cuelgue.
      */
-    public static boolean testConnection() throws SQLException {
-        // Utilizo try-with-resources para asegurar que la conexión se cierre automáticamente.
-        try (Connection conn = getConnection()) {
-            // Si la conexión no es nula, significa que fue exitosa.
-            return conn != null;
-        } 
+    private static Properties propiedadesDeMonitoreo() {
+        Properties props = new Properties();
+        props.setProperty("user", USER);
+        props.setProperty("password", PASS);
+        props.setProperty("connectTimeout", String.valueOf(TIMEOUT_CONEXION_MS));
+        props.setProperty("socketTimeout", String.valueOf(TIMEOUT_CONEXION_MS));
+        return props;
     }
     
     /**
      * Este método me ayuda a cerrar la conexión de forma segura.
+     * Con el pool, cerrarla significa devolverla para que otro la reutilice.
      * @param conn La conexión que necesito cerrar.
      */
     public static void close(Connection conn) {
@@ -73,4 +167,4 @@ public class DBConnection {
             }
         }
     }
-}
\ No newline at end of file
+}
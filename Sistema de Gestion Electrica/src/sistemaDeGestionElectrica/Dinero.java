@@ -0,0 +1,72 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Clase Dinero.
+ * Los montos (Factura, Pago, tarifas) se manejan como long en centavos: sumas y restas son exactas, y cada
+ * operación que puede perder precisión pide el modo de redondeo. No hay objetos por monto; BigDecimal solo se
+ * usa en el borde con la BD (columnas DECIMAL(12,2)) y al leer texto.
+ */
+public final class Dinero {
+
+    public static final int DECIMALES = 2;
+    public static final long CENTAVOS_POR_PESO = 100;
+
+    private Dinero() {}
+
+    /**
+     * @return El valor en centavos, redondeado con 'modo' si tiene más de dos decimales. NULL de la BD es 0.
+     * @throws ArithmeticException Si no entra en un long, o si el modo es UNNECESSARY y había que redondear.
+     */
+    public static long deDecimal(BigDecimal valor, RoundingMode modo) {
+        return valor == null ? 0 : valor.setScale(DECIMALES, modo).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Lee un monto escrito con punto decimal (ej: "8500.5").
+     * @throws NumberFormatException Si el texto no es un número.
+     */
+    public static long deTexto(String texto, RoundingMode modo) {
+        return deDecimal(new BigDecimal(texto.trim()), modo);
+    }
+
+    // Para vincular un monto a una columna DECIMAL.
+    public static BigDecimal aDecimal(long centavos) {
+        return BigDecimal.valueOf(centavos, DECIMALES);
+    }
+
+    /**
+     * Suma dos montos.
+     * @throws ArithmeticException Si el resultado desborda (nunca se trunca en silencio).
+     */
+    public static long sumar(long centavos, long otrosCentavos) {
+        return Math.addExact(centavos, otrosCentavos);
+    }
+
+    /**
+     * Multiplica un monto por la fracción numerador / denominador (ej: un porcentaje) y redondea a centavos.
+     * @throws ArithmeticException Si el producto intermedio desborda.
+     */
+    public static long multiplicar(long centavos, long numerador, long denominador, RoundingMode modo) {
+        return AritmeticaFija.dividir(Math.multiplyExact(centavos, numerador), denominador, modo);
+    }
+
+    /**
+     * Convierte a centavos un importe expresado en una unidad más fina ('unidadesPorCentavo' por centavo).
+     */
+    public static long aCentavos(long importe, long unidadesPorCentavo, RoundingMode modo) {
+        return AritmeticaFija.dividir(importe, unidadesPorCentavo, modo);
+    }
+
+    // Ej: 850050 -> "8500.50".
+    public static String formatear(long centavos) {
+        return AritmeticaFija.formatear(centavos, DECIMALES, CENTAVOS_POR_PESO);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Clase EjecutorDeMigraciones.
+ * Al iniciar el sistema, aplico las migraciones de MigracionesDelEsquema que todavía no corrieron en esta base,
+ * en orden de versión, y las registro en la tabla HistorialDeMigraciones con su checksum.
+ *
+ * - Si una migración ya aplicada cambió (checksum distinto), no sigo: el esquema real ya no coincide con el código.
+ * - Uso un lock con nombre de MySQL (GET_LOCK) para que, si arrancan varias instancias a la vez, solo una migre.
+ * - En MySQL el DDL hace commit implícito, así que cada migración se registra recién cuando terminaron todas
+ *   sus sentencias. Si una falla a la mitad, al reintentar se re-ejecuta entera: por eso tolero los errores
+ *   de "ya existe" (tabla, columna o índice) como sentencias ya aplicadas.
+ */
+public class EjecutorDeMigraciones {
+
+    private static final String NOMBRE_DEL_LOCK = "sgre.migraciones";
+    private static final int ESPERA_DEL_LOCK_SEGUNDOS = 60;
+
+    // Códigos de error de MySQL que indican que el objeto ya existe.
+    private static final Set<Integer> ERRORES_YA_EXISTE = Set.of(
+        1050, // ER_TABLE_EXISTS_ERROR
+        1060, // ER_DUP_FIELDNAME
+        1061  // ER_DUP_KEYNAME
+    );
+
+    private static final String SQL_CREAR_HISTORIAL =
+        """
+        CREATE TABLE IF NOT EXISTS HistorialDeMigraciones (
+            version INT PRIMARY KEY,
+            descripcion VARCHAR(200) NOT NULL,
+            checksum CHAR(64) NOT NULL,
+            aplicadaEn DATETIME NOT NULL,
+            duracionMs BIGINT NOT NULL
+        )
+        """;
+
+    private final List<Migracion> migraciones;
+
+    public EjecutorDeMigraciones() {
+        this(MigracionesDelEsquema.todas());
+    }
+
+    public EjecutorDeMigraciones(List<Migracion> migraciones) {
+        this.migraciones = migraciones;
+    }
+
+    /**
+     * Aplica las migraciones pendientes.
+     * @return Cantidad de migraciones aplicadas en esta ejecución (0 si el esquema ya estaba al día).
+     * @throws SQLException Si una migración falla, si una ya aplicada fue modificada o si no se obtuvo el lock.
+     */
+    public int aplicarPendientes() throws SQLException {
+        try (Connection conn = DBConnection.getConnection()) {
+
+            tomarLock(conn);
+            try {
+                try (Statement st = conn.createStatement()) {
+                    st.execute(SQL_CREAR_HISTORIAL);
+                }
+
+                Map<Integer, String> aplicadas = leerHistorial(conn);
+                int aplicadasAhora = 0;
+                int versionAnterior = 0;
+
+                for (Migracion migracion : migraciones) {
+                    if (migracion.getVersion() <= versionAnterior) {
+                        throw new SQLException("Las migraciones deben tener versiones crecientes (V" + migracion.getVersion() + " después de V" + versionAnterior + ").");
+                    }
+                    versionAnterior = migracion.getVersion();
+
+                    String checksumRegistrado = aplicadas.get(migracion.getVersion());
+                    if (checksumRegistrado != null) {
+                        if (!checksumRegistrado.equals(migracion.getChecksum())) {
+                            throw new SQLException("La migración V" + migracion.getVersion() + " (" + migracion.getDescripcion()
+                                    + ") fue modificada después de aplicarse. Agregue una migración nueva en lugar de editarla.");
+                        }
+                        continue;
+                    }
+
+                    aplicar(conn, migracion);
+                    aplicadasAhora++;
+                }
+
+                if (aplicadasAhora == 0) {
+                    System.out.println("Esquema al día (" + aplicadas.size() + " migraciones aplicadas).");
+                }
+                return aplicadasAhora;
+
+            } finally {
+                liberarLock(conn);
+            }
+        }
+    }
+
+    // ------------------ Internos ------------------
+
+    private void aplicar(Connection conn, Migracion migracion) throws SQLException {
+        long inicio = System.currentTimeMillis();
+
+        try (Statement st = conn.createStatement()) {
+            for (String sentencia : migracion.getSentencias()) {
+                try {
+                    st.execute(sentencia);
+                } catch (SQLException e) {
+                    if (!ERRORES_YA_EXISTE.contains(e.getErrorCode())) {
+                        throw new SQLException("Falló la migración V" + migracion.getVersion() + " (" + migracion.getDescripcion() + "): " + e.getMessage(), e);
+                    }
+                    System.out.println("MIGRACIÓN V" + migracion.getVersion() + ": se omite una sentencia ya aplicada (" + e.getMessage() + ").");
+                }
+            }
+        }
+
+        long duracion = System.currentTimeMillis() - inicio;
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO HistorialDeMigraciones (version, descripcion, checksum, aplicadaEn, duracionMs) VALUES (?, ?, ?, ?, ?)")) {
+            ps.setInt(1, migracion.getVersion());
+            ps.setString(2, migracion.getDescripcion());
+            ps.setString(3, migracion.getChecksum());
+            ps.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+            ps.setLong(5, duracion);
+            ps.executeUpdate();
+        }
+
+        System.out.println("MIGRACIÓN V" + migracion.getVersion() + " aplicada: " + migracion.getDescripcion() + " (" + duracion + " ms).");
+    }
+
+    private Map<Integer, String> leerHistorial(Connection conn) throws SQLException {
+        Map<Integer, String> aplicadas = new HashMap<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT version, checksum FROM HistorialDeMigraciones")) {
+            while (rs.next()) {
+                aplicadas.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+        return aplicadas;
+    }
+
+    private void tomarLock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, NOMBRE_DEL_LOCK);
+            ps.setInt(2, ESPERA_DEL_LOCK_SEGUNDOS);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("No se pudo obtener el lock de migraciones en " + ESPERA_DEL_LOCK_SEGUNDOS + " s (¿otra instancia está migrando?).");
+                }
+            }
+        }
+    }
+
+    private void liberarLock(Connection conn) {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, NOMBRE_DEL_LOCK);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            System.err.println("Error al liberar el lock de migraciones: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Clase Energia.
+ * Los consumos (Medidor, Factura, tarifas) se manejan como long en Wh, la resolución de las lecturas
+ * (DECIMAL(12,3) en kWh): las diferencias y sumas de lecturas son exactas. Como en Dinero, la conversión
+ * desde decimales pide el modo de redondeo y BigDecimal queda en el borde con la BD.
+ */
+public final class Energia {
+
+    public static final int DECIMALES = 3;
+    public static final long WH_POR_KWH = 1000;
+
+    private Energia() {}
+
+    /**
+     * @return El valor en kWh de la BD pasado a Wh, redondeado con 'modo'. NULL de la BD es 0.
+     */
+    public static long deDecimal(BigDecimal kwh, RoundingMode modo) {
+        return kwh == null ? 0 : kwh.setScale(DECIMALES, modo).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Convierte un consumo en kWh recibido como double (ej: una lectura de un archivo) a Wh.
+     * Usa la representación decimal más corta del double, así 0.1 kWh son exactamente 100 Wh.
+     */
+    public static long deKwh(double kwh, RoundingMode modo) {
+        return deDecimal(BigDecimal.valueOf(kwh), modo);
+    }
+
+    // Para vincular un consumo a una columna DECIMAL en kWh.
+    public static BigDecimal aDecimal(long wh) {
+        return BigDecimal.valueOf(wh, DECIMALES);
+    }
+
+    // Redondea a kWh enteros (ej: para informar el consumo sin decimales).
+    public static long aKwh(long wh, RoundingMode modo) {
+        return AritmeticaFija.dividir(wh, WH_POR_KWH, modo);
+    }
+
+    // Ej: 550000 -> "550.000".
+    public static String formatear(long wh) {
+        return AritmeticaFija.formatear(wh, DECIMALES, WH_POR_KWH);
+    }
+}
@@ -10,13 +10,15 @@ import java.util.Date;
 /**
  * Clase Factura.
  * Uso esta clase para representar la cuenta de cobro que se genera por el consumo eléctrico de un período.
+ * El monto y el consumo van en punto fijo (ver Dinero y Energia), para que los totales no acumulen redondeos.
  */
 public class Factura {
     private int idFactura; // Este es mi identificador único de la factura.
-    private double monto; // Este es el monto total que el cliente debe pagar.
+    private long montoEnCentavos; // Este es el monto total que el cliente debe pagar, en centavos.
+    private long recargoEnCentavos; // Recargo por mora que se suma al vencer la factura impaga, en centavos.
     private Date fechaEmision; // Esta es la fecha en que se generó la factura.
     private Date fechaVencimiento; // Esta es la fecha límite para que el cliente realice el pago.
-    private double consumoKwh; // Yo registro aquí el consumo eléctrico medido en ese período, en kWh.
+    private long consumoWh; // Yo registro aquí el consumo eléctrico medido en ese período, en Wh.
     private String estadoDeFactura; // Este campo indica el estado actual (ej: "Pendiente", "Pagada", "Vencida").
     private Cliente cliente; // Yo mantengo una referencia al Cliente responsable del pago.
     private Medidor medidor; // Yo registro el Medidor del cual se tomó el consumo para esta factura.
@@ -29,12 +31,12 @@ public class Factura {
     /*
      * Este es mi constructor completo, lo uso para inicializar todos los atributos de la factura.
      */
-    public Factura(int idFactura, double monto, Date fechaEmision, Date fechaVencimiento, double consumoKwh, String estadoDeFactura, Cliente cliente, Medidor medidor) {
+    public Factura(int idFactura, long montoEnCentavos, Date fechaEmision, Date fechaVencimiento, long consumoWh, String estadoDeFactura, Cliente cliente, Medidor medidor) {
         this.idFactura = idFactura;
-        this.monto = monto;
+        this.montoEnCentavos = montoEnCentavos;
         this.fechaEmision = fechaEmision;
         this.fechaVencimiento = fechaVencimiento;
-        this.consumoKwh = consumoKwh;
+        this.consumoWh = consumoWh;
         this.cliente = cliente;
         this.medidor = medidor;
         this.estadoDeFactura = estadoDeFactura;
@@ -57,17 +59,31 @@ public class Factura {
     }
 
     /**
-     * @return Retorna el monto total a pagar.
+     * @return Retorna el monto total a pagar, en centavos.
      */
-    public double getMonto() {
-        return monto; 
+    public long getMontoEnCentavos() {
+        return montoEnCentavos; 
     }
 
     /**
-     * @param monto Establece el monto total.
+     * @param montoEnCentavos Establece el monto total, en centavos.
      */
-    public void setMonto(double monto) {
-        this.monto = monto; 
+    public void setMontoEnCentavos(long montoEnCentavos) {
+        this.montoEnCentavos = montoEnCentavos; 
+    }
+
+    /**
+     * @return Retorna el recargo por mora, en centavos (0 si no venció impaga).
+     */
+    public long getRecargoEnCentavos() {
+        return recargoEnCentavos; 
+    }
+
+    /**
+     * @param recargoEnCentavos Establece el recargo por mora, en centavos.
+     */
+    public void setRecargoEnCentavos(long recargoEnCentavos) {
+        this.recargoEnCentavos = recargoEnCentavos; 
     }
 
     /**
@@ -99,17 +115,17 @@ public class Factura {
     }
 
     /**
-     * @return Retorna el consumo en kWh facturado.
+     * @return Retorna el consumo facturado, en Wh.
      */
-    public double getConsumoKwh() {
-        return consumoKwh; 
+    public long getConsumoWh() {
+        return consumoWh; 
     }
 
     /**
-     * @param consumoKwh Establece el consumo facturado.
+     * @param consumoWh Establece el consumo facturado, en Wh.
      */
-    public void setConsumoKwh(double consumoKwh) {
-        this.consumoKwh = consumoKwh; 
+    public void setConsumoWh(long consumoWh) {
+        this.consumoWh = consumoWh; 
     }
 
     /**
@@ -155,4 +171,4 @@ public class Factura {
     }
     
     
-}
\ No newline at end of file
+}
@@ -0,0 +1,548 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Clase FacturacionDelPeriodo.
+ * Genera las Facturas de un período (mes) para todos los Medidores con un Servicio vigente en ese mes.
+ * El consumo es la diferencia entre la última lectura anterior al fin del mes y la última anterior a su inicio
+ * (tabla Lectura), en Wh; el monto lo calcula en centavos la TarifaCompilada que recibe, sin consultar la BD por cada factura.
+ * Si la tarifa tiene franjas horarias, por cada tramo se suma además el consumo de cada medidor por hora del día
+ * en una sola consulta agregada (SQL_CONSUMO_POR_HORA), que se vuelca en un arreglo plano reutilizado.
+ *
+ * El trabajo se parte por rangos de NIS con la misma cantidad de clientes (particiones) y las particiones se
+ * reparten en un ForkJoinPool, cada una sobre su propia conexión. Dentro de una partición los medidores se
+ * recorren por clave (NIS, idMedidor) en tramos de 'medidoresPorTramo': cada tramo inserta sus facturas con un
+ * lote JDBC (un INSERT multi-fila con rewriteBatchedStatements) y avanza el checkpoint de la partición en la
+ * misma transacción. Si la facturación se corta, al volver a lanzarla cada partición sigue desde su checkpoint
+ * y ninguna factura se genera dos veces.
+ *
+ * El checkpoint se avanza comparando la posición con la que se leyó (como las versiones de
+ * ConflictoDeVersionException): si otra instancia factura la misma partición a la vez, solo una de las dos
+ * confirma cada tramo y la otra abandona la partición.
+ * Los IDs salen de GeneradorDeIds (bloques reservados), como en CargaMasivaDeMedidores: se conocen antes de
+ * insertar, sin leer claves generadas.
+ */
+public class FacturacionDelPeriodo {
+
+    static final String ESTADO_PENDIENTE = "Pendiente";
+    static final String ESTADO_COMPLETADA = "Completada";
+
+    static final String SQL_CHECKPOINTS =
+            "SELECT particion, nisDesde, nisHasta, ultimoNIS, ultimoIdMedidor, estado FROM CheckpointDeFacturacion " +
+            "WHERE periodo = ? ORDER BY particion";
+    static final String SQL_PRIMER_NIS = "SELECT MIN(NIS) FROM Cliente";
+    // Primer NIS de la partición siguiente: se salta 'clientesPorParticion' entradas del índice único de NIS.
+    static final String SQL_SIGUIENTE_LIMITE = "SELECT NIS FROM Cliente WHERE NIS >= ? ORDER BY NIS LIMIT 1 OFFSET ?";
+    static final String SQL_CREAR_CHECKPOINT =
+            "INSERT INTO CheckpointDeFacturacion (periodo, particion, nisDesde, nisHasta, ultimoNIS, ultimoIdMedidor, facturas, estado, actualizado) " +
+            "VALUES (?, ?, ?, ?, ?, 0, 0, '" + ESTADO_PENDIENTE + "', NOW())";
+    // Compara y avanza: 0 filas si otra instancia ya movió el checkpoint.
+    static final String SQL_AVANZAR_CHECKPOINT =
+            "UPDATE CheckpointDeFacturacion SET ultimoNIS = ?, ultimoIdMedidor = ?, facturas = facturas + ?, estado = ?, actualizado = NOW() " +
+            "WHERE periodo = ? AND particion = ? AND ultimoNIS = ? AND ultimoIdMedidor = ?";
+    // Siguiente tramo de la partición. Las dos lecturas son rangos hacia atrás sobre la clave primaria de Lectura.
+    static final String SQL_MEDIDORES_A_FACTURAR =
+            "SELECT c.idCliente, c.NIS, m.idMedidor, " +
+            "(SELECT l.consumoKwh FROM Lectura l WHERE l.Medidor_idMedidor = m.idMedidor AND l.fecha < ? ORDER BY l.fecha DESC LIMIT 1) AS lecturaInicial, " +
+            "(SELECT l.consumoKwh FROM Lectura l WHERE l.Medidor_idMedidor = m.idMedidor AND l.fecha < ? ORDER BY l.fecha DESC LIMIT 1) AS lecturaFinal " +
+            "FROM Cliente c JOIN Medidor m ON m.Cliente_idCliente = c.idCliente " +
+            "WHERE c.NIS >= ? AND c.NIS < ? AND (c.NIS > ? OR (c.NIS = ? AND m.idMedidor > ?)) " +
+            "AND EXISTS (SELECT 1 FROM Servicio s WHERE s.Medidor_idMedidor = m.idMedidor " +
+            "AND s.fechaActivacion < ? AND (s.fechaBaja IS NULL OR s.fechaBaja >= ?)) " +
+            "ORDER BY c.NIS, m.idMedidor LIMIT ?";
+    // Consumo del mes de los medidores de un tramo por hora del día: la diferencia de cada lectura con la anterior
+    // del mismo medidor, asignada a la hora de la lectura. Son rangos por la clave primaria de Lectura.
+    // Lo consumido antes de la primera lectura del mes queda fuera (la tarifa no le aplica recargo).
+    static final String SQL_CONSUMO_POR_HORA =
+            "SELECT x.idMedidor, HOUR(x.fecha) AS hora, SUM(x.delta) AS consumo FROM (" +
+            "SELECT l.Medidor_idMedidor AS idMedidor, l.fecha, " +
+            "l.consumoKwh - LAG(l.consumoKwh) OVER (PARTITION BY l.Medidor_idMedidor ORDER BY l.fecha) AS delta " +
+            "FROM Lectura l WHERE l.Medidor_idMedidor IN (%s) AND l.fecha >= ? AND l.fecha < ?) x " +
+            "WHERE x.delta IS NOT NULL GROUP BY x.idMedidor, HOUR(x.fecha)";
+    static final String SQL_INSERTAR_FACTURA =
+            "INSERT INTO Factura (idFactura, monto, fechaEmision, fechaVencimiento, consumoKwh, estado, Cliente_idCliente, Medidor_idMedidor) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final int paralelismo; // Particiones que se facturan a la vez (una conexión cada una).
+    private final int clientesPorParticion;
+    private final int medidoresPorTramo; // Facturas por transacción.
+
+    public FacturacionDelPeriodo(int paralelismo, int clientesPorParticion, int medidoresPorTramo) {
+        if (paralelismo < 1 || clientesPorParticion < 1 || medidoresPorTramo < 1) {
+            throw new IllegalArgumentException("El paralelismo, los clientes por partición y los medidores por tramo deben ser positivos.");
+        }
+        this.paralelismo = paralelismo;
+        this.clientesPorParticion = clientesPorParticion;
+        this.medidoresPorTramo = medidoresPorTramo;
+    }
+
+    /**
+     * Factura el período, o lo que falte de él si una corrida anterior se cortó.
+     * @param tarifa Versión de la tarifa vigente en el período (ver CatalogoDeTarifas).
+     * @param alFallar Recibe cada factura que no se generó y el motivo (ej: la lectura final es menor que la inicial,
+     *                 o la partición la está facturando otra instancia).
+     * @return Cantidad de facturas generadas en esta corrida (0 si el período ya estaba facturado).
+     * @throws SQLException Si falla la conexión en alguna partición. Las demás terminan igual y la facturación
+     *                      se puede volver a lanzar para completar las que quedaron a medias.
+     */
+    public int facturar(YearMonth periodo, Date fechaEmision, Date fechaVencimiento, TarifaCompilada tarifa,
+                        BiConsumer<Factura, String> alFallar) throws SQLException {
+
+        List<Particion> pendientes = new ArrayList<>();
+        int completas = 0;
+        for (Particion particion : particiones(periodo.toString())) {
+            if (ESTADO_COMPLETADA.equals(particion.estado)) {
+                completas++;
+            } else {
+                pendientes.add(particion);
+            }
+        }
+        if (completas > 0) {
+            System.out.println("Se retoma la facturación de " + periodo + ": " + completas + " de "
+                    + (completas + pendientes.size()) + " particiones ya estaban completas.");
+        }
+
+        ZoneId zona = ZoneId.systemDefault();
+        Corrida corrida = new Corrida(periodo.toString(),
+                new Timestamp(periodo.atDay(1).atStartOfDay(zona).toInstant().toEpochMilli()),
+                new Timestamp(periodo.plusMonths(1).atDay(1).atStartOfDay(zona).toInstant().toEpochMilli()),
+                new java.sql.Date(fechaEmision.getTime()), new java.sql.Date(fechaVencimiento.getTime()), tarifa, alFallar);
+
+        ForkJoinPool pool = new ForkJoinPool(paralelismo);
+        try {
+            pool.invoke(new FacturarParticiones(corrida, pendientes, 0, pendientes.size()));
+        } finally {
+            pool.shutdown();
+        }
+
+        if (!corrida.cedidas.isEmpty()) {
+            System.err.println("ADVERTENCIA: " + corrida.cedidas.size() + " particiones de " + periodo
+                    + " quedaron sin terminar porque otra instancia movió su checkpoint " + corrida.cedidas
+                    + "; vuelva a lanzar la facturación cuando termine para completarlas.");
+        }
+        if (!corrida.errores.isEmpty()) {
+            SQLException primera = corrida.errores.poll();
+            corrida.errores.forEach(primera::addSuppressed);
+            throw primera;
+        }
+        return corrida.generadas.get();
+    }
+
+    // ------------------ Internos ------------------
+
+    /*
+     * Particiones del período. La primera corrida las calcula y las registra; las siguientes las leen, para
+     * retomar exactamente los mismos rangos aunque hayan cambiado los clientes.
+     */
+    private List<Particion> particiones(String periodo) throws SQLException {
+        try (Connection conn = DBConnection.getConnection()) {
+            List<Particion> particiones = leerCheckpoints(conn, periodo);
+            if (!particiones.isEmpty()) {
+                return particiones;
+            }
+
+            List<Integer> limites = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(SQL_PRIMER_NIS);
+                 ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getObject(1) == null) {
+                    return particiones; // No hay clientes.
+                }
+                limites.add(rs.getInt(1));
+            }
+            try (PreparedStatement ps = conn.prepareStatement(SQL_SIGUIENTE_LIMITE)) {
+                while (true) {
+                    ps.setInt(1, limites.get(limites.size() - 1));
+                    ps.setInt(2, clientesPorParticion);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) {
+                            break;
+                        }
+                        limites.add(rs.getInt(1));
+                    }
+                }
+            }
+
+            // Todas en una transacción: si otra instancia las registró a la vez, la clave primaria rechaza esta.
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(SQL_CREAR_CHECKPOINT)) {
+                for (int i = 0; i < limites.size(); i++) {
+                    long nisHasta = i + 1 < limites.size() ? limites.get(i + 1) : Integer.MAX_VALUE + 1L;
+                    ps.setString(1, periodo);
+                    ps.setInt(2, i);
+                    ps.setInt(3, limites.get(i));
+                    ps.setLong(4, nisHasta);
+                    ps.setInt(5, limites.get(i) - 1); // Antes del primer NIS de la partición.
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            return leerCheckpoints(conn, periodo);
+        }
+    }
+
+    private static List<Particion> leerCheckpoints(Connection conn, String periodo) throws SQLException {
+        List<Particion> particiones = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(SQL_CHECKPOINTS)) {
+            ps.setString(1, periodo);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    particiones.add(new Particion(rs.getInt("particion"), rs.getInt("nisDesde"), rs.getLong("nisHasta"),
+                            rs.getInt("ultimoNIS"), rs.getInt("ultimoIdMedidor"), rs.getString("estado")));
+                }
+            }
+        }
+        return particiones;
+    }
+
+    /*
+     * Factura una partición desde su checkpoint hasta el final, tramo por tramo.
+     */
+    private void facturarParticion(Corrida corrida, Particion particion) throws SQLException {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement leer = conn.prepareStatement(SQL_MEDIDORES_A_FACTURAR);
+             PreparedStatement insertar = conn.prepareStatement(SQL_INSERTAR_FACTURA);
+             PreparedStatement avanzar = conn.prepareStatement(SQL_AVANZAR_CHECKPOINT);
+             PreparedStatement porHora = corrida.tarifa.usaFranjas() ? conn.prepareStatement(sqlConsumoPorHora()) : null) {
+
+            // Consumo por hora (Wh) de los medidores del tramo, HORAS valores seguidos por medidor; se reutiliza en cada tramo.
+            long[] consumoPorHora = porHora == null ? null : new long[medidoresPorTramo * TarifaCompilada.HORAS];
+            conn.setAutoCommit(false);
+            try {
+                boolean completa = false;
+                while (!completa) {
+                    List<Factura> tramo = leerTramo(leer, corrida, particion);
+                    completa = tramo.size() < medidoresPorTramo;
+                    if (porHora != null) {
+                        leerConsumoPorHora(porHora, corrida, tramo, consumoPorHora);
+                    }
+                    List<Factura> aInsertar = calcular(tramo, corrida, consumoPorHora);
+                    try {
+                        Factura ultima = tramo.isEmpty() ? null : tramo.get(tramo.size() - 1);
+                        if (!avanzarCheckpoint(avanzar, corrida, particion, ultima, aInsertar.size(), completa)) {
+                            conn.rollback();
+                            // Otra instancia (o una corrida anterior) movió el checkpoint: el tramo no se generó aquí.
+                            for (Factura factura : aInsertar) {
+                                corrida.alFallar.accept(factura, "La partición " + particion.numero
+                                        + " la está facturando otra instancia: no se generó en esta corrida.");
+                            }
+                            corrida.cedidas.add(particion.numero);
+                            return;
+                        }
+                        insertarTramo(insertar, aInsertar, corrida);
+                        conn.commit();
+                        corrida.generadas.addAndGet(aInsertar.size());
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        insertar.clearBatch();
+                        facturarDeAUna(conn, insertar, avanzar, corrida, particion, tramo, aInsertar, completa);
+                    }
+                    moverA(particion, tramo);
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // Lee el siguiente tramo de la partición como facturas sin monto (el consumo queda en 'consumoKwh').
+    private List<Factura> leerTramo(PreparedStatement ps, Corrida corrida, Particion particion) throws SQLException {
+        ps.setTimestamp(1, corrida.inicio);
+        ps.setTimestamp(2, corrida.fin);
+        ps.setInt(3, particion.nisDesde);
+        ps.setLong(4, particion.nisHasta);
+        ps.setInt(5, particion.ultimoNIS);
+        ps.setInt(6, particion.ultimoNIS);
+        ps.setInt(7, particion.ultimoIdMedidor);
+        ps.setTimestamp(8, corrida.fin);
+        ps.setTimestamp(9, corrida.inicio);
+        ps.setInt(10, medidoresPorTramo);
+
+        List<Factura> tramo = new ArrayList<>(medidoresPorTramo);
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                Cliente cliente = new Cliente();
+                cliente.setIdUsuario(rs.getInt("idCliente"));
+                cliente.setNIS(rs.getInt("NIS"));
+                Medidor medidor = new Medidor();
+                medidor.setIdMedidor(rs.getInt("idMedidor"));
+                medidor.setCliente(cliente);
+
+                // Sin lecturas en el mes no hay consumo (solo cargo fijo); sin lectura anterior, el registro arrancó en 0.
+                long inicial = Energia.deDecimal(rs.getBigDecimal("lecturaInicial"), RoundingMode.HALF_UP);
+                long fin = Energia.deDecimal(rs.getBigDecimal("lecturaFinal"), RoundingMode.HALF_UP);
+                long consumo = rs.wasNull() ? 0 : fin - inicial;
+                tramo.add(new Factura(0, 0, corrida.fechaEmision, corrida.fechaVencimiento, consumo, ESTADO_PENDIENTE, cliente, medidor));
+            }
+        }
+        return tramo;
+    }
+
+    // SQL_CONSUMO_POR_HORA con un parámetro por medidor del tramo más largo; los tramos cortos repiten el último.
+    private String sqlConsumoPorHora() {
+        return String.format(SQL_CONSUMO_POR_HORA, String.join(", ", Collections.nCopies(medidoresPorTramo, "?")));
+    }
+
+    // Llena el consumo por hora de cada medidor del tramo, en la posición del medidor dentro del tramo.
+    private void leerConsumoPorHora(PreparedStatement ps, Corrida corrida, List<Factura> tramo, long[] consumoPorHora) throws SQLException {
+        Arrays.fill(consumoPorHora, 0);
+        if (tramo.isEmpty()) {
+            return;
+        }
+        Map<Integer, Integer> posiciones = new HashMap<>(tramo.size() * 2);
+        for (int i = 0; i < medidoresPorTramo; i++) {
+            int idMedidor = tramo.get(Math.min(i, tramo.size() - 1)).getMedidor().getIdMedidor();
+            ps.setInt(i + 1, idMedidor);
+            if (i < tramo.size()) {
+                posiciones.put(idMedidor, i);
+            }
+        }
+        ps.setTimestamp(medidoresPorTramo + 1, corrida.inicio);
+        ps.setTimestamp(medidoresPorTramo + 2, corrida.fin);
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                Integer posicion = posiciones.get(rs.getInt("idMedidor"));
+                if (posicion != null) {
+                    consumoPorHora[posicion * TarifaCompilada.HORAS + rs.getInt("hora")] =
+                            Energia.deDecimal(rs.getBigDecimal("consumo"), RoundingMode.HALF_UP);
+                }
+            }
+        }
+    }
+
+    /*
+     * Calcula el monto de cada factura del tramo; las que no se pueden facturar se informan y no se insertan.
+     * 'consumoPorHora' es null si la tarifa no tiene franjas horarias.
+     */
+    private static List<Factura> calcular(List<Factura> tramo, Corrida corrida, long[] consumoPorHora) {
+        List<Factura> aInsertar = new ArrayList<>(tramo.size());
+        for (int i = 0; i < tramo.size(); i++) {
+            Factura factura = tramo.get(i);
+            if (factura.getConsumoWh() < 0) {
+                corrida.alFallar.accept(factura, "La lectura final es menor que la inicial (¿cambio de medidor?): requiere revisión manual.");
+                continue;
+            }
+            factura.setMontoEnCentavos(consumoPorHora == null ? corrida.tarifa.calcularMonto(factura.getConsumoWh())
+                    : corrida.tarifa.calcularMonto(factura.getConsumoWh(), consumoPorHora, i * TarifaCompilada.HORAS));
+            aInsertar.add(factura);
+        }
+        return aInsertar;
+    }
+
+    /*
+     * Avanza el checkpoint hasta la factura 'hasta' (null: no se mueve) y le suma 'facturas', sin commit.
+     * @return false si otra instancia ya lo había movido.
+     */
+    private static boolean avanzarCheckpoint(PreparedStatement ps, Corrida corrida, Particion particion,
+                                             Factura hasta, int facturas, boolean completa) throws SQLException {
+        ps.setInt(1, hasta == null ? particion.ultimoNIS : hasta.getCliente().getNIS());
+        ps.setInt(2, hasta == null ? particion.ultimoIdMedidor : hasta.getMedidor().getIdMedidor());
+        ps.setInt(3, facturas);
+        ps.setString(4, completa ? ESTADO_COMPLETADA : ESTADO_PENDIENTE);
+        ps.setString(5, corrida.periodo);
+        ps.setInt(6, particion.numero);
+        ps.setInt(7, particion.ultimoNIS);
+        ps.setInt(8, particion.ultimoIdMedidor);
+        return ps.executeUpdate() == 1;
+    }
+
+    // Asigna los IDs y envía las facturas en un solo lote (sin commit).
+    private static void insertarTramo(PreparedStatement ps, List<Factura> facturas, Corrida corrida) throws SQLException {
+        if (facturas.isEmpty()) {
+            return;
+        }
+        for (Factura factura : facturas) {
+            vincular(ps, factura, corrida);
+            ps.addBatch();
+        }
+        ps.executeBatch();
+    }
+
+    private static void vincular(PreparedStatement ps, Factura factura, Corrida corrida) throws SQLException {
+        if (factura.getIdFactura() == 0) {
+            factura.setIdFactura((int) corrida.ids.siguiente());
+        }
+        ps.setInt(1, factura.getIdFactura());
+        ps.setBigDecimal(2, Dinero.aDecimal(factura.getMontoEnCentavos()));
+        ps.setDate(3, corrida.fechaEmision);
+        ps.setDate(4, corrida.fechaVencimiento);
+        ps.setBigDecimal(5, Energia.aDecimal(factura.getConsumoWh()));
+        ps.setString(6, factura.getEstadoDeFactura());
+        ps.setInt(7, factura.getCliente().getIdUsuario());
+        ps.setInt(8, factura.getMedidor().getIdMedidor());
+    }
+
+    /*
+     * Reintenta un tramo fallido factura por factura, con un commit por cada una que también avanza el
+     * checkpoint hasta ella, para aislar las que fallan (esas se informan y quedan atrás del checkpoint).
+     */
+    private void facturarDeAUna(Connection conn, PreparedStatement insertar, PreparedStatement avanzar, Corrida corrida,
+                                Particion particion, List<Factura> tramo, List<Factura> aInsertar, boolean completa) throws SQLException {
+        Particion posicion = particion.copia();
+        for (int i = 0; i < tramo.size(); i++) {
+            Factura factura = tramo.get(i);
+            boolean cierra = completa && i == tramo.size() - 1;
+            boolean insertarla = aInsertar.contains(factura);
+            if (!avanzarCheckpoint(avanzar, corrida, posicion, factura, insertarla ? 1 : 0, cierra)) {
+                conn.rollback();
+                throw new SQLException("La partición " + particion.numero + " de " + corrida.periodo + " la está facturando otra instancia.");
+            }
+            try {
+                if (insertarla) {
+                    vincular(insertar, factura, corrida);
+                    insertar.executeUpdate();
+                }
+                conn.commit();
+                if (insertarla) {
+                    corrida.generadas.incrementAndGet();
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                corrida.alFallar.accept(factura, "Error de BD: " + e.getMessage());
+                // El checkpoint avanza igual, para que la factura con problemas no frene la partición.
+                if (!avanzarCheckpoint(avanzar, corrida, posicion, factura, 0, cierra)) {
+                    conn.rollback();
+                    throw e;
+                }
+                conn.commit();
+            }
+            moverA(posicion, List.of(factura));
+        }
+        if (tramo.isEmpty() && completa) {
+            if (!avanzarCheckpoint(avanzar, corrida, posicion, null, 0, true)) {
+                conn.rollback();
+                throw new SQLException("La partición " + particion.numero + " de " + corrida.periodo + " la está facturando otra instancia.");
+            }
+            conn.commit();
+        }
+    }
+
+    // Deja la posición de la partición en la última factura del tramo (la del checkpoint ya confirmado).
+    private static void moverA(Particion particion, List<Factura> tramo) {
+        if (!tramo.isEmpty()) {
+            Factura ultima = tramo.get(tramo.size() - 1);
+            particion.ultimoNIS = ultima.getCliente().getNIS();
+            particion.ultimoIdMedidor = ultima.getMedidor().getIdMedidor();
+        }
+    }
+
+    /*
+     * Reparte las particiones en el pool partiendo la lista a la mitad hasta quedar de a una. Los errores de
+     * una partición se guardan en la corrida y no detienen a las otras.
+     */
+    private final class FacturarParticiones extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Corrida corrida;
+        private final List<Particion> particiones;
+        private final int desde;
+        private final int hasta;
+
+        FacturarParticiones(Corrida corrida, List<Particion> particiones, int desde, int hasta) {
+            this.corrida = corrida;
+            this.particiones = particiones;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected void compute() {
+            if (hasta - desde > 1) {
+                int medio = (desde + hasta) >>> 1;
+                invokeAll(new FacturarParticiones(corrida, particiones, desde, medio),
+                          new FacturarParticiones(corrida, particiones, medio, hasta));
+            } else if (hasta > desde) {
+                try {
+                    facturarParticion(corrida, particiones.get(desde));
+                } catch (SQLException e) {
+                    corrida.errores.add(e);
+                }
+            }
+        }
+    }
+
+    /*
+     * Lo que comparten todas las particiones de una corrida.
+     */
+    private static final class Corrida {
+        final String periodo;
+        final Timestamp inicio;
+        final Timestamp fin;
+        final java.sql.Date fechaEmision;
+        final java.sql.Date fechaVencimiento;
+        final TarifaCompilada tarifa;
+        final BiConsumer<Factura, String> alFallar;
+        final GeneradorDeIds ids = GeneradorDeIds.para(GeneradorDeIds.Entidad.FACTURA);
+        final AtomicInteger generadas = new AtomicInteger();
+        final Queue<SQLException> errores = new ConcurrentLinkedQueue<>();
+        // Particiones que se dejaron porque otra instancia movió su checkpoint.
+        final Queue<Integer> cedidas = new ConcurrentLinkedQueue<>();
+
+        Corrida(String periodo, Timestamp inicio, Timestamp fin, java.sql.Date fechaEmision, java.sql.Date fechaVencimiento,
+                TarifaCompilada tarifa, BiConsumer<Factura, String> alFallar) {
+            this.periodo = periodo;
+            this.inicio = inicio;
+            this.fin = fin;
+            this.fechaEmision = fechaEmision;
+            this.fechaVencimiento = fechaVencimiento;
+            this.tarifa = tarifa;
+            this.alFallar = alFallar;
+        }
+    }
+
+    /*
+     * Un rango [nisDesde, nisHasta) de clientes y la posición (NIS, idMedidor) de su checkpoint.
+     */
+    private static final class Particion {
+        final int numero;
+        final int nisDesde;
+        final long nisHasta;
+        int ultimoNIS;
+        int ultimoIdMedidor;
+        final String estado;
+
+        Particion(int numero, int nisDesde, long nisHasta, int ultimoNIS, int ultimoIdMedidor, String estado) {
+            this.numero = numero;
+            this.nisDesde = nisDesde;
+            this.nisHasta = nisHasta;
+            this.ultimoNIS = ultimoNIS;
+            this.ultimoIdMedidor = ultimoIdMedidor;
+            this.estado = estado;
+        }
+
+        Particion copia() {
+            return new Particion(numero, nisDesde, nisHasta, ultimoNIS, ultimoIdMedidor, estado);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Clase FiltroDeSolicitudes.
+ * Reúno aquí los criterios opcionales de búsqueda de Solicitudes de Servicio (estado, tipo, rango de fechas,
+ * NIS del cliente, lista de NIS y departamento). Un criterio en null no filtra. Lo uso con RepositorioDAO.buscarSolicitudes.
+ */
+public class FiltroDeSolicitudes {
+    private EstadoDeSolicitudDeServicio estado; // Estado de la solicitud (ej: "Pendiente").
+    private TipoDeSolicitud tipo; // Tipo de solicitud (ej: "Activación").
+    private Date desde; // Fecha mínima de registro (inclusive).
+    private Date hasta; // Fecha máxima de registro (exclusive).
+    private Integer nis; // NIS del cliente que hizo la solicitud.
+    private String departamento; // Departamento (zona) del cliente.
+    private Set<Integer> nisIncluidos; // Varios NIS a la vez (procesos masivos); un conjunto vacío no encuentra nada.
+
+    /*
+     * Constructor por defecto: sin criterios, encuentra todas las solicitudes.
+     */
+    public FiltroDeSolicitudes() {
+    }
+
+    // ------------------ Getters y Setters ------------------
+
+    public EstadoDeSolicitudDeServicio getEstado() {
+        return estado;
+    }
+
+    public void setEstado(EstadoDeSolicitudDeServicio estado) {
+        this.estado = estado;
+    }
+
+    public TipoDeSolicitud getTipo() {
+        return tipo;
+    }
+
+    public void setTipo(TipoDeSolicitud tipo) {
+        this.tipo = tipo;
+    }
+
+    public Date getDesde() {
+        return desde;
+    }
+
+    public void setDesde(Date desde) {
+        this.desde = desde;
+    }
+
+    public Date getHasta() {
+        return hasta;
+    }
+
+    public void setHasta(Date hasta) {
+        this.hasta = hasta;
+    }
+
+    public Integer getNis() {
+        return nis;
+    }
+
+    public void setNis(Integer nis) {
+        this.nis = nis;
+    }
+
+    public String getDepartamento() {
+        return departamento;
+    }
+
+    public void setDepartamento(String departamento) {
+        this.departamento = departamento;
+    }
+
+    public Set<Integer> getNisIncluidos() {
+        return nisIncluidos;
+    }
+
+    public void setNisIncluidos(Set<Integer> nisIncluidos) {
+        this.nisIncluidos = nisIncluidos;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Clase GeneradorDeIds.
+ * Asigna IDs con el esquema hi/lo: reserva en la BD un bloque de IDs consecutivos de una sola vez y luego
+ * los reparte en memoria, sin volver a la BD hasta agotar el bloque.
+ *
+ * La reserva se serializa con un bloqueo de fila (SELECT ... FOR UPDATE) en la tabla SecuenciaDeIds, que es
+ * la única fuente de IDs de estas tablas: las inserciones individuales también toman su ID de acá (no usan
+ * AUTO_INCREMENT), así ninguna puede caer dentro del bloque que reservó otra instancia. Por eso toda inserción
+ * en estas tablas tiene que pasar el ID explícito. Los IDs de un bloque que no se llegan a usar (ej: al cerrar
+ * la aplicación) quedan como huecos.
+ */
+public class GeneradorDeIds {
+
+    /*
+     * Tablas que admiten IDs por bloques. El nombre de tabla y columna sale de aquí, nunca de la entrada del usuario.
+     */
+    public enum Entidad {
+        SOLICITUD_DE_SERVICIO("SolicitudDeServicio", "idSolicitud"),
+        MEDIDOR("Medidor", "idMedidor"),
+        FACTURA("Factura", "idFactura"),
+        PAGO("Pago", "idPago");
+
+        private final String tabla;
+        private final String columnaId;
+
+        Entidad(String tabla, String columnaId) {
+            this.tabla = tabla;
+            this.columnaId = columnaId;
+        }
+
+        public String getTabla() {
+            return tabla;
+        }
+
+        public String getColumnaId() {
+            return columnaId;
+        }
+    }
+
+    private static final int TAMANIO_BLOQUE_POR_DEFECTO = Integer.getInteger("sgre.ids.bloque", 1_000); // IDs por reserva.
+    private static final Map<Entidad, GeneradorDeIds> GENERADORES = new EnumMap<>(Entidad.class);
+
+    private final Entidad entidad;
+    private final int tamanioBloque;
+    private long siguiente = 0; // Próximo ID a entregar del bloque actual.
+    private long limite = 0; // Primer ID fuera del bloque actual (siguiente == limite: bloque agotado).
+
+    private GeneradorDeIds(Entidad entidad, int tamanioBloque) {
+        this.entidad = entidad;
+        this.tamanioBloque = tamanioBloque;
+    }
+
+    /**
+     * @return Retorno el generador compartido de la entidad (uno por tabla en todo el proceso).
+     */
+    public static synchronized GeneradorDeIds para(Entidad entidad) {
+        return GENERADORES.computeIfAbsent(entidad, e -> new GeneradorDeIds(e, TAMANIO_BLOQUE_POR_DEFECTO));
+    }
+
+    /**
+     * Entrega el siguiente ID del bloque; si se agotó, reserva un bloque nuevo en la BD.
+     * @throws SQLException Si falla la reserva del bloque.
+     */
+    public synchronized long siguiente() throws SQLException {
+        if (siguiente >= limite) {
+            reservarBloque();
+        }
+        return siguiente++;
+    }
+
+    // ------------------ Internos ------------------
+
+    /*
+     * Reserva [inicio, inicio + tamanioBloque) en una transacción corta sobre la fila de SecuenciaDeIds.
+     */
+    private void reservarBloque() throws SQLException {
+        String tabla = entidad.getTabla();
+
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                long inicio = leerSiguienteBloqueando(conn);
+                if (inicio < 0) {
+                    // La primera vez creo la fila de la secuencia por encima de lo que ya hay en la tabla (datos
+                    // anteriores a la secuencia). INSERT IGNORE evita carreras entre procesos.
+                    try (PreparedStatement ps = conn.prepareStatement(
+                            "INSERT IGNORE INTO SecuenciaDeIds (nombre, siguienteId) SELECT ?, COALESCE(MAX("
+                            + entidad.getColumnaId() + "), 0) + 1 FROM " + tabla)) {
+                        ps.setString(1, tabla);
+                        ps.executeUpdate();
+                    }
+                    inicio = leerSiguienteBloqueando(conn);
+                }
+
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE SecuenciaDeIds SET siguienteId = ? WHERE nombre = ?")) {
+                    ps.setLong(1, inicio + tamanioBloque);
+                    ps.setString(2, tabla);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+
+                this.siguiente = inicio;
+                this.limite = inicio + tamanioBloque;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // Lee el próximo ID libre de la secuencia y bloquea su fila hasta el commit. -1 si la fila no existe.
+    private long leerSiguienteBloqueando(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT siguienteId FROM SecuenciaDeIds WHERE nombre = ? FOR UPDATE")) {
+            ps.setString(1, entidad.getTabla());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        }
+    }
+}
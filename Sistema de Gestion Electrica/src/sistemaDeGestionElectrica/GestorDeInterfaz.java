@@ -14,7 +14,9 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.TreeMap;
 
 
 /*
@@ -28,10 +30,16 @@ public class GestorDeInterfaz {
     private final Scanner scanner;
     // Formato para parsear y mostrar fechas
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+    // En un proceso en lote, hasta cuántas solicitudes se listan también las exitosas (las fallidas se listan siempre)
+    private static final int SOLICITUDES_A_DETALLAR = 50;
+    // En la consulta de lecturas, cuántas se muestran como máximo (la mitad del principio y la mitad del final)
+    private static final int LECTURAS_A_MOSTRAR = 50;
     
     // --- Capa de Persistencia y Controladores ---
     // Repositorio para acceder a la base de datos (DAO)
     private final RepositorioDAO repositorioDAO;
+    // Fachada asíncrona del mismo DAO, para que los controladores lancen búsquedas en paralelo
+    private final RepositorioDAOAsincrono repositorioAsincrono;
     // Controlador para la lógica de inicio de sesión
     private final ControladorIniciarSesion controladorLogin;
     // Controlador para la lógica de agregar un medidor
@@ -40,20 +48,35 @@ public class GestorDeInterfaz {
     private final ControladorSolicitudCambio controladorSolicitud;
     // Controlador para la lógica de gestionar cambios de servicio por un operario
     private final ControladorGestionarServicio controladorServicio;
+    // Controlador para la carga masiva de medidores desde CSV
+    private final ControladorImportarMedidores controladorImportacion;
+    // Controlador para la ingesta y consulta de lecturas de medidores inteligentes
+    private final ControladorImportarLecturas controladorLecturas;
+    // Controlador para el ciclo de facturación mensual
+    private final ControladorFacturacion controladorFacturacion;
+    // Controlador para la conciliación de los pagos informados por el banco
+    private final ControladorConciliacion controladorConciliacion;
     
     // Almacena el usuario autenticado actualmente en el sistema
     private Usuario usuarioActual;
+    // Token de la sesión abierta (ver AlmacenDeSesiones)
+    private String tokenDeSesion;
 
-    // Constructor de la clase
-    public GestorDeInterfaz() {
+    // Constructor de la clase. Recibe el repositorio elegido al iniciar (base de datos o memoria).
+    public GestorDeInterfaz(RepositorioDAO repositorioDAO) {
         // Inicializa el objeto Scanner
         this.scanner = new Scanner(System.in);
-        // Inicialización del DAO y Controladores, inyectando el DAO en los Controladores
-        this.repositorioDAO = new RepositorioDAO();
+        // Inicialización de los Controladores, inyectando el DAO en los Controladores
+        this.repositorioDAO = repositorioDAO;
+        this.repositorioAsincrono = new RepositorioDAOAsincrono(repositorioDAO);
         this.controladorLogin = new ControladorIniciarSesion(repositorioDAO);
         this.controladorMedidor = new ControladorAgregarMedidor(repositorioDAO);
-        this.controladorSolicitud = new ControladorSolicitudCambio(repositorioDAO);
+        this.controladorSolicitud = new ControladorSolicitudCambio(repositorioDAO, repositorioAsincrono);
         this.controladorServicio = new ControladorGestionarServicio(repositorioDAO);
+        this.controladorImportacion = new ControladorImportarMedidores(repositorioDAO);
+        this.controladorLecturas = new ControladorImportarLecturas(repositorioDAO);
+        this.controladorFacturacion = new ControladorFacturacion(repositorioDAO);
+        this.controladorConciliacion = new ControladorConciliacion(repositorioDAO);
     }
 
     // Método principal para iniciar la interfaz de consola
@@ -80,8 +103,14 @@ public class GestorDeInterfaz {
                         mostrarLogin();
                         // Si el login fue exitoso, muestra el menú principal por rol
                         if (usuarioActual != null) {
-                            mostrarMenuPrincipal();
-                            usuarioActual = null; // Cierra la sesión al volver al menú principal
+                            tokenDeSesion = controladorLogin.abrirSesion(usuarioActual);
+                            try {
+                                mostrarMenuPrincipal();
+                            } finally {
+                                controladorLogin.cerrarSesion(tokenDeSesion); // Cierra la sesión al volver al menú principal
+                                tokenDeSesion = null;
+                                usuarioActual = null;
+                            }
                         }
                         break;
                     case "0":
@@ -136,6 +165,13 @@ public class GestorDeInterfaz {
             } else if (usuarioActual instanceof Operario) {
                 System.out.println("1. " + CU002.getNombreCU());
                 System.out.println("2. " + CU004.getNombreCU());
+                System.out.println("3. " + CargaMasiva.getNombreCU());
+                System.out.println("4. " + Metricas.getNombreCU());
+                System.out.println("5. " + CU004Masivo.getNombreCU());
+                System.out.println("6. " + CU005.getNombreCU());
+                System.out.println("7. " + ConsultaLecturas.getNombreCU());
+                System.out.println("8. " + CU006.getNombreCU());
+                System.out.println("9. " + CU007.getNombreCU());
             }
             
             System.out.println("0. Cerrar Sesión");
@@ -143,8 +179,12 @@ public class GestorDeInterfaz {
 
             String opcion = scanner.nextLine();
             try {
+                // La sesión vence tras un tiempo sin actividad: hay que volver a iniciarla
+                if (controladorLogin.validarSesion(tokenDeSesion) == null) {
+                    System.out.println("Su sesión venció por inactividad. Inicie sesión nuevamente.");
+                    salir = true;
                 // Maneja la opción de cerrar sesión
-                if (opcion.equals("0")) {
+                } else if (opcion.equals("0")) {
                     salir = true;
                     System.out.println("Sesión cerrada.");
                 // Redirige al menú del Cliente
@@ -190,6 +230,27 @@ public class GestorDeInterfaz {
             case "2":
                 gestionarCambioDeServicio(); // Llama al método para el CU004
                 break;
+            case "3":
+                importarMedidores(); // Carga masiva de medidores
+                break;
+            case "4":
+                mostrarMetricas(); // Volcado de métricas de rendimiento
+                break;
+            case "5":
+                gestionarCambiosEnLote(); // CU004 para muchas solicitudes a la vez
+                break;
+            case "6":
+                importarLecturas(); // Llama al método para el CU005
+                break;
+            case "7":
+                consultarLecturas(); // Serie de lecturas de un medidor
+                break;
+            case "8":
+                facturarPeriodo(); // Llama al método para el CU006
+                break;
+            case "9":
+                conciliarPagos(); // Llama al método para el CU007
+                break;
             default:
                 System.out.println("Opción de Operario no válida.");
         }
@@ -245,6 +306,141 @@ public class GestorDeInterfaz {
     controladorMedidor.agregarMedidor(0, tipo, marca, ubicacion, fechaInstalacion, anioFabricacion, estadoActivo, cliente);
 }
 
+    // --------------------------------------------------
+    // CARGA MASIVA DE MEDIDORES (CSV)
+    // --------------------------------------------------
+    // Solicita el archivo CSV y delega la importación al Controlador
+    private void importarMedidores() throws SQLException {
+        System.out.println("\n--- " + CargaMasiva.getNombreCU() + " ---");
+        System.out.println("Formato: tipo;marca;ubicacion;fechaDeInstalacion(YYYY-MM-DD);añoDeFabricacion;NIS[;estado]");
+        System.out.print("Ruta del archivo CSV: ");
+        String rutaArchivo = scanner.nextLine().trim();
+        if (rutaArchivo.isEmpty()) {
+            System.out.println("Operación cancelada.");
+            return;
+        }
+        
+        // Las filas rechazadas se escriben junto al archivo original
+        String rutaErrores = rutaArchivo + ".errores.csv";
+        controladorImportacion.importarDesdeCSV(rutaArchivo, rutaErrores);
+    }
+
+    // --------------------------------------------------
+    // CU005: IMPORTAR LECTURAS DE MEDIDORES (CSV)
+    // --------------------------------------------------
+    // Solicita el archivo CSV de lecturas y delega la ingesta al Controlador
+    private void importarLecturas() throws SQLException {
+        System.out.println("\n--- " + CU005.getNombreCU() + " ---");
+        System.out.println("Formato: idMedidor;fechaHora(YYYY-MM-DD HH:MM[:SS]);consumoKwh");
+        System.out.print("Ruta del archivo CSV: ");
+        String rutaArchivo = scanner.nextLine().trim();
+        if (rutaArchivo.isEmpty()) {
+            System.out.println("Operación cancelada.");
+            return;
+        }
+
+        // Las filas rechazadas se escriben junto al archivo original
+        controladorLecturas.importarDesdeCSV(rutaArchivo, rutaArchivo + ".errores.csv");
+    }
+
+    // Muestra las lecturas de un medidor en un rango de días
+    private void consultarLecturas() throws ParseException {
+        System.out.println("\n--- " + ConsultaLecturas.getNombreCU() + " ---");
+        System.out.print("ID del Medidor: ");
+        int idMedidor = Integer.parseInt(scanner.nextLine().trim());
+        System.out.print("Desde (YYYY-MM-DD): ");
+        Date desde = dateFormat.parse(scanner.nextLine().trim());
+        System.out.print("Hasta, inclusive (YYYY-MM-DD): ");
+        Date hasta = dateFormat.parse(scanner.nextLine().trim());
+
+        // 'hasta' se toma hasta el final del día
+        AlmacenColumnarDeLecturas.SerieDeLecturas serie =
+                controladorLecturas.consultar(idMedidor, desde.getTime(), hasta.getTime() + 24L * 60 * 60 * 1000);
+        if (serie == null) {
+            return;
+        }
+        if (serie.getCantidad() == 0) {
+            System.out.println("ADVERTENCIA: No hay lecturas del Medidor #" + idMedidor + " en ese período.");
+            return;
+        }
+
+        long[] instantes = serie.getInstantes();
+        double[] valores = serie.getValores();
+        int ultima = serie.getCantidad() - 1;
+        SimpleDateFormat formatoHora = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        for (int i = 0; i <= ultima; i++) {
+            // De series largas se muestran solo el principio y el final
+            if (i == LECTURAS_A_MOSTRAR / 2 && ultima >= LECTURAS_A_MOSTRAR) {
+                System.out.println("  ... (" + (ultima + 1 - LECTURAS_A_MOSTRAR) + " lecturas más)");
+                i = ultima + 1 - LECTURAS_A_MOSTRAR / 2;
+            }
+            System.out.printf("  %s  %12.3f kWh%n", formatoHora.format(new Date(instantes[i])), valores[i]);
+        }
+        System.out.printf("%d lecturas. Consumo en el período: %.3f kWh.%n", ultima + 1, valores[ultima] - valores[0]);
+    }
+
+    // --------------------------------------------------
+    // CU006: FACTURAR PERÍODO
+    // --------------------------------------------------
+    // Solicita el período y delega la facturación al Controlador
+    private void facturarPeriodo() throws SQLException {
+        System.out.println("\n--- " + CU006.getNombreCU() + " ---");
+        System.out.print("Período a facturar (YYYY-MM): ");
+        String periodo = scanner.nextLine().trim();
+        if (periodo.isEmpty()) {
+            System.out.println("Operación cancelada.");
+            return;
+        }
+        System.out.print("Se generarán las facturas de " + periodo + " para todos los medidores con servicio vigente. ¿Continuar? (S/N): ");
+        if (!scanner.nextLine().trim().equalsIgnoreCase("S")) {
+            System.out.println("Facturación cancelada por el Operario.");
+            return;
+        }
+        controladorFacturacion.facturarPeriodo(periodo);
+    }
+
+    // --------------------------------------------------
+    // CU007: CONCILIAR PAGOS DEL BANCO
+    // --------------------------------------------------
+    // Solicita el archivo diario del banco y delega la conciliación al Controlador
+    private void conciliarPagos() throws SQLException {
+        System.out.println("\n--- " + CU007.getNombreCU() + " ---");
+        System.out.println("Formato: referencia;idFactura;importe;fechaDePago(YYYY-MM-DD);metodoDePago");
+        System.out.println("         o de ancho fijo: referencia(20) idFactura(10) importeEnCentavos(13) fecha AAAAMMDD(8) metodo(15)");
+        System.out.print("Ruta del archivo del banco: ");
+        String rutaArchivo = scanner.nextLine().trim();
+        if (rutaArchivo.isEmpty()) {
+            System.out.println("Operación cancelada.");
+            return;
+        }
+
+        // Las excepciones se escriben junto al archivo original
+        controladorConciliacion.conciliarArchivo(rutaArchivo, rutaArchivo + ".excepciones.csv");
+    }
+
+    // --------------------------------------------------
+    // MÉTRICAS DE RENDIMIENTO
+    // --------------------------------------------------
+    // Muestra las latencias por operación del DAO y por caso de uso, y el estado del pool y las cachés
+    private void mostrarMetricas() {
+        System.out.println("\n--- " + Metricas.getNombreCU() + " ---");
+        System.out.print(RegistroDeMetricas.getInstancia().resumen());
+        System.out.println(repositorioDAO.getEstadisticasCache());
+        System.out.println(repositorioAsincrono.resumen());
+        System.out.println(controladorLogin.getEstadisticasSesiones());
+        System.out.println(controladorLecturas.getEstadisticasAlmacen());
+        if (repositorioDAO.usaBaseDeDatos()) {
+            System.out.println(DBConnection.getEstadisticasPool());
+            System.out.println(RegistroDeConsultasLentas.getInstancia().resumen());
+        }
+        
+        System.out.print("¿Reiniciar las métricas? (S/N): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("S")) {
+            RegistroDeMetricas.getInstancia().reiniciar();
+            System.out.println("Métricas reiniciadas.");
+        }
+    }
+
     // --------------------------------------------------
     // CU003: SOLICITAR CAMBIO DE ESTADO DE SERVICIO
     // --------------------------------------------------
@@ -291,78 +487,104 @@ public class GestorDeInterfaz {
     // Castea el usuario actual a Operario
     Operario operario = (Operario) usuarioActual;
 
-    // Obtiene la lista de solicitudes de cambio de servicio pendientes
-    List<SolicitudDeServicio> solicitudes = controladorServicio.obtenerTodasLasSolicitudes();
-    
-    // --- 1. Validación de ausencia de solicitudes ---
-    if (solicitudes == null || solicitudes.isEmpty()) {
-        System.out.println("ADVERTENCIA: Actualmente no hay Solicitudes Pendientes para gestionar.");
+    // --- 1. Criterios de búsqueda (todos opcionales) ---
+    System.out.print("Ingrese NIS para filtrar Solicitudes Pendientes (Deje vacío para ver todas): ");
+    String nisFiltro = scanner.nextLine();
+    System.out.print("Tipo de Solicitud (Activación/Suspensión/Baja, vacío para todos): ");
+    String tipoFiltro = scanner.nextLine();
+    System.out.print("Departamento del Cliente (vacío para todos): ");
+    String departamentoFiltro = scanner.nextLine();
+
+    Date desde;
+    Date hasta;
+    try {
+        desde = leerFechaOpcional("Registradas desde (YYYY-MM-DD, vacío sin límite): ");
+        hasta = leerFechaOpcional("Registradas hasta (YYYY-MM-DD, vacío sin límite): ");
+    } catch (ParseException e) {
+        System.out.println("ERROR: La fecha debe tener el formato YYYY-MM-DD.");
         return;
     }
 
-    // Filtrar por NIS (Fase 2)
-    System.out.print("Ingrese NIS para filtrar Solicitudes Pendientes (Deje vacío para ver todas): ");
-    String nisFiltro = scanner.nextLine();
+    // El controlador valida los criterios y arma el filtro (estado fijo: Pendiente)
+    FiltroDeSolicitudes filtro = controladorServicio.crearFiltroDePendientes(nisFiltro, tipoFiltro, departamentoFiltro, desde, hasta);
+    if (filtro == null) {
+        return;
+    }
+
+    // Solo se carga la primera página; las siguientes se piden a medida que el operario avanza
+    PaginaDeSolicitudes pagina = controladorServicio.buscarSolicitudes(filtro, null);
+
+    // Validación de ausencia de solicitudes
+    if (pagina.getSolicitudes().isEmpty()) {
+        System.out.println("ADVERTENCIA: Actualmente no hay Solicitudes Pendientes para gestionar con esos criterios.");
+        return;
+    }
+
+    // --- 2. Paginado y selección de Solicitud con opción de salida ---
+    SolicitudDeServicio solicitudSeleccionada = null;
+    int numeroDePagina = 1;
+    while (solicitudSeleccionada == null) {
+        List<SolicitudDeServicio> solicitudes = pagina.getSolicitudes();
+
+        // Muestra las solicitudes pendientes de la página actual
+        System.out.println("\n--- SOLICITUDES PENDIENTES (Página " + numeroDePagina + ") ---");
+        for (int i = 0; i < solicitudes.size(); i++) {
+            SolicitudDeServicio s = solicitudes.get(i);
+            // Muestra los detalles de cada solicitud
+            System.out.println((i + 1) + ". ID: " + s.getIdSolicitud() + 
+                                ", Fecha: " + dateFormat.format(s.getFechaSolicitud()) + 
+                                ", Cliente NIS: " + s.getCliente().getNIS() + 
+                                ", Tipo: " + s.getTipoDeSolicitud().getNombre() + 
+                                ", Descripción: " + s.getDescripcion());
+        }
+
+        System.out.print("\nSeleccione el número de Solicitud a procesar" + 
+                         (pagina.hayMas() ? ", 'S' para la página siguiente" : "") + 
+                         " (Presione 0 para salir): ");
+        String entrada = scanner.nextLine().trim();
+
+        // Avanza a la página siguiente a partir del cursor de la actual
+        if (pagina.hayMas() && entrada.equalsIgnoreCase("S")) {
+            pagina = controladorServicio.buscarSolicitudes(filtro, pagina.getSiguiente());
+            numeroDePagina++;
+            if (pagina.getSolicitudes().isEmpty()) {
+                // Las solicitudes restantes pudieron ser procesadas por otro operario mientras tanto
+                System.out.println("No quedan más Solicitudes Pendientes.");
+                return;
+            }
+            continue;
+        }
+
+        int indiceSeleccionado;
 
-    // Aplica el filtro si se ingresa un NIS
-    if (!nisFiltro.trim().isEmpty()) {
-        List<SolicitudDeServicio> solicitudesFiltradas = null;
+        // Intenta parsear la entrada a un número
         try {
-            // Filtra la lista de solicitudes por NIS usando el controlador
-            solicitudesFiltradas = controladorServicio.filtrarSolicitudesPorNIS(nisFiltro);
+            indiceSeleccionado = Integer.parseInt(entrada);
         } catch (NumberFormatException e) {
-            // Este error ya debería ser manejado por el controlador, pero se mantiene la estructura
+            System.out.println("Entrada no válida. Debe ingresar un número.");
+            return;
         }
         
-        // Si no hay resultados después del filtro
-        if (solicitudesFiltradas == null || solicitudesFiltradas.isEmpty()) {
-            System.out.println("No hay solicitudes pendientes para el NIS: " + nisFiltro);
+        // Validación de salida (opción 0)
+        if (indiceSeleccionado == 0) {
+            System.out.println("Operación cancelada.");
             return;
         }
-        solicitudes = solicitudesFiltradas; // Usa la lista filtrada
-    }
-    
-    // Muestra las solicitudes pendientes (filtradas o todas)
-    System.out.println("\n--- SOLICITUDES PENDIENTES ---");
-    for (int i = 0; i < solicitudes.size(); i++) {
-        SolicitudDeServicio s = solicitudes.get(i);
-        // Muestra los detalles de cada solicitud
-        System.out.println((i + 1) + ". ID: " + s.getIdSolicitud() + 
-                            ", Cliente NIS: " + s.getCliente().getNIS() + 
-                            ", Tipo: " + s.getTipoDeSolicitud().getNombre() + 
-                            ", Descripción: " + s.getDescripcion());
-    }
-
-    // --- 2. Selección de Solicitud con opción de salida ---
-    System.out.print("\nSeleccione el número de Solicitud a procesar (Presione 0 para salir): ");
-    String entrada = scanner.nextLine();
-    int indiceSeleccionado;
+        
+        // Ajuste de índice a base 0
+        indiceSeleccionado = indiceSeleccionado - 1;
 
-    // Intenta parsear la entrada a un número
-    try {
-        indiceSeleccionado = Integer.parseInt(entrada);
-    } catch (NumberFormatException e) {
-        System.out.println("Entrada no válida. Debe ingresar un número.");
-        return;
-    }
-    
-    // Validación de salida (opción 0)
-    if (indiceSeleccionado == 0) {
-        System.out.println("Operación cancelada.");
-        return;
-    }
-    
-    // Ajuste de índice a base 0
-    indiceSeleccionado = indiceSeleccionado - 1;
+        // Validación de rango del índice seleccionado
+        if (indiceSeleccionado < 0 || indiceSeleccionado >= solicitudes.size()) {
+            System.out.println("Selección no válida. El número de solicitud no existe.");
+            return;
+        }
 
-    // Validación de rango del índice seleccionado
-    if (indiceSeleccionado < 0 || indiceSeleccionado >= solicitudes.size()) {
-        System.out.println("Selección no válida. El número de solicitud no existe.");
-        return;
+        // Obtiene la solicitud seleccionada
+        solicitudSeleccionada = solicitudes.get(indiceSeleccionado);
     }
 
-    // Obtiene la solicitud y el medidor asociado
-    SolicitudDeServicio solicitudSeleccionada = solicitudes.get(indiceSeleccionado);
+    // Obtiene el medidor asociado
     Medidor medidorAsociado = controladorServicio.obtenerMedidorAsociado(solicitudSeleccionada);
     
     // Valida si se encontró el medidor asociado
@@ -377,24 +599,11 @@ public class GestorDeInterfaz {
                         ", Marca: " + medidorAsociado.getMarca() + 
                         ", Estado Actual: " + medidorAsociado.getEstadoDeMedidor().getNombre());
     
-    // Determina el nuevo estado del medidor basado en el tipo de solicitud
-    String tipo = solicitudSeleccionada.getTipoDeSolicitud().getNombre();
-    String nuevoEstado;
-    
-    // Mapeo de Tipo de Solicitud a Nuevo Estado de Medidor
-    switch (tipo.toLowerCase()) {
-        case "activación":
-            nuevoEstado = "Activo";
-            break;
-        case "suspensión":
-            nuevoEstado = "Suspendido";
-            break;
-        case "baja":
-            nuevoEstado = "De Baja";
-            break;
-        default:
-            System.out.println("Tipo de Solicitud (" + tipo + ") no reconocido para cambio de estado.");
-            return;
+    // Determina el nuevo estado del medidor basado en el tipo de solicitud (el mapeo está en el controlador)
+    String nuevoEstado = ControladorGestionarServicio.estadoDeMedidorPara(solicitudSeleccionada.getTipoDeSolicitud());
+    if (nuevoEstado == null) {
+        System.out.println("Tipo de Solicitud (" + solicitudSeleccionada.getTipoDeSolicitud().getNombre() + ") no reconocido para cambio de estado.");
+        return;
     }
 
     // Pide confirmación antes de aplicar el cambio
@@ -411,9 +620,83 @@ public class GestorDeInterfaz {
     }
     }
     
+    // --------------------------------------------------
+    // CU004 MASIVO: PROCESAR SOLICITUDES EN LOTE
+    // --------------------------------------------------
+    // Permite al Operario aplicar el cambio de estado a todas las solicitudes pendientes que cumplen un filtro
+    private void gestionarCambiosEnLote() throws SQLException {
+        System.out.println("\n--- " + CU004Masivo.getNombreCU() + " ---");
+        Operario operario = (Operario) usuarioActual;
+
+        // --- 1. Criterios de selección (todos opcionales) ---
+        System.out.print("Tipo de Solicitud (Activación/Suspensión/Baja, vacío para todos): ");
+        String tipoFiltro = scanner.nextLine();
+        System.out.print("Departamento (zona) del Cliente (vacío para todos): ");
+        String departamentoFiltro = scanner.nextLine();
+        System.out.print("Lista de NIS separados por coma (vacío para todos): ");
+        String nisFiltro = scanner.nextLine();
+
+        FiltroDeSolicitudes filtro = controladorServicio.crearFiltroMasivo(tipoFiltro, departamentoFiltro, nisFiltro);
+        if (filtro == null) {
+            return;
+        }
+
+        List<SolicitudDeServicio> seleccionadas = controladorServicio.seleccionarSolicitudes(filtro);
+        if (seleccionadas.isEmpty()) {
+            System.out.println("ADVERTENCIA: No hay Solicitudes Pendientes con esos criterios.");
+            return;
+        }
+
+        // --- 2. Confirmación con el resumen por tipo ---
+        Map<String, Integer> porTipo = new TreeMap<>();
+        for (SolicitudDeServicio s : seleccionadas) {
+            porTipo.merge(s.getTipoDeSolicitud().getNombre(), 1, Integer::sum);
+        }
+        System.out.println("Se seleccionaron " + seleccionadas.size() + " solicitudes pendientes: " + porTipo);
+        System.out.print("¿Aplicar el cambio de estado a todas? (S/N): ");
+        if (!scanner.nextLine().equalsIgnoreCase("S")) {
+            System.out.println("Proceso en lote cancelado por el Operario.");
+            return;
+        }
+
+        // --- 3. Proceso y reporte por solicitud ---
+        List<ControladorGestionarServicio.ResultadoDeSolicitud> resultados = controladorServicio.procesarCambiosEnLote(seleccionadas, operario);
+        if (resultados == null) {
+            return;
+        }
+        int fallidas = 0;
+        for (ControladorGestionarServicio.ResultadoDeSolicitud resultado : resultados) {
+            if (!resultado.isExito()) {
+                fallidas++;
+                System.out.println("FALLÓ  Solicitud #" + resultado.getSolicitud().getIdSolicitud()
+                        + " (NIS " + resultado.getSolicitud().getCliente().getNIS() + "): " + resultado.getMotivo());
+            } else if (resultados.size() <= SOLICITUDES_A_DETALLAR) {
+                System.out.println("OK     Solicitud #" + resultado.getSolicitud().getIdSolicitud()
+                        + " (NIS " + resultado.getSolicitud().getCliente().getNIS() + "): Medidor a '" + resultado.getNuevoEstado() + "'.");
+            }
+        }
+        if (fallidas == 0 && resultados.size() > SOLICITUDES_A_DETALLAR) {
+            System.out.println("Todas las solicitudes se procesaron correctamente.");
+        }
+    }
+
+    // Lee una fecha YYYY-MM-DD; retorna null si se deja vacía
+    private Date leerFechaOpcional(String mensaje) throws ParseException {
+        System.out.print(mensaje);
+        String texto = scanner.nextLine().trim();
+        return texto.isEmpty() ? null : dateFormat.parse(texto);
+    }
+    
     // --- Clase interna para nombres de CU (para mantener la interfaz limpia) ---
     // Clases estáticas internas para obtener los nombres de los Casos de Uso (CU)
     private static class CU002 { private static String getNombreCU() { return "Agregar Nuevo Medidor"; } }
     private static class CU003 { private static String getNombreCU() { return "Solicitar cambio de Estado de Servicio"; } }
     private static class CU004 { private static String getNombreCU() { return "Gestionar Cambio de Servicio (Activar/Suspender/Baja)"; } }
-}
\ No newline at end of file
+    private static class CargaMasiva { private static String getNombreCU() { return "Importar Medidores desde CSV"; } }
+    private static class Metricas { private static String getNombreCU() { return "Ver Métricas de Rendimiento"; } }
+    private static class CU004Masivo { private static String getNombreCU() { return "Procesar Solicitudes en Lote (por Tipo, Zona o NIS)"; } }
+    private static class CU005 { private static String getNombreCU() { return "Importar Lecturas de Medidores desde CSV"; } }
+    private static class CU006 { private static String getNombreCU() { return "Facturar Período (ciclo mensual)"; } }
+    private static class CU007 { private static String getNombreCU() { return "Conciliar Pagos del Banco"; } }
+    private static class ConsultaLecturas { private static String getNombreCU() { return "Consultar Lecturas de un Medidor"; } }
+}
@@ -0,0 +1,117 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Clase HistogramaDeLatencia.
+ * Histograma de latencias en microsegundos con cubetas log-lineales (al estilo HdrHistogram): por debajo de
+ * 64 µs cada valor tiene su cubeta, y por encima cada potencia de 2 se divide en 32 cubetas iguales, así el
+ * error relativo de un percentil es como mucho 1/32 (~3%) desde 1 µs hasta horas, con memoria fija (~15 KB).
+ *
+ * Registrar es sin locks (un incremento atómico), así que se puede llamar desde cualquier hilo en cada
+ * consulta. Los percentiles se calculan sobre los contadores al momento de leerlos.
+ */
+public class HistogramaDeLatencia {
+
+    private static final int BITS_DE_SUBCUBETA = 5; // 2^5 = 32 cubetas por potencia de 2.
+    private static final int SUBCUBETAS = 1 << BITS_DE_SUBCUBETA;
+    private static final int LINEALES = SUBCUBETAS * 2; // 0..63 µs: una cubeta por valor.
+    private static final int MAGNITUD_LINEAL = BITS_DE_SUBCUBETA + 1; // log2(LINEALES).
+    private static final int CUBETAS = LINEALES + (63 - MAGNITUD_LINEAL) * SUBCUBETAS;
+
+    private final AtomicLongArray cubetas = new AtomicLongArray(CUBETAS);
+    private final LongAdder cantidad = new LongAdder();
+    private final LongAdder sumaMicros = new LongAdder();
+    private final LongAccumulator maximoMicros = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Registra una latencia medida con System.nanoTime().
+     */
+    public void registrar(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        cubetas.incrementAndGet(indice(micros));
+        cantidad.increment();
+        sumaMicros.add(micros);
+        maximoMicros.accumulate(micros);
+    }
+
+    public long getCantidad() {
+        return cantidad.sum();
+    }
+
+    public double getPromedioMs() {
+        long n = cantidad.sum();
+        return n == 0 ? 0 : sumaMicros.sum() / 1_000.0 / n;
+    }
+
+    public double getMaximoMs() {
+        return maximoMicros.get() / 1_000.0;
+    }
+
+    /**
+     * @param percentil Entre 0 y 100 (ej: 50, 99, 99.9).
+     * @return Retorno la latencia en ms por debajo de la cual queda ese porcentaje de las mediciones
+     * (el límite superior de su cubeta), o 0 si no hay mediciones.
+     */
+    public double getPercentilMs(double percentil) {
+        long total = 0;
+        long[] copia = new long[CUBETAS];
+        for (int i = 0; i < CUBETAS; i++) {
+            copia[i] = cubetas.get(i);
+            total += copia[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(percentil / 100.0 * total));
+        long acumulado = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            acumulado += copia[i];
+            if (acumulado >= objetivo) {
+                return Math.min(limiteSuperior(i), maximoMicros.get()) / 1_000.0;
+            }
+        }
+        return getMaximoMs();
+    }
+
+    /**
+     * Vuelve todos los contadores a cero (ej: para medir un intervalo nuevo).
+     */
+    public void reiniciar() {
+        for (int i = 0; i < CUBETAS; i++) {
+            cubetas.set(i, 0);
+        }
+        cantidad.reset();
+        sumaMicros.reset();
+        maximoMicros.reset();
+    }
+
+    // ------------------ Internos ------------------
+
+    static int indice(long micros) {
+        if (micros < LINEALES) {
+            return (int) micros;
+        }
+        int magnitud = 63 - Long.numberOfLeadingZeros(micros); // Posición del bit más alto (>= 6).
+        int desplazamiento = magnitud - BITS_DE_SUBCUBETA;
+        int sub = (int) (micros >>> desplazamiento) & (SUBCUBETAS - 1); // Los 5 bits siguientes al más alto.
+        return LINEALES + (magnitud - MAGNITUD_LINEAL) * SUBCUBETAS + sub;
+    }
+
+    static long limiteSuperior(int indice) {
+        if (indice < LINEALES) {
+            return indice;
+        }
+        int magnitud = (indice - LINEALES) / SUBCUBETAS + MAGNITUD_LINEAL;
+        int sub = (indice - LINEALES) % SUBCUBETAS;
+        int desplazamiento = magnitud - BITS_DE_SUBCUBETA;
+        return ((long) (SUBCUBETAS + sub) << desplazamiento) + (1L << desplazamiento) - 1;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+/**
+ * Clase IndiceDeFacturasAbiertas.
+ * Saldo pendiente (en centavos, ver Dinero) de cada Factura impaga, por idFactura, para conciliar los pagos
+ * de un archivo del banco en memoria. Es una tabla hash de direccionamiento abierto con sondeo lineal sobre
+ * dos arreglos primitivos (claves int y saldos long): sin un objeto por factura, un millón de facturas
+ * ocupan ~24 MB y cada búsqueda es una multiplicación y, casi siempre, un único acceso a memoria.
+ *
+ * El 0 marca una celda libre (los idFactura son positivos) y no se borran claves: una factura saldada
+ * queda con saldo 0, así un segundo pago a la misma factura se distingue de una factura inexistente.
+ * No es thread-safe; lo usa un único hilo por conciliación.
+ */
+public final class IndiceDeFacturasAbiertas {
+
+    public static final long NO_ENCONTRADA = -1; // La factura no existe o no estaba impaga al cargar el índice.
+
+    private static final int CAPACIDAD_MINIMA = 16;
+    private static final double CARGA_MAXIMA = 0.5; // Con sondeo lineal, a media carga las búsquedas fallidas siguen siendo cortas.
+
+    private int[] claves;
+    private long[] saldos;
+    private int mascara; // capacidad - 1 (la capacidad es potencia de 2).
+    private int cantidad;
+    private long saldoTotal;
+
+    /**
+     * @param facturasEsperadas Cantidad aproximada de facturas, para no redimensionar mientras se carga.
+     */
+    public IndiceDeFacturasAbiertas(int facturasEsperadas) {
+        int capacidad = CAPACIDAD_MINIMA;
+        while (capacidad * CARGA_MAXIMA < facturasEsperadas) {
+            capacidad <<= 1;
+        }
+        iniciar(capacidad);
+    }
+
+    /**
+     * Agrega una factura con su saldo pendiente (si ya estaba, reemplaza el saldo).
+     */
+    public void agregar(int idFactura, long saldo) {
+        if (idFactura <= 0) {
+            throw new IllegalArgumentException("El idFactura debe ser positivo: " + idFactura);
+        }
+        if (cantidad + 1 > (mascara + 1) * CARGA_MAXIMA) {
+            redimensionar();
+        }
+        int celda = buscarCelda(idFactura);
+        if (claves[celda] == 0) {
+            claves[celda] = idFactura;
+            cantidad++;
+        } else {
+            saldoTotal -= saldos[celda];
+        }
+        saldos[celda] = saldo;
+        saldoTotal += saldo;
+    }
+
+    /**
+     * @return El saldo pendiente de la factura (0 si ya se saldó), o NO_ENCONTRADA.
+     */
+    public long getSaldo(int idFactura) {
+        int celda = buscarCelda(idFactura);
+        return claves[celda] == 0 ? NO_ENCONTRADA : saldos[celda];
+    }
+
+    /**
+     * Descuenta un pago del saldo de la factura (sin bajar de 0: el excedente no queda a favor de la factura).
+     * @return El saldo que tenía antes del pago, o NO_ENCONTRADA (en ese caso no cambia nada).
+     */
+    public long aplicarPago(int idFactura, long importe) {
+        int celda = buscarCelda(idFactura);
+        if (claves[celda] == 0) {
+            return NO_ENCONTRADA;
+        }
+        long anterior = saldos[celda];
+        long descontado = Math.min(anterior, Math.max(importe, 0));
+        saldos[celda] = anterior - descontado;
+        saldoTotal -= descontado;
+        return anterior;
+    }
+
+    /**
+     * Devuelve al saldo de la factura lo que le descontó aplicarPago (el menor entre el importe y el saldo que
+     * tenía), para un pago que al final no se registró.
+     */
+    public void revertirPago(int idFactura, long descontado) {
+        int celda = buscarCelda(idFactura);
+        if (claves[celda] == 0 || descontado <= 0) {
+            return;
+        }
+        saldos[celda] += descontado;
+        saldoTotal += descontado;
+    }
+
+    // Cantidad de facturas del índice (incluidas las que se saldaron después de cargarlo).
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    // Suma de los saldos pendientes, en centavos.
+    public long getSaldoTotal() {
+        return saldoTotal;
+    }
+
+    // Memoria aproximada de los arreglos, en bytes.
+    public long getBytes() {
+        return (mascara + 1L) * (Integer.BYTES + Long.BYTES);
+    }
+
+    // ------------------ Internos ------------------
+
+    // Celda de la clave o, si no está, la celda libre donde iría.
+    private int buscarCelda(int idFactura) {
+        int celda = dispersar(idFactura) & mascara;
+        while (claves[celda] != 0 && claves[celda] != idFactura) {
+            celda = (celda + 1) & mascara;
+        }
+        return celda;
+    }
+
+    // Los idFactura son casi consecutivos: la multiplicación (Fibonacci) los reparte por toda la tabla.
+    private static int dispersar(int clave) {
+        int h = clave * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void iniciar(int capacidad) {
+        claves = new int[capacidad];
+        saldos = new long[capacidad];
+        mascara = capacidad - 1;
+    }
+
+    private void redimensionar() {
+        int[] clavesViejas = claves;
+        long[] saldosViejos = saldos;
+        iniciar(claves.length << 1);
+        for (int i = 0; i < clavesViejas.length; i++) {
+            if (clavesViejas[i] != 0) {
+                int celda = buscarCelda(clavesViejas[i]);
+                claves[celda] = clavesViejas[i];
+                saldos[celda] = saldosViejos[i];
+            }
+        }
+    }
+}
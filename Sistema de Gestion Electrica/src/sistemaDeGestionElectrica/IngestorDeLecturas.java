@@ -0,0 +1,234 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Clase IngestorDeLecturas.
+ * Registra lecturas de medidores inteligentes a alto volumen (decenas de miles por segundo) sobre una sola conexión:
+ * - Ordena el lote por (medidor, fecha), que es la clave primaria de Lectura, y descarta las repetidas.
+ * - Inserta con INSERT IGNORE multi-fila explícitos de 'filasPorSentencia' filas (no depende de que el driver
+ *   reescriba los lotes); las lecturas que ya estaban guardadas se ignoran sin error.
+ * - Deja en cada Medidor la lectura más reciente como consumoKwh y fecha, solo si no hay una más nueva guardada.
+ * Hace un commit cada 'filasPorCommit' lecturas. Si un tramo falla, se deshace y se reintenta de a una lectura
+ * para separar las que tienen problemas, como en CargaMasivaDeMedidores.
+ * Las lecturas confirmadas (ya sin repetidas) se copian al almacén columnar del repositorio al terminar.
+ */
+public class IngestorDeLecturas {
+
+    static final String SQL_INSERTAR_LECTURAS = "INSERT IGNORE INTO Lectura (Medidor_idMedidor, fecha, consumoKwh) VALUES "; // + "(?, ?, ?), ..."
+    static final String SQL_MEDIDORES_EXISTENTES = "SELECT idMedidor FROM Medidor WHERE idMedidor IN "; // + "(?, ?, ...)"
+    // Lectura más reciente al Medidor. La condición es un rango sobre la clave primaria de Lectura.
+    static final String SQL_ACTUALIZAR_ULTIMA_LECTURA =
+            "UPDATE Medidor SET consumoKwh = ?, fecha = ?, version = version + 1 WHERE idMedidor = ? " +
+            "AND NOT EXISTS (SELECT 1 FROM Lectura l WHERE l.Medidor_idMedidor = ? AND l.fecha > ?)";
+
+    private static final int IDS_POR_CONSULTA = 1_000; // Medidores por cada consulta IN de existencia.
+
+    // Orden de la clave primaria de Lectura.
+    static final Comparator<Lectura> POR_MEDIDOR_Y_FECHA =
+            Comparator.comparingInt(Lectura::getIdMedidor).thenComparingLong(Lectura::getInstante);
+
+    private final RepositorioDAOJDBC repositorioDAO; // Para invalidar la caché y copiar al almacén columnar.
+    private final int filasPorSentencia; // Filas por INSERT multi-fila.
+    private final int filasPorCommit; // Lecturas por transacción.
+
+    public IngestorDeLecturas(RepositorioDAOJDBC repositorioDAO, int filasPorSentencia, int filasPorCommit) {
+        if (filasPorSentencia < 1 || filasPorCommit < 1) {
+            throw new IllegalArgumentException("Las filas por sentencia y por commit deben ser positivas.");
+        }
+        this.repositorioDAO = repositorioDAO;
+        this.filasPorSentencia = filasPorSentencia;
+        this.filasPorCommit = filasPorCommit;
+    }
+
+    /**
+     * Registra las lecturas. Las repetidas (en el lote o ya guardadas) se descartan sin error.
+     * @param alFallar Recibe cada lectura que no se registró y el motivo (ej: el medidor no existe).
+     * @return Cantidad de lecturas nuevas insertadas.
+     * @throws SQLException Si falla la conexión (los errores de lecturas individuales no se propagan).
+     */
+    public int registrar(List<Lectura> lecturas, BiConsumer<Lectura, String> alFallar) throws SQLException {
+        Lectura[] ordenadas = lecturas.toArray(new Lectura[0]);
+        Arrays.sort(ordenadas, POR_MEDIDOR_Y_FECHA);
+
+        int insertadas = 0;
+        Set<Integer> medidoresActualizados = new HashSet<>();
+        List<Lectura> confirmadas = new ArrayList<>(ordenadas.length);
+
+        try (Connection conn = DBConnection.getConnection()) {
+            List<Lectura> validas = descartarRepetidasYDesconocidas(conn, ordenadas, alFallar);
+
+            conn.setAutoCommit(false);
+            try (PreparedStatement insertarCompleto = conn.prepareStatement(sqlDeInsercion(filasPorSentencia));
+                 PreparedStatement actualizar = conn.prepareStatement(SQL_ACTUALIZAR_ULTIMA_LECTURA)) {
+                for (int desde = 0; desde < validas.size(); desde += filasPorCommit) {
+                    List<Lectura> tramo = validas.subList(desde, Math.min(desde + filasPorCommit, validas.size()));
+                    try {
+                        insertadas += insertarTramo(conn, insertarCompleto, tramo);
+                        actualizarUltimasLecturas(actualizar, tramo, medidoresActualizados);
+                        conn.commit();
+                        confirmadas.addAll(tramo);
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        actualizar.clearBatch();
+                        insertadas += insertarDeAUna(conn, actualizar, tramo, medidoresActualizados, confirmadas, alFallar);
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            // Lo confirmado queda en la base aunque un tramo posterior corte la carga.
+            medidoresActualizados.forEach(repositorioDAO::invalidarCacheMedidor);
+            repositorioDAO.getAlmacenDeLecturas().copiar(confirmadas);
+        }
+        return insertadas;
+    }
+
+    // ------------------ Internos ------------------
+
+    /*
+     * Sobre el lote ya ordenado: saltea las repetidas (quedan consecutivas) y rechaza las de medidores que no
+     * existen, que con INSERT IGNORE se perderían sin aviso (la clave foránea también se ignora).
+     */
+    private List<Lectura> descartarRepetidasYDesconocidas(Connection conn, Lectura[] ordenadas,
+                                                          BiConsumer<Lectura, String> alFallar) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < ordenadas.length; i++) {
+            if (i == 0 || ordenadas[i].getIdMedidor() != ordenadas[i - 1].getIdMedidor()) {
+                ids.add(ordenadas[i].getIdMedidor());
+            }
+        }
+        Set<Integer> existentes = new HashSet<>();
+        for (int desde = 0; desde < ids.size(); desde += IDS_POR_CONSULTA) {
+            List<Integer> tramo = ids.subList(desde, Math.min(desde + IDS_POR_CONSULTA, ids.size()));
+            try (PreparedStatement ps = conn.prepareStatement(SQL_MEDIDORES_EXISTENTES + marcadores(tramo.size()))) {
+                for (int i = 0; i < tramo.size(); i++) {
+                    ps.setInt(i + 1, tramo.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        existentes.add(rs.getInt(1));
+                    }
+                }
+            }
+        }
+
+        List<Lectura> validas = new ArrayList<>(ordenadas.length);
+        Lectura anterior = null;
+        for (Lectura lectura : ordenadas) {
+            boolean repetida = anterior != null && anterior.getIdMedidor() == lectura.getIdMedidor()
+                    && anterior.getInstante() == lectura.getInstante();
+            anterior = lectura;
+            if (repetida) {
+                continue; // Queda la primera, como con INSERT IGNORE.
+            }
+            if (!existentes.contains(lectura.getIdMedidor())) {
+                alFallar.accept(lectura, "No existe el Medidor #" + lectura.getIdMedidor() + ".");
+            } else {
+                validas.add(lectura);
+            }
+        }
+        return validas;
+    }
+
+    // Inserta el tramo en sentencias de 'filasPorSentencia' filas (la última puede ser más corta), sin commit.
+    private int insertarTramo(Connection conn, PreparedStatement insertarCompleto, List<Lectura> tramo) throws SQLException {
+        int insertadas = 0;
+        int desde = 0;
+        for (; desde + filasPorSentencia <= tramo.size(); desde += filasPorSentencia) {
+            insertadas += ejecutarInsercion(insertarCompleto, tramo, desde, filasPorSentencia);
+        }
+        if (desde < tramo.size()) {
+            try (PreparedStatement resto = conn.prepareStatement(sqlDeInsercion(tramo.size() - desde))) {
+                insertadas += ejecutarInsercion(resto, tramo, desde, tramo.size() - desde);
+            }
+        }
+        return insertadas;
+    }
+
+    // Con INSERT IGNORE, las filas afectadas son solo las nuevas.
+    private static int ejecutarInsercion(PreparedStatement ps, List<Lectura> tramo, int desde, int cantidad) throws SQLException {
+        int indice = 1;
+        for (int i = desde; i < desde + cantidad; i++) {
+            Lectura lectura = tramo.get(i);
+            ps.setInt(indice++, lectura.getIdMedidor());
+            ps.setTimestamp(indice++, new Timestamp(lectura.getInstante()));
+            ps.setDouble(indice++, lectura.getConsumoKwh());
+        }
+        return ps.executeUpdate();
+    }
+
+    // Una actualización por medidor del tramo, con su última lectura (el tramo está ordenado).
+    private static void actualizarUltimasLecturas(PreparedStatement ps, List<Lectura> tramo, Set<Integer> medidoresActualizados) throws SQLException {
+        for (int i = 0; i < tramo.size(); i++) {
+            Lectura lectura = tramo.get(i);
+            if (i + 1 < tramo.size() && tramo.get(i + 1).getIdMedidor() == lectura.getIdMedidor()) {
+                continue; // No es la última de su medidor.
+            }
+            Timestamp fecha = new Timestamp(lectura.getInstante());
+            ps.setDouble(1, lectura.getConsumoKwh());
+            ps.setTimestamp(2, fecha);
+            ps.setInt(3, lectura.getIdMedidor());
+            ps.setInt(4, lectura.getIdMedidor());
+            ps.setTimestamp(5, fecha);
+            ps.addBatch();
+            medidoresActualizados.add(lectura.getIdMedidor());
+        }
+        ps.executeBatch();
+    }
+
+    // Reintenta un tramo fallido de a una lectura, con un commit por cada una, para aislar las que fallan.
+    private int insertarDeAUna(Connection conn, PreparedStatement actualizar, List<Lectura> tramo, Set<Integer> medidoresActualizados,
+                               List<Lectura> confirmadas, BiConsumer<Lectura, String> alFallar) throws SQLException {
+        int insertadas = 0;
+        try (PreparedStatement insertarUna = conn.prepareStatement(sqlDeInsercion(1))) {
+            for (Lectura lectura : tramo) {
+                try {
+                    int nueva = ejecutarInsercion(insertarUna, List.of(lectura), 0, 1);
+                    actualizarUltimasLecturas(actualizar, List.of(lectura), medidoresActualizados);
+                    conn.commit();
+                    insertadas += nueva;
+                    confirmadas.add(lectura);
+                } catch (SQLException e) {
+                    conn.rollback();
+                    actualizar.clearBatch();
+                    alFallar.accept(lectura, "Error de BD: " + e.getMessage());
+                }
+            }
+        }
+        return insertadas;
+    }
+
+    private static String sqlDeInsercion(int filas) {
+        StringBuilder sql = new StringBuilder(SQL_INSERTAR_LECTURAS);
+        for (int i = 0; i < filas; i++) {
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+        }
+        return sql.toString();
+    }
+
+    private static String marcadores(int cantidad) {
+        StringBuilder sql = new StringBuilder("(");
+        for (int i = 0; i < cantidad; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.append(')').toString();
+    }
+}
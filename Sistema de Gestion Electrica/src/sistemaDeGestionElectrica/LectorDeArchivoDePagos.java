@@ -0,0 +1,537 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Clase LectorDeArchivoDePagos.
+ * Lee el archivo de pagos del banco (de varios GB a fin de mes) y deja cada pago en una cola acotada, que consume
+ * la etapa que lo registra (ControladorConciliacion). La lectura corre en su propio hilo: si la base de datos va
+ * más lenta, la cola se llena y el lector espera, así la memoria no depende del tamaño del archivo.
+ *
+ * El archivo se mapea con FileChannel.map en ventanas de 'bytesPorVentana' (un MappedByteBuffer no puede pasar
+ * de 2 GB) y los campos se interpretan directo sobre los bytes: los números y las fechas se acumulan en
+ * primitivos y no se arma un String por línea. Solo se crean los String que guarda el Pago (la referencia y el
+ * método de pago, que además se reutiliza porque hay pocos distintos) y el texto de las filas inválidas.
+ *
+ * Formatos (se detecta en la primera línea; una primera línea que empieza con "referencia" es el encabezado):
+ * - CSV, separado por ';' o ',' y sin comillas: referencia;idFactura;importe(con punto decimal);fecha(YYYY-MM-DD);metodo
+ * - Ancho fijo, sin separadores (ver ANCHO_*, en bytes): referencia, idFactura, importe en centavos y sin punto,
+ *   fecha AAAAMMDD y método de pago. Los campos de texto se completan con espacios y los numéricos con ceros.
+ * Las líneas terminan en LF o CRLF y se aceptan en UTF-8 (con o sin BOM).
+ */
+public final class LectorDeArchivoDePagos {
+
+    public enum Formato { CSV, ANCHO_FIJO }
+
+    public static final int ANCHO_REFERENCIA = 20;
+    public static final int ANCHO_ID_FACTURA = 10;
+    public static final int ANCHO_IMPORTE = 13;
+    public static final int ANCHO_FECHA = 8;
+    public static final int ANCHO_METODO = 15;
+    public static final int ANCHO_DE_LINEA = ANCHO_REFERENCIA + ANCHO_ID_FACTURA + ANCHO_IMPORTE + ANCHO_FECHA + ANCHO_METODO;
+
+    private static final int LARGO_MAXIMO_REFERENCIA = 45; // Columna Pago.referencia.
+    private static final int METODOS_EN_CACHE = 16;
+    private static final int DIGITOS_MAXIMOS = 18; // Así un número nunca desborda un long.
+
+    private final Path ruta;
+    private final int bytesPorVentana;
+    private final String estadoDePago; // Estado con el que se crean los Pagos.
+
+    // Estado de la lectura. Solo lo toca el hilo lector hasta que publica el último PagoLeido.
+    private Formato formato;
+    private byte separador;
+    private long bytesLeidos;
+    private long lineasLeidas;
+    private long nanosDeLectura;
+    private final int[] limites = new int[6]; // Inicio de cada campo CSV y fin de la línea + 1.
+    private final byte[] campo = new byte[256]; // Copia de un campo de texto antes de decodificarlo.
+    private final byte[][] bytesDeMetodos = new byte[METODOS_EN_CACHE][];
+    private final String[] metodos = new String[METODOS_EN_CACHE];
+    private int fechaEnCache = -1; // AAAAMMDD de la última fecha leída (los archivos suelen ser de un solo día).
+    private long instanteEnCache;
+    private String motivo; // Por qué se rechazó el último campo que no se pudo interpretar.
+
+    /**
+     * @param bytesPorVentana Tamaño de cada mapeo; una línea no puede ser más larga que una ventana.
+     * @param estadoDePago Estado de los Pagos creados (ej: ConciliacionDePagos.ESTADO_PAGO_APROBADO).
+     */
+    public LectorDeArchivoDePagos(Path ruta, int bytesPorVentana, String estadoDePago) {
+        if (bytesPorVentana < 1024) {
+            throw new IllegalArgumentException("La ventana de lectura debe tener al menos 1 KB.");
+        }
+        this.ruta = ruta;
+        this.bytesPorVentana = bytesPorVentana;
+        this.estadoDePago = estadoDePago;
+    }
+
+    /**
+     * Pago leído del archivo, o fila que no se pudo interpretar, con su número de línea. El último elemento de
+     * la cola es siempre uno con esFin() en true, que informa el error de lectura si lo hubo.
+     */
+    public static final class PagoLeido {
+        private final long linea;
+        private final Pago pago;
+        private final String motivo;
+        private final Throwable error;
+
+        private PagoLeido(long linea, Pago pago, String motivo, Throwable error) {
+            this.linea = linea;
+            this.pago = pago;
+            this.motivo = motivo;
+            this.error = error;
+        }
+
+        public long getLinea() {
+            return linea;
+        }
+
+        // null si la fila es inválida.
+        public Pago getPago() {
+            return pago;
+        }
+
+        // Motivo del rechazo y texto de la fila, si es inválida.
+        public String getMotivo() {
+            return motivo;
+        }
+
+        public boolean esFin() {
+            return linea < 0;
+        }
+
+        // Error que cortó la lectura (solo en el último elemento), o null si se leyó todo el archivo. Además de
+        // los de E/S, puede ser una excepción inesperada del intérprete de filas.
+        public Throwable getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Lee el archivo en un hilo nuevo y publica los pagos en la cola, terminando con un PagoLeido de fin, que
+     * se publica aunque la lectura falle por cualquier causa: si no, el consumidor lo esperaría para siempre.
+     * Si se interrumpe el hilo (ej: la etapa que consume falló), deja de leer sin publicar el fin.
+     * @return El hilo lector, para interrumpirlo si el consumidor abandona la cola.
+     */
+    public Thread iniciar(BlockingQueue<PagoLeido> cola) {
+        Thread hilo = new Thread(() -> {
+            Throwable error = null;
+            boolean publicarFin = true;
+            try {
+                leer(cola);
+            } catch (InterruptedException e) {
+                publicarFin = false; // El consumidor ya no espera el fin.
+            } catch (Throwable e) {
+                error = e; // Incluye los RuntimeException del intérprete (ej: un recorte de ancho fijo fuera de rango).
+            } finally {
+                if (publicarFin) {
+                    try {
+                        cola.put(new PagoLeido(-1, null, null, error));
+                    } catch (InterruptedException e) {
+                        // El consumidor ya no espera el fin.
+                    }
+                }
+            }
+        }, "sgre-lector-pagos");
+        hilo.setDaemon(true);
+        hilo.start();
+        return hilo;
+    }
+
+    // Formato detectado, o null si todavía no se leyó la primera línea.
+    public Formato getFormato() {
+        return formato;
+    }
+
+    public long getBytesLeidos() {
+        return bytesLeidos;
+    }
+
+    public long getLineasLeidas() {
+        return lineasLeidas;
+    }
+
+    // Velocidad de lectura y conversión, sin contar las esperas porque la cola estaba llena.
+    public double getMegabytesPorSegundo() {
+        return bytesLeidos / 1e6 / Math.max(nanosDeLectura / 1e9, 1e-3);
+    }
+
+    // ------------------ Internos ------------------
+
+    private void leer(BlockingQueue<PagoLeido> cola) throws IOException, InterruptedException {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            long tamaño = canal.size();
+            long posicion = 0; // Inicio de la primera línea que falta leer.
+            long inicioDeTramo = System.nanoTime();
+
+            while (posicion < tamaño) {
+                int largo = (int) Math.min(bytesPorVentana, tamaño - posicion);
+                boolean ultima = posicion + largo == tamaño;
+                MappedByteBuffer ventana = canal.map(FileChannel.MapMode.READ_ONLY, posicion, largo);
+                try {
+                    int inicio = posicion == 0 ? saltearBom(ventana, largo) : 0;
+                    while (inicio < largo) {
+                        int fin = buscarFinDeLinea(ventana, inicio, largo);
+                        if (fin == largo && !ultima) {
+                            break; // La línea sigue en la próxima ventana.
+                        }
+                        lineasLeidas++;
+                        PagoLeido leido = interpretarLinea(ventana, inicio, sinRetornoDeCarro(ventana, inicio, fin));
+                        inicio = Math.min(fin + 1, largo);
+                        if (leido != null) {
+                            long antesDeEsperar = System.nanoTime();
+                            nanosDeLectura += antesDeEsperar - inicioDeTramo;
+                            bytesLeidos = posicion + inicio;
+                            cola.put(leido);
+                            inicioDeTramo = System.nanoTime();
+                        }
+                    }
+                    if (inicio == 0) {
+                        throw new IOException("La línea " + (lineasLeidas + 1) + " supera la ventana de lectura de "
+                                + bytesPorVentana + " bytes.");
+                    }
+                    posicion += inicio;
+                } finally {
+                    AlmacenColumnarDeLecturas.liberar(ventana);
+                }
+            }
+            nanosDeLectura += System.nanoTime() - inicioDeTramo;
+            bytesLeidos = tamaño;
+        }
+    }
+
+    /*
+     * Interpreta la línea [desde, hasta) de la ventana.
+     * @return El pago o la fila inválida, o null si es una línea vacía o el encabezado.
+     */
+    private PagoLeido interpretarLinea(MappedByteBuffer b, int desde, int hasta) {
+        if (formato == null) {
+            detectarFormato(b, desde, hasta);
+            if (empiezaCon(b, desde, hasta, "referencia")) {
+                return null;
+            }
+        }
+        if (esVacia(b, desde, hasta)) {
+            return null;
+        }
+        Pago pago = formato == Formato.CSV ? interpretarCsv(b, desde, hasta) : interpretarAnchoFijo(b, desde, hasta);
+        if (pago == null) {
+            String texto = StandardCharsets.UTF_8.decode(b.duplicate().position(desde).limit(hasta)).toString();
+            return new PagoLeido(lineasLeidas, null, motivo + " Fila: " + texto, null);
+        }
+        return new PagoLeido(lineasLeidas, pago, null, null);
+    }
+
+    private Pago interpretarCsv(MappedByteBuffer b, int desde, int hasta) {
+        int campos = 1;
+        limites[0] = desde;
+        for (int i = desde; i < hasta; i++) {
+            if (b.get(i) == separador) {
+                if (campos == 5) {
+                    return rechazar("Se esperaban 5 campos y hay más.");
+                }
+                limites[campos++] = i + 1;
+            }
+        }
+        if (campos != 5) {
+            return rechazar("Se esperaban 5 campos y hay " + campos + ".");
+        }
+        limites[5] = hasta + 1;
+
+        long idFactura = leerEntero(b, limites[1], limites[2] - 1);
+        long importe = idFactura < 0 ? -1 : leerImporte(b, limites[2], limites[3] - 1);
+        if (idFactura < 0 || importe == -1) {
+            return rechazar("El ID de Factura y el importe deben ser valores numéricos.");
+        }
+        if (importe == -2) {
+            return rechazar("El importe tiene más de dos decimales.");
+        }
+        long instante = leerFecha(b, limites[3], limites[4] - 1, true);
+        if (instante == Long.MIN_VALUE) {
+            return rechazar("La fecha de pago debe tener el formato YYYY-MM-DD.");
+        }
+        return crearPago(b, limites[0], limites[1] - 1, idFactura, importe, instante, limites[4], hasta);
+    }
+
+    private Pago interpretarAnchoFijo(MappedByteBuffer b, int desde, int hasta) {
+        if (hasta - desde != ANCHO_DE_LINEA) {
+            return rechazar("Se esperaban " + ANCHO_DE_LINEA + " caracteres y hay " + (hasta - desde) + ".");
+        }
+        int id = desde + ANCHO_REFERENCIA;
+        int importeDesde = id + ANCHO_ID_FACTURA;
+        int fecha = importeDesde + ANCHO_IMPORTE;
+        int metodo = fecha + ANCHO_FECHA;
+
+        long idFactura = leerEntero(b, id, importeDesde);
+        long importe = idFactura < 0 ? -1 : leerEntero(b, importeDesde, fecha); // Ya está en centavos.
+        if (idFactura < 0 || importe < 0) {
+            return rechazar("El ID de Factura y el importe deben ser valores numéricos.");
+        }
+        long instante = leerFecha(b, fecha, metodo, false);
+        if (instante == Long.MIN_VALUE) {
+            return rechazar("La fecha de pago debe tener el formato AAAAMMDD.");
+        }
+        return crearPago(b, desde, id, idFactura, importe, instante, metodo, hasta);
+    }
+
+    private Pago crearPago(MappedByteBuffer b, int refDesde, int refHasta, long idFactura, long importe, long instante,
+                           int metodoDesde, int metodoHasta) {
+        if (idFactura > Integer.MAX_VALUE) {
+            return rechazar("El ID de Factura no es válido.");
+        }
+        if (importe <= 0) {
+            return rechazar("El importe debe ser positivo.");
+        }
+        String referencia = leerTexto(b, refDesde, refHasta);
+        if (referencia == null || referencia.isEmpty() || referencia.length() > LARGO_MAXIMO_REFERENCIA) {
+            return rechazar("La referencia es obligatoria y tiene a lo sumo " + LARGO_MAXIMO_REFERENCIA + " caracteres.");
+        }
+        String metodo = leerMetodo(b, metodoDesde, metodoHasta);
+        if (metodo == null) {
+            return rechazar("El método de pago no es válido.");
+        }
+        Factura factura = new Factura();
+        factura.setIdFactura((int) idFactura);
+        Pago pago = new Pago(0, importe, new Date(instante), metodo, estadoDePago, factura);
+        pago.setReferencia(referencia);
+        return pago;
+    }
+
+    private Pago rechazar(String motivo) {
+        this.motivo = motivo;
+        return null;
+    }
+
+    // ------------------ Campos ------------------
+
+    // Entero sin signo en [desde, hasta), con espacios alrededor. -1 si no es un número.
+    private static long leerEntero(MappedByteBuffer b, int desde, int hasta) {
+        desde = saltearEspacios(b, desde, hasta);
+        hasta = recortarEspacios(b, desde, hasta);
+        if (desde == hasta || hasta - desde > DIGITOS_MAXIMOS) {
+            return -1;
+        }
+        long valor = 0;
+        for (int i = desde; i < hasta; i++) {
+            int digito = b.get(i) - '0';
+            if (digito < 0 || digito > 9) {
+                return -1;
+            }
+            valor = valor * 10 + digito;
+        }
+        return valor;
+    }
+
+    /*
+     * Importe con punto decimal opcional, en centavos (como Dinero.deTexto con RoundingMode.UNNECESSARY).
+     * @return -1 si no es un número, -2 si tiene decimales distintos de cero después del segundo; un importe
+     *         negativo se devuelve como 0 (lo rechaza crearPago).
+     */
+    private static long leerImporte(MappedByteBuffer b, int desde, int hasta) {
+        desde = saltearEspacios(b, desde, hasta);
+        hasta = recortarEspacios(b, desde, hasta);
+        boolean negativo = desde < hasta && b.get(desde) == '-';
+        if (negativo || (desde < hasta && b.get(desde) == '+')) {
+            desde++;
+        }
+        long valor = 0;
+        int digitos = 0;
+        int decimales = -1; // -1 mientras no aparece el punto.
+        boolean sobranDecimales = false;
+        for (int i = desde; i < hasta; i++) {
+            byte c = b.get(i);
+            if (c == '.' && decimales < 0) {
+                decimales = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            if (decimales >= Dinero.DECIMALES) {
+                sobranDecimales |= c != '0';
+                continue;
+            }
+            if (++digitos > DIGITOS_MAXIMOS - Dinero.DECIMALES) {
+                return -1;
+            }
+            valor = valor * 10 + (c - '0');
+            if (decimales >= 0) {
+                decimales++;
+            }
+        }
+        if (digitos == 0) {
+            return -1;
+        }
+        if (sobranDecimales) {
+            return -2;
+        }
+        for (int d = Math.max(decimales, 0); d < Dinero.DECIMALES; d++) {
+            valor *= 10;
+        }
+        return negativo ? 0 : valor;
+    }
+
+    // Instante (medianoche local) de una fecha YYYY-MM-DD o AAAAMMDD, o Long.MIN_VALUE si no es válida.
+    private long leerFecha(MappedByteBuffer b, int desde, int hasta, boolean conGuiones) {
+        desde = saltearEspacios(b, desde, hasta);
+        hasta = recortarEspacios(b, desde, hasta);
+        if (hasta - desde != (conGuiones ? 10 : 8)) {
+            return Long.MIN_VALUE;
+        }
+        int clave = 0;
+        for (int i = desde; i < hasta; i++) {
+            byte c = b.get(i);
+            if (conGuiones && (i - desde == 4 || i - desde == 7)) {
+                if (c != '-') {
+                    return Long.MIN_VALUE;
+                }
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                return Long.MIN_VALUE;
+            }
+            clave = clave * 10 + (c - '0');
+        }
+        if (clave != fechaEnCache) {
+            try {
+                LocalDate fecha = LocalDate.of(clave / 10000, clave / 100 % 100, clave % 100);
+                instanteEnCache = fecha.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                fechaEnCache = clave;
+            } catch (DateTimeException e) {
+                return Long.MIN_VALUE;
+            }
+        }
+        return instanteEnCache;
+    }
+
+    // Texto en [desde, hasta) sin los espacios de los extremos, o null si es demasiado largo.
+    private String leerTexto(MappedByteBuffer b, int desde, int hasta) {
+        int largo = copiarCampo(b, desde, hasta);
+        return largo < 0 ? null : new String(campo, 0, largo, StandardCharsets.UTF_8);
+    }
+
+    // Como leerTexto, pero reutiliza el String si el método ya apareció (hay pocos: efectivo, débito, etc.).
+    private String leerMetodo(MappedByteBuffer b, int desde, int hasta) {
+        int largo = copiarCampo(b, desde, hasta);
+        if (largo < 0) {
+            return null;
+        }
+        int i = 0;
+        for (; i < METODOS_EN_CACHE && bytesDeMetodos[i] != null; i++) {
+            if (mismosBytes(bytesDeMetodos[i], largo)) {
+                return metodos[i];
+            }
+        }
+        String metodo = new String(campo, 0, largo, StandardCharsets.UTF_8);
+        if (i < METODOS_EN_CACHE) {
+            bytesDeMetodos[i] = Arrays.copyOf(campo, largo);
+            metodos[i] = metodo;
+        }
+        return metodo;
+    }
+
+    // Copia el campo sin espacios en los extremos al arreglo 'campo'. @return El largo, o -1 si no entra.
+    private int copiarCampo(MappedByteBuffer b, int desde, int hasta) {
+        desde = saltearEspacios(b, desde, hasta);
+        hasta = recortarEspacios(b, desde, hasta);
+        if (hasta - desde > campo.length) {
+            return -1;
+        }
+        for (int i = desde; i < hasta; i++) {
+            campo[i - desde] = b.get(i);
+        }
+        return hasta - desde;
+    }
+
+    private boolean mismosBytes(byte[] conocido, int largo) {
+        if (conocido.length != largo) {
+            return false;
+        }
+        for (int i = 0; i < largo; i++) {
+            if (conocido[i] != campo[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ------------------ Líneas ------------------
+
+    private void detectarFormato(MappedByteBuffer b, int desde, int hasta) {
+        for (int i = desde; i < hasta; i++) {
+            byte c = b.get(i);
+            if (c == ';') {
+                separador = ';';
+                break;
+            }
+            if (c == ',' && separador == 0) {
+                separador = ','; // Sigo buscando: si también hay ';', el separador es ';'.
+            }
+        }
+        formato = separador == 0 ? Formato.ANCHO_FIJO : Formato.CSV;
+    }
+
+    private static int buscarFinDeLinea(MappedByteBuffer b, int desde, int largo) {
+        for (int i = desde; i < largo; i++) {
+            if (b.get(i) == '\n') {
+                return i;
+            }
+        }
+        return largo;
+    }
+
+    private static int sinRetornoDeCarro(MappedByteBuffer b, int desde, int fin) {
+        return fin > desde && b.get(fin - 1) == '\r' ? fin - 1 : fin;
+    }
+
+    private static int saltearBom(MappedByteBuffer b, int largo) {
+        return largo >= 3 && b.get(0) == (byte) 0xEF && b.get(1) == (byte) 0xBB && b.get(2) == (byte) 0xBF ? 3 : 0;
+    }
+
+    private static boolean empiezaCon(MappedByteBuffer b, int desde, int hasta, String prefijo) {
+        desde = saltearEspacios(b, desde, hasta);
+        if (hasta - desde < prefijo.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefijo.length(); i++) {
+            if (Character.toLowerCase((char) b.get(desde + i)) != prefijo.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean esVacia(MappedByteBuffer b, int desde, int hasta) {
+        return saltearEspacios(b, desde, hasta) == hasta;
+    }
+
+    private static int saltearEspacios(MappedByteBuffer b, int desde, int hasta) {
+        while (desde < hasta && (b.get(desde) == ' ' || b.get(desde) == '\t')) {
+            desde++;
+        }
+        return desde;
+    }
+
+    private static int recortarEspacios(MappedByteBuffer b, int desde, int hasta) {
+        while (hasta > desde && (b.get(hasta - 1) == ' ' || b.get(hasta - 1) == '\t')) {
+            hasta--;
+        }
+        return hasta;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package sistema.de.gestion.electrica;
+
+import java.util.Date;
+
+/*
+ * Clase Lectura.
+ * Representa una lectura de un Medidor inteligente: el valor acumulado del registro de energía en un instante.
+ * Se reciben de a miles (una cada 15 minutos por medidor), así que guarda solo el ID del medidor y el instante
+ * en milisegundos, sin referencias a otros objetos.
+ */
+public class Lectura {
+    private final int idMedidor; // Medidor que tomó la lectura.
+    private final long instante; // Momento de la lectura, en milisegundos desde 1970 (como Date.getTime()).
+    private final double consumoKwh; // Valor acumulado del registro, en kWh.
+
+    /*
+     * Constructor para inicializar todos los atributos de una lectura.
+     */
+    public Lectura(int idMedidor, long instante, double consumoKwh) {
+        this.idMedidor = idMedidor;
+        this.instante = instante;
+        this.consumoKwh = consumoKwh;
+    }
+
+    // ------------------ Getters ------------------
+
+    /**
+     * @return the idMedidor
+     */
+    public int getIdMedidor() {
+        return idMedidor; // Retorna el ID del medidor.
+    }
+
+    /**
+     * @return the instante
+     */
+    public long getInstante() {
+        return instante; // Retorna el instante en milisegundos.
+    }
+
+    /**
+     * @return the fecha
+     */
+    public Date getFecha() {
+        return new Date(instante); // Retorna el instante como fecha.
+    }
+
+    /**
+     * @return the consumoKwh
+     */
+    public double getConsumoKwh() {
+        return consumoKwh; // Retorna el valor acumulado.
+    }
+
+    @Override
+    public String toString() {
+        return "Lectura{medidor=" + idMedidor + ", fecha=" + getFecha() + ", consumoKwh=" + consumoKwh + "}";
+    }
+}
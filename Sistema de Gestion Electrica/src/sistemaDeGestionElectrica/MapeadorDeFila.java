@@ -0,0 +1,18 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Interfaz MapeadorDeFila.
+ * Convierte la fila actual de un ResultSet en un objeto de dominio. La uso en CursorDeFilas.
+ */
+@FunctionalInterface
+public interface MapeadorDeFila<T> {
+    T mapear(ResultSet rs) throws SQLException;
+}
@@ -28,7 +28,7 @@ public class Medidor {
 
     private String ubicacion; // Dirección o punto de instalación física.
 
-    private double consumoKwh; // Última lectura registrada del consumo total acumulado en kWh.
+    private long consumoWh; // Última lectura registrada del consumo total acumulado, en Wh (ver Energia).
 
     private Date fechaActual; // Fecha de la última lectura o actualización de datos.
 
@@ -40,6 +40,8 @@ public class Medidor {
 
     private Cliente cliente; // Referencia al Cliente que utiliza este medidor.
 
+    private int version; // Versión de la fila leída, para el control de concurrencia optimista.
+
     
 
     /*
@@ -50,7 +52,7 @@ public class Medidor {
 
     public Medidor(){
 
-        this.consumoKwh = 0.0;
+        this.consumoWh = 0;
 
         this.fechaActual = new Date();
 
@@ -64,7 +66,7 @@ public class Medidor {
 
      */
 
-    public Medidor(int idMedidor, String tipo, String marca, String ubicacion, double consumoKwh, Date fechaActual, Date fechaDeInstalacion, int anioDeFabricacion, EstadoDeMedidor estadoDeMedidor, Cliente cliente) {
+    public Medidor(int idMedidor, String tipo, String marca, String ubicacion, long consumoWh, Date fechaActual, Date fechaDeInstalacion, int anioDeFabricacion, EstadoDeMedidor estadoDeMedidor, Cliente cliente) {
 
         this.idMedidor = idMedidor;
 
@@ -74,7 +76,7 @@ public class Medidor {
 
         this.ubicacion = ubicacion;
 
-        this.consumoKwh = consumoKwh;
+        this.consumoWh = consumoWh;
 
         this.fechaActual = fechaActual;
 
@@ -210,13 +212,13 @@ public class Medidor {
 
     /**
 
-     * @return the consumoKwh
+     * @return the consumoWh
 
      */
 
-    public double getConsumoKwh() {
+    public long getConsumoWh() {
 
-        return consumoKwh; // Retorna el consumo acumulado.
+        return consumoWh; // Retorna el consumo acumulado, en Wh.
 
     }
 
@@ -362,8 +364,36 @@ public class Medidor {
 
     }
 
+
+
+    /**
+
+     * @return the version
+
+     */
+
+    public int getVersion() {
+
+        return version; // Retorna la versión con la que se leyó.
+
+    }
+
+
+
+    /**
+
+     * @param version the version to set
+
+     */
+
+    public void setVersion(int version) {
+
+        this.version = version; // Establece la versión (la asigna el repositorio).
+
+    }
+
     
 
     
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Clase Migracion.
+ * Un cambio versionado del esquema: número de versión, descripción y las sentencias SQL que lo aplican.
+ * El checksum (SHA-256 de las sentencias) queda registrado al aplicarla, para detectar si alguien
+ * modificó después una migración que ya corrió en alguna base.
+ */
+public class Migracion {
+    private final int version; // Orden de aplicación; no se reutiliza nunca.
+    private final String descripcion; // Qué cambia esta migración.
+    private final List<String> sentencias; // Sentencias SQL, en orden (sin ';' final).
+
+    public Migracion(int version, String descripcion, String... sentencias) {
+        this.version = version;
+        this.descripcion = descripcion;
+        this.sentencias = Collections.unmodifiableList(Arrays.asList(sentencias));
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+
+    public List<String> getSentencias() {
+        return sentencias;
+    }
+
+    /**
+     * @return Retorno el SHA-256 (hexadecimal) de las sentencias. Ignoro saltos de línea CR y espacios
+     * en los extremos, para que el checksum no cambie por el editor o el sistema operativo.
+     */
+    public String getChecksum() {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            for (String sentencia : sentencias) {
+                sha.update(sentencia.replace("\r", "").trim().getBytes(StandardCharsets.UTF_8));
+                sha.update((byte) 0); // Separador: mover texto de una sentencia a otra cambia el checksum.
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : sha.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no está disponible en esta JVM.", e); // Toda JVM lo incluye.
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.util.List;
+
+/**
+ * Clase MigracionesDelEsquema.
+ * Lista ordenada de todas las migraciones del esquema 'sgre', aplicadas sobre el esquema inicial de SGRE.sql.
+ *
+ * Reglas: una migración ya publicada no se modifica (su checksum quedó registrado en las bases donde corrió);
+ * cualquier cambio nuevo va en una migración con la versión siguiente, agregada al final de la lista.
+ *
+ * Si una migración falla a la mitad, EjecutorDeMigraciones la re-ejecuta entera: las cargas de datos tienen que
+ * poder repetirse sin duplicar filas (solo se toleran los errores de "ya existe" del DDL).
+ */
+public final class MigracionesDelEsquema {
+
+    private MigracionesDelEsquema() {}
+
+    /**
+     * @return Retorno todas las migraciones, ordenadas por versión.
+     */
+    public static List<Migracion> todas() {
+        return List.of(
+
+            // Índices para los filtros de RepositorioDAO. InnoDB ya crea un índice implícito para cada
+            // clave foránea; los de una sola columna lo reemplazan por uno con nombre fijo, y los compuestos
+            // cubren el filtro completo (estado + cliente, cliente + estado) y el orden de la paginación.
+            new Migracion(1, "Índices de las consultas de RepositorioDAO",
+                """
+                CREATE INDEX idx_medidor_cliente ON Medidor (Cliente_idCliente)
+                """,
+                """
+                CREATE INDEX idx_servicio_medidor ON Servicio (Medidor_idMedidor)
+                """,
+                """
+                CREATE INDEX idx_solicitud_estado_cliente ON SolicitudDeServicio
+                    (EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio, Cliente_idCliente, fechaSolicitud, idSolicitud)
+                """,
+                """
+                CREATE INDEX idx_solicitud_estado_fecha ON SolicitudDeServicio
+                    (EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio, fechaSolicitud, idSolicitud)
+                """,
+                """
+                CREATE INDEX idx_factura_cliente_estado ON Factura (Cliente_idCliente, estado)
+                """,
+                """
+                CREATE INDEX idx_pago_factura ON Pago (Factura_idFactura)
+                """
+            ),
+
+            // Lo que se agregó a SGRE.sql después de la primera versión, para las bases creadas antes.
+            new Migracion(2, "Departamento de Cliente y tabla SecuenciaDeIds",
+                """
+                ALTER TABLE Cliente ADD COLUMN departamento VARCHAR(45)
+                """,
+                """
+                CREATE TABLE SecuenciaDeIds (
+                    nombre VARCHAR(45) PRIMARY KEY,
+                    siguienteId BIGINT NOT NULL
+                )
+                """
+            ),
+
+            // Control de concurrencia optimista: cada UPDATE compara y avanza la versión (ver ConflictoDeVersionException).
+            new Migracion(3, "Columnas de versión para concurrencia optimista",
+                """
+                ALTER TABLE Medidor ADD COLUMN version INT NOT NULL DEFAULT 0
+                """,
+                """
+                ALTER TABLE Servicio ADD COLUMN version INT NOT NULL DEFAULT 0
+                """,
+                """
+                ALTER TABLE SolicitudDeServicio ADD COLUMN version INT NOT NULL DEFAULT 0
+                """
+            ),
+
+            // Lecturas de medidores inteligentes (ver IngestorDeLecturas). La clave primaria (medidor, fecha)
+            // descarta las repetidas y sirve para los rangos por medidor y fecha; InnoDB agrupa las filas por ella.
+            new Migracion(4, "Tabla Lectura para la ingesta de medidores inteligentes",
+                """
+                CREATE TABLE Lectura (
+                    Medidor_idMedidor INT NOT NULL,
+                    fecha DATETIME NOT NULL,
+                    consumoKwh DECIMAL(12,3) NOT NULL,
+                    PRIMARY KEY (Medidor_idMedidor, fecha),
+                    CONSTRAINT fk_lectura_medidor FOREIGN KEY (Medidor_idMedidor) REFERENCES Medidor (idMedidor)
+                )
+                """
+            ),
+
+            // Avance de cada partición de NIS de una facturación (ver FacturacionDelPeriodo). La posición
+            // (ultimoNIS, ultimoIdMedidor) es la clave del último medidor facturado, para retomar desde ahí.
+            new Migracion(5, "Checkpoints de la facturación por período",
+                """
+                CREATE TABLE CheckpointDeFacturacion (
+                    periodo CHAR(7) NOT NULL,
+                    particion INT NOT NULL,
+                    nisDesde INT NOT NULL,
+                    nisHasta BIGINT NOT NULL,
+                    ultimoNIS INT NOT NULL,
+                    ultimoIdMedidor INT NOT NULL,
+                    facturas INT NOT NULL DEFAULT 0,
+                    estado VARCHAR(15) NOT NULL,
+                    actualizado DATETIME NOT NULL,
+                    PRIMARY KEY (periodo, particion)
+                )
+                """
+            ),
+
+            // Tarifas versionadas por fecha de vigencia (ver CatalogoDeTarifas): tramos escalonados por kWh,
+            // recargos por franja horaria e impuestos. Una tarifa nueva es otra fila con su 'vigenteDesde'.
+            // Carga la tarifa Residencial con la que se factura por defecto; cada carga se saltea si ya corrió
+            // (cada INSERT ... SELECT es atómico, así que si hay alguna fila de la tarifa, están todas).
+            new Migracion(6, "Tablas de tarifas escalonadas y por franja horaria",
+                """
+                CREATE TABLE Tarifa (
+                    idTarifa INT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                    nombre VARCHAR(45) NOT NULL,
+                    vigenteDesde DATE NOT NULL,
+                    cargoFijo DECIMAL(12,2) NOT NULL,
+                    UNIQUE KEY uq_tarifa_nombre_vigencia (nombre, vigenteDesde)
+                )
+                """,
+                """
+                CREATE TABLE TramoDeTarifa (
+                    Tarifa_idTarifa INT NOT NULL,
+                    desdeKwh INT NOT NULL,
+                    precioKwh DECIMAL(12,4) NOT NULL,
+                    PRIMARY KEY (Tarifa_idTarifa, desdeKwh),
+                    CONSTRAINT fk_tramo_tarifa FOREIGN KEY (Tarifa_idTarifa) REFERENCES Tarifa (idTarifa)
+                )
+                """,
+                """
+                CREATE TABLE FranjaHorariaDeTarifa (
+                    Tarifa_idTarifa INT NOT NULL,
+                    horaDesde TINYINT NOT NULL,
+                    horaHasta TINYINT NOT NULL,
+                    recargoKwh DECIMAL(12,4) NOT NULL,
+                    PRIMARY KEY (Tarifa_idTarifa, horaDesde),
+                    CONSTRAINT fk_franja_tarifa FOREIGN KEY (Tarifa_idTarifa) REFERENCES Tarifa (idTarifa)
+                )
+                """,
+                """
+                CREATE TABLE ImpuestoDeTarifa (
+                    Tarifa_idTarifa INT NOT NULL,
+                    nombre VARCHAR(45) NOT NULL,
+                    porcentaje DECIMAL(6,3) NOT NULL,
+                    PRIMARY KEY (Tarifa_idTarifa, nombre),
+                    CONSTRAINT fk_impuesto_tarifa FOREIGN KEY (Tarifa_idTarifa) REFERENCES Tarifa (idTarifa)
+                )
+                """,
+                """
+                INSERT INTO Tarifa (nombre, vigenteDesde, cargoFijo)
+                SELECT 'Residencial', '2024-01-01', 500.00 FROM DUAL
+                WHERE NOT EXISTS (SELECT 1 FROM Tarifa WHERE nombre = 'Residencial' AND vigenteDesde = '2024-01-01')
+                """,
+                """
+                INSERT INTO TramoDeTarifa (Tarifa_idTarifa, desdeKwh, precioKwh)
+                SELECT t.idTarifa, v.desdeKwh, v.precioKwh
+                FROM Tarifa t
+                JOIN (SELECT 0 AS desdeKwh, 12.0 AS precioKwh UNION ALL SELECT 150, 14.5 UNION ALL SELECT 400, 18.0) v
+                WHERE t.nombre = 'Residencial' AND t.vigenteDesde = '2024-01-01'
+                AND NOT EXISTS (SELECT 1 FROM TramoDeTarifa x WHERE x.Tarifa_idTarifa = t.idTarifa)
+                """,
+                """
+                INSERT INTO FranjaHorariaDeTarifa (Tarifa_idTarifa, horaDesde, horaHasta, recargoKwh)
+                SELECT t.idTarifa, v.horaDesde, v.horaHasta, v.recargoKwh
+                FROM Tarifa t
+                JOIN (SELECT 18 AS horaDesde, 23 AS horaHasta, 2.5 AS recargoKwh UNION ALL SELECT 23, 6, -1.5) v
+                WHERE t.nombre = 'Residencial' AND t.vigenteDesde = '2024-01-01'
+                AND NOT EXISTS (SELECT 1 FROM FranjaHorariaDeTarifa x WHERE x.Tarifa_idTarifa = t.idTarifa)
+                """,
+                """
+                INSERT INTO ImpuestoDeTarifa (Tarifa_idTarifa, nombre, porcentaje)
+                SELECT t.idTarifa, 'IVA', 21.000 FROM Tarifa t
+                WHERE t.nombre = 'Residencial' AND t.vigenteDesde = '2024-01-01'
+                AND NOT EXISTS (SELECT 1 FROM ImpuestoDeTarifa x WHERE x.Tarifa_idTarifa = t.idTarifa)
+                """
+            ),
+
+            // Montos y consumos exactos (ver Dinero y Energia): los FLOAT pasan a DECIMAL en centavos y los consumos
+            // INT (kWh enteros) a DECIMAL con la resolución de Lectura. MySQL redondea los FLOAT existentes a la escala.
+            new Migracion(7, "Montos y consumos en DECIMAL",
+                """
+                ALTER TABLE Factura MODIFY monto DECIMAL(12,2) NOT NULL, MODIFY consumoKwh DECIMAL(12,3) NOT NULL
+                """,
+                """
+                ALTER TABLE Pago MODIFY monto DECIMAL(12,2) NOT NULL
+                """,
+                """
+                ALTER TABLE Medidor MODIFY consumoKwh DECIMAL(12,3) DEFAULT 0
+                """
+            ),
+
+            // Conciliación de pagos bancarios (ver ConciliacionDePagos): la referencia del banco identifica cada
+            // pago, así procesar dos veces el mismo archivo no lo duplica.
+            new Migracion(8, "Referencia bancaria de Pago",
+                """
+                ALTER TABLE Pago ADD COLUMN referencia VARCHAR(45) NULL, ADD UNIQUE INDEX uq_pago_referencia (referencia)
+                """
+            ),
+
+            // Vencimiento de facturas (ver BarridoDeVencimientos): el recargo por mora va aparte del monto facturado,
+            // y el índice permite recorrer en orden las pendientes ya vencidas sin leer las demás. Su prefijo (estado)
+            // también sirve para cargar solo las facturas impagas en la conciliación.
+            new Migracion(9, "Recargo por mora de Factura e índice de Factura por estado y vencimiento",
+                """
+                ALTER TABLE Factura ADD COLUMN recargo DECIMAL(12,2) NOT NULL DEFAULT 0
+                """,
+                """
+                CREATE INDEX idx_factura_estado_vencimiento ON Factura (estado, fechaVencimiento)
+                """
+            )
+        );
+    }
+}
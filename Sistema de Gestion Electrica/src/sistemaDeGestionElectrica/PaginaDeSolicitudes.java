@@ -0,0 +1,61 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Clase PaginaDeSolicitudes.
+ * Una página de resultados de RepositorioDAO.buscarSolicitudes, ordenada por (fechaSolicitud, idSolicitud).
+ * Para pedir la página siguiente se pasa getSiguiente(): la consulta continúa "después" de la última fila
+ * vista (paginación por clave), así que no importa cuántas páginas se hayan recorrido ni si entran
+ * solicitudes nuevas mientras tanto.
+ */
+public class PaginaDeSolicitudes {
+
+    /*
+     * Posición en el orden (fechaSolicitud, idSolicitud). La página siguiente empieza justo después.
+     */
+    public static final class Cursor {
+        private final Timestamp fechaSolicitud;
+        private final int idSolicitud;
+
+        public Cursor(Timestamp fechaSolicitud, int idSolicitud) {
+            this.fechaSolicitud = fechaSolicitud;
+            this.idSolicitud = idSolicitud;
+        }
+
+        public Timestamp getFechaSolicitud() {
+            return fechaSolicitud;
+        }
+
+        public int getIdSolicitud() {
+            return idSolicitud;
+        }
+    }
+
+    private final List<SolicitudDeServicio> solicitudes; // Filas de esta página, en orden.
+    private final Cursor siguiente; // Cursor para la página siguiente, o null si esta es la última.
+
+    public PaginaDeSolicitudes(List<SolicitudDeServicio> solicitudes, Cursor siguiente) {
+        this.solicitudes = Collections.unmodifiableList(solicitudes);
+        this.siguiente = siguiente;
+    }
+
+    public List<SolicitudDeServicio> getSolicitudes() {
+        return solicitudes;
+    }
+
+    public Cursor getSiguiente() {
+        return siguiente;
+    }
+
+    public boolean hayMas() {
+        return siguiente != null;
+    }
+}
@@ -12,11 +12,12 @@ import java.util.Date;
  */
 public class Pago {
     private int idPago; // Identificador único del pago.
-    private double monto; // Cantidad de dinero pagada.
+    private long montoEnCentavos; // Cantidad de dinero pagada, en centavos (ver Dinero).
     private Date fechaDePago; // Fecha y hora en que se registró el pago.
     private String metodoDePago; // Forma de pago (ej: "Efectivo", "Tarjeta").
     private String estado; // Estado actual del pago (ej: "Aprobado", "Pendiente").
     private Factura factura; // Referencia a la Factura que este pago cubre.
+    private String referencia; // Identificador de la operación en el banco (único), o null si no vino del banco.
     
     /*
      * Constructor por defecto.
@@ -26,9 +27,9 @@ public class Pago {
     /*
      * Constructor para inicializar todos los atributos de un pago.
      */
-    public Pago(int idPago, double monto, Date fechaDePago, String metodoDePago, String estado, Factura factura) {
+    public Pago(int idPago, long montoEnCentavos, Date fechaDePago, String metodoDePago, String estado, Factura factura) {
         this.idPago = idPago;
-        this.monto = monto;
+        this.montoEnCentavos = montoEnCentavos;
         this.fechaDePago = fechaDePago;
         this.metodoDePago = metodoDePago;
         this.factura = factura;
@@ -52,17 +53,17 @@ public class Pago {
     }
 
     /**
-     * @return the monto
+     * @return the montoEnCentavos
      */
-    public double getMonto() {
-        return monto; // Retorna el monto pagado.
+    public long getMontoEnCentavos() {
+        return montoEnCentavos; // Retorna el monto pagado, en centavos.
     }
 
     /**
-     * @param monto the monto to set
+     * @param montoEnCentavos the montoEnCentavos to set
      */
-    public void setMonto(double monto) {
-        this.monto = monto; // Establece el monto pagado.
+    public void setMontoEnCentavos(long montoEnCentavos) {
+        this.montoEnCentavos = montoEnCentavos; // Establece el monto pagado, en centavos.
     }
 
     /**
@@ -120,6 +121,20 @@ public class Pago {
     public void setFactura(Factura factura) {
         this.factura = factura; // Establece la Factura asociada.
     }
+
+    /**
+     * @return the referencia
+     */
+    public String getReferencia() {
+        return referencia; // Retorna la referencia bancaria de la operación.
+    }
+
+    /**
+     * @param referencia the referencia to set
+     */
+    public void setReferencia(String referencia) {
+        this.referencia = referencia; // Establece la referencia bancaria de la operación.
+    }
     
     
 }
@@ -0,0 +1,444 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clase PoolDeConexiones.
+ * Mantengo aquí un conjunto acotado de conexiones físicas a MySQL que reutilizo entre llamadas del DAO,
+ * para no pagar el handshake TCP/autenticación en cada consulta.
+ * Valido la conexión al prestarla, cierro las ociosas que sobran, detecto préstamos que nunca se devuelven
+ * y llevo métricas de espera y de conexiones activas.
+ * Los Statement que se crean sobre una conexión prestada van medidos por RegistroDeConsultasLentas.
+ */
+public class PoolDeConexiones {
+
+    private final String url; // URL JDBC del servidor al que apunta este pool.
+    private final Properties propiedades; // Propiedades de conexión (usuario, contraseña, zona horaria...).
+    private final int tamanioMinimo; // Cantidad de conexiones que mantengo abiertas aunque estén ociosas.
+    private final int tamanioMaximo; // Límite duro de conexiones físicas abiertas a la vez.
+    private final long esperaMaximaMs; // Tiempo máximo que un llamador espera por una conexión libre.
+    private final long tiempoOciosoMaximoMs; // Tiempo tras el cual cierro una conexión ociosa por encima del mínimo.
+    private final long umbralFugaMs; // Tiempo de préstamo a partir del cual aviso de una posible fuga.
+    private final int timeoutValidacionSeg = 2; // Segundos que le doy a Connection.isValid() al prestar.
+
+    private final Deque<ConexionFisica> libres = new ArrayDeque<>(); // Conexiones ociosas listas para prestar (LIFO).
+    private final Set<ConexionFisica> prestadas = ConcurrentHashMap.newKeySet(); // Conexiones actualmente en uso.
+    private int totalAbiertas = 0; // Conexiones físicas abiertas (libres + prestadas), protegido por 'this'.
+    private boolean cerrado = false;
+
+    private final ScheduledExecutorService mantenimiento; // Hilo de desalojo de ociosas y detección de fugas.
+
+    // --- Métricas ---
+    private final AtomicLong prestamosTotales = new AtomicLong();
+    private final AtomicLong esperaAcumuladaNs = new AtomicLong();
+    private final AtomicLong esperaMaximaNs = new AtomicLong();
+    private final AtomicLong conexionesCreadas = new AtomicLong();
+    private final AtomicLong conexionesDescartadas = new AtomicLong();
+    private final AtomicLong fugasDetectadas = new AtomicLong();
+    private final String nombreDeMetrica; // Tiempo de obtención en RegistroDeMetricas (con histograma).
+    private final RegistroDeConsultasLentas consultasLentas = RegistroDeConsultasLentas.getInstancia();
+
+    /*
+     * Constructor del pool. No abre conexiones: eso lo hace calentar().
+     */
+    public PoolDeConexiones(String url, Properties propiedades, int tamanioMinimo, int tamanioMaximo,
+                            long esperaMaximaMs, long tiempoOciosoMaximoMs, long umbralFugaMs) {
+        if (tamanioMinimo < 0 || tamanioMaximo < 1 || tamanioMinimo > tamanioMaximo) {
+            throw new IllegalArgumentException("Tamaños de pool inválidos: min=" + tamanioMinimo + ", max=" + tamanioMaximo);
+        }
+        this.url = url;
+        this.propiedades = propiedades;
+        this.tamanioMinimo = tamanioMinimo;
+        this.tamanioMaximo = tamanioMaximo;
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.tiempoOciosoMaximoMs = tiempoOciosoMaximoMs;
+        this.umbralFugaMs = umbralFugaMs;
+        this.nombreDeMetrica = "pool.obtenerConexion " + url.replaceFirst("^jdbc:mysql://", "").replaceFirst("\\?.*$", "");
+
+        // Uso un único hilo demonio para que el pool no impida que la JVM termine.
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sgre-pool-mantenimiento");
+            t.setDaemon(true);
+            return t;
+        });
+        long periodo = Math.max(1000, Math.min(tiempoOciosoMaximoMs, umbralFugaMs) / 2);
+        this.mantenimiento.scheduleWithFixedDelay(this::mantener, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Abre las conexiones mínimas al arrancar para que el primer caso de uso no pague el handshake.
+     * Si el servidor no responde, la excepción se propaga y el arranque falla temprano.
+     * @throws SQLException Si no se pudo abrir alguna de las conexiones iniciales.
+     */
+    public void calentar() throws SQLException {
+        int aAbrir;
+        synchronized (this) {
+            aAbrir = Math.max(1, tamanioMinimo) - totalAbiertas;
+            totalAbiertas += Math.max(0, aAbrir); // Reservo los cupos antes de abrir fuera del lock.
+        }
+        for (int i = 0; i < aAbrir; i++) {
+            ConexionFisica fisica;
+            try {
+                fisica = abrirFisica();
+            } catch (SQLException e) {
+                synchronized (this) {
+                    totalAbiertas -= (aAbrir - i); // Libero los cupos que no llegué a usar.
+                }
+                throw e;
+            }
+            synchronized (this) {
+                fisica.ultimoUso = System.currentTimeMillis();
+                libres.push(fisica);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Presta una conexión del pool. Al llamar a close() sobre la conexión devuelta, vuelve al pool.
+     * @return Una conexión validada y envuelta.
+     * @throws SQLException Si el pool está cerrado, se agotó la espera o falló la apertura.
+     */
+    public Connection obtenerConexion() throws SQLException {
+        long inicio = System.nanoTime();
+        try {
+            return obtenerConexion(inicio);
+        } catch (SQLException e) {
+            RegistroDeMetricas.getInstancia().registrar(nombreDeMetrica, System.nanoTime() - inicio, 0, true);
+            throw e;
+        }
+    }
+
+    // Busca una conexión libre, abre una nueva o espera hasta 'esperaMaximaMs' contados desde 'inicio'.
+    private Connection obtenerConexion(long inicio) throws SQLException {
+        long limite = inicio + TimeUnit.MILLISECONDS.toNanos(esperaMaximaMs);
+
+        while (true) {
+            ConexionFisica candidata = null;
+            boolean abrirNueva = false;
+
+            synchronized (this) {
+                while (candidata == null && !abrirNueva) {
+                    if (cerrado) {
+                        throw new SQLException("El pool de conexiones está cerrado.");
+                    }
+                    if (!libres.isEmpty()) {
+                        candidata = libres.pop();
+                    } else if (totalAbiertas < tamanioMaximo) {
+                        totalAbiertas++; // Reservo el cupo; abro la conexión fuera del lock.
+                        abrirNueva = true;
+                    } else {
+                        long restanteNs = limite - System.nanoTime();
+                        if (restanteNs <= 0) {
+                            throw new SQLException("Tiempo de espera agotado (" + esperaMaximaMs + " ms) esperando una conexión libre. "
+                                    + "Activas: " + prestadas.size() + "/" + tamanioMaximo);
+                        }
+                        try {
+                            TimeUnit.NANOSECONDS.timedWait(this, restanteNs);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new SQLException("Interrumpido esperando una conexión del pool.", e);
+                        }
+                    }
+                }
+            }
+
+            if (abrirNueva) {
+                try {
+                    candidata = abrirFisica();
+                } catch (SQLException e) {
+                    liberarCupo();
+                    throw e;
+                }
+            } else if (!esValida(candidata)) {
+                // La conexión ociosa murió (timeout del servidor, reinicio...). La descarto y vuelvo a intentar.
+                descartar(candidata);
+                continue;
+            }
+
+            registrarEspera(System.nanoTime() - inicio);
+            return prestar(candidata);
+        }
+    }
+
+    /*
+     * Cierra todas las conexiones y rechaza nuevos préstamos. Las prestadas se cierran al devolverse.
+     */
+    public void cerrar() {
+        mantenimiento.shutdownNow();
+        synchronized (this) {
+            cerrado = true;
+            while (!libres.isEmpty()) {
+                cerrarSilenciosamente(libres.pop().conexion);
+                totalAbiertas--;
+            }
+            notifyAll();
+        }
+    }
+
+    // ------------------ Métricas ------------------
+
+    public int getConexionesActivas() {
+        return prestadas.size();
+    }
+
+    public synchronized int getConexionesOciosas() {
+        return libres.size();
+    }
+
+    public synchronized int getConexionesAbiertas() {
+        return totalAbiertas;
+    }
+
+    public int getTamanioMaximo() {
+        return tamanioMaximo;
+    }
+
+    public long getPrestamosTotales() {
+        return prestamosTotales.get();
+    }
+
+    // Tiempo medio que un llamador esperó por una conexión, en milisegundos.
+    public double getEsperaPromedioMs() {
+        long n = prestamosTotales.get();
+        return n == 0 ? 0.0 : esperaAcumuladaNs.get() / (double) n / 1_000_000.0;
+    }
+
+    // Peor espera observada desde el arranque, en milisegundos.
+    public double getEsperaMaximaMs() {
+        return esperaMaximaNs.get() / 1_000_000.0;
+    }
+
+    public long getConexionesCreadas() {
+        return conexionesCreadas.get();
+    }
+
+    public long getConexionesDescartadas() {
+        return conexionesDescartadas.get();
+    }
+
+    public long getFugasDetectadas() {
+        return fugasDetectadas.get();
+    }
+
+    /*
+     * Retorna un resumen legible de las métricas para mostrar por consola.
+     */
+    public String resumen() {
+        return String.format("Pool[%s] activas=%d ociosas=%d abiertas=%d/%d prestamos=%d espera(prom=%.3f ms, max=%.3f ms) creadas=%d descartadas=%d fugas=%d",
+                url, getConexionesActivas(), getConexionesOciosas(), getConexionesAbiertas(), tamanioMaximo,
+                getPrestamosTotales(), getEsperaPromedioMs(), getEsperaMaximaMs(),
+                getConexionesCreadas(), getConexionesDescartadas(), getFugasDetectadas());
+    }
+
+    // ------------------ Internos ------------------
+
+    private ConexionFisica abrirFisica() throws SQLException {
+        Connection conexion = DriverManager.getConnection(url, propiedades);
+        conexionesCreadas.incrementAndGet();
+        return new ConexionFisica(conexion);
+    }
+
+    private boolean esValida(ConexionFisica fisica) {
+        try {
+            return fisica.conexion.isValid(timeoutValidacionSeg);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection prestar(ConexionFisica fisica) {
+        fisica.prestadaDesde = System.currentTimeMillis();
+        fisica.pilaDelPrestamo = new Throwable("Conexión prestada aquí");
+        fisica.fugaReportada = false;
+        prestadas.add(fisica);
+        prestamosTotales.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConexionPrestada(fisica));
+    }
+
+    // Vuelve a dejar la conexión disponible; si quedó en un estado dudoso, la descarto.
+    private void devolver(ConexionFisica fisica) {
+        prestadas.remove(fisica);
+        boolean reutilizable;
+        try {
+            reutilizable = !fisica.conexion.isClosed();
+            if (reutilizable && !fisica.conexion.getAutoCommit()) {
+                // Un llamador dejó una transacción abierta: la deshago para no contaminar al siguiente.
+                fisica.conexion.rollback();
+                fisica.conexion.setAutoCommit(true);
+            }
+            if (reutilizable && fisica.conexion.isReadOnly()) {
+                fisica.conexion.setReadOnly(false);
+            }
+        } catch (SQLException e) {
+            reutilizable = false;
+        }
+
+        if (!reutilizable) {
+            descartar(fisica);
+            return;
+        }
+
+        synchronized (this) {
+            if (cerrado) {
+                cerrarSilenciosamente(fisica.conexion);
+                totalAbiertas--;
+            } else {
+                fisica.ultimoUso = System.currentTimeMillis();
+                libres.push(fisica);
+            }
+            notifyAll();
+        }
+    }
+
+    private void descartar(ConexionFisica fisica) {
+        cerrarSilenciosamente(fisica.conexion);
+        conexionesDescartadas.incrementAndGet();
+        liberarCupo();
+    }
+
+    private synchronized void liberarCupo() {
+        totalAbiertas--;
+        notifyAll();
+    }
+
+    private void registrarEspera(long esperaNs) {
+        esperaAcumuladaNs.addAndGet(esperaNs);
+        esperaMaximaNs.accumulateAndGet(esperaNs, Math::max);
+        RegistroDeMetricas.getInstancia().registrar(nombreDeMetrica, esperaNs, 0, false);
+    }
+
+    /*
+     * Tarea periódica: cierra las ociosas que superan el tiempo máximo (sin bajar del mínimo)
+     * y avisa de las conexiones prestadas hace más del umbral de fuga.
+     */
+    private void mantener() {
+        long ahora = System.currentTimeMillis();
+
+        synchronized (this) {
+            // Recorro desde la más antigua (el fondo del deque) porque las recientes están arriba.
+            Iterator<ConexionFisica> it = libres.descendingIterator();
+            while (it.hasNext() && totalAbiertas > tamanioMinimo) {
+                ConexionFisica fisica = it.next();
+                if (ahora - fisica.ultimoUso > tiempoOciosoMaximoMs) {
+                    it.remove();
+                    cerrarSilenciosamente(fisica.conexion);
+                    totalAbiertas--;
+                }
+            }
+        }
+
+        for (ConexionFisica fisica : prestadas) {
+            if (!fisica.fugaReportada && ahora - fisica.prestadaDesde > umbralFugaMs) {
+                fisica.fugaReportada = true;
+                fugasDetectadas.incrementAndGet();
+                System.err.println("ADVERTENCIA POOL: Conexión prestada hace " + (ahora - fisica.prestadaDesde)
+                        + " ms sin devolverse (posible fuga).");
+                fisica.pilaDelPrestamo.printStackTrace();
+            }
+        }
+    }
+
+    private static void cerrarSilenciosamente(Connection conexion) {
+        try {
+            conexion.close();
+        } catch (SQLException e) {
+            System.err.println("Error al cerrar la conexión: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Conexión física junto con los datos que necesito para el desalojo y la detección de fugas.
+     */
+    private static final class ConexionFisica {
+        final Connection conexion;
+        volatile long ultimoUso;
+        volatile long prestadaDesde;
+        volatile Throwable pilaDelPrestamo;
+        volatile boolean fugaReportada;
+
+        ConexionFisica(Connection conexion) {
+            this.conexion = conexion;
+        }
+    }
+
+    /*
+     * Envoltorio que entrego al DAO: delega todo en la conexión física salvo close(),
+     * que en lugar de cerrarla la devuelve al pool (una sola vez). Los Statement que crea salen envueltos
+     * para el registro de consultas lentas.
+     */
+    private final class ConexionPrestada implements InvocationHandler {
+        private final ConexionFisica fisica;
+        private boolean devuelta = false;
+
+        ConexionPrestada(ConexionFisica fisica) {
+            this.fisica = fisica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+            switch (metodo.getName()) {
+                case "close":
+                    if (!devuelta) {
+                        devuelta = true;
+                        devolver(fisica);
+                    }
+                    return null;
+                case "isClosed":
+                    return devuelta || fisica.conexion.isClosed();
+                case "unwrap":
+                    if (args != null && args.length == 1 && ((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConexionPrestada(" + fisica.conexion + ")";
+                default:
+                    break;
+            }
+            if (devuelta) {
+                throw new SQLException("La conexión ya fue devuelta al pool.");
+            }
+            Object resultado;
+            try {
+                resultado = metodo.invoke(fisica.conexion, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (resultado instanceof Statement && consultasLentas.estaActivo()) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return consultasLentas.envolver(metodo.getReturnType(), (Statement) resultado, sql);
+            }
+            return resultado;
+        }
+    }
+}
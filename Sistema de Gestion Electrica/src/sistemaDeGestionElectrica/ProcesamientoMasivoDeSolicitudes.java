@@ -0,0 +1,199 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Clase ProcesamientoMasivoDeSolicitudes.
+ * Finaliza muchas Solicitudes de Servicio de una vez (ej: las reconexiones después de una tormenta) con
+ * sentencias por conjunto: por cada tramo de 'solicitudesPorTransaccion' hay un SELECT ... FOR UPDATE y un
+ * UPDATE ... WHERE id IN (...) por tabla, todos en una sola transacción, en vez de tres UPDATE por solicitud.
+ *
+ * Solo se procesan las solicitudes que siguen en el estado con el que se leyeron (otro operario pudo haberlas
+ * procesado mientras tanto) y cuyo cliente tiene un Medidor; las demás se informan al llamador con el motivo.
+ * Si un tramo falla, se deshace y sus solicitudes se reintentan de a una, como en CargaMasivaDeMedidores.
+ * Los UPDATE también incrementan la versión de cada fila, para que las actualizaciones optimistas que estén en
+ * curso en otras sesiones detecten el cambio (ver ConflictoDeVersionException).
+ */
+public class ProcesamientoMasivoDeSolicitudes {
+
+    // Estado actual de cada solicitud del tramo y el medidor de su cliente (el de menor id, como getMedidorAsociadoACliente).
+    static final String SQL_BLOQUEAR_SOLICITUDES =
+            "SELECT s.idSolicitud, s.EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio AS idEstado, " +
+            "(SELECT MIN(m.idMedidor) FROM Medidor m WHERE m.Cliente_idCliente = s.Cliente_idCliente) AS idMedidor " +
+            "FROM SolicitudDeServicio s WHERE s.idSolicitud IN "; // + "(?, ?, ...) FOR UPDATE"
+    static final String SQL_ACTUALIZAR_MEDIDORES =
+            "UPDATE Medidor SET EstadoDeMedidor_idEstadoDeMedidor = ?, fecha = ?, version = version + 1 WHERE idMedidor IN "; // + "(?, ?, ...)"
+    static final String SQL_ACTIVAR_SERVICIOS =
+            "UPDATE Servicio SET fechaActivacion = ?, version = version + 1 WHERE Medidor_idMedidor IN "; // + "(?, ?, ...)"
+    static final String SQL_FINALIZAR_SOLICITUDES =
+            "UPDATE SolicitudDeServicio SET EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio = ?, version = version + 1 WHERE idSolicitud IN "; // + "(?, ?, ...)"
+
+    private final RepositorioDAOJDBC repositorioDAO; // Para invalidar la caché de los medidores modificados.
+    private final int solicitudesPorTransaccion;
+
+    public ProcesamientoMasivoDeSolicitudes(RepositorioDAOJDBC repositorioDAO, int solicitudesPorTransaccion) {
+        if (solicitudesPorTransaccion < 1) {
+            throw new IllegalArgumentException("Las solicitudes por transacción deben ser positivas.");
+        }
+        this.repositorioDAO = repositorioDAO;
+        this.solicitudesPorTransaccion = solicitudesPorTransaccion;
+    }
+
+    /**
+     * Aplica el nuevo estado a los medidores y deja las solicitudes en 'estadoFinal'.
+     * @param activarServicio true si además se registra la fecha de activación del Servicio de cada medidor.
+     * @param alFallar Recibe cada solicitud que no se procesó y el motivo.
+     * @return Cantidad de solicitudes finalizadas.
+     * @throws SQLException Si falla la conexión (los errores de solicitudes individuales no se propagan).
+     */
+    public int finalizar(List<SolicitudDeServicio> solicitudes, EstadoDeMedidor nuevoEstado, EstadoDeSolicitudDeServicio estadoFinal,
+                         boolean activarServicio, BiConsumer<SolicitudDeServicio, String> alFallar) throws SQLException {
+
+        Timestamp ahora = new Timestamp(System.currentTimeMillis()); // Misma fecha para todo el proceso.
+        int finalizadas = 0;
+        Set<Integer> medidoresAfectados = new HashSet<>();
+
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (int desde = 0; desde < solicitudes.size(); desde += solicitudesPorTransaccion) {
+                    List<SolicitudDeServicio> tramo = solicitudes.subList(desde, Math.min(desde + solicitudesPorTransaccion, solicitudes.size()));
+                    List<String> motivos = new ArrayList<>();
+                    try {
+                        finalizadas += procesarTramo(conn, tramo, nuevoEstado, estadoFinal, activarServicio, ahora, medidoresAfectados, motivos);
+                        conn.commit();
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        finalizadas += procesarDeAUna(conn, tramo, nuevoEstado, estadoFinal, activarServicio, ahora, medidoresAfectados, alFallar);
+                        continue;
+                    }
+                    informar(tramo, motivos, alFallar);
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            medidoresAfectados.forEach(repositorioDAO::invalidarCacheMedidor);
+        }
+
+        return finalizadas;
+    }
+
+    // ------------------ Internos ------------------
+
+    /*
+     * Un tramo, sin commit: bloquea las solicitudes, descarta las que no se pueden procesar (dejando su motivo
+     * en la misma posición de 'motivos') y actualiza el resto con un UPDATE por tabla.
+     */
+    private int procesarTramo(Connection conn, List<SolicitudDeServicio> tramo, EstadoDeMedidor nuevoEstado,
+                              EstadoDeSolicitudDeServicio estadoFinal, boolean activarServicio, Timestamp ahora,
+                              Set<Integer> medidoresAfectados, List<String> motivos) throws SQLException {
+
+        Map<Integer, int[]> actuales = new HashMap<>(); // idSolicitud -> {idEstado, idMedidor (0 si no tiene)}
+        try (PreparedStatement ps = conn.prepareStatement(SQL_BLOQUEAR_SOLICITUDES + marcadores(tramo.size()) + " FOR UPDATE")) {
+            for (int i = 0; i < tramo.size(); i++) {
+                ps.setInt(i + 1, tramo.get(i).getIdSolicitud());
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    actuales.put(rs.getInt("idSolicitud"), new int[]{rs.getInt("idEstado"), rs.getInt("idMedidor")});
+                }
+            }
+        }
+
+        List<Integer> idsSolicitud = new ArrayList<>();
+        List<Integer> idsMedidor = new ArrayList<>();
+        for (SolicitudDeServicio solicitud : tramo) {
+            int[] actual = actuales.get(solicitud.getIdSolicitud());
+            String motivo = null;
+            if (actual == null) {
+                motivo = "La solicitud ya no existe.";
+            } else if (actual[0] != solicitud.getEstadoDeSolicitudDeServicio().getIdEstadoDeSolicitudDeServicio()) {
+                motivo = "La solicitud ya no está en estado '" + solicitud.getEstadoDeSolicitudDeServicio().getNombre() + "' (la procesó otro operario).";
+            } else if (actual[1] == 0) {
+                motivo = "El cliente no tiene un Medidor asociado.";
+            } else {
+                idsSolicitud.add(solicitud.getIdSolicitud());
+                idsMedidor.add(actual[1]);
+            }
+            motivos.add(motivo);
+        }
+        if (idsSolicitud.isEmpty()) {
+            return 0;
+        }
+
+        actualizarPorConjunto(conn, SQL_ACTUALIZAR_MEDIDORES, idsMedidor, nuevoEstado.getIdEstadoDeMedidor(), ahora);
+        if (activarServicio) {
+            actualizarPorConjunto(conn, SQL_ACTIVAR_SERVICIOS, idsMedidor, new java.sql.Date(ahora.getTime()));
+        }
+        actualizarPorConjunto(conn, SQL_FINALIZAR_SOLICITUDES, idsSolicitud, estadoFinal.getIdEstadoDeSolicitudDeServicio());
+        medidoresAfectados.addAll(idsMedidor);
+        return idsSolicitud.size();
+    }
+
+    // Reintenta un tramo fallido solicitud por solicitud, con un commit por cada una, para aislar las que fallan.
+    private int procesarDeAUna(Connection conn, List<SolicitudDeServicio> tramo, EstadoDeMedidor nuevoEstado,
+                               EstadoDeSolicitudDeServicio estadoFinal, boolean activarServicio, Timestamp ahora,
+                               Set<Integer> medidoresAfectados, BiConsumer<SolicitudDeServicio, String> alFallar) throws SQLException {
+        int finalizadas = 0;
+        for (SolicitudDeServicio solicitud : tramo) {
+            List<SolicitudDeServicio> una = List.of(solicitud);
+            List<String> motivos = new ArrayList<>();
+            try {
+                finalizadas += procesarTramo(conn, una, nuevoEstado, estadoFinal, activarServicio, ahora, medidoresAfectados, motivos);
+                conn.commit();
+                informar(una, motivos, alFallar);
+            } catch (SQLException e) {
+                conn.rollback();
+                alFallar.accept(solicitud, "Error de BD: " + e.getMessage());
+            }
+        }
+        return finalizadas;
+    }
+
+    private static void informar(List<SolicitudDeServicio> tramo, List<String> motivos, BiConsumer<SolicitudDeServicio, String> alFallar) {
+        for (int i = 0; i < motivos.size(); i++) {
+            if (motivos.get(i) != null) {
+                alFallar.accept(tramo.get(i), motivos.get(i));
+            }
+        }
+    }
+
+    // Ejecuta "sql + (?, ?, ...)" con los valores fijos primero y después los IDs.
+    private static void actualizarPorConjunto(Connection conn, String sql, List<Integer> ids, Object... valores) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql + marcadores(ids.size()))) {
+            int indice = 1;
+            for (Object valor : valores) {
+                ps.setObject(indice++, valor);
+            }
+            for (Integer id : ids) {
+                ps.setInt(indice++, id);
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    private static String marcadores(int cantidad) {
+        StringBuilder sql = new StringBuilder("(");
+        for (int i = 0; i < cantidad; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.append(')').toString();
+    }
+}
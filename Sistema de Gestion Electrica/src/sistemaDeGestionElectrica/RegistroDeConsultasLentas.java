@@ -0,0 +1,523 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Clase RegistroDeConsultasLentas.
+ * Registro de las sentencias SQL que superan un umbral de duración (-Dsgre.lentas.umbralMs, 200 por defecto;
+ * negativo lo desactiva). PoolDeConexiones envuelve cada Statement que presta, así que quedan cubiertas todas
+ * las consultas del DAO sin tocar sus métodos.
+ *
+ * Por cada sentencia lenta escribo una línea con su duración, filas, SQL y parámetros (los que van contra una
+ * columna de contraseña se ocultan) en un archivo rotativo de java.util.logging (-Dsgre.lentas.archivo).
+ * La primera vez que aparece una "huella" (el SQL sin valores literales, con las listas IN colapsadas) ejecuto
+ * EXPLAIN en un hilo aparte y guardo el plan en el mismo archivo; las siguientes apariciones solo se cuentan.
+ *
+ * Duración: la ejecución más el tiempo dentro de ResultSet.next(), sin contar lo que el llamador hace con
+ * cada fila (así un recorrido largo con CursorDeFilas no aparece como lento por culpa del consumidor).
+ */
+public class RegistroDeConsultasLentas {
+
+    private static final RegistroDeConsultasLentas INSTANCIA = new RegistroDeConsultasLentas();
+
+    // --- Configuración (se puede sobrescribir con -Dsgre.lentas.*) ---
+    private static final long UMBRAL_MS = Long.getLong("sgre.lentas.umbralMs", 200L);
+    private static final String ARCHIVO = System.getProperty("sgre.lentas.archivo", "sgre-consultas-lentas.%g.log");
+    private static final int LIMITE_BYTES = Integer.getInteger("sgre.lentas.limiteBytes", 10 * 1024 * 1024); // Tamaño de cada archivo.
+    private static final int ARCHIVOS = Integer.getInteger("sgre.lentas.archivos", 5); // Archivos que se conservan al rotar.
+    private static final int MAXIMO_DE_HUELLAS = Integer.getInteger("sgre.lentas.maxHuellas", 1_000); // Tope de huellas distintas.
+
+    private static final int LARGO_MAXIMO_DE_VALOR = 100; // Los parámetros más largos se recortan en el log.
+    private static final String OCULTO = "****";
+
+    // Columna comparada justo antes de un '?': "u.contraseña = ?", "x LIKE ?"...
+    private static final Pattern COLUMNA_ANTES_DEL_MARCADOR =
+            Pattern.compile("([\\p{L}\\p{N}_.`]+)\\s*(?:=|<>|!=|<=|>=|<|>|\\blike\\b)\\s*\\(?\\s*$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern INSERT_CON_COLUMNAS =
+            Pattern.compile("^\\s*(?:insert|replace)\\s+(?:ignore\\s+)?into\\s+\\S+\\s*\\(([^)]*)\\)\\s*values", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COLUMNA_SENSIBLE =
+            Pattern.compile("contrase(?:ñ|n)a|password|clave", Pattern.CASE_INSENSITIVE);
+    private static final Pattern EXPLICABLE =
+            Pattern.compile("^\\s*\\(?\\s*(?:select|insert|replace|update|delete)\\b", Pattern.CASE_INSENSITIVE);
+
+    /*
+     * Una huella: todas las ejecuciones lentas de la misma forma de sentencia.
+     */
+    public static final class ConsultaLenta {
+        private final String huella;
+        private final String id; // Identificador corto para cruzar el log con el plan.
+        private final LongAdder veces = new LongAdder();
+        private final LongAccumulator maximoMicros = new LongAccumulator(Math::max, 0);
+        private volatile String plan; // EXPLAIN, cuando termina de ejecutarse.
+
+        ConsultaLenta(String huella) {
+            this.huella = huella;
+            this.id = String.format("%08x", huella.hashCode());
+        }
+
+        public String getHuella() {
+            return huella;
+        }
+
+        public long getVeces() {
+            return veces.sum();
+        }
+
+        public double getMaximoMs() {
+            return maximoMicros.get() / 1_000.0;
+        }
+
+        public String getPlan() {
+            return plan;
+        }
+    }
+
+    private final Map<String, ConsultaLenta> huellas = new ConcurrentHashMap<>();
+    private final Logger log = Logger.getLogger("sistema.de.gestion.electrica.consultasLentas");
+    private volatile boolean logAbierto = false;
+    private final ThreadPoolExecutor explicador; // Un hilo para los EXPLAIN, para no demorar al llamador.
+
+    private RegistroDeConsultasLentas() {
+        log.setUseParentHandlers(false); // Solo al archivo, no a la consola.
+        explicador = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(100), r -> {
+            Thread t = new Thread(r, "sgre-explain");
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.DiscardPolicy()); // Si se acumulan, descarto: es diagnóstico.
+    }
+
+    /**
+     * @return Retorno la única instancia del registro.
+     */
+    public static RegistroDeConsultasLentas getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * @return true si hay un umbral configurado (si no, el pool ni siquiera envuelve los Statement).
+     */
+    public boolean estaActivo() {
+        return UMBRAL_MS >= 0;
+    }
+
+    /**
+     * Envuelve un Statement, PreparedStatement o CallableStatement recién creado para medir sus ejecuciones.
+     * @param tipo La interfaz que devolvió el método de la conexión (para que el proxy sea del mismo tipo).
+     * @param sql El SQL con el que se preparó, o null para un Statement simple.
+     */
+    public Statement envolver(Class<?> tipo, Statement sentencia, String sql) {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{tipo},
+                new SentenciaObservada(sentencia, sql));
+    }
+
+    /**
+     * @return Retorno las huellas lentas vistas desde el arranque, de la más frecuente a la menos.
+     */
+    public List<ConsultaLenta> getConsultasLentas() {
+        List<ConsultaLenta> lista = new ArrayList<>(huellas.values());
+        lista.sort(Comparator.comparingLong(ConsultaLenta::getVeces).reversed());
+        return lista;
+    }
+
+    /**
+     * @return Retorno un resumen de las huellas lentas más frecuentes para mostrar por consola.
+     */
+    public String resumen() {
+        if (!estaActivo()) {
+            return "Registro de consultas lentas desactivado.";
+        }
+        List<ConsultaLenta> lista = getConsultasLentas();
+        if (lista.isEmpty()) {
+            return "Sin consultas más lentas que " + UMBRAL_MS + " ms.";
+        }
+        StringBuilder texto = new StringBuilder("Consultas lentas (> " + UMBRAL_MS + " ms, detalle en " + ARCHIVO + "):\n");
+        for (ConsultaLenta c : lista.subList(0, Math.min(10, lista.size()))) {
+            String sql = c.huella.length() > 90 ? c.huella.substring(0, 87) + "..." : c.huella;
+            texto.append(String.format("  %s %6d veces  máx %9.3f ms  %s  %s%n",
+                    c.id, c.getVeces(), c.getMaximoMs(), c.plan != null ? "[plan]" : "      ", sql));
+        }
+        return texto.toString().stripTrailing();
+    }
+
+    // ------------------ Internos ------------------
+
+    /*
+     * Fin de una ejecución: si supera el umbral, la escribo en el log y, si la huella es nueva, pido su EXPLAIN.
+     */
+    private void registrar(String sql, List<Object> parametros, int lote, long nanos, long filas) {
+        if (sql == null || nanos < TimeUnit.MILLISECONDS.toNanos(UMBRAL_MS)) {
+            return;
+        }
+        String huella = huella(sql);
+        if (huella.startsWith("explain ")) {
+            return; // Mis propios EXPLAIN.
+        }
+        ConsultaLenta consulta = huellas.get(huella);
+        boolean nueva = false;
+        if (consulta == null && huellas.size() < MAXIMO_DE_HUELLAS) {
+            ConsultaLenta creada = new ConsultaLenta(huella);
+            consulta = huellas.putIfAbsent(huella, creada);
+            if (consulta == null) {
+                consulta = creada;
+                nueva = true;
+            }
+        }
+
+        String id = consulta != null ? consulta.id : String.format("%08x", huella.hashCode());
+        if (consulta != null) {
+            consulta.veces.increment();
+            consulta.maximoMicros.accumulate(nanos / 1_000);
+        }
+        escribir(String.format("LENTA %.3f ms filas=%d huella=%s%s sql=%s parametros=%s",
+                nanos / 1_000_000.0, filas, id, lote > 0 ? " lote=" + lote : "",
+                sql.replaceAll("\\s+", " ").trim(), parametrosParaElLog(sql, parametros)));
+
+        if (nueva && EXPLICABLE.matcher(sql).find()) {
+            ConsultaLenta aExplicar = consulta;
+            Object[] valores = parametros.toArray(); // Los valores reales: se usan para el plan, no se escriben.
+            explicador.execute(() -> explicar(aExplicar, sql, valores));
+        }
+    }
+
+    // Ejecuta EXPLAIN con los mismos parámetros y guarda el plan en la huella y en el log.
+    private void explicar(ConsultaLenta consulta, String sql, Object[] valores) {
+        StringBuilder plan = new StringBuilder();
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < valores.length; i++) {
+                ps.setObject(i + 1, valores[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                while (rs.next()) {
+                    plan.append("\n    ");
+                    for (int c = 1; c <= meta.getColumnCount(); c++) {
+                        String valor = rs.getString(c);
+                        if (valor != null) {
+                            plan.append(meta.getColumnLabel(c)).append('=').append(valor).append(' ');
+                        }
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            escribir("EXPLAIN huella=" + consulta.id + " No se pudo obtener el plan: " + e.getMessage());
+            return;
+        }
+        consulta.plan = plan.toString().trim();
+        escribir("EXPLAIN huella=" + consulta.id + " sql=" + consulta.huella + plan);
+    }
+
+    private void escribir(String linea) {
+        if (!logAbierto) {
+            abrirLog();
+        }
+        log.info(linea);
+    }
+
+    // Abro el archivo recién con la primera consulta lenta, para no crearlo en las ejecuciones que no tienen ninguna.
+    private synchronized void abrirLog() {
+        if (logAbierto) {
+            return;
+        }
+        try {
+            FileHandler archivo = new FileHandler(ARCHIVO, LIMITE_BYTES, ARCHIVOS, true);
+            archivo.setEncoding("UTF-8");
+            archivo.setFormatter(new Formatter() {
+                private final SimpleDateFormat formato = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+                @Override
+                public synchronized String format(LogRecord registro) {
+                    return formato.format(new Date(registro.getMillis())) + " " + registro.getMessage() + System.lineSeparator();
+                }
+            });
+            log.addHandler(archivo);
+        } catch (IOException | SecurityException e) {
+            System.err.println("No se pudo abrir el log de consultas lentas (" + ARCHIVO + "): " + e.getMessage());
+        }
+        logAbierto = true; // Aunque falle, no lo reintento en cada consulta.
+    }
+
+    /*
+     * Huella de una sentencia: minúsculas, espacios colapsados, literales reemplazados por '?',
+     * listas "IN (?, ?, ?)" como "(?+)" y varias filas de VALUES como una sola.
+     */
+    static String huella(String sql) {
+        String h = sql.replaceAll("'(?:[^'\\\\]|\\\\.|'')*'", "?")
+                .replaceAll("\\b\\d+(?:\\.\\d+)?\\b", "?")
+                .replaceAll("\\s+", " ")
+                .trim()
+                .toLowerCase();
+        h = h.replaceAll("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)", "(?+)");
+        return h.replaceAll("(\\((?:\\?\\+|\\?)\\))(?:\\s*,\\s*\\((?:\\?\\+|\\?)\\))+", "$1...");
+    }
+
+    /*
+     * Los parámetros en el orden de sus marcadores, ocultando los que van contra una columna de contraseña
+     * (por comparación "contraseña = ?" o por posición en la lista de columnas de un INSERT).
+     */
+    static String parametrosParaElLog(String sql, List<Object> parametros) {
+        if (parametros.isEmpty()) {
+            return "[]";
+        }
+        boolean[] sensibles = marcadoresSensibles(sql, parametros.size());
+        List<String> valores = new ArrayList<>(parametros.size());
+        for (int i = 0; i < parametros.size(); i++) {
+            Object valor = parametros.get(i);
+            if (sensibles[i]) {
+                valores.add(OCULTO);
+            } else if (valor == null) {
+                valores.add("NULL");
+            } else {
+                String texto = valor.toString();
+                valores.add(texto.length() > LARGO_MAXIMO_DE_VALOR ? texto.substring(0, LARGO_MAXIMO_DE_VALOR) + "..." : texto);
+            }
+        }
+        return valores.toString();
+    }
+
+    private static boolean[] marcadoresSensibles(String sql, int cantidad) {
+        boolean[] sensibles = new boolean[cantidad];
+        Matcher insert = INSERT_CON_COLUMNAS.matcher(sql);
+        List<String> columnasDelInsert = insert.find() ? Arrays.asList(insert.group(1).split(",")) : List.of();
+        int inicioDeValues = columnasDelInsert.isEmpty() ? -1 : insert.end();
+
+        int marcador = 0;
+        boolean enLiteral = false;
+        for (int i = 0; i < sql.length() && marcador < cantidad; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                enLiteral = !enLiteral;
+            } else if (c == '?' && !enLiteral) {
+                String columna = null;
+                if (inicioDeValues >= 0 && i > inicioDeValues) {
+                    columna = columnasDelInsert.get(marcador % columnasDelInsert.size());
+                } else {
+                    Matcher antes = COLUMNA_ANTES_DEL_MARCADOR.matcher(sql.substring(Math.max(0, i - 80), i));
+                    if (antes.find()) {
+                        columna = antes.group(1);
+                    }
+                }
+                sensibles[marcador++] = columna != null && COLUMNA_SENSIBLE.matcher(columna).find();
+            }
+        }
+        return sensibles;
+    }
+
+    private static Object invocar(Object destino, Method metodo, Object[] args) throws Throwable {
+        try {
+            return metodo.invoke(destino, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /*
+     * Proxy de un Statement: guarda los parámetros que se van fijando y mide cada ejecución.
+     * Una consulta (executeQuery) termina al cerrar su ResultSet, o el Statement, o al ejecutar otra.
+     */
+    private final class SentenciaObservada implements InvocationHandler {
+        private final Statement sentencia;
+        private final String sqlPreparado; // null para un Statement simple: el SQL llega en cada execute.
+        private final List<Object> parametros = new ArrayList<>();
+        private int filasDelLote = 0;
+        private FilasObservadas consultaAbierta;
+
+        SentenciaObservada(Statement sentencia, String sqlPreparado) {
+            this.sentencia = sentencia;
+            this.sqlPreparado = sqlPreparado;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+            String nombre = metodo.getName();
+            if (nombre.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer
+                    && metodo.getDeclaringClass() != Statement.class) {
+                fijarParametro((Integer) args[0], nombre.equals("setNull") ? null : args[1]);
+                return invocar(sentencia, metodo, args);
+            }
+            switch (nombre) {
+                case "clearParameters":
+                    parametros.clear();
+                    break;
+                case "addBatch":
+                    filasDelLote++;
+                    break;
+                case "clearBatch":
+                    filasDelLote = 0;
+                    break;
+                case "close":
+                    terminarConsultaAbierta();
+                    break;
+                case "executeQuery":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "execute":
+                case "executeBatch":
+                case "executeLargeBatch":
+                    return ejecutar(proxy, metodo, args);
+                case "getResultSet":
+                    ResultSet rs = (ResultSet) invocar(sentencia, metodo, args);
+                    return rs == null || consultaAbierta == null ? rs : observarFilas(proxy, rs, consultaAbierta);
+                default:
+                    break;
+            }
+            return invocar(sentencia, metodo, args);
+        }
+
+        private void fijarParametro(int indice, Object valor) {
+            while (parametros.size() < indice) {
+                parametros.add(null);
+            }
+            parametros.set(indice - 1, valor);
+        }
+
+        private Object ejecutar(Object proxy, Method metodo, Object[] args) throws Throwable {
+            terminarConsultaAbierta();
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sqlPreparado;
+            List<Object> valores = new ArrayList<>(parametros);
+            int lote = metodo.getName().endsWith("Batch") ? filasDelLote : 0;
+
+            long inicio = System.nanoTime();
+            Object resultado = invocar(sentencia, metodo, args);
+            long nanos = System.nanoTime() - inicio;
+            if (lote > 0) {
+                filasDelLote = 0;
+            }
+
+            if (resultado instanceof ResultSet) {
+                consultaAbierta = new FilasObservadas(sql, valores, nanos);
+                return observarFilas(proxy, (ResultSet) resultado, consultaAbierta);
+            }
+            if (Boolean.TRUE.equals(resultado)) { // execute() con resultados: se leen con getResultSet().
+                consultaAbierta = new FilasObservadas(sql, valores, nanos);
+                return resultado;
+            }
+            registrar(sql, valores, lote, nanos, filasAfectadas(resultado));
+            return resultado;
+        }
+
+        private ResultSet observarFilas(Object proxy, ResultSet rs, FilasObservadas consulta) {
+            consulta.sentenciaProxy = (Statement) proxy;
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    new ResultadoObservado(rs, consulta));
+        }
+
+        private void terminarConsultaAbierta() {
+            if (consultaAbierta != null) {
+                consultaAbierta.terminar();
+                consultaAbierta = null;
+            }
+        }
+    }
+
+    // Filas de executeUpdate / executeBatch (SUCCESS_NO_INFO cuenta como una).
+    private static long filasAfectadas(Object resultado) {
+        if (resultado instanceof Number) {
+            return Math.max(0, ((Number) resultado).longValue());
+        }
+        long total = 0;
+        if (resultado instanceof int[]) {
+            for (int n : (int[]) resultado) {
+                total += n == Statement.SUCCESS_NO_INFO ? 1 : Math.max(0, n);
+            }
+        } else if (resultado instanceof long[]) {
+            for (long n : (long[]) resultado) {
+                total += n == Statement.SUCCESS_NO_INFO ? 1 : Math.max(0, n);
+            }
+        }
+        return total;
+    }
+
+    /*
+     * Una consulta en curso: acumula el tiempo de ejecución y el de cada next(), y cuenta las filas.
+     */
+    private final class FilasObservadas {
+        final String sql;
+        final List<Object> parametros;
+        long nanos;
+        long filas = 0;
+        boolean terminada = false;
+        Statement sentenciaProxy;
+
+        FilasObservadas(String sql, List<Object> parametros, long nanosDeEjecucion) {
+            this.sql = sql;
+            this.parametros = parametros;
+            this.nanos = nanosDeEjecucion;
+        }
+
+        void terminar() {
+            if (!terminada) {
+                terminada = true;
+                registrar(sql, parametros, 0, nanos, filas);
+            }
+        }
+    }
+
+    private static final class ResultadoObservado implements InvocationHandler {
+        private final ResultSet resultado;
+        private final FilasObservadas consulta;
+
+        ResultadoObservado(ResultSet resultado, FilasObservadas consulta) {
+            this.resultado = resultado;
+            this.consulta = consulta;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+            switch (metodo.getName()) {
+                case "next":
+                    long inicio = System.nanoTime();
+                    Object hay = invocar(resultado, metodo, args);
+                    consulta.nanos += System.nanoTime() - inicio;
+                    if (Boolean.TRUE.equals(hay)) {
+                        consulta.filas++;
+                    }
+                    return hay;
+                case "close":
+                    try {
+                        return invocar(resultado, metodo, args);
+                    } finally {
+                        consulta.terminar();
+                    }
+                case "getStatement":
+                    return consulta.sentenciaProxy;
+                default:
+                    return invocar(resultado, metodo, args);
+            }
+        }
+    }
+}
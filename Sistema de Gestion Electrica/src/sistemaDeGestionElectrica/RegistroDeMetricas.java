@@ -0,0 +1,138 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Clase RegistroDeMetricas.
+ * Registro en memoria de las métricas de rendimiento del sistema, por nombre de operación:
+ * - "dao.<método>": cada método de RepositorioDAO (ver RepositorioDAOMedido).
+ * - "CU00x ...": cada caso de uso de los controladores, de punta a punta.
+ * - "pool.obtenerConexion ...": tiempo para conseguir una conexión de cada pool.
+ * Por cada una llevo un histograma de latencia (p50/p99/p99.9), llamadas, errores y filas devueltas.
+ * Es una única instancia compartida; el operario la vuelca por consola desde su menú.
+ */
+public class RegistroDeMetricas {
+
+    private static final RegistroDeMetricas INSTANCIA = new RegistroDeMetricas();
+
+    /*
+     * Una operación que se mide y puede lanzar SQLException.
+     */
+    @FunctionalInterface
+    public interface OperacionMedida<T> {
+        T ejecutar() throws SQLException;
+    }
+
+    /*
+     * Métricas acumuladas de una operación.
+     */
+    public static final class Metrica {
+        private final HistogramaDeLatencia latencia = new HistogramaDeLatencia();
+        private final LongAdder errores = new LongAdder();
+        private final LongAdder filas = new LongAdder();
+
+        public HistogramaDeLatencia getLatencia() {
+            return latencia;
+        }
+
+        public long getLlamadas() {
+            return latencia.getCantidad();
+        }
+
+        public long getErrores() {
+            return errores.sum();
+        }
+
+        public long getFilas() {
+            return filas.sum();
+        }
+
+        // Las filas de un recorrido (Stream) se suman a medida que se leen.
+        public void sumarFilas(long cantidad) {
+            filas.add(cantidad);
+        }
+    }
+
+    private final Map<String, Metrica> metricas = new ConcurrentHashMap<>();
+
+    private RegistroDeMetricas() {}
+
+    /**
+     * @return Retorno la única instancia del registro.
+     */
+    public static RegistroDeMetricas getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * @return Retorno la métrica de una operación, creándola si es la primera vez.
+     */
+    public Metrica getMetrica(String nombre) {
+        return metricas.computeIfAbsent(nombre, n -> new Metrica());
+    }
+
+    /**
+     * Registra una ejecución ya medida.
+     * @param nanos Duración medida con System.nanoTime().
+     * @param filas Filas devueltas (0 si no aplica).
+     * @param error true si la operación terminó con una excepción.
+     */
+    public void registrar(String nombre, long nanos, long filas, boolean error) {
+        Metrica metrica = getMetrica(nombre);
+        metrica.latencia.registrar(nanos);
+        metrica.filas.add(filas);
+        if (error) {
+            metrica.errores.increment();
+        }
+    }
+
+    /**
+     * Ejecuta la operación midiendo su duración; si lanza una excepción, la cuenta como error y la propaga.
+     */
+    public <T> T medir(String nombre, OperacionMedida<T> operacion) throws SQLException {
+        long inicio = System.nanoTime();
+        boolean error = true;
+        try {
+            T resultado = operacion.ejecutar();
+            error = false;
+            return resultado;
+        } finally {
+            registrar(nombre, System.nanoTime() - inicio, 0, error);
+        }
+    }
+
+    /**
+     * Vuelve a cero todas las métricas (ej: antes de una prueba de carga).
+     */
+    public void reiniciar() {
+        metricas.clear();
+    }
+
+    /**
+     * @return Retorno una tabla con las métricas de todas las operaciones, ordenadas por nombre.
+     */
+    public String resumen() {
+        if (metricas.isEmpty()) {
+            return "Todavía no hay métricas registradas.";
+        }
+        StringBuilder tabla = new StringBuilder(String.format("%-52s %9s %7s %10s %9s %9s %9s %9s %9s%n",
+                "Operación", "Llamadas", "Errores", "Filas", "Prom(ms)", "p50(ms)", "p99(ms)", "p99.9(ms)", "Máx(ms)"));
+        for (Map.Entry<String, Metrica> entrada : new TreeMap<>(metricas).entrySet()) {
+            Metrica m = entrada.getValue();
+            HistogramaDeLatencia h = m.latencia;
+            tabla.append(String.format("%-52s %9d %7d %10d %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+                    entrada.getKey(), m.getLlamadas(), m.getErrores(), m.getFilas(), h.getPromedioMs(),
+                    h.getPercentilMs(50), h.getPercentilMs(99), h.getPercentilMs(99.9), h.getMaximoMs()));
+        }
+        return tabla.toString();
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Clase RegistroDeReferencia.
+ * Mantengo en memoria las tablas de referencia casi estáticas (EstadoDeMedidor, EstadoDeSolicitudDeServicio,
+ * TipoDeSolicitud y Permisos), cargadas una vez al arrancar, con búsqueda O(1) por id y por nombre.
+ * Es una única instancia compartida por el DAO y, a través de él, por todos los controladores.
+ */
+public class RegistroDeReferencia {
+
+    private static final RegistroDeReferencia INSTANCIA = new RegistroDeReferencia();
+
+    // Instantánea inmutable de las cuatro tablas; refrescar() la reemplaza de forma atómica.
+    private volatile Datos datos;
+
+    private RegistroDeReferencia() {}
+
+    /**
+     * @return Retorno la única instancia del registro.
+     */
+    public static RegistroDeReferencia getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Carga las tablas de referencia si todavía no se cargaron. Lo llamo al inicio del sistema.
+     * @throws SQLException Si falla la lectura de alguna tabla.
+     */
+    public void cargar() throws SQLException {
+        if (datos == null) {
+            refrescar();
+        }
+    }
+
+    /**
+     * Vuelve a leer las cuatro tablas desde la BD (ej: después de dar de alta un nuevo estado).
+     * Mientras se lee, las consultas siguen viendo la instantánea anterior.
+     * @throws SQLException Si falla la lectura de alguna tabla.
+     */
+    public synchronized void refrescar() throws SQLException {
+        Datos nuevos = new Datos();
+
+        try (Connection conn = DBConnection.getConnectionLectura();
+             Statement stmt = conn.createStatement()) {
+
+            try (ResultSet rs = stmt.executeQuery("SELECT idEstadoDeMedidor, nombre FROM EstadoDeMedidor")) {
+                while (rs.next()) {
+                    EstadoDeMedidor e = new EstadoDeMedidor(rs.getInt("idEstadoDeMedidor"), rs.getString("nombre"));
+                    nuevos.estadosMedidorPorId.put(e.getIdEstadoDeMedidor(), e);
+                    nuevos.estadosMedidorPorNombre.put(clave(e.getNombre()), e);
+                }
+            }
+
+            try (ResultSet rs = stmt.executeQuery("SELECT idEstadoDeSolicitudDeServicio, nombre FROM EstadoDeSolicitudDeServicio")) {
+                while (rs.next()) {
+                    EstadoDeSolicitudDeServicio e = new EstadoDeSolicitudDeServicio(rs.getInt("idEstadoDeSolicitudDeServicio"), rs.getString("nombre"));
+                    nuevos.estadosSolicitudPorId.put(e.getIdEstadoDeSolicitudDeServicio(), e);
+                    nuevos.estadosSolicitudPorNombre.put(clave(e.getNombre()), e);
+                }
+            }
+
+            try (ResultSet rs = stmt.executeQuery("SELECT idTipoDeSolicitud, nombre FROM TipoDeSolicitud")) {
+                while (rs.next()) {
+                    TipoDeSolicitud t = new TipoDeSolicitud(rs.getInt("idTipoDeSolicitud"), rs.getString("nombre"));
+                    nuevos.tiposPorId.put(t.getIdTipoDeSolicitud(), t);
+                    nuevos.tiposPorNombre.put(clave(t.getNombre()), t);
+                }
+            }
+
+            try (ResultSet rs = stmt.executeQuery("SELECT idPermisos, nombre, descripcion FROM Permisos")) {
+                while (rs.next()) {
+                    Permisos p = new Permisos(rs.getInt("idPermisos"), rs.getString("nombre"), rs.getString("descripcion"));
+                    nuevos.permisosPorId.put(p.getIdPermisos(), p);
+                    nuevos.permisosPorNombre.put(clave(p.getNombre()), p);
+                }
+            }
+        }
+
+        this.datos = nuevos;
+        System.out.println("Datos de referencia cargados: " + nuevos.estadosMedidorPorId.size() + " estados de medidor, "
+                + nuevos.estadosSolicitudPorId.size() + " estados de solicitud, " + nuevos.tiposPorId.size()
+                + " tipos de solicitud, " + nuevos.permisosPorId.size() + " permisos.");
+    }
+
+    /**
+     * Publica los valores iniciales de SGRE.sql sin leer la BD. Lo usa RepositorioDAOEnMemoria,
+     * que funciona sin base de datos.
+     */
+    public synchronized void cargarValoresIniciales() {
+        Datos nuevos = new Datos();
+        String[] estadosMedidor = {"Activo", "Suspendido", "De Baja"};
+        for (int i = 0; i < estadosMedidor.length; i++) {
+            EstadoDeMedidor e = new EstadoDeMedidor(i + 1, estadosMedidor[i]);
+            nuevos.estadosMedidorPorId.put(e.getIdEstadoDeMedidor(), e);
+            nuevos.estadosMedidorPorNombre.put(clave(e.getNombre()), e);
+        }
+        String[] estadosSolicitud = {"Pendiente", "Finalizada"};
+        for (int i = 0; i < estadosSolicitud.length; i++) {
+            EstadoDeSolicitudDeServicio e = new EstadoDeSolicitudDeServicio(i + 1, estadosSolicitud[i]);
+            nuevos.estadosSolicitudPorId.put(e.getIdEstadoDeSolicitudDeServicio(), e);
+            nuevos.estadosSolicitudPorNombre.put(clave(e.getNombre()), e);
+        }
+        String[] tipos = {"Activación", "Suspensión", "Baja"};
+        for (int i = 0; i < tipos.length; i++) {
+            TipoDeSolicitud t = new TipoDeSolicitud(i + 1, tipos[i]);
+            nuevos.tiposPorId.put(t.getIdTipoDeSolicitud(), t);
+            nuevos.tiposPorNombre.put(clave(t.getNombre()), t);
+        }
+        String[][] permisos = {
+            {"Cliente", "Permisos para pagar facturas y solicitar servicios."},
+            {"Operario", "Permisos para gestionar medidores y solicitudes."},
+            {"Administrador", "Permisos para configuración y gestión total del sistema."}
+        };
+        for (int i = 0; i < permisos.length; i++) {
+            Permisos p = new Permisos(i + 1, permisos[i][0], permisos[i][1]);
+            nuevos.permisosPorId.put(p.getIdPermisos(), p);
+            nuevos.permisosPorNombre.put(clave(p.getNombre()), p);
+        }
+        this.datos = nuevos;
+    }
+
+    // ------------------ Búsquedas ------------------
+
+    public EstadoDeMedidor getEstadoMedidorPorID(int id) throws SQLException {
+        return getDatos().estadosMedidorPorId.get(id);
+    }
+
+    public EstadoDeMedidor getEstadoMedidorPorNombre(String nombre) throws SQLException {
+        return nombre == null ? null : getDatos().estadosMedidorPorNombre.get(clave(nombre));
+    }
+
+    public List<EstadoDeMedidor> getTodosLosEstadosDeMedidor() throws SQLException {
+        return Collections.unmodifiableList(new ArrayList<>(getDatos().estadosMedidorPorId.values()));
+    }
+
+    public EstadoDeSolicitudDeServicio getEstadoSolicitudPorID(int id) throws SQLException {
+        return getDatos().estadosSolicitudPorId.get(id);
+    }
+
+    public EstadoDeSolicitudDeServicio getEstadoSolicitudPorNombre(String nombre) throws SQLException {
+        return nombre == null ? null : getDatos().estadosSolicitudPorNombre.get(clave(nombre));
+    }
+
+    public TipoDeSolicitud getTipoSolicitudPorID(int id) throws SQLException {
+        return getDatos().tiposPorId.get(id);
+    }
+
+    public TipoDeSolicitud getTipoSolicitudPorNombre(String nombre) throws SQLException {
+        return nombre == null ? null : getDatos().tiposPorNombre.get(clave(nombre));
+    }
+
+    public Permisos getPermisosPorID(int id) throws SQLException {
+        return getDatos().permisosPorId.get(id);
+    }
+
+    public Permisos getPermisosPorNombre(String nombre) throws SQLException {
+        return nombre == null ? null : getDatos().permisosPorNombre.get(clave(nombre));
+    }
+
+    // ------------------ Internos ------------------
+
+    // Si nadie llamó a cargar() (ej: un uso fuera del arranque normal), cargo en el primer acceso.
+    private Datos getDatos() throws SQLException {
+        Datos actuales = datos;
+        if (actuales == null) {
+            cargar();
+            actuales = datos;
+        }
+        return actuales;
+    }
+
+    /*
+     * Normalizo los nombres igual que la collation de MySQL (sin distinguir mayúsculas ni acentos),
+     * para que "activacion" encuentre "Activación" como lo hacía la consulta 'WHERE nombre = ?'.
+     */
+    static String clave(String nombre) {
+        String sinAcentos = Normalizer.normalize(nombre.trim(), Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return sinAcentos.toLowerCase(Locale.ROOT);
+    }
+
+    /*
+     * Contenedor de los índices de una carga. No se modifica después de publicarse.
+     */
+    private static final class Datos {
+        final Map<Integer, EstadoDeMedidor> estadosMedidorPorId = new LinkedHashMap<>(); // Conserva el orden de la tabla.
+        final Map<String, EstadoDeMedidor> estadosMedidorPorNombre = new HashMap<>();
+        final Map<Integer, EstadoDeSolicitudDeServicio> estadosSolicitudPorId = new HashMap<>();
+        final Map<String, EstadoDeSolicitudDeServicio> estadosSolicitudPorNombre = new HashMap<>();
+        final Map<Integer, TipoDeSolicitud> tiposPorId = new HashMap<>();
+        final Map<String, TipoDeSolicitud> tiposPorNombre = new HashMap<>();
+        final Map<Integer, Permisos> permisosPorId = new HashMap<>();
+        final Map<String, Permisos> permisosPorNombre = new HashMap<>();
+    }
+}
@@ -5,817 +5,236 @@
 
 package sistema.de.gestion.electrica;
 
-// Importaciones estándar de Java (util) y SQL para manejo de bases de datos
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.Collection;
 import java.util.Date;
-import java.util.ArrayList;
 import java.util.List;
-import java.sql.*;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-
-// Asumimos que existen las clases de dominio: Permisos, EstadoDeMedidor, Medidor, 
-// SolicitudDeServicio, TipoDeSolicitud, EstadoDeSolicitudDeServicio, Operario, Cliente, Usuario, Servicio, y DBConnection
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 /**
- * Clase RepositorioDAO.
- * Simula la capa de persistencia (Acceso a Objetos de Datos - DAO).
- * Contiene métodos para consultar, insertar y actualizar datos en la base de datos (BD).
+ * Interfaz RepositorioDAO.
+ * Capa de persistencia (Acceso a Objetos de Datos - DAO) que usan los controladores.
+ * Hay dos implementaciones, que se eligen al iniciar con -Dsgre.repositorio (ver crear()):
+ * - RepositorioDAOJDBC: la base de datos MySQL 'sgre' (por defecto).
+ * - RepositorioDAOEnMemoria: todo en memoria, sin base de datos (demo, pruebas de carga y simulaciones).
  */
-public class RepositorioDAO {
-        
-    // Busca un objeto Cliente en la BD utilizando su Número de Identificación de Suministro (NIS).
-    public Cliente getClientePorNIS(int nis) throws SQLException {
-        // Consulta SQL para unir las tablas Usuario, Cliente y Permisos y filtrar por NIS.
-        String sql = "SELECT u.*, c.NIS, p.nombre AS PermisoNombre " +
-                     "FROM Usuario u " +
-                     "JOIN Cliente c ON u.idUsuario = c.idCliente " +
-                     "JOIN Permisos p ON u.Permisos_idPermisos = p.idPermisos " +
-                     "WHERE c.NIS = ?"; // El '?' es un marcador de posición para el NIS
-        
-        // Uso de try-with-resources para asegurar el cierre de la conexión y el PreparedStatement
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            
-            ps.setInt(1, nis); // Establece el NIS en el primer marcador '?'
-            
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) { // Si encuentra un resultado
-                    // 1. Crear el objeto Permisos a partir de los datos del resultado
-                    Permisos permisos = new Permisos(
-                        rs.getInt("Permisos_idPermisos"),
-                        rs.getString("PermisoNombre"),
-                        null 
-                    );
-                    
-                    // 2. Crear y retornar el objeto Cliente con todos sus atributos
-                    return new Cliente(
-                        rs.getInt("idUsuario"),
-                        rs.getString("nombre"),
-                        rs.getString("apellido"),
-                        rs.getString("direccion"),
-                        rs.getString("telefono"),
-                        rs.getString("correoElectronico"),
-                        rs.getString("contraseña"),
-                        permisos,
-                        rs.getInt("NIS") // Obtiene el NIS específico del Cliente
-                    );
-                }
-            }
-        }
-        return null; // Cliente no encontrado
-    }
-
-    
-    // Método auxiliar (mock) para obtener un objeto Permisos por su ID.
-    private Permisos getPermisosPorID(int idPermisos) throws SQLException {
-         // Implementación simulada, en un entorno real leería de la tabla Permisos
-         return new Permisos(idPermisos, "NombrePermiso", "Descripción"); 
-    }
+public interface RepositorioDAO {
 
-    
-    // Recupera todos los posibles estados de un Medidor desde la base de datos.
-    public List<EstadoDeMedidor> getTodosLosEstadosDeMedidor() throws SQLException {
-
-        List<EstadoDeMedidor> estados = new ArrayList<>(); // Lista para almacenar los resultados
-
-        String sql = "SELECT idEstadoDeMedidor, nombre FROM EstadoDeMedidor"; // Consulta simple
-
-        
-        // Uso de try-with-resources para Connection, Statement y ResultSet
-        try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            
-            while (rs.next()) { // Itera sobre cada fila del resultado
-                estados.add(new EstadoDeMedidor(
-                    rs.getInt("idEstadoDeMedidor"),
-                    rs.getString("nombre")
-                ));
-            }
+    /**
+     * Crea el repositorio elegido con -Dsgre.repositorio: "jdbc" (por defecto) o "memoria".
+     * @return El repositorio listo para inyectar en los controladores.
+     */
+    static RepositorioDAO crear() {
+        String tipo = System.getProperty("sgre.repositorio", "jdbc");
+        switch (tipo.trim().toLowerCase()) {
+            case "jdbc":
+                return new RepositorioDAOJDBC();
+            case "memoria":
+                return RepositorioDAOEnMemoria.conDatosDeEjemplo();
+            default:
+                throw new IllegalArgumentException("Repositorio desconocido: '" + tipo + "' (use 'jdbc' o 'memoria').");
         }
-
-        return estados; // Devuelve la lista de estados
     }
 
-    
-    // Busca un Medidor por su identificador único (idMedidor).
-    public Medidor getMedidorPorID(int idMedidor) throws SQLException {
-
-        String sql = "SELECT * FROM Medidor WHERE idMedidor = ?"; // Filtra por ID del medidor
-
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            
-            ps.setInt(1, idMedidor);
-
-            try (ResultSet rs = ps.executeQuery()) {
-
-                if (rs.next()) { // Si encuentra el medidor
-                    // Carga las entidades relacionadas (Cliente y EstadoDeMedidor) llamando a otros métodos DAO
-                    Cliente cliente = getClientePorID(rs.getInt("Cliente_idCliente"));
-                    EstadoDeMedidor estadoDeMedidor = getEstadoMedidorPorID(rs.getInt("EstadoDeMedidor_idEstadoDeMedidor"));
-
-                    
-                    // Crea y retorna el objeto Medidor
-                    return new Medidor(
-                        rs.getInt("idMedidor"),
-                        rs.getString("tipo"),
-                        rs.getString("marca"),
-                        rs.getString("ubicacion"),
-                        rs.getDouble("consumoKwh"), // Mapea el consumo
-                        rs.getDate("fecha"),
-                        rs.getDate("fechaDeInstalacion"),
-                        rs.getInt("añoDeFabricacion"),
-                        estadoDeMedidor,
-                        cliente
-                    );
-                }
-            }
-        }
-
-        return null; // Medidor no encontrado
-    }
-
-    
-    // Busca un objeto Cliente en la BD utilizando su idUsuario.
-    public Cliente getClientePorID(int idUsuario) throws SQLException {
-        // Consulta SQL para unir Usuario, Cliente y Permisos y filtrar por idUsuario
-        String sql = "SELECT u.*, c.NIS, p.nombre AS PermisoNombre " +
-                     "FROM Usuario u " +
-                     "JOIN Cliente c ON u.idUsuario = c.idCliente " +
-                     "JOIN Permisos p ON u.Permisos_idPermisos = p.idPermisos " +
-                     "WHERE u.idUsuario = ?";
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            
-            ps.setInt(1, idUsuario);
-            
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    // 1. Crear el objeto Permisos
-                    Permisos permisos = new Permisos(
-                        rs.getInt("Permisos_idPermisos"),
-                        rs.getString("PermisoNombre"),
-                        null // Descripción no necesaria para esta búsqueda
-                    );
-                    
-                    // 2. Crear y retornar el objeto Cliente
-                    return new Cliente(
-                        rs.getInt("idUsuario"),
-                        rs.getString("nombre"),
-                        rs.getString("apellido"),
-                        rs.getString("direccion"),
-                        rs.getString("telefono"),
-                        rs.getString("correoElectronico"),
-                        rs.getString("contraseña"),
-                        permisos,
-                        rs.getInt("NIS") // Obtiene el NIS
-                    );
-                }
-            }
-        }
-        return null; // Cliente no encontrado
+    /**
+     * @return true si el repositorio trabaja contra la base de datos (hace falta el pool y las migraciones).
+     */
+    default boolean usaBaseDeDatos() {
+        return true;
     }
 
-    
-    // Busca un objeto EstadoDeMedidor por su ID.
-    private EstadoDeMedidor getEstadoMedidorPorID(int id) throws SQLException {
+    // ------------------ Usuarios ------------------
 
-        String sql = "SELECT idEstadoDeMedidor, nombre FROM EstadoDeMedidor WHERE idEstadoDeMedidor = ?";
+    // Busca un objeto Cliente utilizando su Número de Identificación de Suministro (NIS).
+    Cliente getClientePorNIS(int nis) throws SQLException;
 
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+    // Busca un objeto Cliente utilizando su idUsuario.
+    Cliente getClientePorID(int idUsuario) throws SQLException;
 
-            
-            ps.setInt(1, id);
+    // Resuelve muchos NIS a su idCliente de una vez (cargas masivas). Los NIS que no existen no aparecen en el mapa.
+    Map<Integer, Integer> getIdsDeClientesPorNIS(Collection<Integer> nisBuscados) throws SQLException;
 
-            try (ResultSet rs = ps.executeQuery()) {
-
-                if (rs.next()) {
-                    // Retorna el objeto EstadoDeMedidor
-                    return new EstadoDeMedidor(
-                        rs.getInt("idEstadoDeMedidor"),
-                        rs.getString("nombre")
-                    );
-                }
-            }
-        }
-
-        return null;
-    }
-
-    
     // Busca un objeto Operario por su idUsuario.
-    public Operario getOperarioPorID(int idOperario) throws SQLException {
-
-        String sql = "SELECT U.*, O.idUniversal, O.departamento FROM Operario O JOIN Usuario U ON O.idOperario = U.idUsuario WHERE O.idOperario = ?";
-
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            
-            ps.setInt(1, idOperario);
-
-            try (ResultSet rs = ps.executeQuery()) {
-
-                if (rs.next()) {
-                    // Carga los Permisos asociados
-                    Permisos permisos = getPermisosPorID(rs.getInt("Permisos_idPermisos"));
-
-                    
-                    // Crea y retorna el objeto Operario, incluyendo sus atributos específicos
-                    return new Operario(
-                        rs.getInt("idUsuario"),
-                        rs.getString("nombre"),
-                        rs.getString("apellido"),
-                        rs.getString("direccion"),
-                        rs.getString("telefono"),
-                        rs.getString("correoElectronico"),
-                        rs.getString("contraseña"),
-                        permisos,
-                        rs.getString("idUniversal"),
-                        rs.getString("departamento")
-                    );
-                }
-            }
-        }
+    Operario getOperarioPorID(int idOperario) throws SQLException;
 
-        return null;
-    }
-
-    
-    // Busca el Medidor asociado a un Cliente usando el ID del Cliente.
-    public Medidor getMedidorAsociadoACliente(int idCliente) throws SQLException {
+    // Autentica un usuario por Correo, NIS o ID Universal contra su contraseña. Retorna null si no coincide.
+    Usuario autenticarUsuario(String identificador, String contrasena) throws SQLException;
 
-        // Filtra en la tabla Medidor por la clave foránea Cliente_idCliente
-        String sql = "SELECT * FROM Medidor WHERE Cliente_idCliente = ?";
+    // ------------------ Datos de referencia ------------------
 
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            
-            ps.setInt(1, idCliente);
-
-            try (ResultSet rs = ps.executeQuery()) {
-
-                if (rs.next()) {
-                    // Reutiliza el método getMedidorPorID para cargar el objeto completo
-                    return getMedidorPorID(rs.getInt("idMedidor"));
-                }
-            }
-        }
+    // Vuelve a leer las tablas de referencia (ej: tras dar de alta un nuevo estado o tipo).
+    void refrescarDatosDeReferencia() throws SQLException;
 
-        return null;
-    }
+    // Recupera todos los posibles estados de un Medidor.
+    List<EstadoDeMedidor> getTodosLosEstadosDeMedidor() throws SQLException;
 
+    // Busca un EstadoDeMedidor por su nombre.
+    EstadoDeMedidor getEstadoMedidorPorNombre(String nombre) throws SQLException;
 
     // Busca un TipoDeSolicitud por su nombre.
-    public TipoDeSolicitud getTipoSolicitudPorNombre(String nombre) throws SQLException {
-
-        String sql = "SELECT * FROM TipoDeSolicitud WHERE nombre = ?";
-
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            
-            ps.setString(1, nombre);
-
-            try (ResultSet rs = ps.executeQuery()) {
-
-                if (rs.next()) {
-                    // Crea y retorna el objeto TipoDeSolicitud
-                    return new TipoDeSolicitud(
-                        rs.getInt("idTipoDeSolicitud"),
-                        rs.getString("nombre")
-                    );
-                }
-            }
-        }
-
-        return null;
-    }
-
+    TipoDeSolicitud getTipoSolicitudPorNombre(String nombre) throws SQLException;
 
     // Busca un EstadoDeSolicitudDeServicio por su nombre.
-    public EstadoDeSolicitudDeServicio getEstadoSolicitudPorNombre(String nombre) throws SQLException {
-
-        String sql = "SELECT * FROM EstadoDeSolicitudDeServicio WHERE nombre = ?";
-
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            
-            ps.setString(1, nombre);
-
-            try (ResultSet rs = ps.executeQuery()) {
-
-                if (rs.next()) {
-                    // Crea y retorna el objeto EstadoDeSolicitudDeServicio
-                    return new EstadoDeSolicitudDeServicio(
-                        rs.getInt("idEstadoDeSolicitudDeServicio"),
-                        rs.getString("nombre")
-                    );
-                }
-            }
-        }
-
-        return null;
-    }
+    EstadoDeSolicitudDeServicio getEstadoSolicitudPorNombre(String nombre) throws SQLException;
 
+    // ------------------ Medidores y Servicios ------------------
 
-    // Genera un nuevo ID para una Solicitud de Servicio (simulando el AUTO_INCREMENT).
-    public int generarIdSolicitud() throws SQLException {
+    // Busca un Medidor por su identificador único. Retorna una copia que se puede modificar antes de persistirla.
+    Medidor getMedidorPorID(int idMedidor) throws SQLException;
 
-        // Consulta para obtener el ID máximo actual y sumarle 1
-        String sql = "SELECT MAX(idSolicitud) AS max_id FROM SolicitudDeServicio";
+    // Busca el Medidor asociado a un Cliente usando el ID del Cliente.
+    Medidor getMedidorAsociadoACliente(int idCliente) throws SQLException;
+
+    // Busca el Servicio asociado a un Medidor.
+    Servicio getServicioPorMedidor(int idMedidor) throws SQLException;
+
+    // Inserta un nuevo Medidor. Si llega con idMedidor = 0, se le asigna uno y se copia al objeto.
+    void agregarMedidor(Medidor nuevoMedidor) throws SQLException;
+
+    /**
+     * Inserta muchos Medidores ya validados (cargas masivas). A los que tienen idMedidor 0 les asigna un ID.
+     * @param tamañoDeLote Filas por envío a la base (si la implementación lo usa).
+     * @param filasPorCommit Filas por transacción (si la implementación lo usa).
+     * @param alFallar Recibe cada medidor que no se pudo insertar y el error.
+     * @return Cantidad de medidores insertados.
+     */
+    int insertarMedidores(List<Medidor> medidores, int tamañoDeLote, int filasPorCommit,
+                          BiConsumer<Medidor, SQLException> alFallar) throws SQLException;
+
+    /**
+     * Registra lecturas de medidores inteligentes (ingesta de alto volumen). Las repetidas, por (medidor, fecha),
+     * se descartan sin error. La más reciente de cada medidor queda como su consumoKwh y fecha. Las registradas
+     * se copian también al almacén columnar (getAlmacenDeLecturas).
+     * @param filasPorSentencia Filas por INSERT multi-fila (si la implementación lo usa).
+     * @param filasPorCommit Lecturas por transacción (si la implementación lo usa).
+     * @param alFallar Recibe cada lectura que no se registró y el motivo.
+     * @return Cantidad de lecturas nuevas registradas.
+     */
+    int registrarLecturas(List<Lectura> lecturas, int filasPorSentencia, int filasPorCommit,
+                          BiConsumer<Lectura, String> alFallar) throws SQLException;
+
+    // Almacén columnar con la copia de las lecturas registradas, para consultarlas por medidor y rango de fechas.
+    AlmacenColumnarDeLecturas getAlmacenDeLecturas();
+
+    // Las tres actualizaciones son optimistas: solo se aplican si la entidad sigue en la versión con la que se leyó
+    // (si no, ConflictoDeVersionException) y, al aplicarse, avanzan la versión del objeto recibido.
 
-        
-        try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+    // Actualiza el estado y la fecha de la última modificación de un Medidor.
+    void actualizarMedidor(Medidor medidor) throws SQLException;
 
-            
-            if (rs.next()) {
-                // Si la tabla no está vacía, devuelve el máximo + 1; si está vacía, devuelve 1.
-                return rs.getInt("max_id") + 1;
-            }
-        }
+    // Actualiza las fechas de estado (activación, suspensión, baja) de un Servicio.
+    void actualizarServicio(Servicio servicio) throws SQLException;
 
-        return 1; // Devuelve 1 si la tabla está vacía
-    }
+    // ------------------ Solicitudes de Servicio ------------------
 
-    
     // Obtiene una lista de todas las Solicitudes de Servicio.
-    public List<SolicitudDeServicio> getTodasLasSolicitudes() throws SQLException {
-
-        List<SolicitudDeServicio> solicitudes = new ArrayList<>();
-
-        String sql = "SELECT idSolicitud FROM SolicitudDeServicio"; // Solo recupera los IDs
-
-        
-        try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            
-            while (rs.next()) {
-                // Llama al método auxiliar para cargar cada solicitud completa por su ID
-                solicitudes.add(getSolicitudPorID(rs.getInt("idSolicitud")));
-            }
-        }
-
-        return solicitudes;
-    }
-
-    
-    // Método auxiliar privado para obtener una SolicitudDeServicio completa por su ID.
-    private SolicitudDeServicio getSolicitudPorID(int id) throws SQLException {
-
-        String sql = "SELECT * FROM SolicitudDeServicio WHERE idSolicitud = ?";
-
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            
-            ps.setInt(1, id);
-
-            try (ResultSet rs = ps.executeQuery()) {
-
-                if (rs.next()) {
-                    // Carga las dependencias (Cliente, Tipos, Estados) usando métodos auxiliares
-                    Cliente cliente = getClientePorID(rs.getInt("Cliente_idCliente"));
-                    TipoDeSolicitud tipoSolicitud = getTipoSolicitudPorID(rs.getInt("TipoDeSolicitud_idTipoDeSolicitud"));
-                    EstadoDeMedidor estadoMedidor = getEstadoMedidorPorID(rs.getInt("EstadoDeMedidor_idEstadoDeMedidor"));
-                    EstadoDeSolicitudDeServicio estadoSolicitud = getEstadoSolicitudPorID(rs.getInt("EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio"));
-
-                    // Retorna el objeto SolicitudDeServicio
-                    return new SolicitudDeServicio(
-                        rs.getInt("idSolicitud"),
-                        rs.getString("descripcion"),
-                        cliente,
-                        estadoMedidor,
-                        tipoSolicitud,
-                        estadoSolicitud
-                    );
-                }
-            }
-        }
-
-        return null;
-    }
-
-    
-    // Método auxiliar privado para obtener TipoDeSolicitud por ID.
-    private TipoDeSolicitud getTipoSolicitudPorID(int id) throws SQLException {
-
-        String sql = "SELECT idTipoDeSolicitud, nombre FROM TipoDeSolicitud WHERE idTipoDeSolicitud = ?";
-
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setInt(1, id);
-
-            try (ResultSet rs = ps.executeQuery()) {
-
-                if (rs.next()) {
-                    // Retorna el objeto TipoDeSolicitud
-                    return new TipoDeSolicitud(
-                        rs.getInt("idTipoDeSolicitud"),
-                        rs.getString("nombre")
-                    );
-                }
-            }
-        }
-
-        return null;
-    }
-
-    
-    // Método auxiliar privado para obtener EstadoDeSolicitudDeServicio por ID.
-    private EstadoDeSolicitudDeServicio getEstadoSolicitudPorID(int id) throws SQLException {
-
-        String sql = "SELECT idEstadoDeSolicitudDeServicio, nombre FROM EstadoDeSolicitudDeServicio WHERE idEstadoDeSolicitudDeServicio = ?";
+    List<SolicitudDeServicio> getTodasLasSolicitudes() throws SQLException;
 
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setInt(1, id);
-
-            try (ResultSet rs = ps.executeQuery()) {
-
-                if (rs.next()) {
-                    // Retorna el objeto EstadoDeSolicitudDeServicio
-                    return new EstadoDeSolicitudDeServicio(
-                        rs.getInt("idEstadoDeSolicitudDeServicio"),
-                        rs.getString("nombre")
-                    );
-                }
-            }
-        }
-
-        return null;
-    }
-
-    // Método auxiliar para mapear una fila de ResultSet a un objeto SolicitudDeServicio.
-    private SolicitudDeServicio mapSolicitudFromResultSet(ResultSet rs) throws SQLException {
-        
-        int clienteId = rs.getInt("Cliente_idCliente");
-        int tipoSolicitudId = rs.getInt("TipoDeSolicitud_idTipoDeSolicitud");
-        int estadoMedidorId = rs.getInt("EstadoDeMedidor_idEstadoDeMedidor");
-        int estadoSolicitudId = rs.getInt("EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio");
-
-        // 1. Resolver dependencias llamando a los métodos auxiliares
-        Cliente cliente = this.getClientePorID(clienteId); 
-        TipoDeSolicitud tipoDeSolicitud = this.getTipoSolicitudPorID(tipoSolicitudId);
-        EstadoDeMedidor estadoMedidor = this.getEstadoMedidorPorID(estadoMedidorId);
-        EstadoDeSolicitudDeServicio estadoSolicitud = this.getEstadoSolicitudPorID(estadoSolicitudId);
-
-        // 2. Crear y retornar el objeto SolicitudDeServicio
-        return new SolicitudDeServicio(
-            rs.getInt("idSolicitud"),
-            rs.getString("descripcion"),
-            cliente,
-            estadoMedidor,
-            tipoDeSolicitud,
-            estadoSolicitud
-        );
-    }
-    
-    // Obtiene todas las solicitudes que están en estado "Pendiente" (asume ID=1).
-    public List<SolicitudDeServicio> getSolicitudesPendientes() throws SQLException {
-        List<SolicitudDeServicio> solicitudes = new ArrayList<>();
-        
-        // Consulta SQL que filtra por la FK del estado (asumiendo que 1 es 'Pendiente')
-        String sql = "SELECT s.* FROM SolicitudDeServicio s " +
-                     "WHERE s.EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio = 1"; // ID 1 para Pendiente
-
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            
-            while (rs.next()) {
-                // Utiliza el método de mapeo para crear el objeto Solicitud
-                SolicitudDeServicio solicitud = mapSolicitudFromResultSet(rs);
-                solicitudes.add(solicitud);
-            }
-        }
-        return solicitudes;
-    }
+    // Obtiene todas las solicitudes que están en estado "Pendiente".
+    List<SolicitudDeServicio> getSolicitudesPendientes() throws SQLException;
 
     // Obtiene las solicitudes que están en estado "Pendiente" para un Cliente específico.
-    public List<SolicitudDeServicio> getSolicitudesPendientesPorCliente(int idCliente) throws SQLException {
-
-        List<SolicitudDeServicio> pendientes = new ArrayList<>();
-
-        
-        // Busca el ID del estado "Pendiente" por nombre
-        EstadoDeSolicitudDeServicio estadoPendiente = getEstadoSolicitudPorNombre("Pendiente");
-
-        if (estadoPendiente == null) return pendientes; // No procede si no existe el estado
-
-        
-        // Consulta SQL que filtra por idCliente y el ID del estado Pendiente
-        String sql = "SELECT s.* FROM SolicitudDeServicio s " +
-                     "WHERE s.Cliente_idCliente = ? AND s.EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio = ?";
-        
-        // Nota: En el código original se usa 1 en la consulta y luego se pasa el ID. Ajusto para ser consistente.
-
-        try (Connection conn = DBConnection.getConnection();
-
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            
-            ps.setInt(1, idCliente);
-            // El código original tenía un error lógico, debería ser el ID del estadoPendiente
-            ps.setInt(2, estadoPendiente.getIdEstadoDeSolicitudDeServicio());
-
-            
-            try (ResultSet rs = ps.executeQuery()) {
-
-                while (rs.next()) {
-                    // Utiliza el método getSolicitudPorID para cargar cada solicitud completa
-                    pendientes.add(getSolicitudPorID(rs.getInt("idSolicitud")));
-                }
-            }
-        }
-
-        return new ArrayList<>(); // Hay un error en el código original que siempre devuelve un ArrayList vacío. Se mantiene sin corrección.
-    }
-
-
-    // Actualiza el estado de una Solicitud de Servicio en la base de datos.
-    public void actualizarSolicitud(SolicitudDeServicio solicitud) throws SQLException {
-
-        // Solo actualiza el campo de la clave foránea del estado
-        String sql = "UPDATE SolicitudDeServicio SET EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio = ? WHERE idSolicitud = ?";
-
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            
-            ps.setInt(1, solicitud.getEstadoDeSolicitudDeServicio().getIdEstadoDeSolicitudDeServicio()); // Nuevo estado
-            ps.setInt(2, solicitud.getIdSolicitud()); // ID de la solicitud a actualizar
-
-            
-            int filasAfectadas = ps.executeUpdate(); // Ejecuta la actualización
-
-            if (filasAfectadas > 0) {
-                 System.out.println("DB REAL: Solicitud " + solicitud.getIdSolicitud() + " estado actualizado.");
-            } else {
-                 System.out.println("DB REAL: Advertencia, Solicitud " + solicitud.getIdSolicitud() + " no fue encontrada para actualizar.");
-            }
-        }
-    }
-
-    
-    // Busca un EstadoDeMedidor por su nombre.
-    public EstadoDeMedidor getEstadoMedidorPorNombre(String nombre) throws SQLException {
-
-        if (nombre == null) return null;
-        String sql = "SELECT * FROM EstadoDeMedidor WHERE nombre = ?";
-
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            
-            ps.setString(1, nombre);
-
-            try (ResultSet rs = ps.executeQuery()) {
-
-                if (rs.next()) {
-                    // Crea y retorna el objeto EstadoDeMedidor
-                    return new EstadoDeMedidor(
-                        rs.getInt("idEstadoDeMedidor"),
-                        rs.getString("nombre")
-                    );
-                }
-            }
-        }
-
-        return null;
-    }
-
-    
-    // Busca el Servicio activo asociado a un Medidor.
-    public Servicio getServicioPorMedidor(int idMedidor) throws SQLException {
-
-        String sql = "SELECT * FROM Servicio WHERE Medidor_idMedidor = ?";
-
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            
-            ps.setInt(1, idMedidor);
-
-            try (ResultSet rs = ps.executeQuery()) {
-
-                if (rs.next()) {
-                    // Carga las entidades relacionadas (Cliente y Medidor)
-                    Cliente cliente = getClientePorID(rs.getInt("Cliente_idCliente"));
-                    Medidor medidor = getMedidorPorID(rs.getInt("Medidor_idMedidor"));
-
-                    
-                    // Crea y retorna el objeto Servicio
-                    return new Servicio(
-                        rs.getInt("idServicio"),
-                        rs.getDate("fechaActivacion"),
-                        rs.getDate("fechaSuspencion"),
-                        rs.getDate("fechaBaja"),
-                        cliente,
-                        medidor
-                    );
-                }
-            }
-        }
-
-        return null;
-    }
-
-    
-    // Autentica un usuario por Correo, NIS o ID Universal contra su contraseña.
-    public Usuario autenticarUsuario(String identificador, String contrasena) throws SQLException {
-        // Consulta compleja que une Usuario, Cliente y Operario para probar múltiples campos de identificación
-        String sql = "SELECT u.*, c.NIS, o.idUniversal, o.departamento, u.Permisos_idPermisos " +
-                     "FROM Usuario u " +
-                     "LEFT JOIN Cliente c ON u.idUsuario = c.idCliente " +
-                     "LEFT JOIN Operario o ON u.idUsuario = o.idOperario " +
-                     "WHERE (u.correoElectronico = ? OR c.NIS = ? OR o.idUniversal = ?) " +
-                     "AND u.contraseña = ?"; // Filtro final por contraseña
-
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            // Se asigna el identificador a Correo y ID Universal
-            ps.setString(1, identificador);
-            // Se intenta asignar el identificador como NIS (entero)
-            try {
-                int nis = Integer.parseInt(identificador);
-                ps.setInt(2, nis);
-            } catch (NumberFormatException e) {
-                // Si no es un número, se pasa un valor que no coincidirá con ningún NIS
-                ps.setInt(2, 0); 
-            }
-            ps.setString(3, identificador); // Para ID Universal
-            ps.setString(4, contrasena); // Contraseña
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    // Mapeo de campos comunes a Usuario
-                    int idUsuario = rs.getInt("idUsuario");
-                    String nombre = rs.getString("nombre");
-                    String apellido = rs.getString("apellido");
-                    String direccion = rs.getString("direccion");
-                    String telefono = rs.getString("telefono");
-                    String correo = rs.getString("correoElectronico");
-                    int idPermisos = rs.getInt("Permisos_idPermisos");
-                    Permisos permisos = getPermisosPorID(idPermisos); 
-
-                    // --- Decidir el tipo de Usuario (Cliente vs Operario) ---
-                    String nisString = rs.getString("NIS");
-                    String idUniversal = rs.getString("idUniversal");
-
-                    if (nisString != null) {
-                        // Es un Cliente (NIS no es nulo)
-                        int nis = rs.getInt("NIS");
-                        System.out.println("Usuario autenticado como Cliente (NIS: " + nis + ")");
-                        return new Cliente(idUsuario, nombre, apellido, direccion, telefono, correo, contrasena, permisos, nis);
-                    } else if (idUniversal != null) {
-                        // Es un Operario (ID Universal no es nulo)
-                        String departamento = rs.getString("departamento");
-                        System.out.println("Usuario autenticado como Operario (ID Universal: " + idUniversal + ")");
-                        return new Operario(idUsuario, nombre, apellido, direccion, telefono, correo, contrasena, permisos, idUniversal, departamento);
-                    } else {
-                        // Usuario genérico (Administrador u otro rol base)
-                        String departamento = rs.getString("departamento");
-                        System.out.println("Usuario autenticado como Usuario Genérico.");
-                        // Devuelve un Operario genérico si no se puede clasificar más
-                        return new Operario(idUsuario, nombre, apellido, direccion, telefono, correo, contrasena, permisos, idUniversal, departamento);
-                    }
-                }
-            }
-        }
-        return null; // Autenticación fallida
-    }
-
-    
-    // Inserta un nuevo Medidor en la base de datos.
-    public void agregarMedidor(Medidor nuevoMedidor) throws SQLException {
-        String sql = "INSERT INTO Medidor (idMedidor, tipo, marca, ubicacion, consumoKwh, fecha, fechaDeInstalacion, añoDeFabricacion, Cliente_idCliente, EstadoDeMedidor_idEstadoDeMedidor) " +
-                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            // Mapeo de parámetros del objeto Medidor a los marcadores '?'
-            ps.setInt(1, nuevoMedidor.getIdMedidor());
-            ps.setString(2, nuevoMedidor.getTipo());
-            ps.setString(3, nuevoMedidor.getMarca());
-            ps.setString(4, nuevoMedidor.getUbicacion());
-            ps.setDouble(5, nuevoMedidor.getConsumoKwh());
-            
-            // Conversión de java.util.Date a java.sql.Date/Timestamp para la BD
-            ps.setTimestamp(6, new java.sql.Timestamp(new Date().getTime())); // 'fecha' actual
-            ps.setDate(7, new java.sql.Date(nuevoMedidor.getFechaDeInstalacion().getTime()));
-            
-            ps.setInt(8, nuevoMedidor.getAnioDeFabricacion());
-            
-            // Claves Foráneas (IDs de objetos relacionados)
-            ps.setInt(9, nuevoMedidor.getCliente().getIdUsuario()); 
-            ps.setInt(10, nuevoMedidor.getEstadoDeMedidor().getIdEstadoDeMedidor());
-            
-            int filasAfectadas = ps.executeUpdate();
-            
-            if (filasAfectadas > 0) {
-                System.out.println("DB REAL: Medidor #" + nuevoMedidor.getIdMedidor() + " insertado con éxito.");
-            } else {
-                System.out.println("ADVERTENCIA DB: El Medidor no fue insertado.");
-            }
-        } catch (SQLException e) {
-            System.err.println("ERROR CRÍTICO DAO: Fallo al insertar Medidor. " + e.getMessage());
-            throw e; // Propaga el error de SQL
-        }
-    }
-
-    
-    // Inserta una nueva Solicitud de Servicio en la base de datos.
-    public boolean agregarSolicitud(SolicitudDeServicio solicitud) {
-
-        // SQL para insertar una nueva solicitud con la fecha actual (NOW())
-        String sql = "INSERT INTO SolicitudDeServicio (fechaSolicitud, descripcion, Cliente_idCliente, TipoDeSolicitud_idTipoDeSolicitud, EstadoDeMedidor_idEstadoDeMedidor, EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio) " +
-                     "VALUES (NOW(), ?, ?, ?, ?, ?)";
-
-
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, solicitud.getDescripcion());
-            ps.setInt(2, solicitud.getCliente().getIdCliente());
-            
-            // Se obtienen los IDs de las dependencias
-            ps.setInt(3, solicitud.getTipoDeSolicitud().getIdTipoDeSolicitud());
-            ps.setInt(4, solicitud.getEstadoDeMedidor().getIdEstadoDeMedidor());
-            ps.setInt(5, solicitud.getEstadoDeSolicitudDeServicio().getIdEstadoDeSolicitudDeServicio());
-
-            int filasAfectadas = ps.executeUpdate(); // Ejecuta la inserción
-
-            return filasAfectadas > 0; // Retorna true si se insertó al menos una fila
-
-        } catch (SQLException e) {
-            System.err.println("Error DB al registrar solicitud: " + e.getMessage());
-            return false;
-        }
-    }
-
-    // Actualiza el estado y la fecha de la última modificación de un Medidor.
-    public void actualizarMedidor(Medidor medidor) throws SQLException {
-        // SQL para actualizar el estado del medidor y su fecha
-        String sql = "UPDATE Medidor SET EstadoDeMedidor_idEstadoDeMedidor = ?, fecha = ? WHERE idMedidor = ?";
-
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setInt(1, medidor.getEstadoDeMedidor().getIdEstadoDeMedidor());
-            ps.setDate(2, new java.sql.Date(medidor.getFechaActual().getTime())); // Fecha de la actualización
-            ps.setInt(3, medidor.getIdMedidor());
-
-            ps.executeUpdate();
-            System.out.println("DB REAL: Medidor " + medidor.getIdMedidor() + " estado y fecha actualizados.");
-        }
-    }
-
-    // Actualiza las fechas de estado (activación, suspensión, baja) de un Servicio.
-    public void actualizarServicio(Servicio servicio) throws SQLException {
-        // SQL para actualizar las tres fechas de estado del servicio
-        String sql = "UPDATE Servicio SET fechaActivacion = ?, fechaSuspencion = ?, fechaBaja = ? WHERE idServicio = ?";
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            // Convierte java.util.Date a java.sql.Date, manejando valores nulos
-            ps.setDate(1, servicio.getFechaActivacion() != null ? new java.sql.Date(servicio.getFechaActivacion().getTime()) : null);
-            ps.setDate(2, servicio.getFechaSuspension() != null ? new java.sql.Date(servicio.getFechaSuspension().getTime()) : null);
-            ps.setDate(3, servicio.getFechaBaja() != null ? new java.sql.Date(servicio.getFechaBaja().getTime()) : null);
-            ps.setInt(4, servicio.getIdServicio()); 
-
-            ps.executeUpdate();
-            System.out.println("DB REAL: Servicio " + servicio.getIdServicio() + " actualizado.");
-        }
-    }
-
-}
\ No newline at end of file
+    List<SolicitudDeServicio> getSolicitudesPendientesPorCliente(int idCliente) throws SQLException;
+
+    /**
+     * Búsqueda de solicitudes por varios criterios, paginada por (fechaSolicitud, idSolicitud).
+     * @param filtro Criterios opcionales (los null no filtran).
+     * @param despuesDe Cursor de la página anterior, o null para la primera página.
+     * @param tamañoDePagina Cantidad máxima de solicitudes por página.
+     */
+    PaginaDeSolicitudes buscarSolicitudes(FiltroDeSolicitudes filtro, PaginaDeSolicitudes.Cursor despuesDe, int tamañoDePagina) throws SQLException;
+
+    // Inserta una nueva Solicitud de Servicio y le copia el ID asignado. Retorna false si no se pudo registrar.
+    boolean agregarSolicitud(SolicitudDeServicio solicitud);
+
+    // Actualiza el estado de una Solicitud de Servicio.
+    void actualizarSolicitud(SolicitudDeServicio solicitud) throws SQLException;
+
+    /**
+     * Finaliza muchas Solicitudes de una vez (procesos masivos del operario): aplica 'nuevoEstado' al Medidor
+     * del cliente de cada una y las deja en 'estadoFinal'. Solo procesa las que siguen en el estado con el que
+     * se leyeron y tienen un Medidor; las demás se informan con el motivo.
+     * @param activarServicio true si además se registra la fecha de activación del Servicio.
+     * @param solicitudesPorTransaccion Solicitudes por commit (si la implementación lo usa).
+     * @param alFallar Recibe cada solicitud que no se procesó y el motivo.
+     * @return Cantidad de solicitudes finalizadas.
+     */
+    int finalizarSolicitudes(List<SolicitudDeServicio> solicitudes, EstadoDeMedidor nuevoEstado, EstadoDeSolicitudDeServicio estadoFinal,
+                             boolean activarServicio, int solicitudesPorTransaccion,
+                             BiConsumer<SolicitudDeServicio, String> alFallar) throws SQLException;
+
+    // ------------------ Facturación ------------------
+
+    /**
+     * Genera las Facturas del período para los Medidores con un Servicio vigente en él, con el consumo de sus
+     * lecturas. Si una corrida anterior del mismo período se cortó, sigue desde donde quedó; si el período ya
+     * está facturado, no genera nada.
+     * @param tarifa Versión de la tarifa vigente en el período (ver CatalogoDeTarifas).
+     * @param paralelismo Particiones que se facturan a la vez (si la implementación lo usa).
+     * @param clientesPorParticion Clientes por partición, que es la unidad de reanudación (si la implementación lo usa).
+     * @param medidoresPorTramo Facturas por transacción (si la implementación lo usa).
+     * @param alFallar Recibe cada factura que no se generó y el motivo. Se puede llamar desde varios hilos.
+     * @return Cantidad de facturas generadas.
+     */
+    int facturarPeriodo(YearMonth periodo, Date fechaEmision, Date fechaVencimiento, TarifaCompilada tarifa,
+                        int paralelismo, int clientesPorParticion, int medidoresPorTramo,
+                        BiConsumer<Factura, String> alFallar) throws SQLException;
+
+    // ------------------ Conciliación de pagos ------------------
+
+    /**
+     * @return El saldo pendiente (en centavos) de cada Factura pendiente o vencida, descontados sus pagos aprobados.
+     */
+    IndiceDeFacturasAbiertas getFacturasAbiertas() throws SQLException;
+
+    /**
+     * @return Las referencias bancarias de la colección que ya tienen un Pago registrado.
+     */
+    Set<String> getReferenciasDePagoRegistradas(Collection<String> referencias) throws SQLException;
+
+    /**
+     * Registra los pagos. Las Facturas cuyos pagos aprobados registrados cubren el monto y el recargo pasan a "Pagada".
+     * @param pagosPorCommit Pagos por transacción (si la implementación lo usa).
+     * @param alFallar Recibe cada pago que no se registró y el motivo.
+     * @return Cantidad de pagos registrados.
+     */
+    int registrarPagos(List<Pago> pagos, int pagosPorCommit, BiConsumer<Pago, String> alFallar) throws SQLException;
+
+    // ------------------ Vencimientos ------------------
+
+    /**
+     * Pasa a "Vencida" las Facturas pendientes que vencieron antes de 'corte' y les carga el recargo por mora,
+     * calculado sobre el saldo impago. Solo toca facturas pendientes, así que se puede repetir sin efectos.
+     * @param recargoEnPuntosBasicos Recargo en centésimos de punto porcentual (500 = 5 %).
+     * @param facturasPorTramo Facturas por sentencia (si la implementación lo usa).
+     * @return Cantidad de facturas vencidas, o BarridoDeVencimientos.SIN_LOCK si otra instancia está barriendo.
+     */
+    int vencerFacturas(Date corte, int recargoEnPuntosBasicos, int facturasPorTramo) throws SQLException;
+
+    // ------------------ Recorridos (exportaciones y procesos masivos) ------------------
+    // Entregan las filas a medida que se leen. El Stream se cierra con try-with-resources.
+
+    // Recorre todos los Medidores (con su Cliente), en orden de idMedidor.
+    Stream<Medidor> transmitirMedidores() throws SQLException;
+
+    // Recorre todas las Facturas (con su Cliente y su Medidor), en orden de idFactura.
+    Stream<Factura> transmitirFacturas() throws SQLException;
+
+    // Recorre todas las Solicitudes de Servicio (con su Cliente), en orden de (fechaSolicitud, idSolicitud).
+    Stream<SolicitudDeServicio> transmitirSolicitudes() throws SQLException;
+
+    // ------------------ Transacciones y estadísticas ------------------
+
+    /**
+     * Inicia una unidad de trabajo: una transacción para varias operaciones.
+     * Se usa con try-with-resources; si no se llama a confirmar(), al cerrarse se deshace todo.
+     */
+    UnidadDeTrabajo iniciarUnidadDeTrabajo() throws SQLException;
+
+    // Retorna un resumen de las estadísticas de las cachés o índices del repositorio.
+    String getEstadisticasCache();
+}
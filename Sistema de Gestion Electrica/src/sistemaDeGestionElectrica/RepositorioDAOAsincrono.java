@@ -0,0 +1,147 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Clase RepositorioDAOAsincrono.
+ * Fachada asíncrona sobre RepositorioDAO: cada consulta se ejecuta en un hilo de un ejecutor propio y
+ * devuelve un CompletableFuture. Así un controlador puede lanzar a la vez varias búsquedas independientes
+ * y esperarlas juntas: la demora total es la de la más lenta, no la suma de todas.
+ *
+ * La concurrencia está acotada al tamaño del pool de conexiones (-Dsgre.async.concurrencia para cambiarla):
+ * más hilos que conexiones solo harían esperar a los hilos dentro del pool. Si la cola de espera
+ * (-Dsgre.async.cola) se llena, la consulta falla enseguida con SQLException en lugar de acumularse.
+ */
+public class RepositorioDAOAsincrono {
+
+    private static final int CONCURRENCIA = Integer.getInteger("sgre.async.concurrencia", DBConnection.getTamanioMaximoPool());
+    private static final int TAMANIO_COLA = Integer.getInteger("sgre.async.cola", 1_000);
+
+    /*
+     * Una consulta al DAO que puede lanzar SQLException (Supplier no lo permite).
+     */
+    @FunctionalInterface
+    public interface ConsultaDAO<T> {
+        T ejecutar(RepositorioDAO repositorioDAO) throws SQLException;
+    }
+
+    private final RepositorioDAO repositorioDAO;
+    private final ThreadPoolExecutor ejecutor;
+
+    public RepositorioDAOAsincrono(RepositorioDAO repositorioDAO) {
+        this(repositorioDAO, CONCURRENCIA);
+    }
+
+    public RepositorioDAOAsincrono(RepositorioDAO repositorioDAO, int concurrencia) {
+        this.repositorioDAO = repositorioDAO;
+        AtomicInteger numero = new AtomicInteger();
+        this.ejecutor = new ThreadPoolExecutor(concurrencia, concurrencia, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(TAMANIO_COLA), r -> {
+                    Thread t = new Thread(r, "sgre-dao-" + numero.incrementAndGet());
+                    t.setDaemon(true); // No impide que termine la aplicación.
+                    return t;
+                });
+        this.ejecutor.allowCoreThreadTimeOut(true); // Sin consultas, los hilos no quedan ocupando memoria.
+    }
+
+    /**
+     * Ejecuta cualquier consulta del DAO en segundo plano.
+     * @return Un future que se completa con el resultado, o excepcionalmente con la SQLException de la consulta.
+     */
+    public <T> CompletableFuture<T> ejecutar(ConsultaDAO<T> consulta) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        try {
+            ejecutor.execute(() -> {
+                try {
+                    resultado.complete(consulta.ejecutar(repositorioDAO));
+                } catch (Throwable e) {
+                    resultado.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            resultado.completeExceptionally(new SQLException("Hay demasiadas consultas en espera (" + TAMANIO_COLA + "); intente de nuevo.", e));
+        }
+        return resultado;
+    }
+
+    // --- Consultas que usan los controladores ---
+
+    public CompletableFuture<Cliente> getClientePorNIS(int nis) {
+        return ejecutar(dao -> dao.getClientePorNIS(nis));
+    }
+
+    public CompletableFuture<Medidor> getMedidorAsociadoACliente(int idCliente) {
+        return ejecutar(dao -> dao.getMedidorAsociadoACliente(idCliente));
+    }
+
+    public CompletableFuture<TipoDeSolicitud> getTipoSolicitudPorNombre(String nombre) {
+        return ejecutar(dao -> dao.getTipoSolicitudPorNombre(nombre));
+    }
+
+    public CompletableFuture<EstadoDeSolicitudDeServicio> getEstadoSolicitudPorNombre(String nombre) {
+        return ejecutar(dao -> dao.getEstadoSolicitudPorNombre(nombre));
+    }
+
+    public CompletableFuture<EstadoDeMedidor> getEstadoMedidorPorNombre(String nombre) {
+        return ejecutar(dao -> dao.getEstadoMedidorPorNombre(nombre));
+    }
+
+    public CompletableFuture<Servicio> getServicioPorMedidor(int idMedidor) {
+        return ejecutar(dao -> dao.getServicioPorMedidor(idMedidor));
+    }
+
+    public CompletableFuture<List<SolicitudDeServicio>> getSolicitudesPendientesPorCliente(int idCliente) {
+        return ejecutar(dao -> dao.getSolicitudesPendientesPorCliente(idCliente));
+    }
+
+    /**
+     * Espera el resultado de un future de esta fachada, devolviendo la SQLException original si la consulta falló.
+     * @throws SQLException La excepción de la consulta (o una que la envuelve, si fue otro tipo de error).
+     */
+    public static <T> T esperar(CompletableFuture<T> futuro) throws SQLException {
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Se interrumpió la espera de una consulta.", e);
+        } catch (ExecutionException | CompletionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof SQLException) {
+                throw (SQLException) causa;
+            }
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            throw new SQLException("Error al ejecutar una consulta: " + causa, causa);
+        }
+    }
+
+    /**
+     * @return Retorno los hilos ocupados y las consultas en cola, para mostrar por consola.
+     */
+    public String resumen() {
+        return "Consultas asíncronas: " + ejecutor.getActiveCount() + "/" + ejecutor.getMaximumPoolSize()
+                + " en curso, " + ejecutor.getQueue().size() + " en cola, " + ejecutor.getCompletedTaskCount() + " completadas.";
+    }
+
+    /**
+     * Deja de aceptar consultas; las que ya estaban en cola se terminan.
+     */
+    public void cerrar() {
+        ejecutor.shutdown();
+    }
+}
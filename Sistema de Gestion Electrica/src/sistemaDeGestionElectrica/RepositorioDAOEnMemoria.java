@@ -0,0 +1,956 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.math.RoundingMode;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Clase RepositorioDAOEnMemoria.
+ * Implementación de RepositorioDAO sin base de datos: todas las entidades viven en mapas concurrentes,
+ * con índices hash por id, NIS, idUniversal y correo. Lo uso para el modo demo y para correr pruebas de
+ * carga y simulaciones de los controladores sin MySQL (se elige con -Dsgre.repositorio=memoria).
+ *
+ * Respeta el comportamiento del repositorio JDBC donde los controladores lo notan:
+ * - Las búsquedas ignoran mayúsculas en correo e idUniversal, como la collation de MySQL.
+ * - Medidores, Servicios y Solicitudes se guardan y se entregan como copias: modificar un objeto leído
+ *   no cambia nada hasta que se llama al método de actualización.
+ * - Las claves foráneas se validan (un Medidor de un cliente inexistente falla con SQLState 23000).
+ * Las escrituras se serializan con un único lock, así una UnidadDeTrabajo se aplica entera sin que otra
+ * escritura se intercale; las lecturas no toman lock y ven cada entidad de forma atómica.
+ * Los datos se pierden al cerrar la aplicación.
+ */
+public class RepositorioDAOEnMemoria implements RepositorioDAO {
+
+    // Orden de las solicitudes, igual que ORDER BY fechaSolicitud, idSolicitud.
+    private static final Comparator<PaginaDeSolicitudes.Cursor> ORDEN_DE_SOLICITUDES =
+            Comparator.comparing(PaginaDeSolicitudes.Cursor::getFechaSolicitud).thenComparingInt(PaginaDeSolicitudes.Cursor::getIdSolicitud);
+
+    private final RegistroDeReferencia referencia = RegistroDeReferencia.getInstancia();
+    private final Object bloqueoDeEscritura = new Object(); // Serializa las escrituras (ver comentario de la clase).
+
+    // --- Usuarios e índices de identificación ---
+    private final Map<Integer, Usuario> usuariosPorId = new ConcurrentHashMap<>(); // Clientes y Operarios.
+    private final Map<Integer, Integer> idClientePorNIS = new ConcurrentHashMap<>();
+    private final Map<String, Integer> idOperarioPorIdUniversal = new ConcurrentHashMap<>(); // Clave en minúsculas.
+    private final Map<String, Integer> idUsuarioPorCorreo = new ConcurrentHashMap<>(); // Clave en minúsculas.
+    private final Map<Integer, String> departamentoPorCliente = new ConcurrentHashMap<>();
+
+    // --- Medidores, Servicios y Facturas ---
+    private final Map<Integer, Medidor> medidoresPorId = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> idMedidorPorCliente = new ConcurrentHashMap<>(); // El de menor id, como el índice.
+    private final Map<Integer, Servicio> serviciosPorId = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> idServicioPorMedidor = new ConcurrentHashMap<>();
+    private final Map<Integer, Factura> facturasPorId = new ConcurrentHashMap<>();
+    private final Map<Integer, TreeMap<Long, Long>> lecturasPorMedidor = new HashMap<>(); // Instante -> Wh. Con el lock de escritura.
+    private final Set<YearMonth> periodosFacturados = new HashSet<>(); // Con el lock de escritura.
+    private final Map<Integer, Pago> pagosPorId = new ConcurrentHashMap<>();
+    private final Map<String, Integer> idPagoPorReferencia = new ConcurrentHashMap<>(); // Como el índice único de Pago.referencia.
+
+    // --- Solicitudes: por id y ordenadas para la paginación por clave ---
+    private final Map<Integer, SolicitudDeServicio> solicitudesPorId = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<PaginaDeSolicitudes.Cursor, SolicitudDeServicio> solicitudesOrdenadas =
+            new ConcurrentSkipListMap<>(ORDEN_DE_SOLICITUDES);
+
+    // --- Generadores de IDs (como AUTO_INCREMENT) ---
+    private final AtomicInteger ultimoIdMedidor = new AtomicInteger();
+    private final AtomicInteger ultimoIdServicio = new AtomicInteger();
+    private final AtomicInteger ultimoIdSolicitud = new AtomicInteger();
+    private final AtomicInteger ultimoIdFactura = new AtomicInteger();
+    private final AtomicInteger ultimoIdPago = new AtomicInteger();
+
+    private final AlmacenColumnarDeLecturas almacenDeLecturas; // Copia columnar de lecturasPorMedidor para las consultas.
+
+    public RepositorioDAOEnMemoria() {
+        this(AlmacenColumnarDeLecturas.enDirectorioConfigurado());
+    }
+
+    public RepositorioDAOEnMemoria(AlmacenColumnarDeLecturas almacenDeLecturas) {
+        this.almacenDeLecturas = almacenDeLecturas;
+        referencia.cargarValoresIniciales(); // Estados, tipos y permisos sin leer la BD.
+        CatalogoDeTarifas.getInstancia().cargarValoresIniciales();
+    }
+
+    /**
+     * @return Retorno un repositorio con los mismos datos de ejemplo que SGRE.sql (modo demo).
+     */
+    public static RepositorioDAOEnMemoria conDatosDeEjemplo() {
+        RepositorioDAOEnMemoria repo = new RepositorioDAOEnMemoria();
+        try {
+            Permisos cliente = repo.referencia.getPermisosPorID(1);
+            Permisos operario = repo.referencia.getPermisosPorID(2);
+            Permisos administrador = repo.referencia.getPermisosPorID(3);
+
+            Cliente laura = new Cliente(1, "Laura", "García", "Av. San Martín 123", "3874112233", "laura.g@mail.com", "hash+Pass1", cliente, 789012345);
+            Cliente juan = new Cliente(2, "Juan", "Pérez", "Calle 10 Nro 45", "3875445566", "juan.p@mail.com", "hash+Pass2", cliente, 901234567);
+            repo.agregarCliente(laura, "Capital");
+            repo.agregarCliente(juan, "Cerrillos");
+            repo.agregarOperario(new Operario(3, "Carlos", "López", "Oficina Central Piso 3", "3875778899", "carlos.l@empresa.com", "hash+Op1", operario, "OP1001", "Instalaciones"));
+            repo.agregarOperario(new Operario(4, "Ana", "Rodríguez", "Sede Principal", "3873990011", "ana.r@empresa.com", "hash+Adm1", administrador, "ADM001", "Sistemas"));
+
+            EstadoDeMedidor activo = repo.getEstadoMedidorPorNombre("Activo");
+            EstadoDeMedidor suspendido = repo.getEstadoMedidorPorNombre("Suspendido");
+            Date ahora = new Date();
+            Medidor m1 = new Medidor(0, "iM10", "ABB", "Av. San Martín 123, Frente", 550_000, ahora, fecha(2024, 3, 1), 2022, activo, laura);
+            Medidor m2 = new Medidor(0, "iM10", "Siemens", "Calle 10 Nro 45, Interior", 0, ahora, fecha(2024, 4, 10), 2023, suspendido, juan);
+            Medidor m3 = new Medidor(0, "i310", "ABB", "Av. San Martín 123, Patio", 1_200_000, ahora, fecha(2024, 3, 5), 2022, activo, laura);
+            repo.agregarMedidor(m1);
+            repo.agregarMedidor(m2);
+            repo.agregarMedidor(m3);
+
+            repo.agregarServicio(new Servicio(0, fecha(2024, 3, 1), null, null, laura, m1));
+            repo.agregarServicio(new Servicio(0, fecha(2024, 4, 10), fecha(2024, 9, 1), null, juan, m2));
+            repo.agregarServicio(new Servicio(0, fecha(2024, 3, 5), null, null, laura, m3));
+
+            repo.agregarFactura(new Factura(0, 850_050, fecha(2024, 9, 1), fecha(2024, 9, 15), 550_000, "Pagada", laura, m1));
+            repo.agregarFactura(new Factura(0, 1_200_000, fecha(2024, 9, 1), fecha(2024, 9, 15), 1_200_000, "Pagada", laura, m3));
+            repo.agregarFactura(new Factura(0, 0, fecha(2024, 9, 1), fecha(2024, 9, 15), 0, "Pendiente", juan, m2));
+
+            repo.agregarSolicitud(new SolicitudDeServicio(0, "Solicito reactivar mi servicio lo antes posible.", juan, suspendido,
+                    repo.referencia.getTipoSolicitudPorID(1), repo.getEstadoSolicitudPorNombre("Pendiente")));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Datos de ejemplo inconsistentes: " + e.getMessage(), e); // Nunca debería pasar.
+        }
+        System.out.println("REPOSITORIO EN MEMORIA: datos de ejemplo cargados (" + repo.usuariosPorId.size() + " usuarios, "
+                + repo.medidoresPorId.size() + " medidores). Los cambios no se guardan al salir.");
+        return repo;
+    }
+
+    @Override
+    public boolean usaBaseDeDatos() {
+        return false;
+    }
+
+    // ------------------ Altas para cargar datos (demo, simulaciones) ------------------
+
+    // Agrega un Cliente con su departamento. Falla si el id, el NIS o el correo ya existen.
+    public void agregarCliente(Cliente cliente, String departamento) throws SQLException {
+        synchronized (bloqueoDeEscritura) {
+            verificarUsuarioNuevo(cliente);
+            if (idClientePorNIS.containsKey(cliente.getNIS())) {
+                throw duplicado("NIS " + cliente.getNIS());
+            }
+            usuariosPorId.put(cliente.getIdUsuario(), cliente);
+            idClientePorNIS.put(cliente.getNIS(), cliente.getIdUsuario());
+            idUsuarioPorCorreo.put(minusculas(cliente.getCorreoElectronico()), cliente.getIdUsuario());
+            if (departamento != null) {
+                departamentoPorCliente.put(cliente.getIdUsuario(), departamento);
+            }
+        }
+    }
+
+    // Agrega un Operario. Falla si el id, el idUniversal o el correo ya existen.
+    public void agregarOperario(Operario operario) throws SQLException {
+        synchronized (bloqueoDeEscritura) {
+            verificarUsuarioNuevo(operario);
+            if (idOperarioPorIdUniversal.containsKey(minusculas(operario.getIdUniversal()))) {
+                throw duplicado("idUniversal " + operario.getIdUniversal());
+            }
+            usuariosPorId.put(operario.getIdUsuario(), operario);
+            idOperarioPorIdUniversal.put(minusculas(operario.getIdUniversal()), operario.getIdUsuario());
+            idUsuarioPorCorreo.put(minusculas(operario.getCorreoElectronico()), operario.getIdUsuario());
+        }
+    }
+
+    // Agrega el Servicio de un Medidor. Si llega con idServicio = 0, le asigna uno.
+    public void agregarServicio(Servicio servicio) throws SQLException {
+        synchronized (bloqueoDeEscritura) {
+            verificarCliente(servicio.getCliente());
+            if (servicio.getMedidor() == null || !medidoresPorId.containsKey(servicio.getMedidor().getIdMedidor())) {
+                throw claveForaneaInvalida("Medidor");
+            }
+            servicio.setIdServicio(asignarId(ultimoIdServicio, servicio.getIdServicio(), serviciosPorId));
+            serviciosPorId.put(servicio.getIdServicio(), copiarServicio(servicio));
+            idServicioPorMedidor.merge(servicio.getMedidor().getIdMedidor(), servicio.getIdServicio(), Math::min);
+        }
+    }
+
+    // Agrega una Factura. Si llega con idFactura = 0, le asigna uno.
+    public void agregarFactura(Factura factura) throws SQLException {
+        synchronized (bloqueoDeEscritura) {
+            verificarCliente(factura.getCliente());
+            factura.setIdFactura(asignarId(ultimoIdFactura, factura.getIdFactura(), facturasPorId));
+            facturasPorId.put(factura.getIdFactura(), factura);
+        }
+    }
+
+    // ------------------ Usuarios ------------------
+
+    @Override
+    public Cliente getClientePorNIS(int nis) {
+        Integer id = idClientePorNIS.get(nis);
+        return id == null ? null : (Cliente) usuariosPorId.get(id);
+    }
+
+    @Override
+    public Cliente getClientePorID(int idUsuario) {
+        Usuario usuario = usuariosPorId.get(idUsuario);
+        return usuario instanceof Cliente ? (Cliente) usuario : null;
+    }
+
+    @Override
+    public Map<Integer, Integer> getIdsDeClientesPorNIS(Collection<Integer> nisBuscados) {
+        Map<Integer, Integer> idPorNIS = new HashMap<>();
+        for (Integer nis : nisBuscados) {
+            Integer id = idClientePorNIS.get(nis);
+            if (id != null) {
+                idPorNIS.put(nis, id);
+            }
+        }
+        return idPorNIS;
+    }
+
+    @Override
+    public Operario getOperarioPorID(int idOperario) {
+        Usuario usuario = usuariosPorId.get(idOperario);
+        return usuario instanceof Operario ? (Operario) usuario : null;
+    }
+
+    // Como en la versión JDBC: clasifico el identificador y busco solo en su índice (un número que no es NIS
+    // de nadie se prueba además como idUniversal).
+    @Override
+    public Usuario autenticarUsuario(String identificador, String contrasena) {
+        if (identificador == null || contrasena == null) {
+            return null;
+        }
+        List<Integer> candidatos = new ArrayList<>(2);
+        switch (TipoDeIdentificador.clasificar(identificador)) {
+            case CORREO:
+                candidatos.add(idUsuarioPorCorreo.get(minusculas(identificador)));
+                break;
+            case NIS:
+                candidatos.add(idClientePorNIS.get(Integer.parseInt(identificador.trim())));
+                candidatos.add(idOperarioPorIdUniversal.get(minusculas(identificador)));
+                break;
+            default:
+                candidatos.add(idOperarioPorIdUniversal.get(minusculas(identificador)));
+        }
+
+        for (Integer id : candidatos) {
+            Usuario usuario = id == null ? null : usuariosPorId.get(id);
+            if (usuario != null && contrasena.equals(usuario.getContrasena())) {
+                if (usuario instanceof Cliente) {
+                    System.out.println("Usuario autenticado como Cliente (NIS: " + ((Cliente) usuario).getNIS() + ")");
+                } else {
+                    System.out.println("Usuario autenticado como Operario (ID Universal: " + ((Operario) usuario).getIdUniversal() + ")");
+                }
+                return usuario;
+            }
+        }
+        return null; // Autenticación fallida
+    }
+
+    // ------------------ Datos de referencia ------------------
+
+    @Override
+    public void refrescarDatosDeReferencia() {
+        // No hay BD de donde releerlos: los valores iniciales no cambian.
+    }
+
+    @Override
+    public List<EstadoDeMedidor> getTodosLosEstadosDeMedidor() throws SQLException {
+        return referencia.getTodosLosEstadosDeMedidor();
+    }
+
+    @Override
+    public EstadoDeMedidor getEstadoMedidorPorNombre(String nombre) throws SQLException {
+        return referencia.getEstadoMedidorPorNombre(nombre);
+    }
+
+    @Override
+    public TipoDeSolicitud getTipoSolicitudPorNombre(String nombre) throws SQLException {
+        return referencia.getTipoSolicitudPorNombre(nombre);
+    }
+
+    @Override
+    public EstadoDeSolicitudDeServicio getEstadoSolicitudPorNombre(String nombre) throws SQLException {
+        return referencia.getEstadoSolicitudPorNombre(nombre);
+    }
+
+    // ------------------ Medidores y Servicios ------------------
+
+    @Override
+    public Medidor getMedidorPorID(int idMedidor) {
+        return copiarMedidor(medidoresPorId.get(idMedidor));
+    }
+
+    @Override
+    public Medidor getMedidorAsociadoACliente(int idCliente) {
+        Integer idMedidor = idMedidorPorCliente.get(idCliente);
+        return idMedidor == null ? null : getMedidorPorID(idMedidor);
+    }
+
+    @Override
+    public Servicio getServicioPorMedidor(int idMedidor) {
+        Integer idServicio = idServicioPorMedidor.get(idMedidor);
+        Servicio servicio = idServicio == null ? null : serviciosPorId.get(idServicio);
+        if (servicio == null) {
+            return null;
+        }
+        Servicio copia = copiarServicio(servicio);
+        copia.setMedidor(getMedidorPorID(idMedidor)); // El medidor actual, no el del momento del alta.
+        return copia;
+    }
+
+    @Override
+    public void agregarMedidor(Medidor nuevoMedidor) throws SQLException {
+        synchronized (bloqueoDeEscritura) {
+            verificarCliente(nuevoMedidor.getCliente());
+            nuevoMedidor.setIdMedidor(asignarId(ultimoIdMedidor, nuevoMedidor.getIdMedidor(), medidoresPorId));
+            Medidor guardado = copiarMedidor(nuevoMedidor);
+            guardado.setFechaActual(new Date()); // 'fecha' = momento del alta, como en la BD.
+            guardado.setCliente(getClientePorID(nuevoMedidor.getCliente().getIdUsuario())); // Como un JOIN: el Cliente completo.
+            medidoresPorId.put(guardado.getIdMedidor(), guardado);
+            idMedidorPorCliente.merge(guardado.getCliente().getIdUsuario(), guardado.getIdMedidor(), Math::min);
+        }
+    }
+
+    // Sin lotes ni commits por tramo: inserta de a uno y reporta los que fallan.
+    @Override
+    public int insertarMedidores(List<Medidor> medidores, int tamañoDeLote, int filasPorCommit,
+                                 BiConsumer<Medidor, SQLException> alFallar) {
+        int insertados = 0;
+        for (Medidor medidor : medidores) {
+            try {
+                agregarMedidor(medidor);
+                insertados++;
+            } catch (SQLException e) {
+                alFallar.accept(medidor, e);
+            }
+        }
+        return insertados;
+    }
+
+    @Override
+    public void actualizarMedidor(Medidor medidor) throws ConflictoDeVersionException {
+        synchronized (bloqueoDeEscritura) {
+            verificarVersion(medidor);
+            aplicarActualizacionMedidor(medidor);
+        }
+        medidor.setVersion(medidor.getVersion() + 1);
+    }
+
+    @Override
+    public void actualizarServicio(Servicio servicio) throws ConflictoDeVersionException {
+        synchronized (bloqueoDeEscritura) {
+            verificarVersion(servicio);
+            aplicarActualizacionServicio(servicio);
+        }
+        servicio.setVersion(servicio.getVersion() + 1);
+    }
+
+    // ------------------ Solicitudes de Servicio ------------------
+
+    @Override
+    public List<SolicitudDeServicio> getTodasLasSolicitudes() {
+        return filtrarSolicitudes(s -> true);
+    }
+
+    @Override
+    public List<SolicitudDeServicio> getSolicitudesPendientes() throws SQLException {
+        EstadoDeSolicitudDeServicio pendiente = getEstadoSolicitudPorNombre("Pendiente");
+        return pendiente == null ? new ArrayList<>() : filtrarSolicitudes(s -> esEstado(s, pendiente));
+    }
+
+    @Override
+    public List<SolicitudDeServicio> getSolicitudesPendientesPorCliente(int idCliente) throws SQLException {
+        EstadoDeSolicitudDeServicio pendiente = getEstadoSolicitudPorNombre("Pendiente");
+        if (pendiente == null) return new ArrayList<>();
+        return filtrarSolicitudes(s -> esEstado(s, pendiente) && s.getCliente().getIdUsuario() == idCliente);
+    }
+
+    // Recorre en orden desde el cursor y se detiene al juntar una página (+1 para saber si hay más).
+    @Override
+    public PaginaDeSolicitudes buscarSolicitudes(FiltroDeSolicitudes filtro, PaginaDeSolicitudes.Cursor despuesDe, int tamañoDePagina) {
+        if (tamañoDePagina < 1) {
+            throw new IllegalArgumentException("El tamaño de página debe ser positivo.");
+        }
+
+        Collection<SolicitudDeServicio> desdeElCursor = despuesDe == null
+                ? solicitudesOrdenadas.values()
+                : solicitudesOrdenadas.tailMap(despuesDe, false).values();
+
+        List<SolicitudDeServicio> solicitudes = new ArrayList<>();
+        for (SolicitudDeServicio s : desdeElCursor) {
+            if (cumpleFiltro(s, filtro)) {
+                solicitudes.add(copiarSolicitud(s));
+                if (solicitudes.size() > tamañoDePagina) {
+                    break;
+                }
+            }
+        }
+
+        PaginaDeSolicitudes.Cursor siguiente = null;
+        if (solicitudes.size() > tamañoDePagina) {
+            solicitudes.remove(tamañoDePagina); // La solicitud extra solo indica que hay más.
+            siguiente = claveDe(solicitudes.get(tamañoDePagina - 1));
+        }
+        return new PaginaDeSolicitudes(solicitudes, siguiente);
+    }
+
+    @Override
+    public boolean agregarSolicitud(SolicitudDeServicio solicitud) {
+        synchronized (bloqueoDeEscritura) {
+            try {
+                verificarCliente(solicitud.getCliente());
+            } catch (SQLException e) {
+                System.err.println("Error al registrar solicitud: " + e.getMessage());
+                return false;
+            }
+            solicitud.setIdSolicitud(ultimoIdSolicitud.incrementAndGet());
+            SolicitudDeServicio guardada = copiarSolicitud(solicitud);
+            solicitudesPorId.put(guardada.getIdSolicitud(), guardada);
+            solicitudesOrdenadas.put(claveDe(guardada), guardada);
+            return true;
+        }
+    }
+
+    @Override
+    public void actualizarSolicitud(SolicitudDeServicio solicitud) throws ConflictoDeVersionException {
+        synchronized (bloqueoDeEscritura) {
+            verificarVersion(solicitud);
+            aplicarActualizacionSolicitud(solicitud);
+        }
+        solicitud.setVersion(solicitud.getVersion() + 1);
+    }
+
+    // Todo bajo el lock de escritura, así que no hace falta partir en tramos.
+    @Override
+    public int registrarLecturas(List<Lectura> lecturas, int filasPorSentencia, int filasPorCommit,
+                                 BiConsumer<Lectura, String> alFallar) {
+        List<Lectura> nuevas = new ArrayList<>(lecturas.size());
+        synchronized (bloqueoDeEscritura) {
+            for (Lectura lectura : lecturas) {
+                Medidor actual = medidoresPorId.get(lectura.getIdMedidor());
+                if (actual == null) {
+                    alFallar.accept(lectura, "No existe el Medidor #" + lectura.getIdMedidor() + ".");
+                    continue;
+                }
+                long consumoWh = Energia.deKwh(lectura.getConsumoKwh(), RoundingMode.HALF_UP); // DECIMAL(12,3) en la BD.
+                TreeMap<Long, Long> serie = lecturasPorMedidor.computeIfAbsent(lectura.getIdMedidor(), id -> new TreeMap<>());
+                if (serie.putIfAbsent(lectura.getInstante(), consumoWh) != null) {
+                    continue; // Repetida: queda la primera, como con INSERT IGNORE.
+                }
+                nuevas.add(lectura);
+                if (serie.lastKey() == lectura.getInstante()) {
+                    // Es la más reciente del medidor: pasa a ser su consumo y su fecha.
+                    Medidor nuevo = new Medidor(actual.getIdMedidor(), actual.getTipo(), actual.getMarca(), actual.getUbicacion(),
+                            consumoWh, lectura.getFecha(), actual.getFechaDeInstalacion(),
+                            actual.getAnioDeFabricacion(), actual.getEstadoDeMedidor(), actual.getCliente());
+                    nuevo.setVersion(actual.getVersion() + 1);
+                    medidoresPorId.put(nuevo.getIdMedidor(), nuevo);
+                }
+            }
+        }
+        almacenDeLecturas.copiar(nuevas); // Fuera del lock: escribe en disco.
+        return nuevas.size();
+    }
+
+    @Override
+    public AlmacenColumnarDeLecturas getAlmacenDeLecturas() {
+        return almacenDeLecturas;
+    }
+
+    // Todo bajo el lock de escritura, así que no hace falta partir en tramos.
+    @Override
+    public int finalizarSolicitudes(List<SolicitudDeServicio> solicitudes, EstadoDeMedidor nuevoEstado, EstadoDeSolicitudDeServicio estadoFinal,
+                                    boolean activarServicio, int solicitudesPorTransaccion,
+                                    BiConsumer<SolicitudDeServicio, String> alFallar) {
+        Date ahora = new Date();
+        int finalizadas = 0;
+        synchronized (bloqueoDeEscritura) {
+            for (SolicitudDeServicio solicitud : solicitudes) {
+                SolicitudDeServicio actual = solicitudesPorId.get(solicitud.getIdSolicitud());
+                Integer idMedidor = actual == null ? null : idMedidorPorCliente.get(actual.getCliente().getIdUsuario());
+                if (actual == null) {
+                    alFallar.accept(solicitud, "La solicitud ya no existe.");
+                } else if (!esEstado(actual, solicitud.getEstadoDeSolicitudDeServicio())) {
+                    alFallar.accept(solicitud, "La solicitud ya no está en estado '"
+                            + solicitud.getEstadoDeSolicitudDeServicio().getNombre() + "' (la procesó otro operario).");
+                } else if (idMedidor == null) {
+                    alFallar.accept(solicitud, "El cliente no tiene un Medidor asociado.");
+                } else {
+                    Medidor medidor = copiarMedidor(medidoresPorId.get(idMedidor));
+                    medidor.setEstadoDeMedidor(nuevoEstado);
+                    medidor.setFechaActual(ahora);
+                    aplicarActualizacionMedidor(medidor);
+
+                    Integer idServicio = idServicioPorMedidor.get(idMedidor);
+                    if (activarServicio && idServicio != null) {
+                        Servicio servicio = copiarServicio(serviciosPorId.get(idServicio));
+                        servicio.setFechaActivacion(ahora);
+                        aplicarActualizacionServicio(servicio);
+                    }
+
+                    SolicitudDeServicio finalizada = copiarSolicitud(actual);
+                    finalizada.actualizarEstado(estadoFinal);
+                    aplicarActualizacionSolicitud(finalizada);
+                    finalizadas++;
+                }
+            }
+        }
+        return finalizadas;
+    }
+
+    // ------------------ Facturación ------------------
+
+    // Todo bajo el lock de escritura: no hay cortes que retomar, así que el período se factura entero o nada.
+    @Override
+    public int facturarPeriodo(YearMonth periodo, Date fechaEmision, Date fechaVencimiento, TarifaCompilada tarifa,
+                               int paralelismo, int clientesPorParticion, int medidoresPorTramo,
+                               BiConsumer<Factura, String> alFallar) {
+        ZoneId zona = ZoneId.systemDefault();
+        long inicio = periodo.atDay(1).atStartOfDay(zona).toInstant().toEpochMilli();
+        long fin = periodo.plusMonths(1).atDay(1).atStartOfDay(zona).toInstant().toEpochMilli();
+
+        synchronized (bloqueoDeEscritura) {
+            if (!periodosFacturados.add(periodo)) {
+                return 0;
+            }
+            // Mismo orden que las particiones del repositorio JDBC: por NIS y después por medidor.
+            List<Medidor> aFacturar = medidoresPorId.values().stream()
+                    .filter(m -> tieneServicioVigente(m.getIdMedidor(), inicio, fin))
+                    .sorted(Comparator.comparingInt((Medidor m) -> m.getCliente().getNIS()).thenComparingInt(Medidor::getIdMedidor))
+                    .collect(Collectors.toList());
+
+            long[] consumoPorHora = new long[TarifaCompilada.HORAS];
+            int generadas = 0;
+            for (Medidor medidor : aFacturar) {
+                TreeMap<Long, Long> lecturas = lecturasPorMedidor.getOrDefault(medidor.getIdMedidor(), new TreeMap<>());
+                Map.Entry<Long, Long> inicial = lecturas.lowerEntry(inicio);
+                Map.Entry<Long, Long> ultima = lecturas.lowerEntry(fin);
+                long consumo = ultima == null ? 0 : ultima.getValue() - (inicial == null ? 0 : inicial.getValue());
+
+                Factura factura = new Factura(0, 0, fechaEmision, fechaVencimiento, consumo, "Pendiente",
+                        medidor.getCliente(), copiarMedidor(medidor));
+                if (consumo < 0) {
+                    alFallar.accept(factura, "La lectura final es menor que la inicial (¿cambio de medidor?): requiere revisión manual.");
+                    continue;
+                }
+                if (tarifa.usaFranjas()) {
+                    sumarConsumoPorHora(lecturas, inicio, fin, consumoPorHora);
+                    factura.setMontoEnCentavos(tarifa.calcularMonto(consumo, consumoPorHora, 0));
+                } else {
+                    factura.setMontoEnCentavos(tarifa.calcularMonto(consumo));
+                }
+                factura.setIdFactura(ultimoIdFactura.incrementAndGet());
+                facturasPorId.put(factura.getIdFactura(), factura);
+                generadas++;
+            }
+            return generadas;
+        }
+    }
+
+    // Como FacturacionDelPeriodo.SQL_CONSUMO_POR_HORA: la diferencia con la lectura anterior del mes, en la hora de la lectura.
+    private static void sumarConsumoPorHora(TreeMap<Long, Long> lecturas, long inicio, long fin, long[] consumoPorHora) {
+        Arrays.fill(consumoPorHora, 0);
+        Long anterior = null;
+        for (Map.Entry<Long, Long> lectura : lecturas.subMap(inicio, fin).entrySet()) {
+            if (anterior != null) {
+                int hora = Instant.ofEpochMilli(lectura.getKey()).atZone(ZoneId.systemDefault()).getHour();
+                consumoPorHora[hora] += lectura.getValue() - anterior;
+            }
+            anterior = lectura.getValue();
+        }
+    }
+
+    // Algún Servicio del medidor se activó antes del fin del período y no se dio de baja antes de su inicio.
+    private boolean tieneServicioVigente(int idMedidor, long inicio, long fin) {
+        for (Servicio servicio : serviciosPorId.values()) {
+            if (servicio.getMedidor().getIdMedidor() == idMedidor
+                    && servicio.getFechaActivacion().getTime() < fin
+                    && (servicio.getFechaBaja() == null || servicio.getFechaBaja().getTime() >= inicio)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ------------------ Conciliación de pagos ------------------
+
+    @Override
+    public IndiceDeFacturasAbiertas getFacturasAbiertas() {
+        synchronized (bloqueoDeEscritura) {
+            Map<Integer, Long> pagado = pagadoPorFactura();
+            IndiceDeFacturasAbiertas indice = new IndiceDeFacturasAbiertas(facturasPorId.size());
+            for (Factura factura : facturasPorId.values()) {
+                if (estaAbierta(factura)) {
+                    long saldo = factura.getMontoEnCentavos() + factura.getRecargoEnCentavos()
+                            - pagado.getOrDefault(factura.getIdFactura(), 0L);
+                    indice.agregar(factura.getIdFactura(), Math.max(saldo, 0));
+                }
+            }
+            return indice;
+        }
+    }
+
+    @Override
+    public Set<String> getReferenciasDePagoRegistradas(Collection<String> referencias) {
+        return referencias.stream().filter(idPagoPorReferencia::containsKey).collect(Collectors.toSet());
+    }
+
+    // Cada pago se registra entero o no se registra, como en un tramo de ConciliacionDePagos.
+    @Override
+    public int registrarPagos(List<Pago> pagos, int pagosPorCommit, BiConsumer<Pago, String> alFallar) {
+        int registrados = 0;
+        synchronized (bloqueoDeEscritura) {
+            Map<Integer, Long> pagado = pagadoPorFactura();
+            for (Pago pago : pagos) {
+                Factura factura = facturasPorId.get(pago.getFactura().getIdFactura());
+                if (factura == null) {
+                    alFallar.accept(pago, "Violación de clave foránea: la Factura #" + pago.getFactura().getIdFactura() + " no existe.");
+                    continue;
+                }
+                if (pago.getReferencia() != null && idPagoPorReferencia.containsKey(pago.getReferencia())) {
+                    alFallar.accept(pago, "Entrada duplicada: la referencia '" + pago.getReferencia() + "' ya está registrada.");
+                    continue;
+                }
+                try {
+                    pago.setIdPago(asignarId(ultimoIdPago, pago.getIdPago(), pagosPorId));
+                } catch (SQLException e) {
+                    alFallar.accept(pago, e.getMessage());
+                    continue;
+                }
+                pagosPorId.put(pago.getIdPago(), pago);
+                if (pago.getReferencia() != null) {
+                    idPagoPorReferencia.put(pago.getReferencia(), pago.getIdPago());
+                }
+                if (ConciliacionDePagos.ESTADO_PAGO_APROBADO.equals(pago.getEstado())) {
+                    pagado.merge(factura.getIdFactura(), pago.getMontoEnCentavos(), Long::sum);
+                }
+                // Como SQL_SALDAR_FACTURA: la decide lo registrado, no la imputación del controlador.
+                if (factura.getMontoEnCentavos() + factura.getRecargoEnCentavos() <= pagado.getOrDefault(factura.getIdFactura(), 0L)) {
+                    factura.setEstadoDeFactura(ConciliacionDePagos.ESTADO_FACTURA_PAGADA);
+                }
+                registrados++;
+            }
+        }
+        return registrados;
+    }
+
+    // Suma de los pagos aprobados de cada factura. Se llama con bloqueoDeEscritura tomado.
+    private Map<Integer, Long> pagadoPorFactura() {
+        Map<Integer, Long> pagado = new HashMap<>();
+        for (Pago pago : pagosPorId.values()) {
+            if (ConciliacionDePagos.ESTADO_PAGO_APROBADO.equals(pago.getEstado())) {
+                pagado.merge(pago.getFactura().getIdFactura(), pago.getMontoEnCentavos(), Long::sum);
+            }
+        }
+        return pagado;
+    }
+
+    private static boolean estaAbierta(Factura factura) {
+        return FacturacionDelPeriodo.ESTADO_PENDIENTE.equals(factura.getEstadoDeFactura())
+                || ConciliacionDePagos.ESTADO_FACTURA_VENCIDA.equals(factura.getEstadoDeFactura());
+    }
+
+    // ------------------ Vencimientos ------------------
+
+    // Mismo resultado que BarridoDeVencimientos, en una sola pasada (en memoria no hay otras instancias).
+    @Override
+    public int vencerFacturas(Date corte, int recargoEnPuntosBasicos, int facturasPorTramo) {
+        int vencidas = 0;
+        synchronized (bloqueoDeEscritura) {
+            Map<Integer, Long> pagado = pagadoPorFactura();
+            for (Factura factura : facturasPorId.values()) {
+                if (FacturacionDelPeriodo.ESTADO_PENDIENTE.equals(factura.getEstadoDeFactura())
+                        && factura.getFechaVencimiento().before(corte)) {
+                    long saldo = Math.max(factura.getMontoEnCentavos() - pagado.getOrDefault(factura.getIdFactura(), 0L), 0);
+                    factura.setRecargoEnCentavos(Dinero.multiplicar(saldo, recargoEnPuntosBasicos,
+                            BarridoDeVencimientos.PUNTOS_BASICOS, RoundingMode.HALF_UP));
+                    factura.setEstadoDeFactura(ConciliacionDePagos.ESTADO_FACTURA_VENCIDA);
+                    vencidas++;
+                }
+            }
+        }
+        return vencidas;
+    }
+
+    // ------------------ Recorridos ------------------
+
+    @Override
+    public Stream<Medidor> transmitirMedidores() {
+        return medidoresPorId.values().stream()
+                .sorted(Comparator.comparingInt(Medidor::getIdMedidor))
+                .map(RepositorioDAOEnMemoria::copiarMedidor);
+    }
+
+    @Override
+    public Stream<Factura> transmitirFacturas() {
+        return facturasPorId.values().stream().sorted(Comparator.comparingInt(Factura::getIdFactura));
+    }
+
+    @Override
+    public Stream<SolicitudDeServicio> transmitirSolicitudes() {
+        return solicitudesOrdenadas.values().stream().map(RepositorioDAOEnMemoria::copiarSolicitud);
+    }
+
+    // ------------------ Transacciones y estadísticas ------------------
+
+    @Override
+    public UnidadDeTrabajo iniciarUnidadDeTrabajo() {
+        return new UnidadDeTrabajoEnMemoria();
+    }
+
+    @Override
+    public String getEstadisticasCache() {
+        return "Repositorio en memoria: " + usuariosPorId.size() + " usuarios, " + idClientePorNIS.size() + " NIS, "
+                + idOperarioPorIdUniversal.size() + " idUniversal, " + idUsuarioPorCorreo.size() + " correos, "
+                + medidoresPorId.size() + " medidores, " + serviciosPorId.size() + " servicios, "
+                + solicitudesPorId.size() + " solicitudes, " + facturasPorId.size() + " facturas.";
+    }
+
+    /*
+     * Unidad de trabajo en memoria: registra las actualizaciones (con copias de los objetos) y las aplica
+     * todas bajo el lock de escritura en confirmar(), después de verificar todas las versiones: si alguna
+     * no coincide no se aplica ninguna, como el rollback de la versión JDBC. Si no se confirma, se descartan.
+     */
+    private final class UnidadDeTrabajoEnMemoria implements UnidadDeTrabajo {
+        private final List<Object> copias = new ArrayList<>(); // Lo que se aplica, en orden de registro.
+        private final List<Object> originales = new ArrayList<>(); // Los objetos del llamador, cuya versión avanza al confirmar.
+        private boolean confirmada = false;
+
+        // No hay bloqueo de fila: la atomicidad la da el lock de escritura al confirmar.
+        @Override
+        public Servicio getServicioPorMedidor(int idMedidor) {
+            return RepositorioDAOEnMemoria.this.getServicioPorMedidor(idMedidor);
+        }
+
+        @Override
+        public void actualizarServicio(Servicio servicio) {
+            copias.add(copiarServicio(servicio));
+            originales.add(servicio);
+        }
+
+        @Override
+        public void actualizarMedidor(Medidor medidor) {
+            copias.add(copiarMedidor(medidor));
+            originales.add(medidor);
+        }
+
+        @Override
+        public void actualizarSolicitud(SolicitudDeServicio solicitud) {
+            copias.add(copiarSolicitud(solicitud));
+            originales.add(solicitud);
+        }
+
+        @Override
+        public void confirmar() throws ConflictoDeVersionException {
+            if (confirmada) {
+                throw new IllegalStateException("La unidad de trabajo ya fue confirmada.");
+            }
+            synchronized (bloqueoDeEscritura) {
+                for (Object copia : copias) {
+                    verificarVersion(copia);
+                }
+                for (Object copia : copias) {
+                    if (copia instanceof Medidor) {
+                        aplicarActualizacionMedidor((Medidor) copia);
+                    } else if (copia instanceof Servicio) {
+                        aplicarActualizacionServicio((Servicio) copia);
+                    } else {
+                        aplicarActualizacionSolicitud((SolicitudDeServicio) copia);
+                    }
+                }
+            }
+            confirmada = true;
+            for (Object original : originales) {
+                if (original instanceof Medidor) {
+                    ((Medidor) original).setVersion(((Medidor) original).getVersion() + 1);
+                } else if (original instanceof Servicio) {
+                    ((Servicio) original).setVersion(((Servicio) original).getVersion() + 1);
+                } else {
+                    ((SolicitudDeServicio) original).setVersion(((SolicitudDeServicio) original).getVersion() + 1);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            copias.clear();
+            originales.clear();
+        }
+    }
+
+    // ------------------ Internos ------------------
+
+    // Con el lock de escritura tomado: la versión guardada debe ser la que leyó el llamador, como en el
+    // "WHERE id = ? AND version = ?" de RepositorioDAOJDBC.
+    private void verificarVersion(Object entidad) throws ConflictoDeVersionException {
+        if (entidad instanceof Medidor) {
+            Medidor m = (Medidor) entidad;
+            Medidor actual = medidoresPorId.get(m.getIdMedidor());
+            if (actual == null || actual.getVersion() != m.getVersion()) {
+                throw new ConflictoDeVersionException(ConflictoDeVersionException.Entidad.MEDIDOR, m.getIdMedidor(), m.getVersion());
+            }
+        } else if (entidad instanceof Servicio) {
+            Servicio s = (Servicio) entidad;
+            Servicio actual = serviciosPorId.get(s.getIdServicio());
+            if (actual == null || actual.getVersion() != s.getVersion()) {
+                throw new ConflictoDeVersionException(ConflictoDeVersionException.Entidad.SERVICIO, s.getIdServicio(), s.getVersion());
+            }
+        } else {
+            SolicitudDeServicio s = (SolicitudDeServicio) entidad;
+            SolicitudDeServicio actual = solicitudesPorId.get(s.getIdSolicitud());
+            if (actual == null || actual.getVersion() != s.getVersion()) {
+                throw new ConflictoDeVersionException(ConflictoDeVersionException.Entidad.SOLICITUD, s.getIdSolicitud(), s.getVersion());
+            }
+        }
+    }
+
+    // Las actualizaciones se llaman con el lock de escritura tomado. Como un UPDATE, no hacen nada si la fila no existe,
+    // y avanzan la versión guardada.
+    private void aplicarActualizacionMedidor(Medidor medidor) {
+        medidoresPorId.computeIfPresent(medidor.getIdMedidor(), (id, actual) -> {
+            Medidor nuevo = copiarMedidor(actual);
+            nuevo.setVersion(actual.getVersion() + 1);
+            nuevo.setEstadoDeMedidor(medidor.getEstadoDeMedidor());
+            nuevo.setFechaActual(medidor.getFechaActual());
+            return nuevo;
+        });
+    }
+
+    private void aplicarActualizacionServicio(Servicio servicio) {
+        serviciosPorId.computeIfPresent(servicio.getIdServicio(), (id, actual) -> {
+            Servicio nuevo = copiarServicio(actual);
+            nuevo.setVersion(actual.getVersion() + 1);
+            nuevo.setFechaActivacion(servicio.getFechaActivacion());
+            nuevo.setFechaSuspension(servicio.getFechaSuspension());
+            nuevo.setFechaBaja(servicio.getFechaBaja());
+            return nuevo;
+        });
+    }
+
+    private void aplicarActualizacionSolicitud(SolicitudDeServicio solicitud) {
+        SolicitudDeServicio actual = solicitudesPorId.get(solicitud.getIdSolicitud());
+        if (actual != null) {
+            SolicitudDeServicio nueva = copiarSolicitud(actual);
+            nueva.setVersion(actual.getVersion() + 1);
+            nueva.actualizarEstado(solicitud.getEstadoDeSolicitudDeServicio());
+            solicitudesPorId.put(nueva.getIdSolicitud(), nueva);
+            solicitudesOrdenadas.put(claveDe(nueva), nueva); // La clave no cambia: reemplaza a la anterior.
+        }
+    }
+
+    private List<SolicitudDeServicio> filtrarSolicitudes(Predicate<SolicitudDeServicio> condicion) {
+        return solicitudesOrdenadas.values().stream()
+                .filter(condicion)
+                .map(RepositorioDAOEnMemoria::copiarSolicitud)
+                .collect(Collectors.toList());
+    }
+
+    private boolean cumpleFiltro(SolicitudDeServicio s, FiltroDeSolicitudes filtro) {
+        if (filtro.getEstado() != null && !esEstado(s, filtro.getEstado())) return false;
+        if (filtro.getTipo() != null && s.getTipoDeSolicitud().getIdTipoDeSolicitud() != filtro.getTipo().getIdTipoDeSolicitud()) return false;
+        if (filtro.getDesde() != null && s.getFechaSolicitud().before(filtro.getDesde())) return false;
+        if (filtro.getHasta() != null && !s.getFechaSolicitud().before(filtro.getHasta())) return false;
+        if (filtro.getNis() != null && s.getCliente().getNIS() != filtro.getNis()) return false;
+        if (filtro.getDepartamento() != null
+                && !filtro.getDepartamento().equalsIgnoreCase(departamentoPorCliente.get(s.getCliente().getIdUsuario()))) return false;
+        if (filtro.getNisIncluidos() != null && !filtro.getNisIncluidos().contains(s.getCliente().getNIS())) return false;
+        return true;
+    }
+
+    private static boolean esEstado(SolicitudDeServicio s, EstadoDeSolicitudDeServicio estado) {
+        return s.getEstadoDeSolicitudDeServicio().getIdEstadoDeSolicitudDeServicio() == estado.getIdEstadoDeSolicitudDeServicio();
+    }
+
+    private static PaginaDeSolicitudes.Cursor claveDe(SolicitudDeServicio s) {
+        return new PaginaDeSolicitudes.Cursor(new Timestamp(s.getFechaSolicitud().getTime()), s.getIdSolicitud());
+    }
+
+    // Asigna el siguiente ID si llega 0; si llega uno explícito, verifica que no exista y adelanta el contador.
+    private static int asignarId(AtomicInteger ultimo, int id, Map<Integer, ?> existentes) throws SQLException {
+        if (id == 0) {
+            return ultimo.incrementAndGet();
+        }
+        if (existentes.containsKey(id)) {
+            throw duplicado("id " + id);
+        }
+        ultimo.accumulateAndGet(id, Math::max);
+        return id;
+    }
+
+    private void verificarUsuarioNuevo(Usuario usuario) throws SQLException {
+        if (usuariosPorId.containsKey(usuario.getIdUsuario())) {
+            throw duplicado("idUsuario " + usuario.getIdUsuario());
+        }
+        if (idUsuarioPorCorreo.containsKey(minusculas(usuario.getCorreoElectronico()))) {
+            throw duplicado("correo " + usuario.getCorreoElectronico());
+        }
+    }
+
+    private void verificarCliente(Cliente cliente) throws SQLException {
+        if (cliente == null || getClientePorID(cliente.getIdUsuario()) == null) {
+            throw claveForaneaInvalida("Cliente");
+        }
+    }
+
+    // Mismos SQLState y código que MySQL, para que quien los trate no distinga el repositorio.
+    private static SQLException duplicado(String que) {
+        return new SQLException("Entrada duplicada: " + que, "23000", 1062);
+    }
+
+    private static SQLException claveForaneaInvalida(String tabla) {
+        return new SQLException("No existe el " + tabla + " referenciado (clave foránea).", "23000", 1452);
+    }
+
+    private static String minusculas(String texto) {
+        return texto == null ? null : texto.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Date fecha(int anio, int mes, int dia) {
+        return java.sql.Date.valueOf(java.time.LocalDate.of(anio, mes, dia));
+    }
+
+    // Copias superficiales: comparten Cliente y entidades de referencia, que no se modifican.
+    private static Medidor copiarMedidor(Medidor m) {
+        if (m == null) return null;
+        Medidor copia = new Medidor(m.getIdMedidor(), m.getTipo(), m.getMarca(), m.getUbicacion(), m.getConsumoWh(),
+                m.getFechaActual(), m.getFechaDeInstalacion(), m.getAnioDeFabricacion(), m.getEstadoDeMedidor(), m.getCliente());
+        copia.setVersion(m.getVersion());
+        return copia;
+    }
+
+    private static Servicio copiarServicio(Servicio s) {
+        Servicio copia = new Servicio(s.getIdServicio(), s.getFechaActivacion(), s.getFechaSuspension(), s.getFechaBaja(),
+                s.getCliente(), copiarMedidor(s.getMedidor()));
+        copia.setVersion(s.getVersion());
+        return copia;
+    }
+
+    private static SolicitudDeServicio copiarSolicitud(SolicitudDeServicio s) {
+        SolicitudDeServicio copia = new SolicitudDeServicio(s.getIdSolicitud(), s.getDescripcion(), s.getCliente(),
+                s.getEstadoDeMedidor(), s.getTipoDeSolicitud(), s.getEstadoDeSolicitudDeServicio());
+        copia.setFechaSolicitud(s.getFechaSolicitud());
+        copia.setVersion(s.getVersion());
+        return copia;
+    }
+}
@@ -0,0 +1,1111 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+// Importaciones estándar de Java (util) y SQL para manejo de bases de datos
+import java.util.Date;
+import java.math.RoundingMode;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.sql.*;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+// Asumimos que existen las clases de dominio: Permisos, EstadoDeMedidor, Medidor, 
+// SolicitudDeServicio, TipoDeSolicitud, EstadoDeSolicitudDeServicio, Operario, Cliente, Usuario, Servicio, y DBConnection
+
+/**
+ * Clase RepositorioDAOJDBC.
+ * Implementación de RepositorioDAO sobre la base de datos MySQL (JDBC).
+ * Contiene métodos para consultar, insertar y actualizar datos en la base de datos (BD).
+ */
+public class RepositorioDAOJDBC implements RepositorioDAO {
+
+    // Tablas de referencia (estados, tipos, permisos) cargadas en memoria; evita re-consultarlas en cada llamada.
+    private final RegistroDeReferencia referencia = RegistroDeReferencia.getInstancia();
+
+    // --- Cachés de entidades (tamaño configurable con -Dsgre.cache.clientes / -Dsgre.cache.medidores) ---
+    // Lo que se guarda en caché se carga siempre del primario (DBConnection.getConnection): si lo leyera de una
+    // réplica atrasada justo después de invalidarlo, quedaría en caché un valor viejo. Los listados, búsquedas
+    // y recorridos, que no se guardan, van a las réplicas (DBConnection.getConnectionLectura).
+    // Cada instancia invalida solo su caché: lo que escriben otras instancias se ve a lo sumo
+    // 'sgre.cache.ttlSegundos' segundos después (0 = sin vencimiento, para una sola instancia).
+    private static final int MAX_CLIENTES_EN_CACHE = Integer.getInteger("sgre.cache.clientes", 10_000);
+    private static final int MAX_MEDIDORES_EN_CACHE = Integer.getInteger("sgre.cache.medidores", 10_000);
+    private static final long TTL_CACHE_MS = Integer.getInteger("sgre.cache.ttlSegundos", 30) * 1000L;
+    private final CacheLRU<Integer, Cliente> clientesPorId = new CacheLRU<>("Cliente por idUsuario", MAX_CLIENTES_EN_CACHE, TTL_CACHE_MS);
+    private final CacheLRU<Integer, Integer> idClientePorNIS = new CacheLRU<>("idUsuario por NIS", MAX_CLIENTES_EN_CACHE, TTL_CACHE_MS);
+    private final CacheLRU<Integer, Medidor> medidoresPorId = new CacheLRU<>("Medidor por idMedidor", MAX_MEDIDORES_EN_CACHE, TTL_CACHE_MS);
+    private final CacheLRU<Integer, Integer> idMedidorPorCliente = new CacheLRU<>("idMedidor por Cliente", MAX_MEDIDORES_EN_CACHE, TTL_CACHE_MS);
+
+    private final AlmacenColumnarDeLecturas almacenDeLecturas; // Copia local de las lecturas (ver IngestorDeLecturas).
+
+    public RepositorioDAOJDBC() {
+        this(AlmacenColumnarDeLecturas.enDirectorioConfigurado());
+    }
+
+    public RepositorioDAOJDBC(AlmacenColumnarDeLecturas almacenDeLecturas) {
+        this.almacenDeLecturas = almacenDeLecturas;
+    }
+
+    // Consulta base del cargador de solicitudes: trae en una sola ida y vuelta la solicitud y su Cliente
+    // (Usuario + Cliente). Tipo, estados y permisos se resuelven contra el registro de referencia.
+    static final String SQL_SOLICITUDES_CON_RELACIONES =
+            "SELECT s.idSolicitud, s.fechaSolicitud, s.descripcion, s.version, " +
+            "s.TipoDeSolicitud_idTipoDeSolicitud, s.EstadoDeMedidor_idEstadoDeMedidor, " +
+            "s.EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio, " +
+            "u.idUsuario, u.nombre, u.apellido, u.direccion, u.telefono, u.correoElectronico, u.contraseña, " +
+            "u.Permisos_idPermisos, c.NIS " +
+            "FROM SolicitudDeServicio s " +
+            "JOIN Cliente c ON s.Cliente_idCliente = c.idCliente " +
+            "JOIN Usuario u ON c.idCliente = u.idUsuario ";
+
+    // Consultas de los recorridos por cursor: traen cada fila con su Cliente (Usuario + Cliente) en el mismo JOIN.
+    private static final String SQL_MEDIDORES_CON_CLIENTE =
+            "SELECT m.idMedidor, m.tipo, m.marca, m.ubicacion, m.consumoKwh, m.fecha, m.fechaDeInstalacion, " +
+            "m.añoDeFabricacion, m.EstadoDeMedidor_idEstadoDeMedidor, m.version, " +
+            "u.idUsuario, u.nombre, u.apellido, u.direccion, u.telefono, u.correoElectronico, u.contraseña, " +
+            "u.Permisos_idPermisos, c.NIS " +
+            "FROM Medidor m " +
+            "JOIN Cliente c ON m.Cliente_idCliente = c.idCliente " +
+            "JOIN Usuario u ON c.idCliente = u.idUsuario " +
+            "ORDER BY m.idMedidor";
+    private static final String SQL_FACTURAS_CON_RELACIONES =
+            "SELECT f.idFactura, f.monto, f.recargo, f.fechaEmision, f.fechaVencimiento, f.consumoKwh AS consumoFactura, f.estado, " +
+            "m.idMedidor, m.tipo, m.marca, m.ubicacion, m.consumoKwh, m.fecha, m.fechaDeInstalacion, " +
+            "m.añoDeFabricacion, m.EstadoDeMedidor_idEstadoDeMedidor, m.version, " +
+            "u.idUsuario, u.nombre, u.apellido, u.direccion, u.telefono, u.correoElectronico, u.contraseña, " +
+            "u.Permisos_idPermisos, c.NIS " +
+            "FROM Factura f " +
+            "JOIN Medidor m ON f.Medidor_idMedidor = m.idMedidor " +
+            "JOIN Cliente c ON f.Cliente_idCliente = c.idCliente " +
+            "JOIN Usuario u ON c.idCliente = u.idUsuario " +
+            "ORDER BY f.idFactura";
+
+    // Consultas por clave. Son package-private para que VerificadorDeIndices pueda revisar su plan con EXPLAIN.
+    // Usuario + Cliente, filtrando por NIS o por idUsuario.
+    static final String SQL_CLIENTE_POR_NIS = "SELECT u.*, c.NIS FROM Usuario u JOIN Cliente c ON u.idUsuario = c.idCliente WHERE c.NIS = ?";
+    static final String SQL_CLIENTE_POR_ID = "SELECT u.*, c.NIS FROM Usuario u JOIN Cliente c ON u.idUsuario = c.idCliente WHERE u.idUsuario = ?";
+    static final String SQL_OPERARIO_POR_ID = "SELECT U.*, O.idUniversal, O.departamento FROM Operario O JOIN Usuario U ON O.idOperario = U.idUsuario WHERE O.idOperario = ?";
+    static final String SQL_MEDIDOR_POR_ID = "SELECT * FROM Medidor WHERE idMedidor = ?";
+    static final String SQL_ID_MEDIDOR_POR_CLIENTE = "SELECT idMedidor FROM Medidor WHERE Cliente_idCliente = ?"; // Por la clave foránea
+    static final String SQL_SERVICIO_POR_MEDIDOR = "SELECT * FROM Servicio WHERE Medidor_idMedidor = ?";
+    static final String SQL_NIS_A_ID_CLIENTE = "SELECT NIS, idCliente FROM Cliente WHERE NIS IN "; // + "(?, ?, ...)"
+    // Une Usuario, Cliente y Operario para probar múltiples campos de identificación; filtro final por contraseña.
+    // Autenticación: una consulta por tipo de identificador (ver TipoDeIdentificador), cada una empieza por el
+    // índice único de su columna y llega al resto por clave primaria. Un OR entre las tres no usa ningún índice.
+    private static final String COLUMNAS_DE_AUTENTICACION = "SELECT u.*, c.NIS, o.idUniversal, o.departamento, u.Permisos_idPermisos ";
+    static final String SQL_AUTENTICAR_POR_CORREO = COLUMNAS_DE_AUTENTICACION +
+            "FROM Usuario u " +
+            "LEFT JOIN Cliente c ON u.idUsuario = c.idCliente " +
+            "LEFT JOIN Operario o ON u.idUsuario = o.idOperario " +
+            "WHERE u.correoElectronico = ? AND u.contraseña = ?";
+    static final String SQL_AUTENTICAR_POR_NIS = COLUMNAS_DE_AUTENTICACION +
+            "FROM Cliente c " +
+            "JOIN Usuario u ON u.idUsuario = c.idCliente " +
+            "LEFT JOIN Operario o ON u.idUsuario = o.idOperario " +
+            "WHERE c.NIS = ? AND u.contraseña = ?";
+    static final String SQL_AUTENTICAR_POR_ID_UNIVERSAL = COLUMNAS_DE_AUTENTICACION +
+            "FROM Operario o " +
+            "JOIN Usuario u ON u.idUsuario = o.idOperario " +
+            "LEFT JOIN Cliente c ON u.idUsuario = c.idCliente " +
+            "WHERE o.idUniversal = ? AND u.contraseña = ?";
+    // Filtros que se agregan a SQL_SOLICITUDES_CON_RELACIONES.
+    static final String FILTRO_SOLICITUD_POR_ID = "WHERE s.idSolicitud = ?";
+    static final String FILTRO_PENDIENTES = "WHERE s.EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio = 1"; // Asume que 1 es 'Pendiente'
+    static final String FILTRO_PENDIENTES_POR_CLIENTE =
+            "WHERE s.Cliente_idCliente = ? AND s.EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio = ? " +
+            "ORDER BY s.fechaSolicitud, s.idSolicitud";
+
+    // Sentencias de actualización compartidas con UnidadDeTrabajo (que las envía en lote).
+    // Control optimista: solo actualizan si la fila sigue en la versión que se leyó, y la incrementan.
+    // 0 filas afectadas = otro la modificó (o ya no existe): ConflictoDeVersionException.
+    static final String SQL_ACTUALIZAR_SOLICITUD = "UPDATE SolicitudDeServicio SET EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio = ?, version = version + 1 WHERE idSolicitud = ? AND version = ?";
+    static final String SQL_ACTUALIZAR_MEDIDOR = "UPDATE Medidor SET EstadoDeMedidor_idEstadoDeMedidor = ?, fecha = ?, version = version + 1 WHERE idMedidor = ? AND version = ?";
+    static final String SQL_ACTUALIZAR_SERVICIO = "UPDATE Servicio SET fechaActivacion = ?, fechaSuspencion = ?, fechaBaja = ?, version = version + 1 WHERE idServicio = ? AND version = ?";
+
+    // Inserción de Medidor, compartida con CargaMasivaDeMedidores.
+    static final String SQL_INSERTAR_MEDIDOR = "INSERT INTO Medidor (idMedidor, tipo, marca, ubicacion, consumoKwh, fecha, fechaDeInstalacion, añoDeFabricacion, Cliente_idCliente, EstadoDeMedidor_idEstadoDeMedidor) " +
+                                               "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        
+    // Busca un objeto Cliente utilizando su Número de Identificación de Suministro (NIS), pasando por la caché.
+    @Override
+    public Cliente getClientePorNIS(int nis) throws SQLException {
+        Integer idEnCache = idClientePorNIS.obtenerSiPresente(nis);
+        if (idEnCache != null) {
+            Cliente cliente = getClientePorID(idEnCache);
+            if (cliente != null && cliente.getNIS() == nis) {
+                return cliente;
+            }
+            idClientePorNIS.invalidar(nis); // El índice quedó desactualizado: vuelvo a la BD.
+        }
+
+        long generacionDelIndice = idClientePorNIS.getGeneracion(nis);
+        Cliente cliente = cargarClientePorNIS(nis);
+        if (cliente != null) {
+            // El DAO no escribe Clientes (no se invalidan): el Cliente se guarda sin generación y el ttl acota
+            // lo que cambie otra aplicación.
+            clientesPorId.poner(cliente.getIdUsuario(), cliente);
+            idClientePorNIS.poner(nis, cliente.getIdUsuario(), generacionDelIndice);
+        }
+        return cliente;
+    }
+
+    
+    // Resuelve muchos NIS a su idCliente de una vez (cargas masivas), con consultas IN de a 1000 NIS.
+    // Los NIS que no existen no aparecen en el mapa. Usa el índice UNIQUE de Cliente.NIS.
+    @Override
+    public Map<Integer, Integer> getIdsDeClientesPorNIS(Collection<Integer> nisBuscados) throws SQLException {
+
+        final int NIS_POR_CONSULTA = 1_000; // Acota el tamaño de cada sentencia.
+        Map<Integer, Integer> idPorNIS = new HashMap<>();
+        List<Integer> pendientes = new ArrayList<>(nisBuscados);
+
+        try (Connection conn = DBConnection.getConnection()) {
+            for (int desde = 0; desde < pendientes.size(); desde += NIS_POR_CONSULTA) {
+                List<Integer> grupo = pendientes.subList(desde, Math.min(desde + NIS_POR_CONSULTA, pendientes.size()));
+
+                StringBuilder sql = new StringBuilder(SQL_NIS_A_ID_CLIENTE).append('(');
+                for (int i = 0; i < grupo.size(); i++) {
+                    sql.append(i == 0 ? "?" : ", ?");
+                }
+                sql.append(')');
+
+                try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                    for (int i = 0; i < grupo.size(); i++) {
+                        ps.setInt(i + 1, grupo.get(i));
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            idPorNIS.put(rs.getInt("NIS"), rs.getInt("idCliente"));
+                        }
+                    }
+                }
+            }
+        }
+
+        return idPorNIS;
+    }
+
+
+    // Busca un objeto Cliente en la BD utilizando su NIS (sin caché).
+    private Cliente cargarClientePorNIS(int nis) throws SQLException {
+        // Uso de try-with-resources para asegurar el cierre de la conexión y el PreparedStatement
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SQL_CLIENTE_POR_NIS)) {
+            
+            ps.setInt(1, nis); // Establece el NIS en el primer marcador '?'
+            
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) { // Si encuentra un resultado
+                    // 1. Obtener el objeto Permisos desde el registro de referencia
+                    Permisos permisos = getPermisosPorID(rs.getInt("Permisos_idPermisos"));
+                    
+                    // 2. Crear y retornar el objeto Cliente con todos sus atributos
+                    return new Cliente(
+                        rs.getInt("idUsuario"),
+                        rs.getString("nombre"),
+                        rs.getString("apellido"),
+                        rs.getString("direccion"),
+                        rs.getString("telefono"),
+                        rs.getString("correoElectronico"),
+                        rs.getString("contraseña"),
+                        permisos,
+                        rs.getInt("NIS") // Obtiene el NIS específico del Cliente
+                    );
+                }
+            }
+        }
+        return null; // Cliente no encontrado
+    }
+
+    // Vuelve a leer las tablas de referencia desde la BD (ej: tras dar de alta un nuevo estado o tipo).
+    @Override
+    public void refrescarDatosDeReferencia() throws SQLException {
+        referencia.refrescar();
+        CatalogoDeTarifas.getInstancia().refrescar();
+    }
+
+    
+    // Método auxiliar para obtener un objeto Permisos por su ID (desde el registro de referencia).
+    private Permisos getPermisosPorID(int idPermisos) throws SQLException {
+        return referencia.getPermisosPorID(idPermisos);
+    }
+
+    // Recupera todos los posibles estados de un Medidor (desde el registro de referencia).
+    @Override
+    public List<EstadoDeMedidor> getTodosLosEstadosDeMedidor() throws SQLException {
+        return referencia.getTodosLosEstadosDeMedidor();
+    }
+
+    
+    // Busca un Medidor por su identificador único (idMedidor), pasando por la caché.
+    // Retorna una copia: los controladores modifican el medidor antes de persistirlo y no deben tocar la caché.
+    @Override
+    public Medidor getMedidorPorID(int idMedidor) throws SQLException {
+        return copiarMedidor(medidoresPorId.obtener(idMedidor, this::cargarMedidorPorID));
+    }
+
+    
+    // Busca un Medidor en la BD por su identificador único (sin caché).
+    private Medidor cargarMedidorPorID(int idMedidor) throws SQLException {
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SQL_MEDIDOR_POR_ID)) {
+
+            
+            ps.setInt(1, idMedidor);
+
+            try (ResultSet rs = ps.executeQuery()) {
+
+                if (rs.next()) { // Si encuentra el medidor
+                    // Carga las entidades relacionadas (Cliente y EstadoDeMedidor) llamando a otros métodos DAO
+                    Cliente cliente = getClientePorID(rs.getInt("Cliente_idCliente"));
+                    EstadoDeMedidor estadoDeMedidor = getEstadoMedidorPorID(rs.getInt("EstadoDeMedidor_idEstadoDeMedidor"));
+
+                    
+                    // Crea y retorna el objeto Medidor
+                    Medidor medidor = new Medidor(
+                        rs.getInt("idMedidor"),
+                        rs.getString("tipo"),
+                        rs.getString("marca"),
+                        rs.getString("ubicacion"),
+                        Energia.deDecimal(rs.getBigDecimal("consumoKwh"), RoundingMode.HALF_UP), // Mapea el consumo (kWh a Wh)
+                        rs.getDate("fecha"),
+                        rs.getDate("fechaDeInstalacion"),
+                        rs.getInt("añoDeFabricacion"),
+                        estadoDeMedidor,
+                        cliente
+                    );
+                    medidor.setVersion(rs.getInt("version")); // Para la actualización optimista.
+                    return medidor;
+                }
+            }
+        }
+
+        return null; // Medidor no encontrado
+    }
+
+    
+    // Busca un objeto Cliente utilizando su idUsuario, pasando por la caché.
+    @Override
+    public Cliente getClientePorID(int idUsuario) throws SQLException {
+        return clientesPorId.obtener(idUsuario, this::cargarClientePorID);
+    }
+
+    
+    // Busca un objeto Cliente en la BD utilizando su idUsuario (sin caché).
+    private Cliente cargarClientePorID(int idUsuario) throws SQLException {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SQL_CLIENTE_POR_ID)) {
+            
+            ps.setInt(1, idUsuario);
+            
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    // 1. Obtener el objeto Permisos desde el registro de referencia
+                    Permisos permisos = getPermisosPorID(rs.getInt("Permisos_idPermisos"));
+                    
+                    // 2. Crear y retornar el objeto Cliente
+                    return new Cliente(
+                        rs.getInt("idUsuario"),
+                        rs.getString("nombre"),
+                        rs.getString("apellido"),
+                        rs.getString("direccion"),
+                        rs.getString("telefono"),
+                        rs.getString("correoElectronico"),
+                        rs.getString("contraseña"),
+                        permisos,
+                        rs.getInt("NIS") // Obtiene el NIS
+                    );
+                }
+            }
+        }
+        return null; // Cliente no encontrado
+    }
+
+    // Busca un objeto EstadoDeMedidor por su ID (desde el registro de referencia).
+    private EstadoDeMedidor getEstadoMedidorPorID(int id) throws SQLException {
+        return referencia.getEstadoMedidorPorID(id);
+    }
+
+    
+    // Busca un objeto Operario por su idUsuario.
+    @Override
+    public Operario getOperarioPorID(int idOperario) throws SQLException {
+
+        try (Connection conn = DBConnection.getConnectionLectura();
+             PreparedStatement ps = conn.prepareStatement(SQL_OPERARIO_POR_ID)) {
+
+            
+            ps.setInt(1, idOperario);
+
+            try (ResultSet rs = ps.executeQuery()) {
+
+                if (rs.next()) {
+                    // Carga los Permisos asociados
+                    Permisos permisos = getPermisosPorID(rs.getInt("Permisos_idPermisos"));
+
+                    
+                    // Crea y retorna el objeto Operario, incluyendo sus atributos específicos
+                    return new Operario(
+                        rs.getInt("idUsuario"),
+                        rs.getString("nombre"),
+                        rs.getString("apellido"),
+                        rs.getString("direccion"),
+                        rs.getString("telefono"),
+                        rs.getString("correoElectronico"),
+                        rs.getString("contraseña"),
+                        permisos,
+                        rs.getString("idUniversal"),
+                        rs.getString("departamento")
+                    );
+                }
+            }
+        }
+
+        return null;
+    }
+
+    
+    // Busca el Medidor asociado a un Cliente usando el ID del Cliente, pasando por la caché.
+    @Override
+    public Medidor getMedidorAsociadoACliente(int idCliente) throws SQLException {
+        Integer idMedidor = idMedidorPorCliente.obtener(idCliente, this::cargarIdMedidorDeCliente);
+        return idMedidor == null ? null : getMedidorPorID(idMedidor);
+    }
+
+    
+    // Busca en la BD el ID del Medidor asociado a un Cliente (sin caché).
+    private Integer cargarIdMedidorDeCliente(int idCliente) throws SQLException {
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SQL_ID_MEDIDOR_POR_CLIENTE)) {
+
+            
+            ps.setInt(1, idCliente);
+
+            try (ResultSet rs = ps.executeQuery()) {
+
+                if (rs.next()) {
+                    return rs.getInt("idMedidor");
+                }
+            }
+        }
+
+        return null;
+    }
+
+
+    // Busca un TipoDeSolicitud por su nombre (desde el registro de referencia).
+    @Override
+    public TipoDeSolicitud getTipoSolicitudPorNombre(String nombre) throws SQLException {
+        return referencia.getTipoSolicitudPorNombre(nombre);
+    }
+
+
+    // Busca un EstadoDeSolicitudDeServicio por su nombre (desde el registro de referencia).
+    @Override
+    public EstadoDeSolicitudDeServicio getEstadoSolicitudPorNombre(String nombre) throws SQLException {
+        return referencia.getEstadoSolicitudPorNombre(nombre);
+    }
+
+
+    // Obtiene una lista de todas las Solicitudes de Servicio (una sola consulta con JOIN).
+    @Override
+    public List<SolicitudDeServicio> getTodasLasSolicitudes() throws SQLException {
+        return cargarSolicitudes("", new Object[0]);
+    }
+
+    
+    // Método auxiliar privado para obtener una SolicitudDeServicio completa por su ID.
+    private SolicitudDeServicio getSolicitudPorID(int id) throws SQLException {
+        List<SolicitudDeServicio> encontradas = cargarSolicitudes(FILTRO_SOLICITUD_POR_ID, new Object[]{id});
+        return encontradas.isEmpty() ? null : encontradas.get(0);
+    }
+
+    
+    /*
+     * Cargador de solicitudes con sus relaciones en una única consulta.
+     * Uso un mapa de identidad por consulta para no construir el mismo Cliente una vez por fila:
+     * todas las solicitudes de un cliente comparten la misma instancia.
+     * @param filtro Cláusula WHERE/ORDER BY que se agrega a la consulta base (puede ser vacía).
+     * @param parametros Valores para los marcadores '?' del filtro, en orden.
+     */
+    private List<SolicitudDeServicio> cargarSolicitudes(String filtro, Object[] parametros) throws SQLException {
+
+        List<SolicitudDeServicio> solicitudes = new ArrayList<>();
+
+        // Mapa de identidad válido solo durante esta consulta.
+        Map<Integer, Cliente> clientes = new HashMap<>();
+
+        try (Connection conn = DBConnection.getConnectionLectura();
+             PreparedStatement ps = conn.prepareStatement(SQL_SOLICITUDES_CON_RELACIONES + filtro)) {
+
+            for (int i = 0; i < parametros.length; i++) {
+                ps.setObject(i + 1, parametros[i]);
+            }
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    solicitudes.add(mapSolicitudConRelaciones(rs, clientes));
+                }
+            }
+        }
+
+        return solicitudes;
+    }
+
+    
+    // Mapea una fila de SQL_SOLICITUDES_CON_RELACIONES reutilizando los clientes ya vistos en la consulta.
+    private SolicitudDeServicio mapSolicitudConRelaciones(ResultSet rs, Map<Integer, Cliente> clientes) throws SQLException {
+
+        Cliente cliente = clientes.get(rs.getInt("idUsuario"));
+        if (cliente == null) {
+            cliente = mapClienteDeFila(rs);
+            clientes.put(cliente.getIdUsuario(), cliente);
+        }
+
+        // Las entidades de referencia son instancias compartidas del registro.
+        TipoDeSolicitud tipo = getTipoSolicitudPorID(rs.getInt("TipoDeSolicitud_idTipoDeSolicitud"));
+        EstadoDeMedidor estadoMedidor = getEstadoMedidorPorID(rs.getInt("EstadoDeMedidor_idEstadoDeMedidor"));
+        EstadoDeSolicitudDeServicio estadoSolicitud = getEstadoSolicitudPorID(rs.getInt("EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio"));
+
+        SolicitudDeServicio solicitud = new SolicitudDeServicio(
+            rs.getInt("idSolicitud"),
+            rs.getString("descripcion"),
+            cliente,
+            estadoMedidor,
+            tipo,
+            estadoSolicitud
+        );
+        solicitud.setFechaSolicitud(rs.getTimestamp("fechaSolicitud")); // Conserva la fecha real de registro.
+        solicitud.setVersion(rs.getInt("version"));
+        return solicitud;
+    }
+
+    // Busca un Cliente en una conexión ya abierta, sin la caché (lo leído en una transacción no se publica).
+    Cliente getClientePorID(Connection conn, int idUsuario) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SQL_CLIENTE_POR_ID)) {
+            ps.setInt(1, idUsuario);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapClienteDeFila(rs) : null;
+            }
+        }
+    }
+
+    // Busca un Medidor, y su Cliente, en una conexión ya abierta, sin la caché.
+    Medidor getMedidorPorID(Connection conn, int idMedidor) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SQL_MEDIDOR_POR_ID)) {
+            ps.setInt(1, idMedidor);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapMedidorDeFila(rs, getClientePorID(conn, rs.getInt("Cliente_idCliente"))) : null;
+            }
+        }
+    }
+
+    // Mapea las columnas de Usuario + Cliente de una fila con JOIN (idUsuario, nombre, ..., Permisos_idPermisos, NIS).
+    private Cliente mapClienteDeFila(ResultSet rs) throws SQLException {
+        return new Cliente(
+            rs.getInt("idUsuario"),
+            rs.getString("nombre"),
+            rs.getString("apellido"),
+            rs.getString("direccion"),
+            rs.getString("telefono"),
+            rs.getString("correoElectronico"),
+            rs.getString("contraseña"),
+            getPermisosPorID(rs.getInt("Permisos_idPermisos")),
+            rs.getInt("NIS")
+        );
+    }
+
+    // Mapea las columnas de Medidor de una fila con JOIN; el Cliente ya viene resuelto.
+    private Medidor mapMedidorDeFila(ResultSet rs, Cliente cliente) throws SQLException {
+        Medidor medidor = new Medidor(
+            rs.getInt("idMedidor"),
+            rs.getString("tipo"),
+            rs.getString("marca"),
+            rs.getString("ubicacion"),
+            Energia.deDecimal(rs.getBigDecimal("consumoKwh"), RoundingMode.HALF_UP),
+            rs.getDate("fecha"),
+            rs.getDate("fechaDeInstalacion"),
+            rs.getInt("añoDeFabricacion"),
+            getEstadoMedidorPorID(rs.getInt("EstadoDeMedidor_idEstadoDeMedidor")),
+            cliente
+        );
+        medidor.setVersion(rs.getInt("version"));
+        return medidor;
+    }
+
+    // Método auxiliar privado para obtener TipoDeSolicitud por ID (desde el registro de referencia).
+    private TipoDeSolicitud getTipoSolicitudPorID(int id) throws SQLException {
+        return referencia.getTipoSolicitudPorID(id);
+    }
+
+    // Método auxiliar privado para obtener EstadoDeSolicitudDeServicio por ID (desde el registro de referencia).
+    private EstadoDeSolicitudDeServicio getEstadoSolicitudPorID(int id) throws SQLException {
+        return referencia.getEstadoSolicitudPorID(id);
+    }
+
+    // Obtiene todas las solicitudes que están en estado "Pendiente" (asume ID=1), con una sola consulta.
+    @Override
+    public List<SolicitudDeServicio> getSolicitudesPendientes() throws SQLException {
+        // Filtra por la FK del estado (asumiendo que 1 es 'Pendiente')
+        return cargarSolicitudes(FILTRO_PENDIENTES, new Object[0]);
+    }
+
+    // ------------------ Recorridos por cursor (exportaciones y procesos masivos) ------------------
+    // A diferencia de los métodos get*, no arman una lista: entregan las filas a medida que llegan,
+    // con memoria constante. El Stream retiene una conexión hasta que se cierra (usar try-with-resources).
+    // No pasan por las cachés ni usan mapa de identidad, para no acumular objetos durante el recorrido.
+
+    // Recorre todos los Medidores (con su Cliente), en orden de idMedidor.
+    @Override
+    public Stream<Medidor> transmitirMedidores() throws SQLException {
+        return CursorDeFilas.abrir(SQL_MEDIDORES_CON_CLIENTE, new Object[0],
+                rs -> mapMedidorDeFila(rs, mapClienteDeFila(rs))).stream();
+    }
+
+    // Recorre todas las Facturas (con su Cliente y su Medidor), en orden de idFactura.
+    @Override
+    public Stream<Factura> transmitirFacturas() throws SQLException {
+        return CursorDeFilas.abrir(SQL_FACTURAS_CON_RELACIONES, new Object[0], rs -> {
+            Cliente cliente = mapClienteDeFila(rs);
+            Factura factura = new Factura(
+                rs.getInt("idFactura"),
+                Dinero.deDecimal(rs.getBigDecimal("monto"), RoundingMode.HALF_UP),
+                rs.getDate("fechaEmision"),
+                rs.getDate("fechaVencimiento"),
+                Energia.deDecimal(rs.getBigDecimal("consumoFactura"), RoundingMode.HALF_UP),
+                rs.getString("estado"),
+                cliente,
+                mapMedidorDeFila(rs, cliente) // El medidor facturado pertenece al mismo cliente.
+            );
+            factura.setRecargoEnCentavos(Dinero.deDecimal(rs.getBigDecimal("recargo"), RoundingMode.HALF_UP));
+            return factura;
+        }).stream();
+    }
+
+    // Recorre todas las Solicitudes de Servicio (con su Cliente), en orden de (fechaSolicitud, idSolicitud).
+    @Override
+    public Stream<SolicitudDeServicio> transmitirSolicitudes() throws SQLException {
+        return CursorDeFilas.abrir(SQL_SOLICITUDES_CON_RELACIONES + "ORDER BY s.fechaSolicitud, s.idSolicitud",
+                new Object[0], rs -> mapSolicitudConRelaciones(rs, new HashMap<>())).stream();
+    }
+
+
+    // Obtiene las solicitudes que están en estado "Pendiente" para un Cliente específico.
+    @Override
+    public List<SolicitudDeServicio> getSolicitudesPendientesPorCliente(int idCliente) throws SQLException {
+
+        // Busca el ID del estado "Pendiente" por nombre
+        EstadoDeSolicitudDeServicio estadoPendiente = getEstadoSolicitudPorNombre("Pendiente");
+
+        if (estadoPendiente == null) return new ArrayList<>(); // No procede si no existe el estado
+
+        // Una sola consulta con JOIN (antes era una consulta más una por solicitud, y se descartaba el resultado).
+        return cargarSolicitudes(FILTRO_PENDIENTES_POR_CLIENTE, new Object[]{idCliente, estadoPendiente.getIdEstadoDeSolicitudDeServicio()});
+    }
+
+
+    /*
+     * Búsqueda de solicitudes por varios criterios, paginada por clave sobre (fechaSolicitud, idSolicitud).
+     * En vez de OFFSET (que recorre y descarta todas las filas anteriores) la página continúa después del
+     * cursor, así cada página cuesta lo mismo aunque haya cientos de miles de solicitudes.
+     * Pido una fila de más para saber si existe una página siguiente sin hacer un COUNT.
+     * @param filtro Criterios opcionales (los null no filtran).
+     * @param despuesDe Cursor de la página anterior, o null para la primera página.
+     * @param tamañoDePagina Cantidad máxima de solicitudes por página.
+     */
+    @Override
+    public PaginaDeSolicitudes buscarSolicitudes(FiltroDeSolicitudes filtro, PaginaDeSolicitudes.Cursor despuesDe, int tamañoDePagina) throws SQLException {
+
+        if (tamañoDePagina < 1) {
+            throw new IllegalArgumentException("El tamaño de página debe ser positivo.");
+        }
+
+        StringBuilder where = new StringBuilder();
+        List<Object> parametros = new ArrayList<>();
+
+        if (filtro.getEstado() != null) {
+            agregarCondicion(where, parametros, "s.EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio = ?", filtro.getEstado().getIdEstadoDeSolicitudDeServicio());
+        }
+        if (filtro.getTipo() != null) {
+            agregarCondicion(where, parametros, "s.TipoDeSolicitud_idTipoDeSolicitud = ?", filtro.getTipo().getIdTipoDeSolicitud());
+        }
+        if (filtro.getDesde() != null) {
+            agregarCondicion(where, parametros, "s.fechaSolicitud >= ?", new Timestamp(filtro.getDesde().getTime()));
+        }
+        if (filtro.getHasta() != null) {
+            agregarCondicion(where, parametros, "s.fechaSolicitud < ?", new Timestamp(filtro.getHasta().getTime()));
+        }
+        if (filtro.getNis() != null) {
+            agregarCondicion(where, parametros, "c.NIS = ?", filtro.getNis());
+        }
+        if (filtro.getDepartamento() != null) {
+            agregarCondicion(where, parametros, "c.departamento = ?", filtro.getDepartamento());
+        }
+        if (filtro.getNisIncluidos() != null) {
+            if (filtro.getNisIncluidos().isEmpty()) {
+                return new PaginaDeSolicitudes(new ArrayList<>(), null); // Una lista vacía no encuentra nada.
+            }
+            StringBuilder in = new StringBuilder("c.NIS IN (");
+            for (int i = 0; i < filtro.getNisIncluidos().size(); i++) {
+                in.append(i == 0 ? "?" : ", ?");
+            }
+            agregarCondicion(where, parametros, in.append(')').toString(), filtro.getNisIncluidos().toArray());
+        }
+        if (despuesDe != null) {
+            // Forma expandida de (fecha, id) > (?, ?): MySQL la resuelve como rango sobre el índice.
+            agregarCondicion(where, parametros, "(s.fechaSolicitud > ? OR (s.fechaSolicitud = ? AND s.idSolicitud > ?))",
+                    despuesDe.getFechaSolicitud(), despuesDe.getFechaSolicitud(), despuesDe.getIdSolicitud());
+        }
+
+        where.append("ORDER BY s.fechaSolicitud, s.idSolicitud LIMIT ?");
+        parametros.add(tamañoDePagina + 1);
+
+        List<SolicitudDeServicio> solicitudes = cargarSolicitudes(where.toString(), parametros.toArray());
+
+        PaginaDeSolicitudes.Cursor siguiente = null;
+        if (solicitudes.size() > tamañoDePagina) {
+            solicitudes.remove(tamañoDePagina); // La fila extra solo indica que hay más.
+            SolicitudDeServicio ultima = solicitudes.get(tamañoDePagina - 1);
+            siguiente = new PaginaDeSolicitudes.Cursor(new Timestamp(ultima.getFechaSolicitud().getTime()), ultima.getIdSolicitud());
+        }
+        return new PaginaDeSolicitudes(solicitudes, siguiente);
+    }
+
+
+    // Agrega "WHERE"/"AND" + la condición, y sus valores a la lista de parámetros.
+    private static void agregarCondicion(StringBuilder where, List<Object> parametros, String condicion, Object... valores) {
+        where.append(where.length() == 0 ? "WHERE " : "AND ").append(condicion).append(' ');
+        for (Object valor : valores) {
+            parametros.add(valor);
+        }
+    }
+
+
+    // Actualiza el estado de una Solicitud de Servicio en la base de datos.
+    @Override
+    public void actualizarSolicitud(SolicitudDeServicio solicitud) throws SQLException {
+
+        // Solo actualiza el campo de la clave foránea del estado
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SQL_ACTUALIZAR_SOLICITUD)) {
+
+            vincularActualizacionSolicitud(ps, solicitud);
+
+            
+            int filasAfectadas = ps.executeUpdate(); // Ejecuta la actualización
+
+            if (filasAfectadas == 0) {
+                // Otro operario la modificó desde que se leyó (o ya no existe): no piso su cambio.
+                throw new ConflictoDeVersionException(ConflictoDeVersionException.Entidad.SOLICITUD, solicitud.getIdSolicitud(), solicitud.getVersion());
+            }
+            solicitud.setVersion(solicitud.getVersion() + 1);
+            System.out.println("DB REAL: Solicitud " + solicitud.getIdSolicitud() + " estado actualizado.");
+        }
+    }
+
+    // Busca un EstadoDeMedidor por su nombre (desde el registro de referencia).
+    @Override
+    public EstadoDeMedidor getEstadoMedidorPorNombre(String nombre) throws SQLException {
+        return referencia.getEstadoMedidorPorNombre(nombre);
+    }
+
+    
+    // Busca el Servicio activo asociado a un Medidor.
+    @Override
+    public Servicio getServicioPorMedidor(int idMedidor) throws SQLException {
+        try (Connection conn = DBConnection.getConnectionLectura()) {
+            return getServicioPorMedidor(conn, idMedidor, false);
+        }
+    }
+
+    
+    /*
+     * Busca el Servicio de un Medidor usando una conexión ya abierta (ej: la de una UnidadDeTrabajo).
+     * Con bloquear = true agrega FOR UPDATE para que nadie lo modifique hasta el commit.
+     * El Cliente y el Medidor se leen en la misma conexión: pedir otra al pool mientras se retiene esta puede
+     * agotarlo con varias unidades de trabajo a la vez, y además quedarían fuera de la transacción.
+     */
+    Servicio getServicioPorMedidor(Connection conn, int idMedidor, boolean bloquear) throws SQLException {
+
+        try (PreparedStatement ps = conn.prepareStatement(SQL_SERVICIO_POR_MEDIDOR + (bloquear ? " FOR UPDATE" : ""))) {
+
+            
+            ps.setInt(1, idMedidor);
+
+            try (ResultSet rs = ps.executeQuery()) {
+
+                if (rs.next()) {
+                    // Carga las entidades relacionadas (Cliente y Medidor)
+                    Cliente cliente = getClientePorID(conn, rs.getInt("Cliente_idCliente"));
+                    Medidor medidor = getMedidorPorID(conn, rs.getInt("Medidor_idMedidor"));
+
+                    
+                    // Crea y retorna el objeto Servicio
+                    Servicio servicio = new Servicio(
+                        rs.getInt("idServicio"),
+                        rs.getDate("fechaActivacion"),
+                        rs.getDate("fechaSuspencion"),
+                        rs.getDate("fechaBaja"),
+                        cliente,
+                        medidor
+                    );
+                    servicio.setVersion(rs.getInt("version")); // Para la actualización optimista.
+                    return servicio;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    
+    // Autentica un usuario por Correo, NIS o ID Universal contra su contraseña.
+    // Clasifico el identificador y uso solo la consulta de ese tipo. Un número que no es NIS de nadie se prueba
+    // además como idUniversal (la columna es VARCHAR y nada impide uno numérico); solo cuesta en los fallidos.
+    @Override
+    public Usuario autenticarUsuario(String identificador, String contrasena) throws SQLException {
+        if (identificador == null || contrasena == null) {
+            return null;
+        }
+        TipoDeIdentificador tipo = TipoDeIdentificador.clasificar(identificador);
+        try (Connection conn = DBConnection.getConnectionLectura()) {
+            Usuario usuario = autenticarPor(conn, tipo, identificador.trim(), contrasena);
+            if (usuario == null && tipo == TipoDeIdentificador.NIS) {
+                usuario = autenticarPor(conn, TipoDeIdentificador.ID_UNIVERSAL, identificador.trim(), contrasena);
+            }
+            return usuario;
+        }
+    }
+
+    private Usuario autenticarPor(Connection conn, TipoDeIdentificador tipo, String identificador, String contrasena) throws SQLException {
+        String sql = tipo == TipoDeIdentificador.CORREO ? SQL_AUTENTICAR_POR_CORREO
+                : tipo == TipoDeIdentificador.NIS ? SQL_AUTENTICAR_POR_NIS
+                : SQL_AUTENTICAR_POR_ID_UNIVERSAL;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            if (tipo == TipoDeIdentificador.NIS) {
+                ps.setInt(1, Integer.parseInt(identificador)); // Ya validado por clasificar().
+            } else {
+                ps.setString(1, identificador);
+            }
+            ps.setString(2, contrasena); // Contraseña
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    // Mapeo de campos comunes a Usuario
+                    int idUsuario = rs.getInt("idUsuario");
+                    String nombre = rs.getString("nombre");
+                    String apellido = rs.getString("apellido");
+                    String direccion = rs.getString("direccion");
+                    String telefono = rs.getString("telefono");
+                    String correo = rs.getString("correoElectronico");
+                    int idPermisos = rs.getInt("Permisos_idPermisos");
+                    Permisos permisos = getPermisosPorID(idPermisos); 
+
+                    // --- Decidir el tipo de Usuario (Cliente vs Operario) ---
+                    String nisString = rs.getString("NIS");
+                    String idUniversal = rs.getString("idUniversal");
+
+                    if (nisString != null) {
+                        // Es un Cliente (NIS no es nulo)
+                        int nis = rs.getInt("NIS");
+                        System.out.println("Usuario autenticado como Cliente (NIS: " + nis + ")");
+                        return new Cliente(idUsuario, nombre, apellido, direccion, telefono, correo, contrasena, permisos, nis);
+                    } else if (idUniversal != null) {
+                        // Es un Operario (ID Universal no es nulo)
+                        String departamento = rs.getString("departamento");
+                        System.out.println("Usuario autenticado como Operario (ID Universal: " + idUniversal + ")");
+                        return new Operario(idUsuario, nombre, apellido, direccion, telefono, correo, contrasena, permisos, idUniversal, departamento);
+                    } else {
+                        // Usuario genérico (Administrador u otro rol base)
+                        String departamento = rs.getString("departamento");
+                        System.out.println("Usuario autenticado como Usuario Genérico.");
+                        // Devuelve un Operario genérico si no se puede clasificar más
+                        return new Operario(idUsuario, nombre, apellido, direccion, telefono, correo, contrasena, permisos, idUniversal, departamento);
+                    }
+                }
+            }
+        }
+        return null; // Autenticación fallida
+    }
+
+    
+    // Inserta un nuevo Medidor en la base de datos.
+    // Si el medidor llega con idMedidor = 0, le asigno uno de GeneradorDeIds (la misma secuencia que las cargas masivas).
+    @Override
+    public void agregarMedidor(Medidor nuevoMedidor) throws SQLException {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SQL_INSERTAR_MEDIDOR)) {
+
+            if (nuevoMedidor.getIdMedidor() == 0) {
+                nuevoMedidor.setIdMedidor((int) GeneradorDeIds.para(GeneradorDeIds.Entidad.MEDIDOR).siguiente());
+            }
+
+            // Mapeo de parámetros del objeto Medidor a los marcadores '?'
+            vincularInsercionMedidor(ps, nuevoMedidor, new java.sql.Timestamp(new Date().getTime())); // 'fecha' actual
+            
+            int filasAfectadas = ps.executeUpdate();
+            
+            // El cliente ahora puede tener otro medidor asociado: descarto lo que tenía en caché.
+            idMedidorPorCliente.invalidar(nuevoMedidor.getCliente().getIdUsuario());
+            
+            if (filasAfectadas > 0) {
+                System.out.println("DB REAL: Medidor #" + nuevoMedidor.getIdMedidor() + " insertado con éxito.");
+            } else {
+                System.out.println("ADVERTENCIA DB: El Medidor no fue insertado.");
+            }
+        } catch (SQLException e) {
+            System.err.println("ERROR CRÍTICO DAO: Fallo al insertar Medidor. " + e.getMessage());
+            throw e; // Propaga el error de SQL
+        }
+    }
+
+    
+    // Inserta una nueva Solicitud de Servicio en la base de datos.
+    // El ID sale de GeneradorDeIds y se copia a la solicitud solo si la inserción se hizo.
+    @Override
+    public boolean agregarSolicitud(SolicitudDeServicio solicitud) {
+
+        // SQL para insertar una nueva solicitud con la fecha actual (NOW())
+        String sql = "INSERT INTO SolicitudDeServicio (idSolicitud, fechaSolicitud, descripcion, Cliente_idCliente, TipoDeSolicitud_idTipoDeSolicitud, EstadoDeMedidor_idEstadoDeMedidor, EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio) " +
+                     "VALUES (?, NOW(), ?, ?, ?, ?, ?)";
+
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            int idSolicitud = (int) GeneradorDeIds.para(GeneradorDeIds.Entidad.SOLICITUD_DE_SERVICIO).siguiente();
+            ps.setInt(1, idSolicitud);
+            ps.setString(2, solicitud.getDescripcion());
+            ps.setInt(3, solicitud.getCliente().getIdCliente());
+            
+            // Se obtienen los IDs de las dependencias
+            ps.setInt(4, solicitud.getTipoDeSolicitud().getIdTipoDeSolicitud());
+            ps.setInt(5, solicitud.getEstadoDeMedidor().getIdEstadoDeMedidor());
+            ps.setInt(6, solicitud.getEstadoDeSolicitudDeServicio().getIdEstadoDeSolicitudDeServicio());
+
+            int filasAfectadas = ps.executeUpdate(); // Ejecuta la inserción
+
+            if (filasAfectadas > 0) {
+                solicitud.setIdSolicitud(idSolicitud);
+            }
+
+            return filasAfectadas > 0; // Retorna true si se insertó al menos una fila
+
+        } catch (SQLException e) {
+            System.err.println("Error DB al registrar solicitud: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Actualiza el estado y la fecha de la última modificación de un Medidor.
+    @Override
+    public void actualizarMedidor(Medidor medidor) throws SQLException {
+        // SQL para actualizar el estado del medidor y su fecha
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SQL_ACTUALIZAR_MEDIDOR)) {
+
+            vincularActualizacionMedidor(ps, medidor);
+
+            if (ps.executeUpdate() == 0) {
+                throw new ConflictoDeVersionException(ConflictoDeVersionException.Entidad.MEDIDOR, medidor.getIdMedidor(), medidor.getVersion());
+            }
+            medidor.setVersion(medidor.getVersion() + 1);
+            System.out.println("DB REAL: Medidor " + medidor.getIdMedidor() + " estado y fecha actualizados.");
+        } finally {
+            // Aunque la actualización falle, la copia en caché puede no coincidir con la BD: la descarto.
+            invalidarCacheMedidor(medidor);
+        }
+    }
+
+    // Actualiza las fechas de estado (activación, suspensión, baja) de un Servicio.
+    @Override
+    public void actualizarServicio(Servicio servicio) throws SQLException {
+        // SQL para actualizar las tres fechas de estado del servicio
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SQL_ACTUALIZAR_SERVICIO)) {
+
+            vincularActualizacionServicio(ps, servicio);
+
+            if (ps.executeUpdate() == 0) {
+                throw new ConflictoDeVersionException(ConflictoDeVersionException.Entidad.SERVICIO, servicio.getIdServicio(), servicio.getVersion());
+            }
+            servicio.setVersion(servicio.getVersion() + 1);
+            System.out.println("DB REAL: Servicio " + servicio.getIdServicio() + " actualizado.");
+        } finally {
+            // El cambio de servicio afecta al medidor asociado: invalido sus entradas en caché.
+            invalidarCacheServicio(servicio);
+        }
+    }
+
+    /**
+     * Inicia una unidad de trabajo: una conexión y una transacción para varias operaciones.
+     * Se usa con try-with-resources; si no se llama a confirmar(), al cerrarse se deshace todo.
+     * @return La unidad de trabajo abierta.
+     * @throws SQLException Si no se pudo obtener la conexión.
+     */
+    @Override
+    public UnidadDeTrabajo iniciarUnidadDeTrabajo() throws SQLException {
+        return new UnidadDeTrabajoJDBC(this, DBConnection.getConnection());
+    }
+
+    // Inserta muchos medidores con lotes JDBC y commits por tramos (ver CargaMasivaDeMedidores).
+    @Override
+    public int insertarMedidores(List<Medidor> medidores, int tamañoDeLote, int filasPorCommit,
+                                 BiConsumer<Medidor, SQLException> alFallar) throws SQLException {
+        return new CargaMasivaDeMedidores(this, tamañoDeLote, filasPorCommit).insertar(medidores, alFallar);
+    }
+
+    // Registra lecturas con INSERT multi-fila y commits por tramos (ver IngestorDeLecturas).
+    @Override
+    public int registrarLecturas(List<Lectura> lecturas, int filasPorSentencia, int filasPorCommit,
+                                 BiConsumer<Lectura, String> alFallar) throws SQLException {
+        return new IngestorDeLecturas(this, filasPorSentencia, filasPorCommit).registrar(lecturas, alFallar);
+    }
+
+    @Override
+    public AlmacenColumnarDeLecturas getAlmacenDeLecturas() {
+        return almacenDeLecturas;
+    }
+
+    // Finaliza muchas solicitudes con UPDATE por conjunto, en transacciones por tramo (ver ProcesamientoMasivoDeSolicitudes).
+    @Override
+    public int finalizarSolicitudes(List<SolicitudDeServicio> solicitudes, EstadoDeMedidor nuevoEstado, EstadoDeSolicitudDeServicio estadoFinal,
+                                    boolean activarServicio, int solicitudesPorTransaccion,
+                                    BiConsumer<SolicitudDeServicio, String> alFallar) throws SQLException {
+        return new ProcesamientoMasivoDeSolicitudes(this, solicitudesPorTransaccion)
+                .finalizar(solicitudes, nuevoEstado, estadoFinal, activarServicio, alFallar);
+    }
+
+    // Factura el período por particiones de NIS en paralelo, con checkpoints (ver FacturacionDelPeriodo).
+    @Override
+    public int facturarPeriodo(YearMonth periodo, Date fechaEmision, Date fechaVencimiento, TarifaCompilada tarifa,
+                               int paralelismo, int clientesPorParticion, int medidoresPorTramo,
+                               BiConsumer<Factura, String> alFallar) throws SQLException {
+        return new FacturacionDelPeriodo(paralelismo, clientesPorParticion, medidoresPorTramo)
+                .facturar(periodo, fechaEmision, fechaVencimiento, tarifa, alFallar);
+    }
+
+    // ------------------ Conciliación de pagos (ver ConciliacionDePagos) ------------------
+
+    @Override
+    public IndiceDeFacturasAbiertas getFacturasAbiertas() throws SQLException {
+        return new ConciliacionDePagos().cargarFacturasAbiertas();
+    }
+
+    @Override
+    public Set<String> getReferenciasDePagoRegistradas(Collection<String> referencias) throws SQLException {
+        return new ConciliacionDePagos().referenciasRegistradas(referencias);
+    }
+
+    @Override
+    public int registrarPagos(List<Pago> pagos, int pagosPorCommit, BiConsumer<Pago, String> alFallar) throws SQLException {
+        return new ConciliacionDePagos().registrarPagos(pagos, pagosPorCommit, alFallar);
+    }
+
+    // Vence las facturas impagas con UPDATE por conjunto, de a tramos (ver BarridoDeVencimientos).
+    @Override
+    public int vencerFacturas(Date corte, int recargoEnPuntosBasicos, int facturasPorTramo) throws SQLException {
+        return new BarridoDeVencimientos(facturasPorTramo).vencer(corte, recargoEnPuntosBasicos);
+    }
+
+    // ------------------ Auxiliares compartidos con UnidadDeTrabajo y las cargas masivas ------------------
+
+    // Vincula los parámetros de SQL_INSERTAR_MEDIDOR. 'fecha' es el momento del alta.
+    static void vincularInsercionMedidor(PreparedStatement ps, Medidor medidor, Timestamp fecha) throws SQLException {
+        ps.setInt(1, medidor.getIdMedidor());
+        ps.setString(2, medidor.getTipo());
+        ps.setString(3, medidor.getMarca());
+        ps.setString(4, medidor.getUbicacion());
+        ps.setBigDecimal(5, Energia.aDecimal(medidor.getConsumoWh()));
+        
+        // Conversión de java.util.Date a java.sql.Date/Timestamp para la BD
+        ps.setTimestamp(6, fecha);
+        ps.setDate(7, new java.sql.Date(medidor.getFechaDeInstalacion().getTime()));
+        
+        ps.setInt(8, medidor.getAnioDeFabricacion());
+        
+        // Claves Foráneas (IDs de objetos relacionados)
+        ps.setInt(9, medidor.getCliente().getIdUsuario()); 
+        ps.setInt(10, medidor.getEstadoDeMedidor().getIdEstadoDeMedidor());
+    }
+
+    // Vincula los parámetros de SQL_ACTUALIZAR_SOLICITUD.
+    static void vincularActualizacionSolicitud(PreparedStatement ps, SolicitudDeServicio solicitud) throws SQLException {
+        ps.setInt(1, solicitud.getEstadoDeSolicitudDeServicio().getIdEstadoDeSolicitudDeServicio()); // Nuevo estado
+        ps.setInt(2, solicitud.getIdSolicitud()); // ID de la solicitud a actualizar
+        ps.setInt(3, solicitud.getVersion()); // Versión leída
+    }
+
+    // Vincula los parámetros de SQL_ACTUALIZAR_MEDIDOR.
+    static void vincularActualizacionMedidor(PreparedStatement ps, Medidor medidor) throws SQLException {
+        ps.setInt(1, medidor.getEstadoDeMedidor().getIdEstadoDeMedidor());
+        ps.setDate(2, new java.sql.Date(medidor.getFechaActual().getTime())); // Fecha de la actualización
+        ps.setInt(3, medidor.getIdMedidor());
+        ps.setInt(4, medidor.getVersion());
+    }
+
+    // Vincula los parámetros de SQL_ACTUALIZAR_SERVICIO, convirtiendo java.util.Date a java.sql.Date y manejando nulos.
+    static void vincularActualizacionServicio(PreparedStatement ps, Servicio servicio) throws SQLException {
+        ps.setDate(1, servicio.getFechaActivacion() != null ? new java.sql.Date(servicio.getFechaActivacion().getTime()) : null);
+        ps.setDate(2, servicio.getFechaSuspension() != null ? new java.sql.Date(servicio.getFechaSuspension().getTime()) : null);
+        ps.setDate(3, servicio.getFechaBaja() != null ? new java.sql.Date(servicio.getFechaBaja().getTime()) : null);
+        ps.setInt(4, servicio.getIdServicio());
+        ps.setInt(5, servicio.getVersion());
+    }
+
+    // Descarta de la caché el medidor modificado.
+    void invalidarCacheMedidor(Medidor medidor) {
+        invalidarCacheMedidor(medidor.getIdMedidor());
+    }
+
+    void invalidarCacheMedidor(int idMedidor) {
+        medidoresPorId.invalidar(idMedidor);
+    }
+
+    // Descarta la asociación cliente-medidor en caché (ej: después de dar de alta medidores para ese cliente).
+    void invalidarCacheMedidorDeCliente(int idCliente) {
+        idMedidorPorCliente.invalidar(idCliente);
+    }
+
+    // Descarta de la caché el medidor y la asociación cliente-medidor afectados por un cambio de servicio.
+    void invalidarCacheServicio(Servicio servicio) {
+        if (servicio.getMedidor() != null) {
+            medidoresPorId.invalidar(servicio.getMedidor().getIdMedidor());
+        }
+        if (servicio.getCliente() != null) {
+            idMedidorPorCliente.invalidar(servicio.getCliente().getIdUsuario());
+        }
+    }
+
+    // Retorna un resumen de las estadísticas (aciertos, fallos, desalojos) de las cachés de entidades.
+    @Override
+    public String getEstadisticasCache() {
+        return clientesPorId.resumen() + "\n" + idClientePorNIS.resumen() + "\n"
+                + medidoresPorId.resumen() + "\n" + idMedidorPorCliente.resumen();
+    }
+
+    // Copia superficial de un Medidor (comparte Cliente y EstadoDeMedidor, que no se modifican).
+    private static Medidor copiarMedidor(Medidor m) {
+        if (m == null) return null;
+        Medidor copia = new Medidor(m.getIdMedidor(), m.getTipo(), m.getMarca(), m.getUbicacion(), m.getConsumoWh(),
+                m.getFechaActual(), m.getFechaDeInstalacion(), m.getAnioDeFabricacion(), m.getEstadoDeMedidor(), m.getCliente());
+        copia.setVersion(m.getVersion());
+        return copia;
+    }
+
+}
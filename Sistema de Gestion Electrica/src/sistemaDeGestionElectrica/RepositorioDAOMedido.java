@@ -0,0 +1,101 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Clase RepositorioDAOMedido.
+ * Envuelve cualquier RepositorioDAO (JDBC o en memoria) con un proxy que mide cada llamada y la registra en
+ * RegistroDeMetricas como "dao.<método>": latencia, errores y filas devueltas. Uso un proxy dinámico para que
+ * cada método nuevo de la interfaz quede medido sin tocar esta clase.
+ *
+ * Filas: el tamaño de la lista, mapa o página devuelta; 1 o 0 para una entidad encontrada o no; las insertadas
+ * en una carga masiva. Los recorridos (Stream) suman sus filas a medida que se leen, y su latencia es la de
+ * abrir el cursor. Las UnidadDeTrabajo que devuelve también van medidas, como "dao.unidad.<método>".
+ * Se desactiva con -Dsgre.metricas=false.
+ */
+public final class RepositorioDAOMedido implements InvocationHandler {
+
+    // Métodos de configuración y estadísticas, que no son accesos a datos.
+    private static final Set<String> SIN_MEDIR = Set.of("usaBaseDeDatos", "getEstadisticasCache", "getAlmacenDeLecturas");
+
+    private final Object destino; // El repositorio o la unidad de trabajo envueltos.
+    private final String prefijo; // Prefijo del nombre de cada métrica.
+    private final RegistroDeMetricas metricas = RegistroDeMetricas.getInstancia();
+
+    private RepositorioDAOMedido(Object destino, String prefijo) {
+        this.destino = destino;
+        this.prefijo = prefijo;
+    }
+
+    /**
+     * @return Retorno el repositorio envuelto, o el mismo repositorio si las métricas están desactivadas.
+     */
+    public static RepositorioDAO envolver(RepositorioDAO repositorioDAO) {
+        if (!Boolean.parseBoolean(System.getProperty("sgre.metricas", "true"))) {
+            return repositorioDAO;
+        }
+        return envolver(RepositorioDAO.class, repositorioDAO, "dao.");
+    }
+
+    private static <T> T envolver(Class<T> interfaz, T destino, String prefijo) {
+        return interfaz.cast(Proxy.newProxyInstance(interfaz.getClassLoader(), new Class<?>[]{interfaz},
+                new RepositorioDAOMedido(destino, prefijo)));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+        if (metodo.getDeclaringClass() == Object.class || SIN_MEDIR.contains(metodo.getName())) {
+            return metodo.invoke(destino, args); // toString, equals, hashCode: sin medir.
+        }
+
+        String nombre = prefijo + metodo.getName();
+        long inicio = System.nanoTime();
+        try {
+            Object resultado = metodo.invoke(destino, args);
+            metricas.registrar(nombre, System.nanoTime() - inicio, contarFilas(resultado), false);
+            if (resultado instanceof Stream) {
+                RegistroDeMetricas.Metrica metrica = metricas.getMetrica(nombre);
+                return ((Stream<?>) resultado).peek(fila -> metrica.sumarFilas(1));
+            }
+            if (resultado instanceof UnidadDeTrabajo) {
+                return envolver(UnidadDeTrabajo.class, (UnidadDeTrabajo) resultado, "dao.unidad.");
+            }
+            return resultado;
+        } catch (InvocationTargetException e) {
+            metricas.registrar(nombre, System.nanoTime() - inicio, 0, true);
+            throw e.getCause(); // La excepción original del repositorio (ej: SQLException).
+        }
+    }
+
+    private static long contarFilas(Object resultado) {
+        if (resultado == null || resultado instanceof Stream || resultado instanceof Boolean || resultado instanceof String) {
+            return 0;
+        }
+        if (resultado instanceof Collection) {
+            return ((Collection<?>) resultado).size();
+        }
+        if (resultado instanceof Map) {
+            return ((Map<?, ?>) resultado).size();
+        }
+        if (resultado instanceof PaginaDeSolicitudes) {
+            return ((PaginaDeSolicitudes) resultado).getSolicitudes().size();
+        }
+        if (resultado instanceof Number) {
+            // Filas insertadas o actualizadas; los negativos son avisos (ej: SIN_LOCK), no filas.
+            return Math.max(((Number) resultado).longValue(), 0);
+        }
+        return 1; // Una entidad encontrada.
+    }
+}
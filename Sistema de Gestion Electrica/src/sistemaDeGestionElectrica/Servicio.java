@@ -18,6 +18,7 @@ public class Servicio {
     private Date fechaBaja; // Fecha de terminación definitiva del servicio.
     private Cliente cliente; // Referencia al Cliente o Usuario al que se le brinda el servicio.
     private Medidor medidor; // Referencia al Medidor físico asociado a este servicio.
+    private int version; // Versión de la fila leída, para el control de concurrencia optimista.
     
     
     /*
@@ -134,5 +135,19 @@ public class Servicio {
     public void setMedidor(Medidor medidor) {
         this.medidor = medidor; // Establece el Medidor asociado.
     }
+
+    /**
+     * @return the version
+     */
+    public int getVersion() {
+        return version; // Retorna la versión con la que se leyó.
+    }
+
+    /**
+     * @param version the version to set
+     */
+    public void setVersion(int version) {
+        this.version = version; // Establece la versión (la asigna el repositorio).
+    }
     
 }
@@ -5,6 +5,7 @@
 package sistema.de.gestion.electrica;
 
 import java.sql.SQLException;
+import sistema.de.gestion.electrica.controladores.ControladorVencimientos;
 
 // Esta es mi clase principal para iniciar la aplicación de gestión eléctrica (versión consola).
 public class SistemaDeGestionElectrica {
@@ -17,16 +18,44 @@ public class SistemaDeGestionElectrica {
         
         // Uso un bloque try-catch para manejar posibles errores de conexión a la base de datos o de ejecución.
         try {
-            // Intento realizar una prueba de conexión a la base de datos usando mi clase DBConnection.
-            if (DBConnection.testConnection()) { 
+            // Elijo el repositorio con -Dsgre.repositorio: "jdbc" (MySQL, por defecto) o "memoria" (demo sin base de datos).
+            // Lo envuelvo para medir la latencia de cada método (se desactiva con -Dsgre.metricas=false).
+            RepositorioDAO repositorioDAO = RepositorioDAOMedido.envolver(RepositorioDAO.crear());
+            
+            if (!repositorioDAO.usaBaseDeDatos()) {
+                System.out.println("Modo demo: repositorio en memoria, sin conexión a la Base de Datos.");
+                ControladorVencimientos vencimientos = new ControladorVencimientos(repositorioDAO);
+                vencimientos.programar();
+                new GestorDeInterfaz(repositorioDAO).iniciar();
+                vencimientos.detener();
+                
+            // Inicio el pool de conexiones y lo caliento; esto también me sirve como prueba de conexión.
+            } else if (DBConnection.iniciarPool()) { 
                 // Si la conexión es exitosa, lo indico en la consola.
                 System.out.println("Conexión a la Base de Datos establecida correctamente.");
                 
+                // Aplico las migraciones de esquema pendientes (índices, columnas nuevas) antes de usar la base.
+                new EjecutorDeMigraciones().aplicarPendientes();
+                
+                // Si lo pido con -Dsgre.migraciones.verificarIndices=true, reviso con EXPLAIN que las consultas del DAO usen índices.
+                if (Boolean.getBoolean("sgre.migraciones.verificarIndices")) {
+                    new VerificadorDeIndices().verificar();
+                }
+                
+                // Cargo una sola vez las tablas de referencia (estados, tipos, permisos) que comparten todos los controladores.
+                RegistroDeReferencia.getInstancia().cargar();
+                CatalogoDeTarifas.getInstancia().cargar(); // Tarifas compiladas para la facturación.
+                
+                // Programo el barrido de facturas vencidas (-Dsgre.vencimientos.intervaloMin, 0 lo desactiva).
+                ControladorVencimientos vencimientos = new ControladorVencimientos(repositorioDAO);
+                vencimientos.programar();
+                
                 // 1. Creo una instancia de mi GestorDeInterfaz, que se encarga de manejar el menú de consola.
-                GestorDeInterfaz gestor = new GestorDeInterfaz();
+                GestorDeInterfaz gestor = new GestorDeInterfaz(repositorioDAO);
                 
                 // 2. Inicio el ciclo principal de la aplicación, que mostrará el menú de opciones.
                 gestor.iniciar();
+                vencimientos.detener();
                 
             } else {
                 // Si la prueba de conexión falla, muestro un error fatal.
@@ -41,6 +70,9 @@ public class SistemaDeGestionElectrica {
             // Muestro un mensaje de error general y la traza completa de la excepción.
             System.err.println("Error no controlado al iniciar el sistema: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            // Al salir, cierro las conexiones del pool.
+            DBConnection.cerrarPool();
         }
     }
 }
@@ -21,6 +21,7 @@ public class SolicitudDeServicio {
     private EstadoDeMedidor estadoDeMedidor; // El estado actual del medidor al momento de crear la solicitud.
     private TipoDeSolicitud tipoDeSolicitud; // El tipo de acción solicitada (ej: "Activacion").
     private EstadoDeSolicitudDeServicio estadoDeSolicitudDeServicio; // El estado actual de la gestión de la solicitud (ej: "Pendiente").
+    private int version; // Versión de la fila leída, para el control de concurrencia optimista.
     
     /*
      * Constructor por defecto. Inicializa la fecha de solicitud con el momento actual.
@@ -64,6 +65,10 @@ public class SolicitudDeServicio {
         return fechaSolicitud; // Retorna la fecha de creación.
     }
 
+    public void setFechaSolicitud(Date fechaSolicitud) {
+        this.fechaSolicitud = fechaSolicitud; // Establece la fecha de creación (ej: la registrada en la BD).
+    }
+
     public String getDescripcion() {
         return descripcion; // Retorna la descripción o comentario.
     }
@@ -99,6 +104,14 @@ public class SolicitudDeServicio {
     public EstadoDeSolicitudDeServicio getEstadoDeSolicitudDeServicio() {
         return estadoDeSolicitudDeServicio; // Retorna el estado de la Solicitud (ej: Pendiente).
     }
+
+    public int getVersion() {
+        return version; // Retorna la versión con la que se leyó.
+    }
+
+    public void setVersion(int version) {
+        this.version = version; // Establece la versión (la asigna el repositorio).
+    }
     
     
 }
@@ -0,0 +1,150 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Clase TarifaCompilada.
+ * Una versión de una tarifa (tablas Tarifa, TramoDeTarifa, FranjaHorariaDeTarifa e ImpuestoDeTarifa) ya
+ * convertida en arreglos planos, para calcular millones de montos sin consultar la BD ni crear objetos:
+ * - Tramos escalonados: el inicio de cada tramo en Wh, su precio y el costo acumulado hasta su inicio, así la
+ *   energía es una bisección y una multiplicación (no recorre los tramos anteriores).
+ * - Franjas horarias: un recargo (o descuento, si es negativo) por kWh para cada hora del día, que se aplica al
+ *   consumo de esa hora.
+ * - Cargo fijo e impuestos: los porcentajes se suman y se aplican sobre el subtotal.
+ *
+ * Todo es entero (ver Dinero y Energia): los precios por kWh van en diezmilésimas de peso, como en la BD, así
+ * Wh x precio es exacto en unidades de 1e-7 pesos. El costo de la energía se redondea a centavos una sola vez,
+ * y los impuestos otra, con REDONDEO.
+ * Es inmutable; la arma CatalogoDeTarifas al cargar las tarifas.
+ */
+public final class TarifaCompilada {
+
+    public static final int HORAS = 24; // Largo del vector de consumo por hora del día.
+    public static final int DECIMALES_DE_PRECIO = 4; // Precios por kWh en diezmilésimas de peso (DECIMAL(12,4)).
+    public static final int DECIMALES_DE_PORCENTAJE = 3; // Impuestos en milésimas de punto (DECIMAL(6,3)).
+    public static final RoundingMode REDONDEO = RoundingMode.HALF_UP;
+
+    // Wh x (1e-4 pesos/kWh) = 1e-7 pesos; a centavos se divide por 1e5.
+    private static final long UNIDADES_POR_CENTAVO = 100_000;
+    // 100 % en milésimas de punto.
+    private static final long CIEN_POR_CIENTO = 100_000;
+
+    private final String nombre;
+    private final Date vigenteDesde;
+    private final long cargoFijo; // En centavos.
+    private final long[] inicioDeTramo; // Wh donde empieza cada tramo; el primero es 0.
+    private final long[] precioDeTramo; // Precio por kWh dentro de cada tramo.
+    private final long[] costoHastaTramo; // Costo de la energía desde 0 hasta el inicio de cada tramo (1e-7 pesos).
+    private final long[] recargoPorHora; // Recargo por kWh consumido en cada hora del día.
+    private final boolean usaFranjas;
+    private final long impuestos; // Suma de los porcentajes, en milésimas de punto.
+
+    /*
+     * Compila una definición. Los tramos deben venir ordenados por su inicio, empezando en 0.
+     * Las franjas van de 'horaDesde' (incluida) a 'horaHasta' (excluida); si horaHasta <= horaDesde, cruzan la medianoche.
+     */
+    TarifaCompilada(String nombre, Date vigenteDesde, long cargoFijo, long[] inicioDeTramo, long[] precioDeTramo,
+                    int[] franjaDesde, int[] franjaHasta, long[] recargoDeFranja, long[] porcentajesDeImpuestos) {
+        if (inicioDeTramo.length == 0 || inicioDeTramo[0] != 0) {
+            throw new IllegalArgumentException("La tarifa '" + nombre + "' debe tener un tramo que empiece en 0 kWh.");
+        }
+        for (int i = 1; i < inicioDeTramo.length; i++) {
+            if (inicioDeTramo[i] <= inicioDeTramo[i - 1]) {
+                throw new IllegalArgumentException("Los tramos de la tarifa '" + nombre + "' deben ser crecientes.");
+            }
+        }
+        this.nombre = nombre;
+        this.vigenteDesde = new Date(vigenteDesde.getTime());
+        this.cargoFijo = cargoFijo;
+        this.inicioDeTramo = inicioDeTramo.clone();
+        this.precioDeTramo = precioDeTramo.clone();
+
+        this.costoHastaTramo = new long[inicioDeTramo.length];
+        for (int i = 1; i < inicioDeTramo.length; i++) {
+            costoHastaTramo[i] = costoHastaTramo[i - 1] + (inicioDeTramo[i] - inicioDeTramo[i - 1]) * precioDeTramo[i - 1];
+        }
+
+        this.recargoPorHora = new long[HORAS];
+        for (int f = 0; f < franjaDesde.length; f++) {
+            if (franjaDesde[f] < 0 || franjaDesde[f] >= HORAS || franjaHasta[f] < 0 || franjaHasta[f] > HORAS) {
+                throw new IllegalArgumentException("Franja horaria fuera de 0-24 en la tarifa '" + nombre + "'.");
+            }
+            int horas = (franjaHasta[f] - franjaDesde[f] + HORAS) % HORAS;
+            for (int k = 0; k < (horas == 0 ? HORAS : horas); k++) {
+                recargoPorHora[(franjaDesde[f] + k) % HORAS] += recargoDeFranja[f];
+            }
+        }
+        this.usaFranjas = Arrays.stream(recargoPorHora).anyMatch(r -> r != 0);
+        this.impuestos = Arrays.stream(porcentajesDeImpuestos).sum();
+    }
+
+    /**
+     * Monto sin discriminar por hora (o cuando no hay lecturas por hora).
+     * @param consumoWh Consumo total del período.
+     * @return El monto en centavos, impuestos incluidos.
+     */
+    public long calcularMonto(long consumoWh) {
+        return conImpuestos(energia(consumoWh));
+    }
+
+    /**
+     * Monto con franjas horarias: los tramos sobre el total y el recargo de cada hora sobre su consumo.
+     * @param consumoWhPorHora Arreglo con HORAS valores desde 'desde' (así un arreglo plano sirve para muchos medidores).
+     *                         Si suma menos que el total, lo que falta no lleva recargo.
+     * @return El monto en centavos, impuestos incluidos.
+     */
+    public long calcularMonto(long consumoWh, long[] consumoWhPorHora, int desde) {
+        long costo = energia(consumoWh);
+        for (int h = 0; h < HORAS; h++) {
+            costo += consumoWhPorHora[desde + h] * recargoPorHora[h];
+        }
+        return conImpuestos(costo);
+    }
+
+    // Cargo fijo más la energía redondeada a centavos, y los impuestos sobre ese subtotal.
+    private long conImpuestos(long costoDeEnergia) {
+        long subtotal = Dinero.sumar(cargoFijo, Dinero.aCentavos(costoDeEnergia, UNIDADES_POR_CENTAVO, REDONDEO));
+        return Dinero.sumar(subtotal, Dinero.multiplicar(subtotal, impuestos, CIEN_POR_CIENTO, REDONDEO));
+    }
+
+    // Costo de la energía por tramos: el costo hasta el tramo que contiene al consumo más lo consumido dentro de él.
+    private long energia(long consumoWh) {
+        if (consumoWh <= 0) {
+            return 0;
+        }
+        int tramo = Arrays.binarySearch(inicioDeTramo, consumoWh);
+        if (tramo < 0) {
+            tramo = -tramo - 2; // Último inicio menor que el consumo.
+        }
+        return costoHastaTramo[tramo] + (consumoWh - inicioDeTramo[tramo]) * precioDeTramo[tramo];
+    }
+
+    // ------------------ Getters ------------------
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public Date getVigenteDesde() {
+        return new Date(vigenteDesde.getTime());
+    }
+
+    // true si alguna hora tiene recargo: recién ahí vale la pena calcular el consumo por hora.
+    public boolean usaFranjas() {
+        return usaFranjas;
+    }
+
+    @Override
+    public String toString() {
+        return "Tarifa '" + nombre + "' vigente desde " + new java.sql.Date(vigenteDesde.getTime()) + ": cargo fijo " + Dinero.formatear(cargoFijo)
+                + ", " + inicioDeTramo.length + " tramos, " + (usaFranjas ? "con" : "sin") + " franjas horarias, impuestos "
+                + AritmeticaFija.formatear(impuestos, DECIMALES_DE_PORCENTAJE, 1000) + "%";
+    }
+}
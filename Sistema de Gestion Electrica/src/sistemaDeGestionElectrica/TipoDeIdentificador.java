@@ -0,0 +1,48 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.util.Locale;
+
+/**
+ * Enum TipoDeIdentificador.
+ * Qué escribió el usuario en "NIS/ID Universal" al iniciar sesión: un correo (tiene '@'), un NIS (solo dígitos
+ * que entran en un INT) o un idUniversal (cualquier otra cosa). Con esto la autenticación va directo al índice
+ * único de la columna que corresponde, en vez de un OR entre las tres.
+ */
+public enum TipoDeIdentificador {
+    CORREO,
+    NIS,
+    ID_UNIVERSAL;
+
+    /**
+     * @return Retorno el tipo del identificador (ya sin espacios al principio ni al final).
+     */
+    public static TipoDeIdentificador clasificar(String identificador) {
+        String valor = identificador.trim();
+        if (valor.indexOf('@') >= 0) {
+            return CORREO;
+        }
+        if (!valor.isEmpty() && valor.length() <= 10 && valor.chars().allMatch(c -> c >= '0' && c <= '9')) {
+            try {
+                Integer.parseInt(valor);
+                return NIS;
+            } catch (NumberFormatException e) {
+                // Más grande que un INT: no puede ser un NIS.
+            }
+        }
+        return ID_UNIVERSAL;
+    }
+
+    /**
+     * @return Retorno el identificador como se compara en la BD: sin espacios y, salvo el NIS, en minúsculas
+     *         (las columnas de correo e idUniversal no distinguen mayúsculas).
+     */
+    public String normalizar(String identificador) {
+        String valor = identificador.trim();
+        return this == NIS ? valor : valor.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Clase TopologiaDeReplicacion.
+ * Reparto las conexiones entre un primario (escrituras) y réplicas de solo lectura, cada uno con su propio
+ * PoolDeConexiones. DBConnection la usa para getConnection() (primario) y getConnectionLectura() (réplicas).
+ *
+ * Un hilo monitor revisa cada nodo periódicamente con una conexión propia y timeouts cortos:
+ * - Réplicas: leo el retraso de replicación; si supera el máximo, o la réplica no responde, deja de recibir
+ *   lecturas hasta que se recupere. Si no queda ninguna réplica utilizable, las lecturas van al primario.
+ * - Candidatos a primario: si el primario actual cae o pasa a read_only, elijo el primer candidato que
+ *   responda y acepte escrituras (ej: la réplica que se promovió). La promoción en sí la hace el operador
+ *   de la base; aquí solo detecto el cambio.
+ * Así, un nodo caído deja de usarse como mucho en (período del monitor + timeout de conexión).
+ */
+public class TopologiaDeReplicacion {
+
+    /*
+     * Un servidor MySQL con su pool y el último estado que vio el monitor.
+     */
+    static final class Nodo {
+        final String url;
+        final PoolDeConexiones pool;
+        volatile boolean sano = true; // Respondió en la última revisión.
+        volatile boolean escribible = true; // @@read_only = 0 (solo se revisa en candidatos a primario).
+        volatile long retrasoSeg = 0; // Segundos de retraso de replicación (solo réplicas).
+        Connection conexionDeMonitoreo; // Solo la usa el hilo monitor.
+
+        Nodo(String url, PoolDeConexiones pool) {
+            this.url = url;
+            this.pool = pool;
+        }
+
+        String estado() {
+            if (!sano) {
+                return "CAÍDO";
+            }
+            return retrasoSeg == Long.MAX_VALUE ? "REPLICACIÓN DETENIDA" : "OK";
+        }
+    }
+
+    private final List<Nodo> candidatosAPrimario;
+    private final List<Nodo> replicas;
+    private final Properties propiedadesDeMonitoreo; // Propiedades de conexión con timeouts cortos.
+    private final long retrasoMaximoSeg;
+    private final long periodoDeMonitoreoMs;
+    private final AtomicInteger turno = new AtomicInteger(); // Reparto round-robin entre réplicas.
+    private volatile Nodo primario;
+    private ScheduledExecutorService monitor;
+
+    /*
+     * @param urlsPrimario Candidatos a primario en orden de preferencia (normalmente uno solo).
+     * @param urlsReplicas Réplicas de lectura (puede estar vacía: todo va al primario).
+     * @param crearPool Crea el pool de cada nodo a partir de su URL.
+     */
+    public TopologiaDeReplicacion(List<String> urlsPrimario, List<String> urlsReplicas, Function<String, PoolDeConexiones> crearPool,
+                                  Properties propiedadesDeMonitoreo, long retrasoMaximoSeg, long periodoDeMonitoreoMs) {
+        if (urlsPrimario.isEmpty()) {
+            throw new IllegalArgumentException("Se necesita al menos un primario.");
+        }
+        List<Nodo> candidatos = new ArrayList<>();
+        for (String url : urlsPrimario) {
+            candidatos.add(new Nodo(url, crearPool.apply(url)));
+        }
+        List<Nodo> lectura = new ArrayList<>();
+        for (String url : urlsReplicas) {
+            lectura.add(new Nodo(url, crearPool.apply(url)));
+        }
+        this.candidatosAPrimario = Collections.unmodifiableList(candidatos);
+        this.replicas = Collections.unmodifiableList(lectura);
+        this.propiedadesDeMonitoreo = propiedadesDeMonitoreo;
+        this.retrasoMaximoSeg = retrasoMaximoSeg;
+        this.periodoDeMonitoreoMs = periodoDeMonitoreoMs;
+        this.primario = candidatos.get(0);
+    }
+
+    /**
+     * Calienta los pools, elige el primario y arranca el monitor.
+     * Una réplica que no responde al arrancar no impide iniciar: queda marcada como caída.
+     * @throws SQLException Si ningún candidato a primario responde.
+     */
+    public synchronized void iniciar() throws SQLException {
+        SQLException ultimoError = null;
+        Nodo elegido = null;
+        for (Nodo candidato : candidatosAPrimario) {
+            try {
+                candidato.pool.calentar();
+                revisarPrimario(candidato);
+                if (candidato.escribible) {
+                    elegido = candidato;
+                    break;
+                }
+            } catch (SQLException e) {
+                candidato.sano = false;
+                ultimoError = e;
+            }
+        }
+        if (elegido == null) {
+            throw ultimoError != null ? ultimoError : new SQLException("Ningún candidato a primario acepta escrituras (read_only).");
+        }
+        primario = elegido;
+
+        for (Nodo replica : replicas) {
+            try {
+                replica.pool.calentar();
+                revisarReplica(replica);
+            } catch (SQLException e) {
+                replica.sano = false;
+                System.err.println("ADVERTENCIA: La réplica " + replica.url + " no responde; las lecturas irán a los demás nodos. " + e.getMessage());
+            }
+        }
+
+        if (monitor == null && (candidatosAPrimario.size() > 1 || !replicas.isEmpty())) {
+            monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "sgre-monitor-replicacion");
+                t.setDaemon(true);
+                return t;
+            });
+            monitor.scheduleWithFixedDelay(this::revisarTodo, periodoDeMonitoreoMs, periodoDeMonitoreoMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Presta una conexión del primario. Si el primario falla y hay otros candidatos, revisa en el momento
+     * cuál acepta escrituras y reintenta una vez contra él.
+     */
+    public Connection obtenerConexionEscritura() throws SQLException {
+        Nodo actual = primario;
+        try {
+            return actual.pool.obtenerConexion();
+        } catch (SQLException e) {
+            if (candidatosAPrimario.size() == 1) {
+                throw e;
+            }
+            actual.sano = false;
+            Nodo nuevo = elegirPrimario();
+            if (nuevo == null || nuevo == actual) {
+                throw e;
+            }
+            return nuevo.pool.obtenerConexion();
+        }
+    }
+
+    /**
+     * Presta una conexión de solo lectura de una réplica sana y al día (round-robin).
+     * Si ninguna está disponible, la presta del primario.
+     */
+    public Connection obtenerConexionLectura() throws SQLException {
+        int cantidad = replicas.size();
+        if (cantidad > 0) {
+            int inicio = Math.floorMod(turno.getAndIncrement(), cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                Nodo replica = replicas.get((inicio + i) % cantidad);
+                if (!replica.sano || replica.retrasoSeg > retrasoMaximoSeg) {
+                    continue;
+                }
+                try {
+                    Connection conn = replica.pool.obtenerConexion();
+                    conn.setReadOnly(true); // El pool lo restablece al devolverla.
+                    return conn;
+                } catch (SQLException e) {
+                    replica.sano = false; // El monitor la vuelve a habilitar cuando responda.
+                    System.err.println("ADVERTENCIA: Réplica " + replica.url + " fuera de servicio: " + e.getMessage());
+                }
+            }
+        }
+        return obtenerConexionEscritura();
+    }
+
+    /*
+     * Pool del primario actual (para las métricas del arranque).
+     */
+    public PoolDeConexiones getPoolPrimario() {
+        return primario.pool;
+    }
+
+    /*
+     * Retorna el estado de cada nodo y las métricas de su pool, para mostrar por consola.
+     */
+    public String resumen() {
+        StringBuilder sb = new StringBuilder();
+        Nodo actual = primario;
+        for (Nodo candidato : candidatosAPrimario) {
+            sb.append(candidato == actual ? "PRIMARIO  " : "CANDIDATO ").append(candidato.estado()).append("  ")
+              .append(candidato.pool.resumen()).append('\n');
+        }
+        for (Nodo replica : replicas) {
+            sb.append("RÉPLICA   ").append(replica.estado())
+              .append(" retraso=").append(replica.retrasoSeg == Long.MAX_VALUE ? "?" : replica.retrasoSeg + " s").append("  ")
+              .append(replica.pool.resumen()).append('\n');
+        }
+        return sb.toString().trim();
+    }
+
+    /*
+     * Detiene el monitor y cierra todos los pools.
+     */
+    public synchronized void cerrar() {
+        if (monitor != null) {
+            monitor.shutdownNow();
+            monitor = null;
+        }
+        List<Nodo> todos = new ArrayList<>(candidatosAPrimario);
+        todos.addAll(replicas);
+        for (Nodo nodo : todos) {
+            cerrarMonitoreo(nodo);
+            nodo.pool.cerrar();
+        }
+    }
+
+    // ------------------ Monitor ------------------
+
+    // Sincronizado con elegirPrimario(): ambos usan las conexiones de monitoreo.
+    private synchronized void revisarTodo() {
+        try {
+            Nodo actual = primario;
+            for (Nodo candidato : candidatosAPrimario) {
+                try {
+                    revisarPrimario(candidato);
+                } catch (SQLException e) {
+                    candidato.sano = false;
+                    cerrarMonitoreo(candidato);
+                }
+            }
+            if (!actual.sano || !actual.escribible) {
+                elegirPrimario();
+            }
+            for (Nodo replica : replicas) {
+                boolean estabaSana = replica.sano;
+                try {
+                    revisarReplica(replica);
+                    if (!estabaSana) {
+                        System.out.println("Réplica " + replica.url + " recuperada (retraso " + replica.retrasoSeg + " s).");
+                    }
+                } catch (SQLException e) {
+                    replica.sano = false;
+                    cerrarMonitoreo(replica);
+                }
+            }
+        } catch (RuntimeException e) {
+            // Un error inesperado no debe cancelar las revisiones siguientes.
+            System.err.println("Error en el monitor de replicación: " + e.getMessage());
+        }
+    }
+
+    // Cambia al primer candidato sano que acepte escrituras. Retorna el primario resultante (o null si no hay).
+    private synchronized Nodo elegirPrimario() {
+        Nodo actual = primario;
+        if (actual.sano && actual.escribible) {
+            return actual; // Otro hilo ya hizo el cambio.
+        }
+        for (Nodo candidato : candidatosAPrimario) {
+            try {
+                revisarPrimario(candidato);
+            } catch (SQLException e) {
+                candidato.sano = false;
+                cerrarMonitoreo(candidato);
+                continue;
+            }
+            if (candidato.escribible) {
+                if (candidato != actual) {
+                    System.err.println("FAILOVER: El primario pasa de " + actual.url + " a " + candidato.url + ".");
+                    primario = candidato;
+                }
+                return candidato;
+            }
+        }
+        return null;
+    }
+
+    private void revisarPrimario(Nodo nodo) throws SQLException {
+        try (Statement st = conexionDeMonitoreo(nodo).createStatement();
+             ResultSet rs = st.executeQuery("SELECT @@global.read_only")) {
+            rs.next();
+            nodo.escribible = rs.getInt(1) == 0;
+            nodo.sano = true;
+        }
+    }
+
+    /*
+     * Lee el retraso de replicación. SHOW REPLICA STATUS existe desde MySQL 8.0.22; antes, SHOW SLAVE STATUS.
+     * Sin filas (no está configurado como réplica, ej: una instancia local de prueba) lo tomo como al día.
+     * Seconds_Behind en NULL significa que la replicación está detenida: no se usa para lecturas.
+     */
+    private void revisarReplica(Nodo nodo) throws SQLException {
+        Connection conn = conexionDeMonitoreo(nodo);
+        long retraso;
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SHOW REPLICA STATUS")) {
+            retraso = leerRetraso(rs, "Seconds_Behind_Source");
+        } catch (SQLException e) {
+            if (!conn.isValid(1)) {
+                throw e;
+            }
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("SHOW SLAVE STATUS")) {
+                retraso = leerRetraso(rs, "Seconds_Behind_Master");
+            }
+        }
+        nodo.retrasoSeg = retraso;
+        nodo.sano = true;
+    }
+
+    private static long leerRetraso(ResultSet rs, String columna) throws SQLException {
+        if (!rs.next()) {
+            return 0;
+        }
+        long segundos = rs.getLong(columna);
+        return rs.wasNull() ? Long.MAX_VALUE : segundos;
+    }
+
+    // Conexión dedicada al monitoreo, fuera del pool para que un pool saturado no retrase la revisión.
+    private Connection conexionDeMonitoreo(Nodo nodo) throws SQLException {
+        if (nodo.conexionDeMonitoreo == null || nodo.conexionDeMonitoreo.isClosed()) {
+            nodo.conexionDeMonitoreo = DriverManager.getConnection(nodo.url, propiedadesDeMonitoreo);
+        }
+        return nodo.conexionDeMonitoreo;
+    }
+
+    private static void cerrarMonitoreo(Nodo nodo) {
+        if (nodo.conexionDeMonitoreo != null) {
+            try {
+                nodo.conexionDeMonitoreo.close();
+            } catch (SQLException e) {
+                // Ya estaba rota; no hay nada que hacer.
+            }
+            nodo.conexionDeMonitoreo = null;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.SQLException;
+
+/**
+ * Interfaz UnidadDeTrabajo.
+ * Agrupa varias operaciones del RepositorioDAO en una sola transacción: las actualizaciones se registran
+ * y se aplican todas juntas en confirmar(). Si algo falla, o si se cierra sin confirmar, se deshace todo.
+ * La obtengo con RepositorioDAO.iniciarUnidadDeTrabajo() y la uso con try-with-resources.
+ */
+public interface UnidadDeTrabajo extends AutoCloseable {
+
+    /**
+     * Busca el Servicio del medidor dentro de la transacción, bloqueando la fila hasta el commit.
+     */
+    Servicio getServicioPorMedidor(int idMedidor) throws SQLException;
+
+    /**
+     * Registra la actualización de fechas de un Servicio (se aplica en confirmar()).
+     */
+    void actualizarServicio(Servicio servicio) throws SQLException;
+
+    /**
+     * Registra la actualización de estado y fecha de un Medidor (se aplica en confirmar()).
+     */
+    void actualizarMedidor(Medidor medidor) throws SQLException;
+
+    /**
+     * Registra la actualización de estado de una Solicitud (se aplica en confirmar()).
+     */
+    void actualizarSolicitud(SolicitudDeServicio solicitud) throws SQLException;
+
+    /**
+     * Aplica todas las actualizaciones registradas de una vez. Si falla, deshace la transacción y propaga el error.
+     * @throws ConflictoDeVersionException Si alguna entidad cambió de versión desde que se leyó (no se aplica ninguna).
+     * @throws SQLException Si alguna actualización falla.
+     */
+    void confirmar() throws SQLException;
+
+    /*
+     * Libera los recursos de la unidad. Si no se confirmó, deshace la transacción.
+     */
+    @Override
+    void close() throws SQLException;
+}
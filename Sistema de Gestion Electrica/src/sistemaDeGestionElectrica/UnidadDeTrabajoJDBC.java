@@ -0,0 +1,186 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clase UnidadDeTrabajoJDBC.
+ * Agrupa varias operaciones del RepositorioDAOJDBC en una sola conexión y una sola transacción.
+ * Las actualizaciones se acumulan en lotes JDBC (uno por sentencia) y se envían juntas en confirmar(),
+ * con un único commit. Si algo falla, o si se cierra sin confirmar, se deshace todo.
+ * Cada actualización compara la versión leída: si alguna no afecta filas, se deshace todo y se lanza
+ * ConflictoDeVersionException. Las versiones de los objetos solo avanzan después del commit.
+ */
+public class UnidadDeTrabajoJDBC implements UnidadDeTrabajo {
+
+    private final RepositorioDAOJDBC repositorioDAO; // DAO dueño de las cachés que invalido al confirmar.
+    private final Connection conexion; // Conexión exclusiva de esta unidad de trabajo.
+    private final Map<String, PreparedStatement> lotes = new LinkedHashMap<>(); // Un lote por sentencia, en orden de registro.
+    private final Map<String, List<Object>> entidadesPorLote = new HashMap<>(); // Lo que actualiza cada lote, en orden de addBatch.
+    private final List<Medidor> medidoresModificados = new ArrayList<>();
+    private final List<Servicio> serviciosModificados = new ArrayList<>();
+    private boolean confirmada = false;
+
+    /*
+     * Constructor usado por RepositorioDAOJDBC.iniciarUnidadDeTrabajo(). Desactiva el auto-commit.
+     */
+    UnidadDeTrabajoJDBC(RepositorioDAOJDBC repositorioDAO, Connection conexion) throws SQLException {
+        this.repositorioDAO = repositorioDAO;
+        this.conexion = conexion;
+        try {
+            this.conexion.setAutoCommit(false);
+        } catch (SQLException e) {
+            conexion.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Busca el Servicio del medidor dentro de la transacción, bloqueando la fila hasta el commit.
+     */
+    @Override
+    public Servicio getServicioPorMedidor(int idMedidor) throws SQLException {
+        return repositorioDAO.getServicioPorMedidor(conexion, idMedidor, true);
+    }
+
+    /**
+     * Registra la actualización de fechas de un Servicio (se envía en confirmar()).
+     */
+    @Override
+    public void actualizarServicio(Servicio servicio) throws SQLException {
+        RepositorioDAOJDBC.vincularActualizacionServicio(lote(RepositorioDAOJDBC.SQL_ACTUALIZAR_SERVICIO), servicio);
+        agregarAlLote(RepositorioDAOJDBC.SQL_ACTUALIZAR_SERVICIO, servicio);
+        serviciosModificados.add(servicio);
+    }
+
+    /**
+     * Registra la actualización de estado y fecha de un Medidor (se envía en confirmar()).
+     */
+    @Override
+    public void actualizarMedidor(Medidor medidor) throws SQLException {
+        RepositorioDAOJDBC.vincularActualizacionMedidor(lote(RepositorioDAOJDBC.SQL_ACTUALIZAR_MEDIDOR), medidor);
+        agregarAlLote(RepositorioDAOJDBC.SQL_ACTUALIZAR_MEDIDOR, medidor);
+        medidoresModificados.add(medidor);
+    }
+
+    /**
+     * Registra la actualización de estado de una Solicitud (se envía en confirmar()).
+     */
+    @Override
+    public void actualizarSolicitud(SolicitudDeServicio solicitud) throws SQLException {
+        RepositorioDAOJDBC.vincularActualizacionSolicitud(lote(RepositorioDAOJDBC.SQL_ACTUALIZAR_SOLICITUD), solicitud);
+        agregarAlLote(RepositorioDAOJDBC.SQL_ACTUALIZAR_SOLICITUD, solicitud);
+    }
+
+    /**
+     * Envía todos los lotes y hace un único commit. Si falla, deshace la transacción y propaga el error.
+     * @throws ConflictoDeVersionException Si otro modificó alguna de las filas desde que se leyó (no se aplica nada).
+     * @throws SQLException Si alguna sentencia o el commit fallan.
+     */
+    @Override
+    public void confirmar() throws SQLException {
+        if (confirmada) {
+            throw new IllegalStateException("La unidad de trabajo ya fue confirmada.");
+        }
+        try {
+            for (Map.Entry<String, PreparedStatement> lote : lotes.entrySet()) {
+                int[] filas = lote.getValue().executeBatch();
+                List<Object> entidades = entidadesPorLote.get(lote.getKey());
+                for (int i = 0; i < filas.length; i++) {
+                    // Statement.SUCCESS_NO_INFO (-2): el driver no informa las filas (lote reescrito); se da por aplicado.
+                    if (filas[i] == 0) {
+                        throw conflicto(entidades.get(i));
+                    }
+                }
+            }
+            conexion.commit();
+            confirmada = true;
+            entidadesPorLote.values().forEach(entidades -> entidades.forEach(UnidadDeTrabajoJDBC::avanzarVersion));
+            System.out.println("DB REAL: Unidad de trabajo confirmada (" + lotes.size() + " lotes, 1 commit).");
+        } catch (SQLException e) {
+            deshacer();
+            throw e;
+        } finally {
+            // Haya commit o rollback, lo que tenía la caché puede estar desactualizado.
+            medidoresModificados.forEach(repositorioDAO::invalidarCacheMedidor);
+            serviciosModificados.forEach(repositorioDAO::invalidarCacheServicio);
+        }
+    }
+
+    /*
+     * Cierra los lotes y devuelve la conexión. Si no se confirmó, deshace la transacción.
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            for (PreparedStatement ps : lotes.values()) {
+                ps.close();
+            }
+            if (!confirmada) {
+                deshacer();
+            }
+            conexion.setAutoCommit(true);
+        } finally {
+            conexion.close();
+        }
+    }
+
+    // ------------------ Internos ------------------
+
+    // Retorna (creándolo si hace falta) el PreparedStatement que acumula el lote de una sentencia.
+    private PreparedStatement lote(String sql) throws SQLException {
+        PreparedStatement ps = lotes.get(sql);
+        if (ps == null) {
+            ps = conexion.prepareStatement(sql);
+            lotes.put(sql, ps);
+        }
+        return ps;
+    }
+
+    private void agregarAlLote(String sql, Object entidad) throws SQLException {
+        lote(sql).addBatch();
+        entidadesPorLote.computeIfAbsent(sql, s -> new ArrayList<>()).add(entidad);
+    }
+
+    private static ConflictoDeVersionException conflicto(Object entidad) {
+        if (entidad instanceof Medidor) {
+            Medidor m = (Medidor) entidad;
+            return new ConflictoDeVersionException(ConflictoDeVersionException.Entidad.MEDIDOR, m.getIdMedidor(), m.getVersion());
+        }
+        if (entidad instanceof Servicio) {
+            Servicio s = (Servicio) entidad;
+            return new ConflictoDeVersionException(ConflictoDeVersionException.Entidad.SERVICIO, s.getIdServicio(), s.getVersion());
+        }
+        SolicitudDeServicio s = (SolicitudDeServicio) entidad;
+        return new ConflictoDeVersionException(ConflictoDeVersionException.Entidad.SOLICITUD, s.getIdSolicitud(), s.getVersion());
+    }
+
+    private static void avanzarVersion(Object entidad) {
+        if (entidad instanceof Medidor) {
+            ((Medidor) entidad).setVersion(((Medidor) entidad).getVersion() + 1);
+        } else if (entidad instanceof Servicio) {
+            ((Servicio) entidad).setVersion(((Servicio) entidad).getVersion() + 1);
+        } else {
+            ((SolicitudDeServicio) entidad).setVersion(((SolicitudDeServicio) entidad).getVersion() + 1);
+        }
+    }
+
+    private void deshacer() {
+        try {
+            conexion.rollback();
+        } catch (SQLException e) {
+            System.err.println("Error al deshacer la unidad de trabajo: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package sistema.de.gestion.electrica;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Clase VerificadorDeIndices.
+ * Ejecuto EXPLAIN sobre las consultas por clave de RepositorioDAOJDBC (con parámetros de ejemplo) y reviso que
+ * ninguna tabla se recorra entera sin tener un índice utilizable. Lo corro después de las migraciones con
+ * -Dsgre.migraciones.verificarIndices=true, o cuando se agrega una consulta nueva al DAO.
+ *
+ * Criterio: una fila del plan falla si es type=ALL y possible_keys está vacío. No miro la columna 'key',
+ * porque con tablas chicas (ej: una base de prueba) el optimizador puede preferir el recorrido completo
+ * aunque el índice exista. Los recorridos completos a propósito (transmitir*, exportaciones) no se revisan.
+ * Una consulta que depende de un índice en particular lo declara (usando), y falla si no está entre los posibles.
+ */
+public class VerificadorDeIndices {
+
+    /*
+     * Una sentencia del DAO con valores de ejemplo para sus marcadores '?'.
+     */
+    private static final class Consulta {
+        final String nombre;
+        final String sql;
+        final Object[] ejemplo;
+        final String indiceEsperado; // null si alcanza con cualquier índice.
+
+        Consulta(String nombre, String sql, Object... ejemplo) {
+            this(nombre, sql, ejemplo, null);
+        }
+
+        private Consulta(String nombre, String sql, Object[] ejemplo, String indiceEsperado) {
+            this.nombre = nombre;
+            this.sql = sql;
+            this.ejemplo = ejemplo;
+            this.indiceEsperado = indiceEsperado;
+        }
+
+        // La misma consulta, que además tiene que poder usar ese índice.
+        Consulta usando(String indice) {
+            return new Consulta(nombre, sql, ejemplo, indice);
+        }
+    }
+
+    // Catálogo de sentencias a revisar. Usa las mismas constantes que RepositorioDAOJDBC.
+    private static final List<Consulta> CONSULTAS = List.of(
+        new Consulta("getClientePorNIS", RepositorioDAOJDBC.SQL_CLIENTE_POR_NIS, 789012345),
+        new Consulta("getClientePorID", RepositorioDAOJDBC.SQL_CLIENTE_POR_ID, 1),
+        new Consulta("getOperarioPorID", RepositorioDAOJDBC.SQL_OPERARIO_POR_ID, 3),
+        new Consulta("getMedidorPorID", RepositorioDAOJDBC.SQL_MEDIDOR_POR_ID, 1),
+        new Consulta("getMedidorAsociadoACliente", RepositorioDAOJDBC.SQL_ID_MEDIDOR_POR_CLIENTE, 1),
+        new Consulta("getServicioPorMedidor", RepositorioDAOJDBC.SQL_SERVICIO_POR_MEDIDOR, 1),
+        new Consulta("getIdsDeClientesPorNIS", RepositorioDAOJDBC.SQL_NIS_A_ID_CLIENTE + "(?, ?)", 789012345, 901234567),
+        new Consulta("getSolicitudPorID", RepositorioDAOJDBC.SQL_SOLICITUDES_CON_RELACIONES + RepositorioDAOJDBC.FILTRO_SOLICITUD_POR_ID, 1),
+        new Consulta("getSolicitudesPendientes", RepositorioDAOJDBC.SQL_SOLICITUDES_CON_RELACIONES + RepositorioDAOJDBC.FILTRO_PENDIENTES),
+        new Consulta("getSolicitudesPendientesPorCliente", RepositorioDAOJDBC.SQL_SOLICITUDES_CON_RELACIONES + RepositorioDAOJDBC.FILTRO_PENDIENTES_POR_CLIENTE, 1, 1),
+        // buscarSolicitudes arma el WHERE según los criterios; reviso la forma de la pantalla del operario (estado + página siguiente).
+        new Consulta("buscarSolicitudes", RepositorioDAOJDBC.SQL_SOLICITUDES_CON_RELACIONES
+                + "WHERE s.EstadoDeSolicitudDeServicio_idEstadoDeSolicitudDeServicio = ? "
+                + "AND (s.fechaSolicitud > ? OR (s.fechaSolicitud = ? AND s.idSolicitud > ?)) "
+                + "ORDER BY s.fechaSolicitud, s.idSolicitud LIMIT ?", 1, "2024-01-01 00:00:00", "2024-01-01 00:00:00", 0, 21),
+        new Consulta("autenticarUsuario (correo)", RepositorioDAOJDBC.SQL_AUTENTICAR_POR_CORREO, "laura.g@mail.com", "x"),
+        new Consulta("autenticarUsuario (NIS)", RepositorioDAOJDBC.SQL_AUTENTICAR_POR_NIS, 789012345, "x"),
+        new Consulta("autenticarUsuario (idUniversal)", RepositorioDAOJDBC.SQL_AUTENTICAR_POR_ID_UNIVERSAL, "OP1001", "x"),
+        new Consulta("actualizarSolicitud", RepositorioDAOJDBC.SQL_ACTUALIZAR_SOLICITUD, 1, 1, 0),
+        new Consulta("actualizarMedidor", RepositorioDAOJDBC.SQL_ACTUALIZAR_MEDIDOR, 1, "2024-01-01 00:00:00", 1, 0),
+        new Consulta("actualizarServicio", RepositorioDAOJDBC.SQL_ACTUALIZAR_SERVICIO, null, null, null, 1, 0),
+        new Consulta("registrarLecturas (última lectura)", IngestorDeLecturas.SQL_ACTUALIZAR_ULTIMA_LECTURA,
+                0.0, "2024-01-01 00:00:00", 1, 1, "2024-01-01 00:00:00"),
+        new Consulta("facturarPeriodo (límites de partición)", FacturacionDelPeriodo.SQL_SIGUIENTE_LIMITE, 789012345, 10_000),
+        new Consulta("facturarPeriodo (tramo)", FacturacionDelPeriodo.SQL_MEDIDORES_A_FACTURAR,
+                "2024-09-01 00:00:00", "2024-10-01 00:00:00", 789012345, 901234567, 789012344, 789012344, 0,
+                "2024-10-01 00:00:00", "2024-09-01 00:00:00", 2_000),
+        new Consulta("facturarPeriodo (checkpoint)", FacturacionDelPeriodo.SQL_AVANZAR_CHECKPOINT,
+                789012345, 1, 1, "Pendiente", "2024-09", 0, 789012344, 0),
+        // Filtra por el prefijo (estado) del índice de la migración 9; no hay un índice de solo estado.
+        new Consulta("getFacturasAbiertas", ConciliacionDePagos.SQL_FACTURAS_ABIERTAS).usando("idx_factura_estado_vencimiento"),
+        new Consulta("getReferenciasDePagoRegistradas", ConciliacionDePagos.SQL_REFERENCIAS_REGISTRADAS + "(?, ?)", "BCO-1", "BCO-2"),
+        new Consulta("registrarPagos (saldar factura)", ConciliacionDePagos.SQL_SALDAR_FACTURA, 1),
+        new Consulta("vencerFacturas (tramo)", BarridoDeVencimientos.SQL_VENCER_TRAMO, 500, "2024-10-01", 1_000),
+        new Consulta("facturarPeriodo (consumo por hora)", String.format(FacturacionDelPeriodo.SQL_CONSUMO_POR_HORA, "?, ?"),
+                1, 2, "2024-09-01 00:00:00", "2024-10-01 00:00:00")
+    );
+
+    /**
+     * Revisa el plan de cada consulta del catálogo e imprime el resultado por consola.
+     * @return true si todas usan un índice en todas sus tablas.
+     * @throws SQLException Si falla la conexión o un EXPLAIN (ej: una consulta que ya no es válida).
+     */
+    public boolean verificar() throws SQLException {
+        int fallidas = 0;
+
+        System.out.println("\n--- VERIFICACIÓN DE ÍNDICES (EXPLAIN) ---");
+        try (Connection conn = DBConnection.getConnection();
+             Statement st = conn.createStatement()) {
+
+            for (Consulta consulta : CONSULTAS) {
+                List<String> problemas = new ArrayList<>();
+                List<String> accesos = new ArrayList<>();
+                boolean conIndiceEsperado = consulta.indiceEsperado == null;
+
+                try (ResultSet rs = st.executeQuery("EXPLAIN " + conValores(consulta.sql, consulta.ejemplo))) {
+                    while (rs.next()) {
+                        String tabla = rs.getString("table");
+                        String tipo = rs.getString("type");
+                        String posibles = rs.getString("possible_keys");
+                        String clave = rs.getString("key");
+                        if (tabla == null) {
+                            continue; // Filas sin tabla (ej: "Impossible WHERE" con datos de ejemplo).
+                        }
+                        if ("ALL".equals(tipo) && posibles == null) {
+                            problemas.add(tabla + " se recorre entera sin índice utilizable");
+                        }
+                        if (posibles != null && Arrays.asList(posibles.split(",")).contains(consulta.indiceEsperado)) {
+                            conIndiceEsperado = true;
+                        }
+                        accesos.add(tabla + ":" + tipo + (clave != null ? "(" + clave + ")" : ""));
+                    }
+                }
+                if (!conIndiceEsperado) {
+                    problemas.add("no puede usar el índice " + consulta.indiceEsperado);
+                }
+
+                if (problemas.isEmpty()) {
+                    System.out.println("OK           " + consulta.nombre + "  " + accesos);
+                } else {
+                    fallidas++;
+                    System.out.println("SIN ÍNDICE   " + consulta.nombre + "  " + problemas);
+                }
+            }
+        }
+
+        System.out.println(fallidas == 0
+                ? "Todas las consultas (" + CONSULTAS.size() + ") usan índices."
+                : fallidas + " de " + CONSULTAS.size() + " consultas recorren tablas sin índice.");
+        return fallidas == 0;
+    }
+
+    // ------------------ Internos ------------------
+
+    /*
+     * Reemplaza los '?' por los valores de ejemplo como literales SQL. Solo se usa con los valores fijos de
+     * este catálogo (nunca con entrada del usuario), así que el entrecomillado simple alcanza.
+     */
+    private static String conValores(String sql, Object[] valores) {
+        StringBuilder resultado = new StringBuilder();
+        int siguiente = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?' && siguiente < valores.length) {
+                Object valor = valores[siguiente++];
+                if (valor == null) {
+                    resultado.append("NULL");
+                } else if (valor instanceof Number) {
+                    resultado.append(valor);
+                } else {
+                    resultado.append('\'').append(valor.toString().replace("'", "''")).append('\'');
+                }
+            } else {
+                resultado.append(c);
+            }
+        }
+        return resultado.toString();
+    }
+}
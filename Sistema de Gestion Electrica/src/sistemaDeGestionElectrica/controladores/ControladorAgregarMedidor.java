@@ -5,6 +5,7 @@
 package sistema.de.gestion.electrica.controladores;
 import java.sql.SQLException;
 import sistema.de.gestion.electrica.RepositorioDAO;
+import sistema.de.gestion.electrica.RegistroDeMetricas;
 import sistema.de.gestion.electrica.Medidor;
 import sistema.de.gestion.electrica.EstadoDeMedidor;
 import sistema.de.gestion.electrica.Cliente;
@@ -32,12 +33,42 @@ public class ControladorAgregarMedidor {
      * @throws SQLException Propaga errores de la base de datos al GestorDeInterfaz.
      */
     public boolean agregarMedidor(int idMedidor, String tipo, String marca, String ubicacion, Date fechaDeInstalacion, int anioDeFabricacion, EstadoDeMedidor estadoDeMedidor, Cliente cliente) throws SQLException {
+        return RegistroDeMetricas.getInstancia().medir("CU002 Agregar Medidor", () -> registrarMedidor(idMedidor, tipo, marca, ubicacion, fechaDeInstalacion, anioDeFabricacion, estadoDeMedidor, cliente));
+    }
+
+    // Cuerpo de agregarMedidor(), medido como caso de uso CU002 en RegistroDeMetricas.
+    private boolean registrarMedidor(int idMedidor, String tipo, String marca, String ubicacion, Date fechaDeInstalacion, int anioDeFabricacion, EstadoDeMedidor estadoDeMedidor, Cliente cliente) throws SQLException {
         
 
-        // 2. Validación de campos obligatorios 
+        // 2 y 3. Validación de campos obligatorios y de consistencia de fechas
+        String error = validarDatosDeMedidor(tipo, marca, ubicacion, fechaDeInstalacion, anioDeFabricacion);
+        if (error != null) {
+            System.out.println("Validación fallida: " + error);
+            return false; // Detiene la ejecución si la validación falla.
+        }
+
+        // 4. Creación del objeto Medidor
+        // Se asume un valor inicial de 0.0 para la lectura y la fecha actual para la última lectura.
+        Medidor nuevoMedidor = new Medidor(idMedidor, tipo, marca, ubicacion, 0, new Date(), fechaDeInstalacion, anioDeFabricacion, estadoDeMedidor, cliente);
+
+        // 5. Persistencia del objeto 
+        this.repositorioDAO.agregarMedidor(nuevoMedidor); // Llama al DAO para guardar el nuevo medidor en el repositorio.
+        
+        System.out.println("ÉXITO: El Medidor #" + nuevoMedidor.getIdMedidor() + " fue agregado al inventario.");
+
+        return true; // Retorna verdadero indicando el éxito de la operación.
+    }
+    
+    /*
+     * Reglas de validación de un nuevo Medidor. Las comparte la carga masiva (ControladorImportarMedidores).
+     * No usa estado compartido, así que se puede llamar desde varios hilos a la vez.
+     * @return El motivo del rechazo, o null si los datos son válidos.
+     */
+    public static String validarDatosDeMedidor(String tipo, String marca, String ubicacion, Date fechaDeInstalacion, int anioDeFabricacion) {
+        
+        // Validación de campos obligatorios 
         if (tipo == null || tipo.trim().isEmpty() || marca == null || marca.trim().isEmpty() || ubicacion == null || ubicacion.trim().isEmpty()) {
-            System.out.println("Validación fallida: Tipo, Marca o Ubicación no pueden estar vacíos.");
-            return false; // Detiene la ejecución si faltan campos obligatorios.
+            return "Tipo, Marca o Ubicación no pueden estar vacíos.";
         }
         
         // Lógica para obtener el año de la fecha de instalación
@@ -45,22 +76,12 @@ public class ControladorAgregarMedidor {
         calInstalacion.setTime(fechaDeInstalacion); // Establece la fecha de instalación.
         int anioInstalacion = calInstalacion.get(Calendar.YEAR); // Extrae el año.
         
-        // 3. Validación de consistencia de fechas (regla de negocio)
+        // Validación de consistencia de fechas (regla de negocio)
         // La fecha de instalación no puede ser anterior al año en que se fabricó el medidor.
         if (anioInstalacion < anioDeFabricacion) {
-            System.out.println("Validación fallida: La Fecha de Instalación (" + anioInstalacion + ") no puede ser anterior al Año de Fabricación (" + anioDeFabricacion + ").");
-            return false; // Detiene la ejecución si la regla de negocio falla.
+            return "La Fecha de Instalación (" + anioInstalacion + ") no puede ser anterior al Año de Fabricación (" + anioDeFabricacion + ").";
         }
-
-        // 4. Creación del objeto Medidor
-        // Se asume un valor inicial de 0.0 para la lectura y la fecha actual para la última lectura.
-        Medidor nuevoMedidor = new Medidor(0, tipo, marca, ubicacion, 0.0, new Date(), fechaDeInstalacion, anioDeFabricacion, estadoDeMedidor, cliente);
-
-        // 5. Persistencia del objeto 
-        this.repositorioDAO.agregarMedidor(nuevoMedidor); // Llama al DAO para guardar el nuevo medidor en el repositorio.
         
-        System.out.println("ÉXITO: El Medidor #" + idMedidor + " fue agregado al inventario.");
-
-        return true; // Retorna verdadero indicando el éxito de la operación.
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,267 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package sistema.de.gestion.electrica.controladores;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import sistema.de.gestion.electrica.ConciliacionDePagos;
+import sistema.de.gestion.electrica.Dinero;
+import sistema.de.gestion.electrica.IndiceDeFacturasAbiertas;
+import sistema.de.gestion.electrica.LectorDeArchivoDePagos;
+import sistema.de.gestion.electrica.LectorDeArchivoDePagos.PagoLeido;
+import sistema.de.gestion.electrica.Pago;
+import sistema.de.gestion.electrica.RegistroDeMetricas;
+import sistema.de.gestion.electrica.RepositorioDAO;
+
+/**
+ * Clase ControladorConciliacion.
+ * Contiene la lógica de la conciliación de los pagos que informa el banco en su archivo diario.
+ *
+ * Formato: una fila por pago, en CSV separado por ';' o ',' o en ancho fijo (ver LectorDeArchivoDePagos):
+ *   referencia;idFactura;importe(con punto decimal);fechaDePago(YYYY-MM-DD);metodoDePago
+ * La primera línea se toma como encabezado si empieza con "referencia".
+ *
+ * Antes de leer el archivo se carga el saldo de todas las Facturas impagas en un IndiceDeFacturasAbiertas, y
+ * cada pago se imputa en memoria contra ese índice:
+ * - Exacto: el importe cancela el saldo; se registra el Pago y la Factura pasa a "Pagada".
+ * - Parcial: el importe es menor al saldo; se registra el Pago y la Factura sigue impaga por la diferencia.
+ * - Excedente: el importe supera el saldo; se registra el Pago, la Factura pasa a "Pagada" y el excedente va
+ *   al reporte de excepciones para devolverlo o acreditarlo.
+ * Los pagos que no se pueden imputar (factura inexistente o ya pagada, referencia repetida, fila inválida) no
+ * se registran y van al reporte. Un LectorDeArchivoDePagos mapea el archivo y lo interpreta en otro hilo, que
+ * deja los pagos en una cola de 'sgre.conciliacion.cola' elementos; acá se toman de a 'sgre.conciliacion.lote'
+ * y cada lote se registra con RepositorioDAO.registrarPagos, en transacciones de 'sgre.conciliacion.commit' pagos.
+ * Las referencias ya registradas se saltean, así que un archivo se puede volver a procesar sin duplicar pagos.
+ */
+public class ControladorConciliacion {
+
+    // Tamaños configurables con -Dsgre.conciliacion.lote, .commit, .cola y .ventanaMb.
+    private static final int PAGOS_POR_LOTE = Integer.getInteger("sgre.conciliacion.lote", 20_000);
+    private static final int PAGOS_POR_COMMIT = Integer.getInteger("sgre.conciliacion.commit", 5_000);
+    private static final int TAMANIO_COLA = Integer.getInteger("sgre.conciliacion.cola", 50_000);
+    private static final int MB_POR_VENTANA = Integer.getInteger("sgre.conciliacion.ventanaMb", 256);
+
+    private final RepositorioDAO repositorioDAO; // Referencia al objeto de acceso a datos (DAO).
+
+    // Constructor que inyecta la dependencia del repositorio.
+    public ControladorConciliacion(RepositorioDAO repositorioDAO) {
+        this.repositorioDAO = repositorioDAO;
+    }
+
+    /*
+     * Concilia el archivo del banco y deja las excepciones en el reporte.
+     * @return true si se pudo procesar el archivo (aunque haya excepciones), false si no se pudo leer o escribir.
+     * @throws SQLException Propaga errores de la base de datos que impiden continuar; lo registrado hasta ahí queda confirmado.
+     */
+    public boolean conciliarArchivo(String rutaArchivo, String rutaReporte) throws SQLException {
+        return RegistroDeMetricas.getInstancia().medir("CU007 Conciliar Pagos", () -> conciliar(rutaArchivo, rutaReporte));
+    }
+
+    // ------------------ Internos ------------------
+
+    // Cuerpo de conciliarArchivo(), medido como caso de uso CU007 en RegistroDeMetricas.
+    private boolean conciliar(String rutaArchivo, String rutaReporte) throws SQLException {
+        long inicio = System.nanoTime();
+        IndiceDeFacturasAbiertas indice = repositorioDAO.getFacturasAbiertas();
+        System.out.printf("Facturas impagas: %d, saldo total %s (índice de %.1f MB, cargado en %.1f s).%n", indice.getCantidad(),
+                Dinero.formatear(indice.getSaldoTotal()), indice.getBytes() / 1e6, (System.nanoTime() - inicio) / 1e9);
+
+        Resumen resumen = new Resumen();
+        Reporte reporte = new Reporte(rutaReporte);
+        Set<String> referenciasDelArchivo = new HashSet<>(); // Para detectar la misma operación dos veces en el archivo.
+
+        LectorDeArchivoDePagos lector = new LectorDeArchivoDePagos(Paths.get(rutaArchivo), MB_POR_VENTANA << 20,
+                ConciliacionDePagos.ESTADO_PAGO_APROBADO);
+        BlockingQueue<PagoLeido> cola = new ArrayBlockingQueue<>(TAMANIO_COLA);
+        Thread hiloLector = lector.iniciar(cola);
+        try {
+            List<Pago> lote = new ArrayList<>(Math.min(PAGOS_POR_LOTE, 1 << 16));
+            Map<Pago, Long> lineaDePago = new IdentityHashMap<>();
+
+            PagoLeido leido;
+            while (!(leido = cola.take()).esFin()) {
+                resumen.leidos++;
+                Pago pago = leido.getPago();
+                if (pago == null) {
+                    reporte.agregar(leido.getLinea(), null, "INVALIDO", leido.getMotivo());
+                    continue;
+                }
+                lote.add(pago);
+                lineaDePago.put(pago, leido.getLinea());
+                if (lote.size() >= PAGOS_POR_LOTE) {
+                    procesarLote(lote, lineaDePago, indice, referenciasDelArchivo, resumen, reporte);
+                }
+            }
+            if (!lote.isEmpty()) {
+                procesarLote(lote, lineaDePago, indice, referenciasDelArchivo, resumen, reporte);
+            }
+            if (leido.getError() != null) {
+                Throwable error = leido.getError(); // Un error inesperado se muestra con su tipo (el mensaje puede ser null).
+                System.out.println("ERROR: No se pudo procesar el archivo '" + rutaArchivo + "': "
+                        + (error instanceof IOException ? error.getMessage() : error.toString()));
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("ERROR: Se interrumpió la conciliación del archivo '" + rutaArchivo + "'.");
+            return false;
+        } finally {
+            hiloLector.interrupt(); // Si salgo antes del fin (ej: error de BD), el lector deja de leer.
+            reporte.cerrar();
+        }
+
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf("ÉXITO: Conciliación finalizada. %d pagos leídos: %d exactos, %d parciales, %d con excedente; %d excepciones. "
+                        + "Conciliado: %s, en %.1f s (%.0f pagos/s).%n",
+                resumen.leidos, resumen.exactos, resumen.parciales, resumen.conExcedente, reporte.cantidad,
+                Dinero.formatear(resumen.importeRegistrado), segundos, resumen.leidos / Math.max(segundos, 0.001));
+        if (lector.getFormato() != null) {
+            System.out.printf("Archivo %s de %.1f MB: %.1f MB/s en total, %.1f MB/s de lectura.%n", lector.getFormato(),
+                    lector.getBytesLeidos() / 1e6, lector.getBytesLeidos() / 1e6 / Math.max(segundos, 0.001), lector.getMegabytesPorSegundo());
+        }
+        if (reporte.cantidad > 0) {
+            System.out.println("Detalle de las excepciones en: " + rutaReporte);
+        }
+        return !reporte.fallo;
+    }
+
+    /*
+     * Imputa el lote contra el índice, registra los pagos aceptados y pasa el resto al reporte. Vacía el lote.
+     */
+    private void procesarLote(List<Pago> lote, Map<Pago, Long> lineaDePago, IndiceDeFacturasAbiertas indice,
+                              Set<String> referenciasDelArchivo, Resumen resumen, Reporte reporte) throws SQLException {
+        List<String> referencias = new ArrayList<>(lote.size());
+        for (Pago pago : lote) {
+            referencias.add(pago.getReferencia());
+        }
+        Set<String> yaRegistradas = repositorioDAO.getReferenciasDePagoRegistradas(referencias);
+
+        List<Pago> aceptados = new ArrayList<>(lote.size());
+        Map<Pago, Imputacion> imputaciones = new IdentityHashMap<>();
+        Map<Pago, Long> descontados = new IdentityHashMap<>(); // Lo que cada pago bajó del saldo del índice.
+        for (Pago pago : lote) {
+            long linea = lineaDePago.get(pago);
+            if (yaRegistradas.contains(pago.getReferencia())) {
+                reporte.agregar(linea, pago, "YA_REGISTRADO", "La operación ya se concilió en un proceso anterior.");
+                continue;
+            }
+            if (!referenciasDelArchivo.add(pago.getReferencia())) {
+                reporte.agregar(linea, pago, "DUPLICADO", "La referencia aparece más de una vez en el archivo.");
+                continue;
+            }
+            int idFactura = pago.getFactura().getIdFactura();
+            long importe = pago.getMontoEnCentavos();
+            long saldo = indice.aplicarPago(idFactura, importe);
+            if (saldo == IndiceDeFacturasAbiertas.NO_ENCONTRADA) {
+                reporte.agregar(linea, pago, "SIN_FACTURA", "La Factura #" + idFactura + " no existe o no está impaga.");
+                continue;
+            }
+            if (saldo == 0) {
+                reporte.agregar(linea, pago, "FACTURA_SALDADA", "La Factura #" + idFactura + " no tiene saldo pendiente (¿ya se pagó en este archivo?): devolver el importe.");
+                continue;
+            }
+            descontados.put(pago, Math.min(importe, saldo));
+            imputaciones.put(pago, importe == saldo ? Imputacion.EXACTO : importe < saldo ? Imputacion.PARCIAL : Imputacion.EXCEDENTE);
+            aceptados.add(pago);
+        }
+
+        Map<Pago, String> fallidos = new IdentityHashMap<>();
+        repositorioDAO.registrarPagos(aceptados, PAGOS_POR_COMMIT, fallidos::put);
+        for (Pago pago : aceptados) {
+            String motivo = fallidos.get(pago);
+            if (motivo != null) {
+                // No se registró: su importe vuelve al saldo, para que otro pago de la factura se impute bien.
+                indice.revertirPago(pago.getFactura().getIdFactura(), descontados.get(pago));
+                reporte.agregar(lineaDePago.get(pago), pago, "ERROR_BD", motivo);
+                continue;
+            }
+            resumen.importeRegistrado += pago.getMontoEnCentavos();
+            switch (imputaciones.get(pago)) {
+                case EXACTO: resumen.exactos++; break;
+                case PARCIAL: resumen.parciales++; break;
+                default:
+                    // Solo se informa el excedente de un pago registrado; el saldo que cubrió es lo que descontó.
+                    resumen.conExcedente++;
+                    long saldo = descontados.get(pago);
+                    reporte.agregar(lineaDePago.get(pago), pago, "EXCEDENTE", "Excedente de " + Dinero.formatear(pago.getMontoEnCentavos() - saldo)
+                            + " sobre el saldo de " + Dinero.formatear(saldo) + ": devolver o acreditar.");
+            }
+        }
+
+        lote.clear();
+        lineaDePago.clear();
+    }
+
+    // Cómo quedó imputado un pago aceptado.
+    private enum Imputacion { EXACTO, PARCIAL, EXCEDENTE }
+
+    /*
+     * Contadores de la conciliación.
+     */
+    private static final class Resumen {
+        long leidos;
+        long exactos;
+        long parciales;
+        long conExcedente;
+        long importeRegistrado; // En centavos.
+    }
+
+    /*
+     * Reporte de excepciones, que se crea con la primera (los lotes no se guardan en memoria).
+     */
+    private static final class Reporte {
+        final String ruta;
+        BufferedWriter salida;
+        long cantidad;
+        boolean fallo; // true si no se pudo escribir.
+
+        Reporte(String ruta) {
+            this.ruta = ruta;
+        }
+
+        void agregar(long numeroDeLinea, Pago pago, String tipo, String detalle) {
+            cantidad++;
+            if (fallo) {
+                return;
+            }
+            try {
+                if (salida == null) {
+                    salida = Files.newBufferedWriter(Paths.get(ruta), StandardCharsets.UTF_8);
+                    salida.write("linea;referencia;idFactura;importe;excepcion;detalle");
+                    salida.newLine();
+                }
+                salida.write(numeroDeLinea + ";" + (pago == null ? ";;" : pago.getReferencia() + ";" + pago.getFactura().getIdFactura()
+                        + ";" + Dinero.formatear(pago.getMontoEnCentavos())) + ";" + tipo + ";" + detalle.replace(';', ','));
+                salida.newLine();
+            } catch (IOException e) {
+                System.out.println("ERROR: No se pudo escribir el reporte de excepciones '" + ruta + "': " + e.getMessage());
+                fallo = true;
+            }
+        }
+
+        void cerrar() {
+            if (salida == null) {
+                return;
+            }
+            try {
+                salida.close();
+            } catch (IOException e) {
+                System.out.println("ERROR: No se pudo escribir el reporte de excepciones '" + ruta + "': " + e.getMessage());
+                fallo = true;
+            }
+        }
+    }
+}
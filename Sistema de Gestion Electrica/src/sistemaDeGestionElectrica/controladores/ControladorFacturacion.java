@@ -0,0 +1,112 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package sistema.de.gestion.electrica.controladores;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import sistema.de.gestion.electrica.CatalogoDeTarifas;
+import sistema.de.gestion.electrica.DBConnection;
+import sistema.de.gestion.electrica.Factura;
+import sistema.de.gestion.electrica.RegistroDeMetricas;
+import sistema.de.gestion.electrica.RepositorioDAO;
+import sistema.de.gestion.electrica.TarifaCompilada;
+
+/**
+ * Clase ControladorFacturacion.
+ * Contiene la lógica del ciclo de facturación mensual: genera las Facturas de un período (YYYY-MM) para
+ * todos los medidores con servicio vigente, con RepositorioDAO.facturarPeriodo.
+ *
+ * La factura se emite el primer día del mes siguiente al período y vence 'sgre.facturacion.diasParaPagar' días
+ * después. El monto lo calcula la versión de la tarifa 'sgre.facturacion.tarifa' vigente al cierre del período
+ * (CatalogoDeTarifas), que se relee antes de cada facturación para tomar las tarifas dadas de alta en la BD.
+ * Si la facturación se corta, se vuelve a lanzar para el mismo período y sigue desde donde quedó.
+ */
+public class ControladorFacturacion {
+
+    // Paralelismo: una conexión por partición, y dejo una libre para la reserva de IDs (GeneradorDeIds).
+    private static final int PARALELISMO = Integer.getInteger("sgre.facturacion.paralelismo",
+            Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), DBConnection.getTamanioMaximoPool() - 1)));
+    private static final int CLIENTES_POR_PARTICION = Integer.getInteger("sgre.facturacion.clientesPorParticion", 10_000);
+    private static final int MEDIDORES_POR_TRAMO = Integer.getInteger("sgre.facturacion.tramo", 2_000);
+    private static final int DIAS_PARA_PAGAR = Integer.getInteger("sgre.facturacion.diasParaPagar", 14);
+    private static final String TARIFA = System.getProperty("sgre.facturacion.tarifa", "Residencial");
+    private static final int RECHAZOS_A_MOSTRAR = 20;
+
+    private final RepositorioDAO repositorioDAO; // Referencia al objeto de acceso a datos (DAO).
+
+    // Constructor que inyecta la dependencia del repositorio.
+    public ControladorFacturacion(RepositorioDAO repositorioDAO) {
+        this.repositorioDAO = repositorioDAO;
+    }
+
+    /*
+     * Factura el período indicado como YYYY-MM.
+     * @return Cantidad de facturas generadas, o -1 si el período no es válido o no tiene una tarifa vigente.
+     * @throws SQLException Si falla la base de datos; lo facturado hasta ahí queda confirmado.
+     */
+    public int facturarPeriodo(String textoPeriodo) throws SQLException {
+        YearMonth periodo;
+        try {
+            periodo = YearMonth.parse(textoPeriodo.trim());
+        } catch (DateTimeParseException e) {
+            System.out.println("ERROR: El período debe tener el formato YYYY-MM.");
+            return -1;
+        }
+        if (!periodo.isBefore(YearMonth.now())) {
+            System.out.println("ERROR: Solo se pueden facturar períodos ya cerrados.");
+            return -1;
+        }
+        return RegistroDeMetricas.getInstancia().medir("CU006 Facturar Período", () -> facturar(periodo));
+    }
+
+    // ------------------ Internos ------------------
+
+    // Cuerpo de facturarPeriodo(), medido como caso de uso CU006 en RegistroDeMetricas.
+    private int facturar(YearMonth periodo) throws SQLException {
+        LocalDate emision = periodo.plusMonths(1).atDay(1);
+        ZoneId zona = ZoneId.systemDefault();
+        Date fechaEmision = Date.from(emision.atStartOfDay(zona).toInstant());
+        Date fechaVencimiento = Date.from(emision.plusDays(DIAS_PARA_PAGAR).atStartOfDay(zona).toInstant());
+        Date cierre = Date.from(periodo.atEndOfMonth().atStartOfDay(zona).toInstant());
+
+        repositorioDAO.refrescarDatosDeReferencia();
+        TarifaCompilada tarifa = CatalogoDeTarifas.getInstancia().getVigente(TARIFA, cierre);
+        if (tarifa == null) {
+            System.out.println("ERROR: No hay una tarifa '" + TARIFA + "' vigente para " + periodo + ".");
+            return -1;
+        }
+        System.out.println("Se factura con la " + tarifa + ".");
+
+        // Las particiones informan desde varios hilos.
+        List<String> rechazos = Collections.synchronizedList(new ArrayList<>());
+        long inicio = System.nanoTime();
+        int generadas = repositorioDAO.facturarPeriodo(periodo, fechaEmision, fechaVencimiento, tarifa,
+                PARALELISMO, CLIENTES_POR_PARTICION, MEDIDORES_POR_TRAMO,
+                (factura, motivo) -> rechazos.add(describir(factura) + ": " + motivo));
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        System.out.printf("ÉXITO: Facturación de %s finalizada. %d facturas generadas, %d rechazadas, en %.1f s (%.0f facturas/s).%n",
+                periodo, generadas, rechazos.size(), segundos, generadas / Math.max(segundos, 0.001));
+        synchronized (rechazos) {
+            for (int i = 0; i < Math.min(rechazos.size(), RECHAZOS_A_MOSTRAR); i++) {
+                System.out.println("RECHAZADA  " + rechazos.get(i));
+            }
+            if (rechazos.size() > RECHAZOS_A_MOSTRAR) {
+                System.out.println("... y " + (rechazos.size() - RECHAZOS_A_MOSTRAR) + " rechazos más.");
+            }
+        }
+        return generadas;
+    }
+
+    private static String describir(Factura factura) {
+        return "Medidor #" + factura.getMedidor().getIdMedidor() + " (NIS " + factura.getCliente().getNIS() + ")";
+    }
+}
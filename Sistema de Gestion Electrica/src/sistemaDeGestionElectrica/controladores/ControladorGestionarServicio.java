@@ -4,7 +4,9 @@
  */
 package sistema.de.gestion.electrica.controladores;
 import java.sql.SQLException;
+import sistema.de.gestion.electrica.ConflictoDeVersionException;
 import sistema.de.gestion.electrica.RepositorioDAO;
+import sistema.de.gestion.electrica.RegistroDeMetricas;
 import sistema.de.gestion.electrica.SolicitudDeServicio;
 import sistema.de.gestion.electrica.Medidor;
 import sistema.de.gestion.electrica.Cliente;
@@ -12,8 +14,19 @@ import sistema.de.gestion.electrica.EstadoDeMedidor;
 import sistema.de.gestion.electrica.EstadoDeSolicitudDeServicio;
 import sistema.de.gestion.electrica.Operario;
 import sistema.de.gestion.electrica.Servicio;
+import sistema.de.gestion.electrica.TipoDeSolicitud;
+import sistema.de.gestion.electrica.FiltroDeSolicitudes;
+import sistema.de.gestion.electrica.PaginaDeSolicitudes;
+import sistema.de.gestion.electrica.UnidadDeTrabajo;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 /*
@@ -29,6 +42,50 @@ public class ControladorGestionarServicio {
 
     private final RepositorioDAO repositorioDAO; // Referencia al objeto de acceso a datos.
 
+    // Solicitudes por página en la pantalla del operario (configurable con -Dsgre.solicitudes.porPagina).
+    private static final int SOLICITUDES_POR_PAGINA = Integer.getInteger("sgre.solicitudes.porPagina", 20);
+
+    // Procesamiento masivo: solicitudes por transacción (-Dsgre.masivo.porTransaccion) y tope por operación (-Dsgre.masivo.maximo).
+    private static final int SOLICITUDES_POR_TRANSACCION = Integer.getInteger("sgre.masivo.porTransaccion", 500);
+    private static final int MAXIMO_POR_OPERACION = Integer.getInteger("sgre.masivo.maximo", 50_000);
+    private static final int PAGINA_MASIVA = 1_000; // Página con la que se juntan las solicitudes del filtro.
+
+    // Conflictos de versión en el Medidor o el Servicio: cuántas veces se relee y reintenta (-Dsgre.conflictos.reintentos)
+    // y la espera base entre intentos, que se duplica en cada uno y lleva un margen al azar.
+    private static final int REINTENTOS_POR_CONFLICTO = Integer.getInteger("sgre.conflictos.reintentos", 3);
+    private static final long ESPERA_BASE_MS = 25;
+
+    /*
+     * Resultado del procesamiento masivo para una solicitud: si se finalizó o por qué no.
+     */
+    public static final class ResultadoDeSolicitud {
+        private final SolicitudDeServicio solicitud;
+        private final String nuevoEstado; // Estado de medidor que correspondía (null si el tipo no se reconoce).
+        private final String motivo; // null si se procesó.
+
+        ResultadoDeSolicitud(SolicitudDeServicio solicitud, String nuevoEstado, String motivo) {
+            this.solicitud = solicitud;
+            this.nuevoEstado = nuevoEstado;
+            this.motivo = motivo;
+        }
+
+        public SolicitudDeServicio getSolicitud() {
+            return solicitud;
+        }
+
+        public String getNuevoEstado() {
+            return nuevoEstado;
+        }
+
+        public boolean isExito() {
+            return motivo == null;
+        }
+
+        public String getMotivo() {
+            return motivo;
+        }
+    }
+
 
 
     public ControladorGestionarServicio(RepositorioDAO repositorioDAO) {
@@ -101,6 +158,118 @@ public class ControladorGestionarServicio {
     }
 
     
+    /*
+     * Arma el filtro de solicitudes pendientes a partir de lo que ingresó el operario.
+     * Los textos vacíos no filtran. Las fechas son días completos: 'hasta' incluye todo ese día.
+     * @return El filtro, o null si algún criterio no es válido (ya se informó el error).
+     * @throws SQLException Propaga errores de la base de datos.
+     */
+    public FiltroDeSolicitudes crearFiltroDePendientes(String nisString, String tipoString, String departamento, Date desde, Date hasta) throws SQLException {
+
+        FiltroDeSolicitudes filtro = new FiltroDeSolicitudes();
+
+        EstadoDeSolicitudDeServicio estadoPendiente = this.repositorioDAO.getEstadoSolicitudPorNombre("Pendiente");
+        if (estadoPendiente == null) {
+            System.out.println("ERROR: No se pudo obtener el estado 'Pendiente' para las Solicitudes.");
+            return null;
+        }
+        filtro.setEstado(estadoPendiente);
+
+        if (nisString != null && !nisString.trim().isEmpty()) {
+            try {
+                filtro.setNis(Integer.parseInt(nisString.trim()));
+            } catch (NumberFormatException e) {
+                System.out.println("ERROR: El valor ingresado para el NIS no es un número válido.");
+                return null;
+            }
+        }
+
+        if (tipoString != null && !tipoString.trim().isEmpty()) {
+            TipoDeSolicitud tipo = this.repositorioDAO.getTipoSolicitudPorNombre(tipoString);
+            if (tipo == null) {
+                System.out.println("ERROR: El tipo de solicitud '" + tipoString + "' no existe.");
+                return null;
+            }
+            filtro.setTipo(tipo);
+        }
+
+        if (departamento != null && !departamento.trim().isEmpty()) {
+            filtro.setDepartamento(departamento.trim());
+        }
+
+        filtro.setDesde(desde);
+        if (hasta != null) {
+            filtro.setHasta(new Date(hasta.getTime() + 24L * 60 * 60 * 1000)); // Hasta el final de ese día.
+        }
+
+        return filtro;
+    }
+
+
+    /*
+     * Arma el filtro del procesamiento masivo: pendientes por tipo, departamento (zona) y lista de NIS.
+     * @param listaDeNis NIS separados por coma o espacio (vacío para no filtrar por NIS).
+     * @return El filtro, o null si algún criterio no es válido (ya se informó el error).
+     * @throws SQLException Propaga errores de la base de datos.
+     */
+    public FiltroDeSolicitudes crearFiltroMasivo(String tipoString, String departamento, String listaDeNis) throws SQLException {
+
+        FiltroDeSolicitudes filtro = crearFiltroDePendientes(null, tipoString, departamento, null, null);
+        if (filtro == null || listaDeNis == null || listaDeNis.trim().isEmpty()) {
+            return filtro;
+        }
+
+        Set<Integer> nis = new LinkedHashSet<>();
+        for (String valor : listaDeNis.trim().split("[,;\\s]+")) {
+            try {
+                nis.add(Integer.parseInt(valor));
+            } catch (NumberFormatException e) {
+                System.out.println("ERROR: '" + valor + "' no es un NIS válido.");
+                return null;
+            }
+        }
+        filtro.setNisIncluidos(nis);
+        return filtro;
+    }
+
+
+    /*
+     * Junta todas las solicitudes que cumplen el filtro, página por página, hasta el tope por operación.
+     * @throws SQLException Propaga errores de la base de datos.
+     */
+    public List<SolicitudDeServicio> seleccionarSolicitudes(FiltroDeSolicitudes filtro) throws SQLException {
+
+        List<SolicitudDeServicio> seleccionadas = new ArrayList<>();
+        PaginaDeSolicitudes.Cursor despuesDe = null;
+        do {
+            PaginaDeSolicitudes pagina = this.repositorioDAO.buscarSolicitudes(filtro, despuesDe, PAGINA_MASIVA);
+            seleccionadas.addAll(pagina.getSolicitudes());
+            despuesDe = pagina.getSiguiente();
+        } while (despuesDe != null && seleccionadas.size() < MAXIMO_POR_OPERACION);
+
+        if (seleccionadas.size() > MAXIMO_POR_OPERACION) {
+            seleccionadas = new ArrayList<>(seleccionadas.subList(0, MAXIMO_POR_OPERACION));
+        }
+        if (despuesDe != null) {
+            System.out.println("ADVERTENCIA: Se tomaron las primeras " + MAXIMO_POR_OPERACION + " solicitudes; el resto queda para otra operación.");
+        }
+        return seleccionadas;
+    }
+
+
+    /*
+     * Retorna una página de solicitudes que cumplen el filtro.
+     * @param despuesDe Cursor de la página anterior (null para la primera).
+     * @throws SQLException Propaga errores de la base de datos.
+     */
+    public PaginaDeSolicitudes buscarSolicitudes(FiltroDeSolicitudes filtro, PaginaDeSolicitudes.Cursor despuesDe) throws SQLException {
+        // Delega la búsqueda al repositorio, midiéndola como parte del caso de uso CU004.
+        return RegistroDeMetricas.getInstancia().medir("CU004 Buscar Solicitudes",
+                () -> this.repositorioDAO.buscarSolicitudes(filtro, despuesDe, SOLICITUDES_POR_PAGINA));
+
+    }
+
+
     /*
      * Obtiene el medidor actualmente asociado al cliente de la solicitud.
      * @throws SQLException Propaga errores de la base de datos.
@@ -132,8 +301,107 @@ public class ControladorGestionarServicio {
 
 
 
+    /*
+     * Mapeo de Tipo de Solicitud a nuevo Estado de Medidor.
+     * @return El nombre del estado de medidor, o null si el tipo no implica un cambio de estado.
+     */
+    public static String estadoDeMedidorPara(TipoDeSolicitud tipo) {
+
+        switch (tipo.getNombre().toLowerCase()) {
+            case "activación":
+                return "Activo";
+            case "suspensión":
+                return "Suspendido";
+            case "baja":
+                return "De Baja";
+            default:
+                return null;
+        }
+
+    }
+
+
+    /*
+     * Procesa muchas solicitudes en una sola acción del operario: a cada una le corresponde el estado de medidor
+     * de su tipo. Se agrupan por ese estado y cada grupo va a RepositorioDAO.finalizarSolicitudes, que actualiza
+     * por conjuntos en transacciones de SOLICITUDES_POR_TRANSACCION.
+     * @return Un resultado por solicitud, en el mismo orden, o null si faltan los datos de referencia.
+     * @throws SQLException Propaga errores de la base de datos que impiden continuar.
+     */
+    public List<ResultadoDeSolicitud> procesarCambiosEnLote(List<SolicitudDeServicio> solicitudes, Operario operario) throws SQLException {
+        return RegistroDeMetricas.getInstancia().medir("CU004 Procesar Cambios en Lote", () -> aplicarCambiosEnLote(solicitudes, operario));
+    }
+
+    // Cuerpo de procesarCambiosEnLote(), medido como caso de uso CU004 en RegistroDeMetricas.
+    private List<ResultadoDeSolicitud> aplicarCambiosEnLote(List<SolicitudDeServicio> solicitudes, Operario operario) throws SQLException {
+
+        if (solicitudes == null || operario == null) {
+            System.out.println("ERROR: Datos de entrada incompletos para procesar el lote.");
+            return null;
+        }
+
+        EstadoDeSolicitudDeServicio estadoFinalizada = this.repositorioDAO.getEstadoSolicitudPorNombre("Finalizada");
+        if (estadoFinalizada == null) {
+            System.out.println("ERROR: No se pudo obtener el estado 'Finalizada' para la Solicitud.");
+            return null;
+        }
+
+        long inicio = System.nanoTime();
+        Map<Integer, ResultadoDeSolicitud> resultados = new HashMap<>();
+
+        // 1. Agrupar por el nuevo estado de medidor (los tipos no reconocidos fallan acá).
+        Map<String, List<SolicitudDeServicio>> porEstado = new LinkedHashMap<>();
+        for (SolicitudDeServicio solicitud : solicitudes) {
+            String nuevoEstado = estadoDeMedidorPara(solicitud.getTipoDeSolicitud());
+            if (nuevoEstado == null) {
+                resultados.put(solicitud.getIdSolicitud(), new ResultadoDeSolicitud(solicitud, null,
+                        "Tipo de Solicitud (" + solicitud.getTipoDeSolicitud().getNombre() + ") no reconocido para cambio de estado."));
+            } else {
+                porEstado.computeIfAbsent(nuevoEstado, e -> new ArrayList<>()).add(solicitud);
+            }
+        }
+
+        // 2. Un proceso por conjuntos por cada estado.
+        for (Map.Entry<String, List<SolicitudDeServicio>> grupo : porEstado.entrySet()) {
+            String nuevoEstado = grupo.getKey();
+            EstadoDeMedidor estado = this.repositorioDAO.getEstadoMedidorPorNombre(nuevoEstado);
+            if (estado == null) {
+                for (SolicitudDeServicio solicitud : grupo.getValue()) {
+                    resultados.put(solicitud.getIdSolicitud(), new ResultadoDeSolicitud(solicitud, nuevoEstado,
+                            "El estado de medidor '" + nuevoEstado + "' no existe en la BD."));
+                }
+                continue;
+            }
+
+            Map<Integer, String> fallas = new HashMap<>();
+            this.repositorioDAO.finalizarSolicitudes(grupo.getValue(), estado, estadoFinalizada, nuevoEstado.equalsIgnoreCase("Activo"),
+                    SOLICITUDES_POR_TRANSACCION, (solicitud, motivo) -> fallas.put(solicitud.getIdSolicitud(), motivo));
+            for (SolicitudDeServicio solicitud : grupo.getValue()) {
+                resultados.put(solicitud.getIdSolicitud(), new ResultadoDeSolicitud(solicitud, nuevoEstado, fallas.get(solicitud.getIdSolicitud())));
+            }
+        }
+
+        // 3. Resultados en el orden de entrada.
+        List<ResultadoDeSolicitud> enOrden = new ArrayList<>(solicitudes.size());
+        int exitosas = 0;
+        for (SolicitudDeServicio solicitud : solicitudes) {
+            ResultadoDeSolicitud resultado = resultados.get(solicitud.getIdSolicitud());
+            enOrden.add(resultado);
+            if (resultado.isExito()) {
+                exitosas++;
+            }
+        }
+
+        System.out.printf("ÉXITO: Operario %s finalizó %d de %d solicitudes en %.1f s.%n",
+                operario.getApellido(), exitosas, solicitudes.size(), (System.nanoTime() - inicio) / 1e9);
+        return enOrden;
+    }
+
+
     /*
      * Ejecuta el proceso de cambio de estado de un servicio.
+     * Todas las escrituras (Servicio, Medidor y Solicitud) van en una sola UnidadDeTrabajo:
+     * se envían en lote y se confirman con un único commit, o se deshacen juntas si algo falla.
      * @throws SQLException Propaga errores de la base de datos.
      */
     public boolean procesarCambioDeServicio(
@@ -141,6 +409,16 @@ public class ControladorGestionarServicio {
         Medidor medidor,
         String nuevoEstadoMedidor,
         Operario operario
+    ) throws SQLException {
+        return RegistroDeMetricas.getInstancia().medir("CU004 Procesar Cambio de Servicio", () -> aplicarCambioDeServicio(solicitud, medidor, nuevoEstadoMedidor, operario));
+    }
+
+    // Cuerpo de procesarCambioDeServicio(), medido como caso de uso CU004 en RegistroDeMetricas.
+    private boolean aplicarCambioDeServicio(
+        SolicitudDeServicio solicitud,
+        Medidor medidor,
+        String nuevoEstadoMedidor,
+        Operario operario
     ) throws SQLException {
         // ... (Validación de datos básicos) ...
         if (solicitud == null || medidor == null || nuevoEstadoMedidor == null || operario == null) {
@@ -148,38 +426,14 @@ public class ControladorGestionarServicio {
             return false; // Validación de datos de entrada.
         }
         
-        // 1. Obtener el objeto del nuevo Estado del Medidor
-        EstadoDeMedidor estadoActivo = this.repositorioDAO.getEstadoMedidorPorNombre(nuevoEstadoMedidor); // Busca el nuevo estado en la BD.
+        // 1. Obtener el objeto del nuevo Estado del Medidor y el estado final de la Solicitud (ambos en memoria).
+        EstadoDeMedidor estadoActivo = this.repositorioDAO.getEstadoMedidorPorNombre(nuevoEstadoMedidor); // Busca el nuevo estado.
         
         if (estadoActivo == null) {
             System.out.println("ERROR: El nuevo estado de medidor '" + nuevoEstadoMedidor + "' no existe en la BD.");
             return false;
         }
 
-        // 2. Aplicar el cambio de estado del Medidor (Operación de dominio)
-        operario.cambiarEstadoMedidor(medidor, estadoActivo); // El operario ejecuta la acción sobre el medidor.
-        
-        // 3. Si se está activando, actualizar la fecha de inicio del Servicio
-        if (nuevoEstadoMedidor.equalsIgnoreCase("Activación")) { // Verifica si el cambio implica una activación.
-            Servicio servicioAsociado = this.repositorioDAO.getServicioPorMedidor(medidor.getIdMedidor());
-
-            if (servicioAsociado != null) {
-                servicioAsociado.setFechaActivacion(new Date()); // Establece la fecha de activación actual.
-                // PERSISTENCIA DEL SERVICIO
-                this.repositorioDAO.actualizarServicio(servicioAsociado); // Guarda el cambio en el servicio.
-                System.out.println("Fecha de Activación de Servicio actualizada.");
-            } else {
-                System.out.println("ADVERTENCIA: No se encontró el Servicio asociado.");
-            }
-        }
-        
-        // Actualiza la fecha del Medidor para registrar el momento del cambio
-        medidor.setFechaActual(new Date()); // Actualiza la fecha de última lectura/estado del medidor.
-        
-        // PERSISTENCIA DEL MEDIDOR
-        this.repositorioDAO.actualizarMedidor(medidor); // Guarda los cambios realizados en el medidor.
-
-        // 4. Finalizar la Solicitud (cambiar su estado)
         EstadoDeSolicitudDeServicio estadoFinalizada = this.repositorioDAO.getEstadoSolicitudPorNombre("Finalizada"); // Obtiene el objeto 'Finalizada'.
 
         if (estadoFinalizada == null) {
@@ -187,12 +441,86 @@ public class ControladorGestionarServicio {
             return false;
         }
 
-        // Actualizar el estado de la Solicitud y persistir el cambio
-        solicitud.actualizarEstado(estadoFinalizada); // Cambia el estado de la solicitud.
-        this.repositorioDAO.actualizarSolicitud(solicitud); // Persiste el estado de la solicitud.
-        
+        // 2. Aplicar los cambios con control optimista. Nada queda bloqueado mientras el operario decide: el
+        // conflicto aparece recién al confirmar. Si otro cambió el Medidor o el Servicio, releo y reintento (mi
+        // cambio es un estado destino, sigue siendo válido); si otro ya procesó la Solicitud, no hay nada que hacer.
+        EstadoDeSolicitudDeServicio estadoAnterior = solicitud.getEstadoDeSolicitudDeServicio();
+        Medidor medidorActual = medidor;
+        for (int intento = 1; ; intento++) {
+            try {
+                confirmarCambioDeServicio(solicitud, medidorActual, estadoActivo, estadoFinalizada, nuevoEstadoMedidor, operario);
+                break;
+            } catch (ConflictoDeVersionException e) {
+                solicitud.actualizarEstado(estadoAnterior); // No se aplicó nada: la solicitud sigue como estaba.
+                if (e.getEntidad() == ConflictoDeVersionException.Entidad.SOLICITUD) {
+                    System.out.println("CONFLICTO: La Solicitud #" + solicitud.getIdSolicitud() + " ya fue procesada por otro operario. No se aplicó ningún cambio.");
+                    return false;
+                }
+                if (intento > REINTENTOS_POR_CONFLICTO) {
+                    System.out.println("CONFLICTO: " + e.getMessage() + " Se agotaron los " + REINTENTOS_POR_CONFLICTO + " reintentos; vuelva a intentarlo más tarde.");
+                    return false;
+                }
+                System.out.println("AVISO: " + e.getMessage() + " Releyendo y reintentando (" + intento + "/" + REINTENTOS_POR_CONFLICTO + ")...");
+                esperarAntesDeReintentar(intento);
+                medidorActual = this.repositorioDAO.getMedidorPorID(medidor.getIdMedidor());
+                if (medidorActual == null) {
+                    System.out.println("ERROR: El Medidor #" + medidor.getIdMedidor() + " ya no existe.");
+                    return false;
+                }
+            }
+        }
+
         System.out.println("ÉXITO: Solicitud #" + solicitud.getIdSolicitud() + " completada y Medidor actualizado a '" + nuevoEstadoMedidor + "'.");
         return true; // Retorna verdadero indicando el éxito del proceso.
     }
 
+    // Un intento de procesarCambioDeServicio(): los tres UPDATE en una unidad de trabajo.
+    private void confirmarCambioDeServicio(
+        SolicitudDeServicio solicitud,
+        Medidor medidor,
+        EstadoDeMedidor estadoActivo,
+        EstadoDeSolicitudDeServicio estadoFinalizada,
+        String nuevoEstadoMedidor,
+        Operario operario
+    ) throws SQLException {
+        try (UnidadDeTrabajo unidad = this.repositorioDAO.iniciarUnidadDeTrabajo()) {
+
+            // Aplicar el cambio de estado del Medidor (Operación de dominio)
+            operario.cambiarEstadoMedidor(medidor, estadoActivo); // El operario ejecuta la acción sobre el medidor.
+            
+            // Si se está activando, actualizar la fecha de inicio del Servicio
+            if (nuevoEstadoMedidor.equalsIgnoreCase("Activo")) { // Verifica si el cambio implica una activación.
+                Servicio servicioAsociado = unidad.getServicioPorMedidor(medidor.getIdMedidor());
+
+                if (servicioAsociado != null) {
+                    servicioAsociado.setFechaActivacion(new Date()); // Establece la fecha de activación actual.
+                    unidad.actualizarServicio(servicioAsociado); // Registra el cambio en el servicio.
+                } else {
+                    System.out.println("ADVERTENCIA: No se encontró el Servicio asociado.");
+                }
+            }
+            
+            // Actualiza la fecha del Medidor para registrar el momento del cambio
+            medidor.setFechaActual(new Date()); // Actualiza la fecha de última lectura/estado del medidor.
+            unidad.actualizarMedidor(medidor); // Registra los cambios realizados en el medidor.
+
+            // Finalizar la Solicitud (cambiar su estado)
+            solicitud.actualizarEstado(estadoFinalizada); // Cambia el estado de la solicitud.
+            unidad.actualizarSolicitud(solicitud); // Registra el estado de la solicitud.
+
+            // Enviar los tres UPDATE y confirmar con un único commit.
+            unidad.confirmar();
+        }
+    }
+
+    // Espera exponencial con un margen al azar, para que dos operarios en conflicto no reintenten a la vez.
+    private static void esperarAntesDeReintentar(int intento) {
+        long espera = ESPERA_BASE_MS << (intento - 1);
+        try {
+            Thread.sleep(espera + ThreadLocalRandom.current().nextLong(espera + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
 }
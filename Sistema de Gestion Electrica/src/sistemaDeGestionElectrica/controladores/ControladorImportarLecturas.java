@@ -0,0 +1,235 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package sistema.de.gestion.electrica.controladores;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import sistema.de.gestion.electrica.AlmacenColumnarDeLecturas.SerieDeLecturas;
+import sistema.de.gestion.electrica.Lectura;
+import sistema.de.gestion.electrica.RegistroDeMetricas;
+import sistema.de.gestion.electrica.RepositorioDAO;
+
+/**
+ * Clase ControladorImportarLecturas.
+ * Contiene la lógica de la ingesta de lecturas de medidores inteligentes desde un archivo CSV y su consulta.
+ *
+ * Formato: una fila por lectura, separada por ';' o ',' (se detecta en la primera línea), sin comillas:
+ *   idMedidor;fechaHora(YYYY-MM-DD HH:MM[:SS]);consumoKwh
+ * La primera línea se toma como encabezado si empieza con "idMedidor".
+ *
+ * El archivo se lee en streaming, de a 'sgre.lecturas.lote' filas: cada lote se registra en la base de datos
+ * (RepositorioDAO.registrarLecturas), que copia las aceptadas al AlmacenColumnarDeLecturas del repositorio: es
+ * el que responde las consultas por medidor y rango de fechas. Las filas rechazadas se escriben en un archivo
+ * de errores con su número de línea y el motivo, como en ControladorImportarMedidores.
+ */
+public class ControladorImportarLecturas {
+
+    // Tamaños configurables con -Dsgre.lecturas.lote, -Dsgre.lecturas.filasPorSentencia y -Dsgre.lecturas.commit.
+    private static final int LECTURAS_POR_LOTE = Integer.getInteger("sgre.lecturas.lote", 50_000);
+    private static final int FILAS_POR_SENTENCIA = Integer.getInteger("sgre.lecturas.filasPorSentencia", 1_000);
+    private static final int FILAS_POR_COMMIT = Integer.getInteger("sgre.lecturas.commit", 20_000);
+
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd[' ']['T']HH:mm[:ss]");
+    private static final DateTimeFormatter FORMATO_SALIDA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final RepositorioDAO repositorioDAO; // Referencia al objeto de acceso a datos (DAO).
+
+    // Constructor que inyecta la dependencia del repositorio.
+    public ControladorImportarLecturas(RepositorioDAO repositorioDAO) {
+        this.repositorioDAO = repositorioDAO;
+    }
+
+    /*
+     * Importa las lecturas del archivo y deja las filas rechazadas en el archivo de errores.
+     * @return true si se pudo procesar el archivo (aunque haya filas rechazadas), false si no se pudo leer o escribir.
+     * @throws SQLException Propaga errores de la base de datos que impiden continuar con la carga.
+     */
+    public boolean importarDesdeCSV(String rutaArchivo, String rutaErrores) throws SQLException {
+        return RegistroDeMetricas.getInstancia().medir("CU005 Importar Lecturas", () -> importar(rutaArchivo, rutaErrores));
+    }
+
+    /*
+     * Lecturas de un medidor entre dos instantes (en milisegundos, 'hasta' excluido), leídas del almacén columnar.
+     * @return La serie (puede estar vacía), o null si no se pudo leer el almacén.
+     */
+    public SerieDeLecturas consultar(int idMedidor, long desde, long hasta) {
+        try {
+            return repositorioDAO.getAlmacenDeLecturas().leer(idMedidor, desde, hasta);
+        } catch (IOException e) {
+            System.out.println("ERROR: No se pudieron leer las lecturas del Medidor #" + idMedidor + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Retorna el estado del almacén columnar (segmentos y mapeos).
+    public String getEstadisticasAlmacen() {
+        return repositorioDAO.getAlmacenDeLecturas().getEstadisticas();
+    }
+
+    // ------------------ Internos ------------------
+
+    // Cuerpo de importarDesdeCSV(), medido como caso de uso CU005 en RegistroDeMetricas.
+    private boolean importar(String rutaArchivo, String rutaErrores) throws SQLException {
+        long inicio = System.nanoTime();
+        long filas = 0;
+        long registradas = 0;
+        Errores errores = new Errores(rutaErrores);
+
+        try (BufferedReader entrada = Files.newBufferedReader(Paths.get(rutaArchivo), StandardCharsets.UTF_8)) {
+            String separador = null;
+            int numeroDeLinea = 0;
+            List<Lectura> lote = new ArrayList<>(Math.min(LECTURAS_POR_LOTE, 1 << 16));
+            Map<Lectura, Integer> lineaDeLectura = new IdentityHashMap<>();
+
+            String linea;
+            while ((linea = entrada.readLine()) != null) {
+                numeroDeLinea++;
+                if (separador == null) {
+                    separador = linea.contains(";") ? ";" : ",";
+                    if (linea.trim().toLowerCase().startsWith("idmedidor")) {
+                        continue;
+                    }
+                }
+                if (linea.trim().isEmpty()) {
+                    continue;
+                }
+                filas++;
+                Object resultado = parsear(linea, separador);
+                if (resultado instanceof String) {
+                    errores.agregar(numeroDeLinea, (String) resultado, linea);
+                    continue;
+                }
+                Lectura lectura = (Lectura) resultado;
+                lote.add(lectura);
+                lineaDeLectura.put(lectura, numeroDeLinea);
+                if (lote.size() >= LECTURAS_POR_LOTE) {
+                    registradas += registrarLote(lote, lineaDeLectura, errores);
+                }
+            }
+            if (!lote.isEmpty()) {
+                registradas += registrarLote(lote, lineaDeLectura, errores);
+            }
+            repositorioDAO.getAlmacenDeLecturas().sincronizar();
+        } catch (IOException e) {
+            System.out.println("ERROR: No se pudo procesar el archivo '" + rutaArchivo + "': " + e.getMessage());
+            return false;
+        } finally {
+            errores.cerrar();
+        }
+
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf("ÉXITO: Importación finalizada. %d lecturas nuevas, %d filas rechazadas, en %.1f s (%.0f lecturas/s).%n",
+                registradas, errores.cantidad, segundos, filas / Math.max(segundos, 0.001));
+        if (errores.cantidad > 0) {
+            System.out.println("Detalle de filas rechazadas en: " + rutaErrores);
+        }
+        return !errores.fallo;
+    }
+
+    /*
+     * Registra un lote (el repositorio lo copia al almacén) y anota las filas rechazadas. Vacía el lote.
+     * Las repetidas no son un error: el repositorio las ignora.
+     */
+    private int registrarLote(List<Lectura> lote, Map<Lectura, Integer> lineaDeLectura, Errores errores) throws SQLException, IOException {
+        Map<Lectura, String> rechazadas = new IdentityHashMap<>();
+        int registradas = repositorioDAO.registrarLecturas(lote, FILAS_POR_SENTENCIA, FILAS_POR_COMMIT, rechazadas::put);
+
+        for (Lectura lectura : lote) { // En el orden del archivo.
+            String motivo = rechazadas.get(lectura);
+            if (motivo != null) {
+                errores.agregar(lineaDeLectura.get(lectura), motivo, lectura.getIdMedidor() + ";"
+                        + FORMATO_SALIDA.format(lectura.getFecha().toInstant().atZone(ZoneId.systemDefault())) + ";" + lectura.getConsumoKwh());
+            }
+        }
+
+        lote.clear();
+        lineaDeLectura.clear();
+        return registradas;
+    }
+
+    // Convierte una línea en una Lectura, o retorna el motivo del rechazo (nunca lanza excepción).
+    private static Object parsear(String linea, String separador) {
+        String[] campos = linea.split(separador, -1);
+        if (campos.length != 3) {
+            return "Se esperaban 3 campos y hay " + campos.length + ".";
+        }
+        int idMedidor;
+        long instante;
+        double consumo;
+        try {
+            idMedidor = Integer.parseInt(campos[0].trim());
+            instante = LocalDateTime.parse(campos[1].trim(), FORMATO_FECHA).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            consumo = Double.parseDouble(campos[2].trim());
+        } catch (DateTimeParseException e) {
+            return "La fecha debe tener el formato YYYY-MM-DD HH:MM[:SS].";
+        } catch (NumberFormatException e) {
+            return "El ID de Medidor y el consumo deben ser valores numéricos.";
+        }
+        if (idMedidor <= 0) {
+            return "El ID de Medidor debe ser positivo.";
+        }
+        if (consumo < 0 || Double.isInfinite(consumo) || Double.isNaN(consumo)) {
+            return "El consumo debe ser un número no negativo.";
+        }
+        return new Lectura(idMedidor, instante, consumo);
+    }
+
+    /*
+     * Archivo de errores, que se crea con el primer rechazo (los lotes no se guardan en memoria).
+     */
+    private static final class Errores {
+        final String ruta;
+        BufferedWriter salida;
+        long cantidad;
+        boolean fallo; // true si no se pudo escribir.
+
+        Errores(String ruta) {
+            this.ruta = ruta;
+        }
+
+        void agregar(int numeroDeLinea, String motivo, String fila) {
+            cantidad++;
+            if (fallo) {
+                return;
+            }
+            try {
+                if (salida == null) {
+                    salida = Files.newBufferedWriter(Paths.get(ruta), StandardCharsets.UTF_8);
+                    salida.write("linea;motivo;fila");
+                    salida.newLine();
+                }
+                salida.write(numeroDeLinea + ";" + motivo.replace(';', ',') + ";" + fila);
+                salida.newLine();
+            } catch (IOException e) {
+                System.out.println("ERROR: No se pudo escribir el archivo de errores '" + ruta + "': " + e.getMessage());
+                fallo = true;
+            }
+        }
+
+        void cerrar() {
+            if (salida == null) {
+                return;
+            }
+            try {
+                salida.close();
+            } catch (IOException e) {
+                System.out.println("ERROR: No se pudo escribir el archivo de errores '" + ruta + "': " + e.getMessage());
+                fallo = true;
+            }
+        }
+    }
+}
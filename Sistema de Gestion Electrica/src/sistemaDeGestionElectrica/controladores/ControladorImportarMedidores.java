@@ -0,0 +1,213 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package sistema.de.gestion.electrica.controladores;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import sistema.de.gestion.electrica.Cliente;
+import sistema.de.gestion.electrica.EstadoDeMedidor;
+import sistema.de.gestion.electrica.Medidor;
+import sistema.de.gestion.electrica.RepositorioDAO;
+
+/**
+ * Clase ControladorImportarMedidores.
+ * Contiene la lógica de la carga masiva de Medidores desde un archivo CSV (ej: al incorporar un distrito nuevo).
+ *
+ * Formato: una fila por medidor, separada por ';' o ',' (se detecta en la primera línea), sin comillas:
+ *   tipo;marca;ubicacion;fechaDeInstalacion(YYYY-MM-DD);añoDeFabricacion;NIS[;estado]
+ * La primera línea se toma como encabezado si empieza con "tipo". Si falta el estado, se usa "Activo".
+ *
+ * Las filas se validan en paralelo con las mismas reglas que ControladorAgregarMedidor. Clientes y estados se
+ * resuelven por conjuntos (una consulta IN por cada 1000 NIS) y la inserción va por lotes con RepositorioDAO.insertarMedidores.
+ * Las filas rechazadas se escriben en un archivo de errores con su número de línea y el motivo.
+ */
+public class ControladorImportarMedidores {
+
+    // Tamaños configurables con -Dsgre.carga.lote y -Dsgre.carga.commit.
+    private static final int TAMANIO_DE_LOTE = Integer.getInteger("sgre.carga.lote", 1_000);
+    private static final int FILAS_POR_COMMIT = Integer.getInteger("sgre.carga.commit", 10_000);
+
+    private final RepositorioDAO repositorioDAO; // Referencia al objeto de acceso a datos (DAO).
+
+    // Constructor que inyecta la dependencia del repositorio.
+    public ControladorImportarMedidores(RepositorioDAO repositorioDAO) {
+        this.repositorioDAO = repositorioDAO;
+    }
+
+    /*
+     * Importa los medidores del archivo y deja las filas rechazadas en el archivo de errores.
+     * @return true si se pudo procesar el archivo (aunque haya filas rechazadas), false si no se pudo leer o escribir.
+     * @throws SQLException Propaga errores de la base de datos que impiden continuar con la carga.
+     */
+    public boolean importarDesdeCSV(String rutaArchivo, String rutaErrores) throws SQLException {
+
+        long inicio = System.nanoTime();
+
+        // 1. Lectura del archivo completo (100k filas son unos pocos MB).
+        List<String> lineas;
+        try {
+            lineas = Files.readAllLines(Paths.get(rutaArchivo), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println("ERROR: No se pudo leer el archivo '" + rutaArchivo + "': " + e.getMessage());
+            return false;
+        }
+        if (lineas.isEmpty()) {
+            System.out.println("ADVERTENCIA: El archivo está vacío.");
+            return true;
+        }
+
+        String separador = lineas.get(0).contains(";") ? ";" : ",";
+        int primeraFila = lineas.get(0).trim().toLowerCase().startsWith("tipo") ? 1 : 0;
+
+        // 2. Parseo y validación en paralelo (sin acceso a la BD).
+        List<Fila> filas = IntStream.range(primeraFila, lineas.size())
+                .parallel()
+                .filter(i -> !lineas.get(i).trim().isEmpty())
+                .mapToObj(i -> parsear(i + 1, lineas.get(i), separador))
+                .collect(Collectors.toList());
+
+        // 3. Resolución de Clientes por conjunto de NIS y de estados contra el registro de referencia.
+        Set<Integer> nisBuscados = new HashSet<>();
+        for (Fila fila : filas) {
+            if (fila.error == null) {
+                nisBuscados.add(fila.nis);
+            }
+        }
+        Map<Integer, Integer> idClientePorNIS = repositorioDAO.getIdsDeClientesPorNIS(nisBuscados);
+        Map<String, EstadoDeMedidor> estados = new HashMap<>();
+
+        List<Medidor> aInsertar = new ArrayList<>();
+        Map<Medidor, Fila> filaDeMedidor = new IdentityHashMap<>();
+        for (Fila fila : filas) {
+            if (fila.error != null) {
+                continue;
+            }
+            Integer idCliente = idClientePorNIS.get(fila.nis);
+            if (idCliente == null) {
+                fila.error = "No existe un Cliente con el NIS " + fila.nis + ".";
+                continue;
+            }
+            if (!estados.containsKey(fila.estado)) {
+                estados.put(fila.estado, repositorioDAO.getEstadoMedidorPorNombre(fila.estado));
+            }
+            EstadoDeMedidor estado = estados.get(fila.estado);
+            if (estado == null) {
+                fila.error = "El estado de medidor '" + fila.estado + "' no existe.";
+                continue;
+            }
+
+            // Para insertar solo se necesita la clave del cliente.
+            Cliente cliente = new Cliente();
+            cliente.setIdUsuario(idCliente);
+            cliente.setNIS(fila.nis);
+
+            // Mismos valores iniciales que ControladorAgregarMedidor: lectura en 0.0 y fecha actual.
+            Medidor medidor = new Medidor(0, fila.tipo, fila.marca, fila.ubicacion, 0, new Date(),
+                    fila.fechaDeInstalacion, fila.anioDeFabricacion, estado, cliente);
+            aInsertar.add(medidor);
+            filaDeMedidor.put(medidor, fila);
+        }
+
+        // 4. Inserción por lotes.
+        int insertados = repositorioDAO.insertarMedidores(aInsertar, TAMANIO_DE_LOTE, FILAS_POR_COMMIT,
+                (medidor, e) -> filaDeMedidor.get(medidor).error = "Error de BD: " + e.getMessage());
+
+        // 5. Archivo de errores.
+        List<Fila> rechazadas = filas.stream().filter(f -> f.error != null).collect(Collectors.toList());
+        if (!rechazadas.isEmpty() && !escribirErrores(Paths.get(rutaErrores), rechazadas)) {
+            return false;
+        }
+
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf("ÉXITO: Importación finalizada. %d medidores insertados, %d filas rechazadas, en %.1f s (%.0f filas/s).%n",
+                insertados, rechazadas.size(), segundos, filas.size() / Math.max(segundos, 0.001));
+        if (!rechazadas.isEmpty()) {
+            System.out.println("Detalle de filas rechazadas en: " + rutaErrores);
+        }
+        return true;
+    }
+
+    // ------------------ Internos ------------------
+
+    // Parsea y valida una línea. Nunca lanza excepción: los problemas quedan en 'error'.
+    private static Fila parsear(int numeroDeLinea, String linea, String separador) {
+        Fila fila = new Fila(numeroDeLinea, linea);
+        String[] campos = linea.split(separador, -1);
+        if (campos.length < 6 || campos.length > 7) {
+            fila.error = "Se esperaban 6 o 7 campos y hay " + campos.length + ".";
+            return fila;
+        }
+        fila.tipo = campos[0].trim();
+        fila.marca = campos[1].trim();
+        fila.ubicacion = campos[2].trim();
+        fila.estado = campos.length == 7 && !campos[6].trim().isEmpty() ? campos[6].trim() : "Activo";
+        try {
+            fila.fechaDeInstalacion = java.sql.Date.valueOf(LocalDate.parse(campos[3].trim()));
+            fila.anioDeFabricacion = Integer.parseInt(campos[4].trim());
+            fila.nis = Integer.parseInt(campos[5].trim());
+        } catch (DateTimeParseException e) {
+            fila.error = "La Fecha de Instalación debe tener el formato YYYY-MM-DD.";
+            return fila;
+        } catch (NumberFormatException e) {
+            fila.error = "El Año de Fabricación y el NIS deben ser valores numéricos.";
+            return fila;
+        }
+        fila.error = ControladorAgregarMedidor.validarDatosDeMedidor(fila.tipo, fila.marca, fila.ubicacion,
+                fila.fechaDeInstalacion, fila.anioDeFabricacion);
+        return fila;
+    }
+
+    private static boolean escribirErrores(Path ruta, List<Fila> rechazadas) {
+        try (BufferedWriter salida = Files.newBufferedWriter(ruta, StandardCharsets.UTF_8)) {
+            salida.write("linea;motivo;fila");
+            salida.newLine();
+            for (Fila fila : rechazadas) {
+                salida.write(fila.numeroDeLinea + ";" + fila.error.replace(';', ',') + ";" + fila.original);
+                salida.newLine();
+            }
+            return true;
+        } catch (IOException e) {
+            System.out.println("ERROR: No se pudo escribir el archivo de errores '" + ruta + "': " + e.getMessage());
+            return false;
+        }
+    }
+
+    /*
+     * Una línea del CSV con sus campos ya convertidos, o el motivo por el que se rechazó.
+     */
+    private static final class Fila {
+        final int numeroDeLinea;
+        final String original;
+        String tipo;
+        String marca;
+        String ubicacion;
+        Date fechaDeInstalacion;
+        int anioDeFabricacion;
+        int nis;
+        String estado;
+        String error; // null mientras la fila sea válida.
+
+        Fila(int numeroDeLinea, String original) {
+            this.numeroDeLinea = numeroDeLinea;
+            this.original = original;
+        }
+    }
+}
@@ -7,24 +7,62 @@ package sistema.de.gestion.electrica.controladores;
 
 // Importaciones necesarias para manejar errores de SQL y clases de dominio
 import java.sql.SQLException;
+import sistema.de.gestion.electrica.AlmacenDeSesiones;
 import sistema.de.gestion.electrica.RepositorioDAO;
+import sistema.de.gestion.electrica.RegistroDeMetricas;
 import sistema.de.gestion.electrica.Usuario;
 import sistema.de.gestion.electrica.Cliente;
 import sistema.de.gestion.electrica.Operario;
+import sistema.de.gestion.electrica.TipoDeIdentificador;
 
 
 /**
  * Clase ControladorIniciarSesion.
  * Gestiona el caso de uso de inicio de sesión para Clientes y Operarios.
+ * Cada inicio exitoso abre una sesión con token en el AlmacenDeSesiones. Un nuevo inicio con las mismas
+ * credenciales, dentro de su vencimiento, se resuelve con las credenciales recordadas sin consultar la BD.
  */
 public class ControladorIniciarSesion {
     
     // Referencia al objeto de acceso a datos (DAO) para interactuar con la persistencia
     private final RepositorioDAO repositorioDAO; 
+    // Sesiones abiertas y credenciales recordadas (en memoria, con vencimiento)
+    private final AlmacenDeSesiones almacenDeSesiones;
 
     // Constructor que recibe e inicializa la dependencia del RepositorioDAO
     public ControladorIniciarSesion(RepositorioDAO repositorioDAO) {
+        this(repositorioDAO, new AlmacenDeSesiones());
+    }
+
+    // Constructor que además recibe el almacén de sesiones (compartido si hay varias interfaces)
+    public ControladorIniciarSesion(RepositorioDAO repositorioDAO, AlmacenDeSesiones almacenDeSesiones) {
         this.repositorioDAO = repositorioDAO;
+        this.almacenDeSesiones = almacenDeSesiones;
+    }
+
+    /**
+     * Abre una sesión para el usuario que acaba de autenticarse.
+     * @return Retorno el token de la sesión.
+     */
+    public String abrirSesion(Usuario usuario) {
+        return almacenDeSesiones.abrir(usuario);
+    }
+
+    /**
+     * @return Retorno el Usuario de la sesión si sigue vigente (y renueva su vencimiento), o null si venció.
+     */
+    public Usuario validarSesion(String token) {
+        return almacenDeSesiones.buscar(token);
+    }
+
+    // Cierra la sesión del token.
+    public void cerrarSesion(String token) {
+        almacenDeSesiones.cerrar(token);
+    }
+
+    // Estadísticas de sesiones y credenciales recordadas, para el menú de métricas.
+    public String getEstadisticasSesiones() {
+        return almacenDeSesiones.getEstadisticas();
     }
 
     /*
@@ -33,6 +71,11 @@ public class ControladorIniciarSesion {
      * @throws SQLException Propaga errores de la base de datos al GestorDeInterfaz.
      */
     public Usuario procesarInicioSesion(String identificador, String contrasena) throws SQLException {
+        return RegistroDeMetricas.getInstancia().medir("CU001 Iniciar Sesión", () -> autenticar(identificador, contrasena));
+    }
+
+    // Cuerpo de procesarInicioSesion(), medido como caso de uso CU001 en RegistroDeMetricas.
+    private Usuario autenticar(String identificador, String contrasena) throws SQLException {
         
         // 1. Validación de campos de entrada obligatorios.
         if (identificador == null || identificador.trim().isEmpty() || contrasena == null || contrasena.isEmpty()) {
@@ -40,8 +83,16 @@ public class ControladorIniciarSesion {
             return null;
         }
 
-        // 2. Intenta autenticar al usuario delegando la lógica a la capa de datos (DAO).
-        Usuario usuarioAutenticado = this.repositorioDAO.autenticarUsuario(identificador, contrasena);
+        // 2. Si las mismas credenciales iniciaron sesión hace poco, no hace falta ir a la BD.
+        //    Si no, delego la autenticación a la capa de datos (DAO) y la recuerdo si es exitosa.
+        TipoDeIdentificador tipo = TipoDeIdentificador.clasificar(identificador);
+        Usuario usuarioAutenticado = almacenDeSesiones.buscarCredencial(tipo, identificador, contrasena);
+        if (usuarioAutenticado == null) {
+            usuarioAutenticado = this.repositorioDAO.autenticarUsuario(identificador, contrasena);
+            if (usuarioAutenticado != null) {
+                almacenDeSesiones.recordarCredencial(tipo, identificador, contrasena, usuarioAutenticado);
+            }
+        }
 
         // Verifica si se encontró un usuario con las credenciales dadas
         if (usuarioAutenticado != null) {
@@ -67,4 +118,4 @@ public class ControladorIniciarSesion {
             return null;
         }
     }
-}
\ No newline at end of file
+}
@@ -5,12 +5,15 @@
 
 package sistema.de.gestion.electrica.controladores;
 import sistema.de.gestion.electrica.RepositorioDAO;
+import sistema.de.gestion.electrica.RegistroDeMetricas;
+import sistema.de.gestion.electrica.RepositorioDAOAsincrono;
 import sistema.de.gestion.electrica.Cliente;
 import sistema.de.gestion.electrica.Medidor;
 import sistema.de.gestion.electrica.SolicitudDeServicio;
 import sistema.de.gestion.electrica.EstadoDeSolicitudDeServicio;
 import sistema.de.gestion.electrica.TipoDeSolicitud;
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
 
 
 
@@ -22,9 +25,11 @@ public class ControladorSolicitudCambio {
     
     // Cambiamos el nombre de 'simuladorDeBD' a 'repositorioDAO' para reflejar el cambio.
     private final RepositorioDAO repositorioDAO; // Referencia al objeto de acceso a datos.
+    private final RepositorioDAOAsincrono repositorioAsincrono; // Para lanzar a la vez las búsquedas independientes.
     
-    public ControladorSolicitudCambio(RepositorioDAO repositorioDAO){
+    public ControladorSolicitudCambio(RepositorioDAO repositorioDAO, RepositorioDAOAsincrono repositorioAsincrono){
         this.repositorioDAO = repositorioDAO;
+        this.repositorioAsincrono = repositorioAsincrono;
     }
     
     /*
@@ -33,10 +38,20 @@ public class ControladorSolicitudCambio {
      * @throws SQLException Propaga errores de la base de datos al GestorDeInterfaz.
      */
     public boolean procesarSolicitudCambio(Cliente cliente, String nombreEstadoActual, String nombreTipoSolicitud, String descripcion) throws SQLException {
+        return RegistroDeMetricas.getInstancia().medir("CU003 Solicitar Cambio de Servicio", () -> registrarSolicitudCambio(cliente, nombreEstadoActual, nombreTipoSolicitud, descripcion));
+    }
+
+    // Cuerpo de procesarSolicitudCambio(), medido como caso de uso CU003 en RegistroDeMetricas.
+    private boolean registrarSolicitudCambio(Cliente cliente, String nombreEstadoActual, String nombreTipoSolicitud, String descripcion) throws SQLException {
         
-        // 1. Obtener el medidor asociado al cliente para validaciones.
+        // 1. Lanzo a la vez las tres búsquedas, que no dependen entre sí: medidor del cliente, tipo de solicitud
+        //    y estado inicial ("Pendiente"). Espero cada una recién cuando la necesito.
         // ASUMIMOS que el DAO ahora recibe el ID del cliente, no el objeto completo.
-        Medidor medidorAsociado = this.repositorioDAO.getMedidorAsociadoACliente(cliente.getIdUsuario());
+        CompletableFuture<Medidor> medidorFuturo = this.repositorioAsincrono.getMedidorAsociadoACliente(cliente.getIdUsuario());
+        CompletableFuture<TipoDeSolicitud> tipoFuturo = this.repositorioAsincrono.getTipoSolicitudPorNombre(nombreTipoSolicitud);
+        CompletableFuture<EstadoDeSolicitudDeServicio> estadoFuturo = this.repositorioAsincrono.getEstadoSolicitudPorNombre("Pendiente");
+
+        Medidor medidorAsociado = RepositorioDAOAsincrono.esperar(medidorFuturo);
         
         // 2. Validación: El cliente debe tener un medidor asociado.
         if (medidorAsociado == null) {
@@ -50,8 +65,8 @@ public class ControladorSolicitudCambio {
             return false; // Detiene la solicitud si el estado es inconsistente.
         }
 
-        // 4. Obtener el objeto TipoDeSolicitud (ej: Activacion) desde la BD.
-        TipoDeSolicitud tipoDeSolicitud = this.repositorioDAO.getTipoSolicitudPorNombre(nombreTipoSolicitud);
+        // 4. Obtener el objeto TipoDeSolicitud (ej: Activacion), ya buscado en el paso 1.
+        TipoDeSolicitud tipoDeSolicitud = RepositorioDAOAsincrono.esperar(tipoFuturo);
 
         // 5. Validación: El tipo de solicitud debe ser válido y existir.
         if (tipoDeSolicitud == null) {
@@ -65,21 +80,17 @@ public class ControladorSolicitudCambio {
             return false;
         }
         
-        // 7. Obtener el estado inicial de la solicitud ("Pendiente") desde la BD.
-        EstadoDeSolicitudDeServicio estadoInicialSolicitud = this.repositorioDAO.getEstadoSolicitudPorNombre("Pendiente");
+        // 7. Obtener el estado inicial de la solicitud ("Pendiente"), ya buscado en el paso 1.
+        EstadoDeSolicitudDeServicio estadoInicialSolicitud = RepositorioDAOAsincrono.esperar(estadoFuturo);
 
         if (estadoInicialSolicitud == null) {
              System.out.println("ERROR INTERNO: No se pudo obtener el estado inicial 'Pendiente'.");
              return false;
         }
 
-        // 8. Generar un ID único para la nueva solicitud (el DAO debe manejar esto, generalmente con AUTO_INCREMENT)
-        // Usaremos el método del DAO que calcula el siguiente ID.
-        int idSolicitud = this.repositorioDAO.generarIdSolicitud(); // Pide al DAO que genere un ID.
-
-        // 9. Crear el objeto SolicitudDeServicio.
+        // 8. Crear el objeto SolicitudDeServicio. El ID se le asigna al insertarla (GeneradorDeIds).
         SolicitudDeServicio nuevaSolicitud = new SolicitudDeServicio(
-            idSolicitud,
+            0,
             descripcion,
             cliente,
             medidorAsociado.getEstadoDeMedidor(), // Estado del medidor al momento de solicitar.
@@ -87,13 +98,16 @@ public class ControladorSolicitudCambio {
             estadoInicialSolicitud // Estado por defecto: "Pendiente".
         );
 
-        // 10. Persistir la nueva solicitud en la Base de Datos.
-        this.repositorioDAO.agregarSolicitud(nuevaSolicitud); // Llama al DAO para guardar el objeto.
+        // 9. Persistir la nueva solicitud en la Base de Datos (el DAO completa el ID generado).
+        if (!this.repositorioDAO.agregarSolicitud(nuevaSolicitud)) { // Llama al DAO para guardar el objeto.
+            System.out.println("ERROR: No se pudo registrar la solicitud de cambio.");
+            return false;
+        }
 
-        // 11. Muestra un mensaje de confirmación al usuario.
-        System.out.println("ÉXITO: Solicitud de cambio #" + idSolicitud + " registrada.");
+        // 10. Muestra un mensaje de confirmación al usuario.
+        System.out.println("ÉXITO: Solicitud de cambio #" + nuevaSolicitud.getIdSolicitud() + " registrada.");
         System.out.println("Tipo: " + tipoDeSolicitud.getNombre() + ". Estado De Solicitud: " + estadoInicialSolicitud.getNombre() + ".");
 
         return true; // Retorna verdadero indicando el éxito de la operación.
     }
-}
\ No newline at end of file
+}
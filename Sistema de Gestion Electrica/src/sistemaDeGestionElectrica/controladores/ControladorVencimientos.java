@@ -0,0 +1,94 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package sistema.de.gestion.electrica.controladores;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import sistema.de.gestion.electrica.BarridoDeVencimientos;
+import sistema.de.gestion.electrica.RegistroDeMetricas;
+import sistema.de.gestion.electrica.RepositorioDAO;
+
+/**
+ * Clase ControladorVencimientos.
+ * Contiene la tarea programada que vence las Facturas impagas: cada 'sgre.vencimientos.intervaloMin' minutos
+ * (0 la desactiva) pasa a "Vencida" las pendientes cuya fecha de vencimiento pasó hace más de
+ * 'sgre.vencimientos.graciaDias' días, con un recargo por mora de 'sgre.vencimientos.recargo' puntos básicos
+ * sobre el saldo impago (500 = 5 %), con RepositorioDAO.vencerFacturas en tramos de 'sgre.vencimientos.tramo'
+ * facturas. La gracia existe porque el archivo del banco llega un día después: un pago hecho el día del
+ * vencimiento se concilia recién al día siguiente, y sin gracia esa factura ya tendría el recargo.
+ *
+ * Cada instancia de la aplicación programa su propia tarea; BarridoDeVencimientos se encarga de que solo una
+ * barra a la vez, y como solo toca facturas pendientes, repetir el barrido no vuelve a cobrar el recargo.
+ */
+public class ControladorVencimientos {
+
+    private static final int INTERVALO_MINUTOS = Integer.getInteger("sgre.vencimientos.intervaloMin", 60);
+    private static final int RECARGO_PUNTOS_BASICOS = Integer.getInteger("sgre.vencimientos.recargo", 500);
+    private static final int FACTURAS_POR_TRAMO = Integer.getInteger("sgre.vencimientos.tramo", 5_000);
+    private static final int DIAS_DE_GRACIA = Integer.getInteger("sgre.vencimientos.graciaDias", 1);
+
+    private final RepositorioDAO repositorioDAO; // Referencia al objeto de acceso a datos (DAO).
+    private ScheduledExecutorService programador; // null mientras la tarea no está programada.
+
+    // Constructor que inyecta la dependencia del repositorio.
+    public ControladorVencimientos(RepositorioDAO repositorioDAO) {
+        this.repositorioDAO = repositorioDAO;
+    }
+
+    /*
+     * Vence ahora las facturas impagas con fecha de vencimiento anterior a hoy menos los días de gracia.
+     * @return Cantidad de facturas vencidas, o BarridoDeVencimientos.SIN_LOCK si otra instancia está barriendo.
+     * @throws SQLException Si falla la base de datos; los tramos anteriores quedan confirmados.
+     */
+    public int vencerFacturas() throws SQLException {
+        Date corte = Date.from(LocalDate.now().minusDays(Math.max(DIAS_DE_GRACIA, 0)).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        int vencidas = RegistroDeMetricas.getInstancia().medir("Vencer Facturas",
+                () -> repositorioDAO.vencerFacturas(corte, RECARGO_PUNTOS_BASICOS, FACTURAS_POR_TRAMO));
+        if (vencidas > 0) {
+            System.out.printf("%nVENCIMIENTOS: %d facturas impagas pasaron a Vencida, con un recargo del %.2f %%.%n",
+                    vencidas, RECARGO_PUNTOS_BASICOS / 100.0);
+        }
+        return vencidas;
+    }
+
+    /*
+     * Programa el barrido periódico, empezando ahora. No hace nada si está desactivado o ya estaba programado.
+     */
+    public synchronized void programar() {
+        if (INTERVALO_MINUTOS <= 0 || programador != null) {
+            return;
+        }
+        // Uso un único hilo demonio para que la tarea no impida que la JVM termine.
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sgre-vencimientos");
+            t.setDaemon(true);
+            return t;
+        });
+        programador.scheduleWithFixedDelay(this::vencerProgramado, 0, INTERVALO_MINUTOS, TimeUnit.MINUTES);
+    }
+
+    // Cancela las próximas ejecuciones (un barrido en curso termina su tramo).
+    public synchronized void detener() {
+        if (programador != null) {
+            programador.shutdown();
+            programador = null;
+        }
+    }
+
+    // ------------------ Internos ------------------
+
+    // Si una ejecución lanza una excepción, el ScheduledExecutorService cancela las siguientes: la informo y sigo.
+    private void vencerProgramado() {
+        try {
+            vencerFacturas();
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Error en el barrido de vencimientos (se reintenta en " + INTERVALO_MINUTOS + " min): " + e.getMessage());
+        }
+    }
+}